@@ -36,6 +36,9 @@ import org.apache.vinci.debug.Debug;
  * This class is designed to be extensible. For example you can extend to provide new Runnable
  * objects that are used to handle requests in the appropriate fashion. You can also override
  * configure socket to install SSL-supporting server sockets, and so on...
+ * 
+ * In non-blocking mode (see {@link #setNonBlocking(boolean)}), a single selector thread reads
+ * requests from all the client connections, and the thread pool serves complete requests only.
  */
 public class BaseServer {
 
@@ -69,6 +72,10 @@ public class BaseServer {
 
   private PooledThread[] busyThreads;
 
+  private boolean nonBlocking;
+
+  private NonBlockingServer nonBlockingServer;
+
   private class PooledThread extends Thread {
     private Runnable run_me;
 
@@ -157,6 +164,8 @@ public class BaseServer {
     pooledCount = 0;
     busyCount = 0;
     maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+    nonBlocking = false;
+    nonBlockingServer = null;
   }
 
   /**
@@ -229,6 +238,41 @@ public class BaseServer {
     maxPoolSize = max;
   }
 
+  /**
+   * Set whether this server uses non-blocking I/O. By default a pooled thread is dedicated to each
+   * client connection, for as long as the connection is open, so the maximum thread pool size
+   * bounds the number of connected clients. In non-blocking mode, one selector thread reads the
+   * requests of all the connections, and a pooled thread is used only while a complete request is
+   * being served, so the maximum thread pool size bounds the number of requests served
+   * concurrently. The socket timeout then closes connections which have been idle, or have sent
+   * an incomplete request, for that long.
+   * 
+   * Non-blocking mode listens on a plain server socket channel: a server socket provided by
+   * overriding {@link #createServerSocket(int)} is not used. This should be called before serving
+   * starts otherwise it has no effect.
+   * 
+   * @param nonBlocking -
+   *          true to use non-blocking I/O
+   */
+  public void setNonBlocking(boolean nonBlocking) {
+    Debug.Assert(!isServing);
+    this.nonBlocking = nonBlocking;
+  }
+
+  /**
+   * @return true if this server uses non-blocking I/O
+   */
+  public boolean isNonBlocking() {
+    return nonBlocking;
+  }
+
+  /**
+   * @return true once shutdownServing() has been called
+   */
+  boolean isShutdownRequested() {
+    return shutdown;
+  }
+
   private void configureServerSocket(int port) throws IOException {
     Debug.Assert(!isServing);
     serverSocket = createServerSocket(port);
@@ -263,14 +307,22 @@ public class BaseServer {
    * @since 2.0.15
    */
   public void startServing(int port) throws IOException {
-    configureServerSocket(port);
+    if (nonBlocking) {
+      nonBlockingServer = new NonBlockingServer(this, port, maxPoolSize, socketTimeout);
+    } else {
+      configureServerSocket(port);
+    }
     new Thread(new Runnable() {
       public void run() {
         shutdown = false;
         isServing = true;
         try {
-          initializeServing();
-          handleRequests();
+          if (nonBlocking) {
+            handleRequestsNonBlocking();
+          } else {
+            initializeServing();
+            handleRequests();
+          }
         } finally {
           isServing = false;
         }
@@ -289,12 +341,20 @@ public class BaseServer {
    * @pre port &lt; 65536
    */
   public void serve(int port) throws IOException {
-    configureServerSocket(port);
+    if (nonBlocking) {
+      nonBlockingServer = new NonBlockingServer(this, port, maxPoolSize, socketTimeout);
+    } else {
+      configureServerSocket(port);
+    }
     shutdown = false;
     isServing = true;
     try {
-      initializeServing();
-      handleRequests();
+      if (nonBlocking) {
+        handleRequestsNonBlocking();
+      } else {
+        initializeServing();
+        handleRequests();
+      }
     } finally {
       isServing = false;
     }
@@ -306,6 +366,9 @@ public class BaseServer {
    * @return The server's server socket
    */
   protected ServerSocket getServerSocket() {
+    if (nonBlockingServer != null) {
+      return nonBlockingServer.getServerSocket();
+    }
     return serverSocket;
   }
 
@@ -357,6 +420,20 @@ public class BaseServer {
     }
   }
 
+  /**
+   * Run the selector loop of non-blocking mode, until shutdownServing() is called.
+   * 
+   * @pre nonBlockingServer != null
+   */
+  private void handleRequestsNonBlocking() {
+    try {
+      servingThread = Thread.currentThread();
+      nonBlockingServer.serve();
+    } finally {
+      cleanExit();
+    }
+  }
+
   /**
    * Cause the serve() method to terminate.
    */
@@ -412,17 +489,24 @@ public class BaseServer {
 
   /**
    * Cleanly shut down this server. Called when handleRequests completes the accept loop.
-   * 
-   * @pre serverSocket != null
-   * @pre threadPool != null
    */
   protected void cleanExit() {
     isServing = false; // causes pooled threads to terminate.
-    try {
-      serverSocket.close();
-    } catch (IOException e) {
-      Debug.reportException(e);
+    if (serverSocket != null) {
+      try {
+        serverSocket.close();
+      } catch (IOException e) {
+        Debug.reportException(e);
+      }
+    }
+    if (threadPool != null) {
+      cleanExitThreadPool();
     }
+    // Finally perform the VinciServable-specific cleanup.
+    servable.cleanExit();
+  }
+
+  private void cleanExitThreadPool() {
     synchronized (threadPool) {
       // Interrupt pooled threads that are not active so they can shut down.
       for (int i = 0; i < pooledCount; i++) {
@@ -441,8 +525,6 @@ public class BaseServer {
         }
       }
     }
-    // Finally perform the VinciServable-specific cleanup.
-    servable.cleanExit();
   }
 
   /**
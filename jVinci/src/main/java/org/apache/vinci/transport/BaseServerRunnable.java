@@ -26,8 +26,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 import org.apache.vinci.debug.Debug;
+import org.apache.vinci.transport.util.ByteBufferInputStream;
+import org.apache.vinci.transport.util.ByteBufferOutputStream;
+import org.apache.vinci.transport.util.ByteBufferPool;
 
 /**
  * Runnable class used by BaseServer to concurrently service requests.
@@ -37,7 +41,7 @@ public class BaseServerRunnable implements Runnable {
 
   private BaseServer parent;
 
-  private static final ThreadLocal THREAD_LOCAL_SOCKET = new ThreadLocal();
+  private static final ThreadLocal<Socket> THREAD_LOCAL_SOCKET = new ThreadLocal<>();
 
   /**
    * Allows anyone in the calling chain of the 'run' method to get access to the socket being used
@@ -45,7 +49,7 @@ public class BaseServerRunnable implements Runnable {
    * @return -
    */
   public static Socket getSocket() {
-    return (Socket) THREAD_LOCAL_SOCKET.get();
+    return THREAD_LOCAL_SOCKET.get();
   }
 
   /**
@@ -68,32 +72,7 @@ public class BaseServerRunnable implements Runnable {
     try {
       InputStream is = new BufferedInputStream(socket.getInputStream());
       OutputStream os = new BufferedOutputStream(socket.getOutputStream());
-      while (true) {
-        Transportable in = parent.makeTransportable();
-        KeyValuePair header = null;
-        try {
-          // long begin = System.currentTimeMillis(); // TEMP
-          header = in.fromStream(is);
-          // Debug.p("Elapsed fromStream: " + (System.currentTimeMillis() - begin));
-        } catch (EOFException e) {
-          break;
-        }
-        Transportable out = handleHeader(header);
-        if (out == null) {
-          try {
-            out = parent.eval(in, header);
-          } catch (Throwable e) {
-            Debug.reportException(e);
-            out = new ErrorFrame("Server failed: " + e);
-          }
-        }
-        if (out != null) {
-          // ^ Asynch services may choose not to return results.
-          // long begin = System.currentTimeMillis(); // TEMP
-          out.toStream(os);
-          os.flush();
-          // Debug.p("Elapsed toStream: " + (System.currentTimeMillis() - begin));
-        }
+      while (serveRequest(is, os)) {
       }
     } catch (IOException e) {
       Debug.p("IOException in BaseServerRunnable: " + e);
@@ -109,6 +88,81 @@ public class BaseServerRunnable implements Runnable {
     }
   }
 
+  /**
+   * Read one request from the input stream, and write the response to the output stream. If the
+   * request has a request id (see XTalkRequestId), the response gets the same id. A ping with a
+   * request id is answered by a non-blocking server itself, telling that it serves the requests
+   * with ids concurrently.
+   * 
+   * @param is -
+   * @param os -
+   * @return false if the input stream ended before a request
+   * @throws IOException -
+   */
+  protected boolean serveRequest(InputStream is, OutputStream os) throws IOException {
+    int requestId = is.markSupported() ? XTalkRequestId.peek(is) : XTalkRequestId.NONE;
+    Transportable in = parent.makeTransportable();
+    KeyValuePair header = null;
+    try {
+      // long begin = System.currentTimeMillis(); // TEMP
+      header = in.fromStream(is);
+      // Debug.p("Elapsed fromStream: " + (System.currentTimeMillis() - begin));
+    } catch (EOFException e) {
+      return false;
+    }
+    Transportable out;
+    if (requestId != XTalkRequestId.NONE && parent.isNonBlocking() && header != null
+            && header.key.equals(TransportConstants.PING_KEY)) {
+      out = new VinciFrame().fadd(TransportConstants.STATUS_KEY, TransportConstants.OK_VALUE)
+              .fadd(TransportConstants.CONCURRENT_KEY, TransportConstants.TRUE_VALUE);
+    } else {
+      out = handleHeader(header);
+    }
+    if (out == null) {
+      try {
+        out = parent.eval(in, header);
+      } catch (Throwable e) {
+        Debug.reportException(e);
+        out = new ErrorFrame("Server failed: " + e);
+      }
+    }
+    if (out != null) {
+      // ^ Asynch services may choose not to return results.
+      // long begin = System.currentTimeMillis(); // TEMP
+      out.toStream((requestId == XTalkRequestId.NONE) ? os : XTalkRequestId.wrap(os, requestId));
+      os.flush();
+      // Debug.p("Elapsed toStream: " + (System.currentTimeMillis() - begin));
+    }
+    return true;
+  }
+
+  /**
+   * Serve a complete request which has been read by a non-blocking server. The request is read in
+   * place from the buffer, and the response is written into buffers from the pool.
+   * 
+   * @param request
+   *          the request, from the position to the limit of the buffer
+   * @param pool
+   *          the pool of the response buffers
+   * @return the response, or null if the service did not return one
+   * @throws IOException -
+   */
+  ByteBufferOutputStream serveRequest(ByteBuffer request, ByteBufferPool pool) throws IOException {
+    THREAD_LOCAL_SOCKET.set(socket);
+    ByteBufferOutputStream os = new ByteBufferOutputStream(pool);
+    boolean done = false;
+    try {
+      serveRequest(new ByteBufferInputStream(request), os);
+      done = true;
+    } finally {
+      THREAD_LOCAL_SOCKET.set(null);
+      if (!done || os.size() == 0) {
+        os.release();
+      }
+    }
+    return (os.size() == 0) ? null : os;
+  }
+
   public Transportable handleHeader(KeyValuePair header) {
     return null;
   }
@@ -0,0 +1,558 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.vinci.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.vinci.debug.Debug;
+
+/**
+ * A client which shares one connection to a service among all the MultiplexedClients of the same
+ * host and port, in this JVM. Any number of threads, each with its own MultiplexedClient, can have
+ * requests outstanding on the shared connection at a time. Requests are tagged with a request id
+ * (see XTalkRequestId), and a reader thread hands each response to the client waiting for it,
+ * whatever the order the service responds in.
+ * 
+ * Only a BaseServer serving in non-blocking mode serves the requests of a shared connection
+ * concurrently; a blocking BaseServer would serve them one at a time, in order. When a new shared
+ * connection is opened, the service is pinged with a request id, and the connection is shared only
+ * if the response tells that the requests with ids are served concurrently. Otherwise the client
+ * falls back to a dedicated connection, and behaves just like a BaseClient.
+ * 
+ * On a shared connection, the socket timeout (see BaseClient.setSocketTimeout) and the timeout
+ * passed to sendAndReceive are the time to wait for the whole response to a request, rather than
+ * for each read from the socket, as with a dedicated connection.
+ * 
+ * Closing a MultiplexedClient releases its use of the shared connection, which is closed once no
+ * client uses it. Retrying on IOExceptions (see BaseClient.setRetry) is off by default.
+ */
+public class MultiplexedClient extends BaseClient {
+
+  /** the shared connections, by host:port */
+  static private final Map<String, Connection> connections = new HashMap<String, Connection>();
+
+  private final String host;
+
+  private final int port;
+
+  private final int connectTimeout;
+
+  private TransportableFactory factory;
+
+  /** the shared connection, null when closed or using a dedicated connection */
+  private Connection connection;
+
+  private boolean dedicated;
+
+  /** the request sent by send(), to be picked up by receive() */
+  private Pending sent;
+
+  private KeyValuePair header;
+
+  /**
+   * A request waiting for its response.
+   */
+  static private class Pending {
+    final TransportableFactory factory;
+
+    int id;
+
+    boolean done;
+
+    Transportable out;
+
+    KeyValuePair header;
+
+    IOException failure;
+
+    Pending(TransportableFactory factory) {
+      this.factory = factory;
+    }
+
+    synchronized void complete(Transportable out, KeyValuePair header, IOException failure) {
+      this.out = out;
+      this.header = header;
+      this.failure = failure;
+      done = true;
+      notifyAll();
+    }
+  }
+
+  /**
+   * A connection shared by the MultiplexedClients of one host and port.
+   */
+  static private class Connection implements Runnable {
+    final String key;
+
+    final Socket socket;
+
+    final InputStream is;
+
+    final OutputStream os;
+
+    /** held while a request is written */
+    final Object writeLock = new Object();
+
+    /** the requests waiting for their response, guarded by this */
+    final Map<Integer, Pending> pending = new HashMap<Integer, Pending>();
+
+    /** guarded by this */
+    int nextId = 1;
+
+    /** guarded by this */
+    boolean open = true;
+
+    /** guarded by MultiplexedClient.connections */
+    int useCount = 0;
+
+    Connection(String key, String host, int port, int connectTimeout) throws IOException {
+      this.key = key;
+      socket = new Socket();
+      socket.connect(new InetSocketAddress(InetAddress.getByName(host), port), connectTimeout);
+      socket.setTcpNoDelay(true); // needed to avoid delays with Linux/loopback
+      socket.setKeepAlive(true);
+      is = new BufferedInputStream(socket.getInputStream());
+      os = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    /**
+     * Ping the service with a request id, before the reader thread is started.
+     * 
+     * @return true if the service echoed the request id, and serves the requests with ids
+     *         concurrently
+     */
+    boolean probe(int timeout) throws IOException {
+      VinciFrame ping = new VinciFrame();
+      ping.fadd(TransportConstants.PING_KEY, "");
+      ping.toStream(XTalkRequestId.wrap(os, 0));
+      os.flush();
+      socket.setSoTimeout(timeout);
+      try {
+        int id = XTalkRequestId.peek(is);
+        VinciFrame response = new VinciFrame();
+        response.fromStream(is);
+        return id == 0 && TransportConstants.TRUE_VALUE.equals(
+                response.fgetString(TransportConstants.CONCURRENT_KEY));
+      } catch (SocketTimeoutException e) {
+        return false;
+      } finally {
+        socket.setSoTimeout(0);
+      }
+    }
+
+    void start() {
+      Thread reader = new Thread(this, "MultiplexedClientReader " + key);
+      reader.setDaemon(true);
+      reader.start();
+    }
+
+    synchronized boolean isOpen() {
+      return open;
+    }
+
+    Pending send(Transportable in, TransportableFactory f) throws IOException {
+      Pending p = new Pending(f);
+      synchronized (writeLock) {
+        synchronized (this) {
+          if (!open) {
+            throw new IOException("Connection closed");
+          }
+          p.id = nextId;
+          nextId = (nextId == Integer.MAX_VALUE) ? 1 : nextId + 1;
+          pending.put(p.id, p);
+        }
+        try {
+          in.toStream(XTalkRequestId.wrap(os, p.id));
+          os.flush();
+        } catch (IOException e) {
+          fail(e);
+          throw e;
+        }
+      }
+      return p;
+    }
+
+    /**
+     * Wait for the response to a request.
+     * 
+     * @param timeout -
+     *          for the whole response, in millis, 0 for no timeout
+     */
+    void await(Pending p, int timeout) throws IOException {
+      long deadline = System.currentTimeMillis() + timeout;
+      try {
+        synchronized (p) {
+          while (!p.done) {
+            if (timeout == 0) {
+              p.wait();
+            } else {
+              long wait = deadline - System.currentTimeMillis();
+              if (wait <= 0) {
+                break;
+              }
+              p.wait(wait);
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        if (abandon(p)) {
+          throw new InterruptedIOException();
+        }
+      }
+      if (!p.done && abandon(p)) {
+        throw new SocketTimeoutException("Read timed out");
+      }
+      // the response is being read
+      synchronized (p) {
+        while (!p.done) {
+          try {
+            p.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    }
+
+    /**
+     * @return false if the reader has already started reading the response
+     */
+    synchronized boolean abandon(Pending p) {
+      return pending.remove(p.id) != null;
+    }
+
+    /**
+     * The reader thread, hands each response to the client waiting for it.
+     */
+    public void run() {
+      Pending p = null;
+      try {
+        while (true) {
+          int id = XTalkRequestId.peek(is);
+          synchronized (this) {
+            p = (id == XTalkRequestId.NONE) ? null : pending.remove(id);
+          }
+          if (p == null) {
+            // abandoned request
+            new VinciFrame().fromStream(is);
+          } else {
+            Transportable out = p.factory.makeTransportable();
+            KeyValuePair h = out.fromStream(is);
+            p.complete(out, h, null);
+            p = null;
+          }
+        }
+      } catch (IOException e) {
+        if (p != null) {
+          p.complete(null, null, e);
+        }
+        fail(e);
+      } catch (Throwable e) {
+        Debug.reportException(e);
+        IOException f = new IOException("Reading response failed: " + e);
+        if (p != null) {
+          p.complete(null, null, f);
+        }
+        fail(f);
+      }
+    }
+
+    /**
+     * Close the connection, failing the requests waiting for their response.
+     */
+    void fail(IOException e) {
+      Pending[] failed;
+      synchronized (this) {
+        if (!open) {
+          return;
+        }
+        open = false;
+        failed = pending.values().toArray(new Pending[pending.size()]);
+        pending.clear();
+      }
+      for (Pending p : failed) {
+        p.complete(null, null, e);
+      }
+      try {
+        socket.close();
+      } catch (IOException f) {
+        Debug.reportException(f, "Could not close connection.");
+      }
+    }
+  }
+
+  /**
+   * Open the service at the specified host and port, using a VinciFrame factory.
+   * 
+   * @param h
+   *          The hostname/ip address of the machine running the service.
+   * @param p
+   *          The port on which the service runs.
+   * @throws IOException
+   *           if the connection fails
+   */
+  public MultiplexedClient(String h, int p) throws IOException {
+    this(h, p, VinciFrame.getVinciFrameFactory(), DEFAULT_CONNECT_TIMEOUT);
+  }
+
+  /**
+   * Open the service at the specified host and port.
+   * 
+   * @param h
+   *          The hostname/ip address of the machine running the service.
+   * @param p
+   *          The port on which the service runs.
+   * @param f
+   *          A factory for creating documents of the desired type.
+   * @param connectTimeout
+   *          The number of milliseconds that will elapse before a connect attempt fails, also
+   *          used as the timeout of the ping of a newly opened shared connection.
+   * @throws IOException
+   *           if the connection fails
+   */
+  public MultiplexedClient(String h, int p, TransportableFactory f, int connectTimeout)
+          throws IOException {
+    super(f, connectTimeout);
+    this.host = h;
+    this.port = p;
+    this.factory = f;
+    this.connectTimeout = connectTimeout;
+    setRetry(false);
+    connect();
+  }
+
+  /**
+   * Use the shared connection, or a dedicated one if the service does not serve request ids
+   * concurrently.
+   */
+  private void connect() throws IOException {
+    connection = acquire(host, port, connectTimeout);
+    if (connection == null) {
+      dedicated = true;
+      open(host, port);
+    }
+  }
+
+  /**
+   * Get the shared connection to a service, opening it if needed. The connection is opened and
+   * probed without holding the lock of the shared connections, so clients of other services are not
+   * held up; if another client opened one meanwhile, it is used instead.
+   * 
+   * @return the shared connection, or null if the service does not serve request ids concurrently
+   */
+  static private Connection acquire(String host, int port, int connectTimeout)
+          throws IOException {
+    String key = host + ':' + port;
+    synchronized (connections) {
+      Connection c = connections.get(key);
+      if (c != null && c.isOpen()) {
+        c.useCount++;
+        return c;
+      }
+    }
+    Connection c = new Connection(key, host, port, connectTimeout);
+    boolean supported;
+    try {
+      supported = c.probe(connectTimeout);
+    } catch (IOException e) {
+      c.fail(e);
+      throw e;
+    }
+    synchronized (connections) {
+      Connection other = connections.get(key);
+      if (other != null && other.isOpen()) {
+        c.fail(new IOException("Connection closed"));
+        other.useCount++;
+        return other;
+      }
+      if (!supported) {
+        Debug.p("Service at " + key
+                + " does not serve request ids concurrently, not sharing connection.");
+        c.fail(new IOException("Connection closed"));
+        connections.remove(key);
+        return null;
+      }
+      c.start();
+      connections.put(key, c);
+      c.useCount++;
+      return c;
+    }
+  }
+
+  static private void release(Connection c) {
+    synchronized (connections) {
+      if (--c.useCount == 0) {
+        c.fail(new IOException("Connection closed"));
+        if (connections.get(c.key) == c) {
+          connections.remove(c.key);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return true if this client shares a connection, false if it has fallen back to a dedicated
+   *         connection because the service does not serve request ids concurrently
+   */
+  public boolean isMultiplexed() {
+    return !dedicated;
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public void setTransportableFactory(TransportableFactory f) {
+    super.setTransportableFactory(f);
+    factory = f;
+  }
+
+  /**
+   * Get a shared connection which is open, reconnecting if necessary.
+   */
+  private Connection getConnection() throws IOException {
+    if (connection != null && !connection.isOpen()) {
+      release(connection);
+      connection = null;
+    }
+    if (connection == null) {
+      connection = acquire(host, port, connectTimeout);
+      if (connection == null) {
+        throw new IOException("Service at " + host + ':' + port
+                + " no longer serves request ids concurrently");
+      }
+    }
+    return connection;
+  }
+
+  public Transportable sendAndReceive(Transportable in) throws IOException, ServiceException {
+    return sendAndReceive(in, factory, getSocketTimeout());
+  }
+
+  public Transportable sendAndReceive(Transportable in, int timeout) throws IOException,
+          ServiceException {
+    return sendAndReceive(in, factory, timeout);
+  }
+
+  public Transportable sendAndReceive(Transportable in, TransportableFactory f)
+          throws IOException, ServiceException {
+    return sendAndReceive(in, f, getSocketTimeout());
+  }
+
+  public Transportable sendAndReceive(Transportable in, TransportableFactory f, int timeout)
+          throws IOException, ServiceException {
+    if (dedicated) {
+      return super.sendAndReceive(in, f, timeout);
+    }
+    Connection c = getConnection();
+    Pending p = c.send(in, f);
+    c.await(p, timeout);
+    return result(p);
+  }
+
+  private Transportable result(Pending p) throws IOException, ServiceException {
+    if (p.failure != null) {
+      IOException e = new IOException(p.failure.getMessage());
+      e.initCause(p.failure);
+      throw e;
+    }
+    header = p.header;
+    if (header != null && header.key.equals(TransportConstants.ERROR_KEY)) {
+      throw new ServiceException(header.getValueAsString(), p.out);
+    }
+    return p.out;
+  }
+
+  public void send(Transportable in) throws IOException {
+    if (dedicated) {
+      super.send(in);
+      return;
+    }
+    Connection c = getConnection();
+    if (sent != null) {
+      c.abandon(sent);
+    }
+    sent = c.send(in, factory);
+  }
+
+  public Transportable receive() throws IOException, ServiceException {
+    if (dedicated) {
+      return super.receive();
+    }
+    if (sent == null) {
+      throw new IOException("Nothing sent");
+    }
+    Pending p = sent;
+    sent = null;
+    connection.await(p, getSocketTimeout());
+    return result(p);
+  }
+
+  public KeyValuePair getHeader() {
+    return dedicated ? super.getHeader() : header;
+  }
+
+  public boolean isOpen() {
+    if (dedicated) {
+      return super.isOpen();
+    }
+    return connection != null && connection.isOpen();
+  }
+
+  public void close() {
+    if (dedicated) {
+      super.close();
+    } else if (connection != null) {
+      if (sent != null) {
+        connection.abandon(sent);
+        sent = null;
+      }
+      release(connection);
+      connection = null;
+    }
+  }
+
+  protected void reopen(Exception e) throws IOException {
+    if (dedicated) {
+      super.reopen(e);
+    } else {
+      Debug.p("Trying to reopen connection due to exception: " + e.getMessage());
+      close();
+      connect();
+    }
+  }
+}
@@ -0,0 +1,502 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.vinci.transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.vinci.debug.Debug;
+import org.apache.vinci.transport.util.ByteBufferOutputStream;
+import org.apache.vinci.transport.util.ByteBufferPool;
+
+/**
+ * The request handling of a BaseServer in non-blocking mode, see
+ * {@link BaseServer#setNonBlocking(boolean)}.
+ * 
+ * One selector thread accepts connections, reads requests and writes responses. Once a complete
+ * XTalk request has been read from a connection, the request is handed to a worker thread, which
+ * runs it through the connection's BaseServerRunnable and serializes the response. No thread is
+ * held by a connection between requests, so many mostly idle clients only cost a buffer each.
+ * 
+ * Requests are decoded in place from the buffer they were read into. Responses are serialized into
+ * pooled direct buffers, which are written to the connection with gathering writes.
+ * 
+ * The number of workers is bounded by the maximum thread pool size of the server; complete
+ * requests wait for a free worker. Requests without a request id (see XTalkRequestId) are served
+ * like with the blocking server: one at a time, in order. Requests with an id, from a
+ * MultiplexedClient, are served concurrently, and their responses are written in the order they
+ * are ready in.
+ */
+class NonBlockingServer {
+
+  static private final int SELECT_TIMEOUT = 1000;
+
+  static private final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+  private final BaseServer parent;
+
+  private final ServerSocketChannel serverChannel;
+
+  private final Selector selector;
+
+  private final ThreadPoolExecutor workers;
+
+  private final ByteBufferPool responseBuffers = new ByteBufferPool();
+
+  private final int maxWorkers;
+
+  private final int socketTimeout;
+
+  /** the number of requests handed to workers, only used by the selector thread */
+  private int busyWorkers;
+
+  /** requests waiting for a worker, only used by the selector thread */
+  private final ArrayDeque<Request> waiting = new ArrayDeque<Request>();
+
+  /** requests which have been served by a worker */
+  private final ConcurrentLinkedQueue<Request> served = new ConcurrentLinkedQueue<Request>();
+
+  /**
+   * A complete request read from a connection.
+   */
+  private class Request {
+    private final Connection connection;
+
+    /** the request, owned by this object */
+    private final ByteBuffer frame;
+
+    private final boolean hasId;
+
+    /** the response set by the worker */
+    private ByteBufferOutputStream response;
+
+    /** the worker failed to serve the request */
+    private boolean failed;
+
+    Request(Connection connection, ByteBuffer frame, boolean hasId) {
+      this.connection = connection;
+      this.frame = frame;
+      this.hasId = hasId;
+    }
+
+    /**
+     * Called in a worker thread.
+     */
+    void serve() {
+      try {
+        response = connection.runnable.serveRequest(frame, responseBuffers);
+      } catch (IOException e) {
+        Debug.p("IOException in NonBlockingServer: " + e);
+        failed = true;
+      } catch (Throwable e) {
+        Debug.reportException(e);
+        failed = true;
+      }
+    }
+  }
+
+  /**
+   * One client connection. Only used by the selector thread.
+   */
+  private class Connection {
+    private final SocketChannel channel;
+
+    private final SelectionKey key;
+
+    private final BaseServerRunnable runnable;
+
+    private final XTalkFrameScanner scanner = new XTalkFrameScanner();
+
+    /** holds the bytes read, from offset 0 on, in write mode */
+    private ByteBuffer input = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    /** complete requests not yet handed to a worker */
+    private final ArrayDeque<Request> pending = new ArrayDeque<Request>();
+
+    /** the number of requests handed to a worker, not yet served */
+    private int inFlight;
+
+    /** a request without id is in flight, no other request may be */
+    private boolean exclusive;
+
+    /** the responses to write, in order */
+    private final ArrayDeque<ByteBufferOutputStream> outputs = new ArrayDeque<ByteBufferOutputStream>();
+
+    /** the client has closed its side of the connection */
+    private boolean eof;
+
+    private boolean closed;
+
+    private long lastActive = System.currentTimeMillis();
+
+    Connection(SocketChannel channel, SelectionKey key, BaseServerRunnable runnable) {
+      this.channel = channel;
+      this.key = key;
+      this.runnable = runnable;
+    }
+
+    private boolean isBusy() {
+      return inFlight > 0 || !pending.isEmpty() || !outputs.isEmpty();
+    }
+
+    /**
+     * @return true if more requests may be read
+     */
+    private boolean acceptsRequests() {
+      return pending.size() + inFlight < maxWorkers;
+    }
+
+    void read() {
+      int n;
+      try {
+        n = channel.read(input);
+      } catch (IOException e) {
+        Debug.p("IOException in NonBlockingServer: " + e);
+        close();
+        return;
+      }
+      if (n < 0) {
+        eof = true;
+      } else {
+        lastActive = System.currentTimeMillis();
+      }
+      scanRequests();
+    }
+
+    /**
+     * Turn the complete requests in the input into pending requests.
+     */
+    private void scanRequests() {
+      while (!closed && acceptsRequests()) {
+        int end;
+        try {
+          end = scanner.scan(input.array(), input.position());
+        } catch (IOException e) {
+          Debug.p("Malformed request in NonBlockingServer: " + e);
+          close();
+          return;
+        }
+        if (end < 0) {
+          if (!input.hasRemaining()) {
+            ByteBuffer bigger = ByteBuffer.allocate(input.capacity() * 2);
+            input.flip();
+            bigger.put(input);
+            input = bigger;
+          }
+          return;
+        }
+        // the request keeps the buffer, the bytes after it move to a new one
+        byte[] frame = input.array();
+        int rest = input.position() - end;
+        input = ByteBuffer.allocate(Math.max(INITIAL_BUFFER_SIZE, rest));
+        input.put(frame, end, rest);
+        scanner.reset();
+        boolean hasId = XTalkRequestId.peek(frame, 0, end) != XTalkRequestId.NONE;
+        pending.add(new Request(this, ByteBuffer.wrap(frame, 0, end), hasId));
+      }
+    }
+
+    /**
+     * Hand the pending requests which may be served now to workers.
+     */
+    void dispatchRequests() {
+      while (!closed && !exclusive && !pending.isEmpty()) {
+        Request r = pending.peek();
+        if (!r.hasId) {
+          if (inFlight > 0) {
+            return;
+          }
+          exclusive = true;
+        }
+        pending.poll();
+        inFlight++;
+        dispatch(r);
+      }
+    }
+
+    /**
+     * Called once a worker is done with a request of this connection.
+     */
+    void served(Request r) {
+      inFlight--;
+      if (!r.hasId) {
+        exclusive = false;
+      }
+      if (closed || r.failed) {
+        if (r.response != null) {
+          r.response.release();
+        }
+        close();
+        return;
+      }
+      lastActive = System.currentTimeMillis();
+      if (r.response != null) {
+        outputs.add(r.response);
+        write();
+      }
+      scanRequests();
+      dispatchRequests();
+    }
+
+    void write() {
+      try {
+        while (!outputs.isEmpty()) {
+          if (!outputs.peek().writeTo(channel)) {
+            return;
+          }
+          outputs.poll().release();
+          lastActive = System.currentTimeMillis();
+        }
+      } catch (IOException e) {
+        Debug.p("IOException in NonBlockingServer: " + e);
+        close();
+      }
+    }
+
+    /**
+     * Set the operations to select on, or close the connection once the client is done with it.
+     */
+    void updateInterest() {
+      if (closed) {
+        return;
+      }
+      if (eof && !isBusy()) {
+        close();
+        return;
+      }
+      int ops = 0;
+      if (!eof && acceptsRequests()) {
+        ops |= SelectionKey.OP_READ;
+      }
+      if (!outputs.isEmpty()) {
+        ops |= SelectionKey.OP_WRITE;
+      }
+      key.interestOps(ops);
+    }
+
+    void closeIfIdle(long now) {
+      if (socketTimeout != 0 && !isBusy() && now - lastActive > socketTimeout) {
+        Debug.p("Closing idle connection");
+        close();
+      }
+    }
+
+    void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      key.cancel();
+      pending.clear();
+      while (!outputs.isEmpty()) {
+        outputs.poll().release();
+      }
+      try {
+        channel.close();
+      } catch (IOException e) {
+        Debug.reportException(e);
+      }
+    }
+  }
+
+  /**
+   * Open the server channel, listening on the given port.
+   * 
+   * @param parent -
+   * @param port -
+   * @param maxWorkers -
+   *          the maximum number of requests served concurrently
+   * @param socketTimeout -
+   *          the time in millis after which an idle connection is closed, 0 for never
+   * @throws IOException -
+   */
+  NonBlockingServer(BaseServer parent, int port, int maxWorkers, int socketTimeout)
+          throws IOException {
+    this.parent = parent;
+    this.maxWorkers = Math.max(1, maxWorkers);
+    this.socketTimeout = socketTimeout;
+    serverChannel = ServerSocketChannel.open();
+    try {
+      serverChannel.socket().bind(new InetSocketAddress(port));
+      serverChannel.configureBlocking(false);
+      selector = Selector.open();
+      serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      serverChannel.close();
+      throw e;
+    }
+    final AtomicInteger threadNumber = new AtomicInteger();
+    workers = new ThreadPoolExecutor(this.maxWorkers, this.maxWorkers, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+              public Thread newThread(Runnable r) {
+                return new Thread(r, "NonBlockingServerWorker#" + threadNumber.getAndIncrement());
+              }
+            });
+    workers.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * @return the server socket of the channel the server listens on
+   */
+  ServerSocket getServerSocket() {
+    return serverChannel.socket();
+  }
+
+  /**
+   * The selector loop, runs until the parent server is shut down.
+   */
+  void serve() {
+    long lastIdleCheck = System.currentTimeMillis();
+    try {
+      while (!parent.isShutdownRequested()) {
+        selector.select(SELECT_TIMEOUT);
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept();
+          } else {
+            Connection c = (Connection) key.attachment();
+            if (key.isWritable()) {
+              c.write();
+            }
+            if (key.isValid() && key.isReadable()) {
+              c.read();
+            }
+            c.dispatchRequests();
+            c.updateInterest();
+          }
+        }
+        Request r;
+        while ((r = served.poll()) != null) {
+          busyWorkers--;
+          r.connection.served(r);
+          r.connection.updateInterest();
+        }
+        while (busyWorkers < maxWorkers && (r = waiting.poll()) != null) {
+          execute(r);
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastIdleCheck >= SELECT_TIMEOUT) {
+          lastIdleCheck = now;
+          for (SelectionKey key : selector.keys()) {
+            if (key.isValid() && key.attachment() != null) {
+              ((Connection) key.attachment()).closeIfIdle(now);
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      Debug.reportException(e);
+    } finally {
+      close();
+    }
+  }
+
+  private void accept() {
+    SocketChannel channel = null;
+    try {
+      channel = serverChannel.accept();
+      if (channel == null) {
+        return;
+      }
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true); // avoid delays with linux/loopback
+      Runnable runnable = parent.getRunnable(channel.socket());
+      if (!(runnable instanceof BaseServerRunnable)) {
+        throw new IllegalStateException("Non-blocking serving requires a BaseServerRunnable, got: "
+                + runnable);
+      }
+      SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+      key.attach(new Connection(channel, key, (BaseServerRunnable) runnable));
+    } catch (Exception e) {
+      Debug.reportException(e);
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException f) {
+          Debug.reportException(f);
+        }
+      }
+    }
+  }
+
+  private void dispatch(Request r) {
+    if (busyWorkers < maxWorkers) {
+      execute(r);
+    } else {
+      waiting.add(r);
+    }
+  }
+
+  private void execute(final Request r) {
+    busyWorkers++;
+    workers.execute(new Runnable() {
+      public void run() {
+        try {
+          r.serve();
+        } finally {
+          served.add(r);
+          selector.wakeup();
+        }
+      }
+    });
+  }
+
+  private void close() {
+    workers.shutdownNow();
+    for (SelectionKey key : selector.keys()) {
+      try {
+        key.channel().close();
+      } catch (IOException e) {
+        Debug.reportException(e);
+      }
+    }
+    try {
+      selector.close();
+    } catch (IOException e) {
+      Debug.reportException(e);
+    }
+    try {
+      serverChannel.close();
+    } catch (IOException e) {
+      Debug.reportException(e);
+    }
+  }
+}
@@ -49,6 +49,12 @@ public class TransportConstants {
 
   public static final String STATUS_KEY = VINCI_NAMESPACE + "STATUS";
 
+  /**
+   * In the response to a ping with a request id (see XTalkRequestId), TRUE_VALUE if the server
+   * serves the requests with ids of a connection concurrently.
+   */
+  public static final String CONCURRENT_KEY = VINCI_NAMESPACE + "CONCURRENT";
+
   public static final String TRUE_VALUE = "true";
 
   public static final String FALSE_VALUE = "false";
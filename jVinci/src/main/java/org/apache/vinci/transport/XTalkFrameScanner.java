@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.vinci.transport;
+
+import java.io.IOException;
+
+/**
+ * Finds the end of an XTalk document in a buffer which is filled incrementally, without parsing
+ * it into a Frame. Used by servers reading requests with non-blocking I/O, to know when a complete
+ * request has arrived.
+ * 
+ * The scanner remembers where it is within the document structure, so each byte is only looked at
+ * once no matter how many pieces the document arrives in. String contents are skipped.
+ */
+public class XTalkFrameScanner {
+
+  static private final int OVERSIZE_LENGTH = 1024 * 1024 * 1024;
+
+  // The pending parts of the document, kept on a stack with a repeat count each.
+
+  /** document marker, version and top level field count */
+  static private final int DOCUMENT = 0;
+
+  /** a top level field: a PI or the root element */
+  static private final int TOP_FIELD = 1;
+
+  /** a child of an element: a PI, a string or an element */
+  static private final int CHILD = 2;
+
+  /** a string, or the key of a PI */
+  static private final int STRING = 3;
+
+  /** an attribute: a key and a value */
+  static private final int ATTRIBUTE = 4;
+
+  /** the attribute count of an element */
+  static private final int ATTRIBUTE_COUNT = 5;
+
+  /** the child count of an element */
+  static private final int CHILD_COUNT = 6;
+
+  private int[] parts = new int[16];
+
+  private int[] counts = new int[16];
+
+  private int depth;
+
+  /** the number of bytes of the current string still to be skipped */
+  private int skip;
+
+  /** the offset in the buffer up to which the document has been scanned */
+  private int pos;
+
+  public XTalkFrameScanner() {
+    reset();
+  }
+
+  /**
+   * Prepare to scan a new document, starting at offset 0 of the buffer.
+   */
+  public void reset() {
+    depth = 0;
+    push(DOCUMENT, 1);
+    skip = 0;
+    pos = 0;
+  }
+
+  /**
+   * Continue scanning the document.
+   * 
+   * @param buffer
+   *          the buffer holding the document from offset 0 on, the same buffer or a copy of it
+   *          must be passed at each call
+   * @param end
+   *          the offset up to which the buffer is filled
+   * @return the offset of the end of the document, or -1 if the document is not complete yet
+   * @throws IOException
+   *           if the buffer does not hold an XTalk document
+   */
+  public int scan(byte[] buffer, int end) throws IOException {
+    while (true) {
+      if (skip > 0) {
+        int n = Math.min(skip, end - pos);
+        pos += n;
+        skip -= n;
+        if (skip > 0) {
+          return -1;
+        }
+      }
+      if (depth == 0) {
+        return pos;
+      }
+      int top = depth - 1;
+      if (counts[top] == 0) {
+        depth--;
+        continue;
+      }
+      int part = parts[top];
+      switch (part) {
+        case DOCUMENT:
+          if (end - pos < 6) {
+            return -1;
+          }
+          if (buffer[pos] != XTalkTransporter.DOCUMENT_MARKER) {
+            throw new IOException("Expected document marker: " + (char) buffer[pos]);
+          }
+          if (buffer[pos + 1] != XTalkTransporter.VERSION_CODE) {
+            throw new IOException("Xtalk version code doesn't match "
+                    + (int) XTalkTransporter.VERSION_CODE + ": " + buffer[pos + 1]);
+          }
+          counts[top]--;
+          push(TOP_FIELD, count(readInt(buffer, pos + 2)));
+          pos += 6;
+          break;
+        case TOP_FIELD:
+        case CHILD:
+          if (end - pos < 1) {
+            return -1;
+          }
+          byte marker = buffer[pos++];
+          counts[top]--;
+          if (marker == XTalkTransporter.PI_MARKER) {
+            push(STRING, 2);
+          } else if (marker == XTalkTransporter.ELEMENT_MARKER) {
+            push(CHILD_COUNT, 1);
+            push(ATTRIBUTE_COUNT, 1);
+            push(STRING, 1);
+          } else if (marker == XTalkTransporter.STRING_MARKER && part == CHILD) {
+            push(STRING, 1);
+          } else {
+            throw new IOException("Unexpected marker: " + (char) marker);
+          }
+          break;
+        case ATTRIBUTE:
+          counts[top]--;
+          push(STRING, 2);
+          break;
+        default:
+          // STRING, ATTRIBUTE_COUNT, CHILD_COUNT
+          if (end - pos < 4) {
+            return -1;
+          }
+          int n = readInt(buffer, pos);
+          pos += 4;
+          counts[top]--;
+          if (part == STRING) {
+            if (n < 0 || n > OVERSIZE_LENGTH) {
+              throw new IOException("Oversize field: " + n);
+            }
+            skip = n;
+          } else if (part == ATTRIBUTE_COUNT) {
+            // a count < 1 means no attributes
+            push(ATTRIBUTE, Math.max(0, n));
+          } else {
+            push(CHILD, count(n));
+          }
+      }
+    }
+  }
+
+  private static int count(int n) throws IOException {
+    if (n < 0) {
+      throw new IOException("Negative field count: " + n);
+    }
+    return n;
+  }
+
+  private void push(int part, int count) {
+    if (depth == parts.length) {
+      int[] newParts = new int[depth * 2];
+      int[] newCounts = new int[depth * 2];
+      System.arraycopy(parts, 0, newParts, 0, depth);
+      System.arraycopy(counts, 0, newCounts, 0, depth);
+      parts = newParts;
+      counts = newCounts;
+    }
+    parts[depth] = part;
+    counts[depth] = count;
+    depth++;
+  }
+
+  private static int readInt(byte[] buffer, int i) {
+    return ((buffer[i] & 0xFF) << 24) | ((buffer[i + 1] & 0xFF) << 16)
+            | ((buffer[i + 2] & 0xFF) << 8) | (buffer[i + 3] & 0xFF);
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.vinci.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The request id extension of XTalk framing, which lets a client have many requests outstanding on
+ * one connection, with responses in any order (see MultiplexedClient).
+ * 
+ * A request carries its id in a processing instruction ahead of the root element of the XTalk
+ * document, with target {@link #PI_TARGET} and the decimal id as data. Servers echo the id the same
+ * way in the response. XTalk parsers skip processing instructions, so servers which don't know the
+ * extension serve such requests as usual, and respond without an id.
+ */
+public final class XTalkRequestId {
+
+  /** The processing instruction target of the request id. */
+  static public final String PI_TARGET = "vinci:rid";
+
+  /** Returned by the peek methods for documents without a request id. */
+  static public final int NONE = -1;
+
+  /** enough to read the document header and the request id processing instruction */
+  static private final int MAX_PEEK = 64;
+
+  static private final byte[] PI_TARGET_BYTES = PI_TARGET.getBytes();
+
+  /**
+   * Utility class not meant to be instantiated.
+   */
+  private XTalkRequestId() {
+  }
+
+  /**
+   * Get the request id of the XTalk document which comes next in the stream, without consuming any
+   * of it.
+   * 
+   * @param is -
+   *          a stream which supports mark and reset
+   * @return the request id, or NONE if the document has none or the stream ends
+   * @throws IOException -
+   * @pre is.markSupported()
+   */
+  static public int peek(InputStream is) throws IOException {
+    is.mark(MAX_PEEK);
+    try {
+      return read(is);
+    } catch (EOFException e) {
+      return NONE;
+    } finally {
+      is.reset();
+    }
+  }
+
+  /**
+   * Get the request id of an XTalk document.
+   * 
+   * @param document -
+   * @param offset -
+   *          the offset of the document in the array
+   * @param length -
+   *          the length of the document, or of its beginning
+   * @return the request id, or NONE if the document has none
+   */
+  static public int peek(byte[] document, int offset, int length) {
+    try {
+      return read(new ByteArrayInputStream(document, offset, length));
+    } catch (IOException e) {
+      return NONE;
+    }
+  }
+
+  static private int read(InputStream is) throws IOException {
+    if (is.read() != XTalkTransporter.DOCUMENT_MARKER || is.read() != XTalkTransporter.VERSION_CODE) {
+      return NONE;
+    }
+    XTalkTransporter.readInt(is); // top level field count
+    if (is.read() != XTalkTransporter.PI_MARKER
+            || XTalkTransporter.readInt(is) != PI_TARGET_BYTES.length) {
+      return NONE;
+    }
+    for (int i = 0; i < PI_TARGET_BYTES.length; i++) {
+      if (is.read() != PI_TARGET_BYTES[i]) {
+        return NONE;
+      }
+    }
+    int length = XTalkTransporter.readInt(is);
+    if (length < 1 || length > 10) {
+      return NONE;
+    }
+    long id = 0;
+    for (int i = 0; i < length; i++) {
+      int digit = is.read() - '0';
+      if (digit < 0 || digit > 9) {
+        return NONE;
+      }
+      id = id * 10 + digit;
+    }
+    return (id > Integer.MAX_VALUE) ? NONE : (int) id;
+  }
+
+  /**
+   * Wrap a stream to add a request id to the XTalk document written to it.
+   * 
+   * @param os -
+   * @param id -
+   *          a request id, &ge; 0
+   * @return a stream which writes the document with the request id to os
+   */
+  static public OutputStream wrap(OutputStream os, int id) {
+    return new IdOutputStream(os, id);
+  }
+
+  /**
+   * Holds back the document header, up to and including the top level field count, then writes
+   * it with the count incremented, followed by the request id processing instruction.
+   */
+  static private class IdOutputStream extends FilterOutputStream {
+
+    static private final int HEADER_LENGTH = 6;
+
+    private final int id;
+
+    private final byte[] header = new byte[HEADER_LENGTH];
+
+    private int headerCount = 0;
+
+    IdOutputStream(OutputStream os, int id) {
+      super(os);
+      this.id = id;
+    }
+
+    public void write(int b) throws IOException {
+      if (headerCount < HEADER_LENGTH) {
+        header[headerCount++] = (byte) b;
+        if (headerCount == HEADER_LENGTH) {
+          writeHeader();
+        }
+      } else {
+        out.write(b);
+      }
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+      while (headerCount < HEADER_LENGTH && len > 0) {
+        write(b[off++]);
+        len--;
+      }
+      if (len > 0) {
+        out.write(b, off, len);
+      }
+    }
+
+    private void writeHeader() throws IOException {
+      if (header[0] != XTalkTransporter.DOCUMENT_MARKER) {
+        throw new IOException("Expected document marker: " + (char) header[0]);
+      }
+      int count = ((header[2] & 0xff) << 24) + ((header[3] & 0xff) << 16)
+              + ((header[4] & 0xff) << 8) + (header[5] & 0xff);
+      out.write(header, 0, 2);
+      XTalkTransporter.writeInt(count + 1, out);
+      out.write(XTalkTransporter.PI_MARKER);
+      XTalkTransporter.stringToBin(PI_TARGET, out);
+      XTalkTransporter.stringToBin(Integer.toString(id), out);
+    }
+  }
+}
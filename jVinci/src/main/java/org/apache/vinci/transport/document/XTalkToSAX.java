@@ -22,15 +22,21 @@ package org.apache.vinci.transport.document;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 
 import org.apache.vinci.transport.XTalkTransporter;
+import org.apache.vinci.transport.util.ByteBufferInputStream;
+import org.apache.vinci.transport.util.UTFConverter;
 
 /**
  * Class for converting XTalk streams into SAX events.
+ * 
+ * XTalk held in a buffer, or read from a ByteBufferInputStream, is decoded in place: strings are
+ * converted to characters straight from the buffer, without being copied to a work buffer first.
  */
 public class XTalkToSAX {
 
@@ -47,6 +53,8 @@ public class XTalkToSAX {
   // members initialzed by parse() to reduce argument passing.
   private InputStream is;
 
+  private ByteBuffer buf;
+
   private ContentHandler handler;
 
   public XTalkToSAX() {
@@ -105,17 +113,44 @@ public class XTalkToSAX {
    * @pre is != null
    */
   public void parse(InputStream is, ContentHandler handler) throws IOException, SAXException {
+    if (is instanceof ByteBufferInputStream) {
+      parse(((ByteBufferInputStream) is).getByteBuffer(), handler);
+      return;
+    }
     this.is = is;
+    parse(handler);
+  }
+
+  /**
+   * Parse one document from the position of the buffer into SAX events. On return, the position of
+   * the buffer is just after the document.
+   * 
+   * @param buf -
+   * @param handler -
+   * @throws IOException
+   *           if the buffer ends before the document or if XTalk format is invalid.
+   * @throws SAXException
+   *           if SAXException thrown by the handler
+   * 
+   * @pre handler != null
+   * @pre buf != null
+   */
+  public void parse(ByteBuffer buf, ContentHandler handler) throws IOException, SAXException {
+    this.buf = buf;
+    parse(handler);
+  }
+
+  private void parse(ContentHandler handler) throws IOException, SAXException {
     this.handler = handler;
     try {
-      int marker = is.read();
+      int marker = read();
       if (marker == -1) {
         throw new EOFException();
       }
       if ((byte) marker != XTalkTransporter.DOCUMENT_MARKER) {
         throw new IOException("Expected document marker: " + (char) marker);
       }
-      int version = is.read();
+      int version = read();
       if ((byte) version != XTalkTransporter.VERSION_CODE) {
         throw new IOException("Xtalk version code doesn't match "
                 + (int) XTalkTransporter.VERSION_CODE + ": " + version);
@@ -126,18 +161,19 @@ public class XTalkToSAX {
     } finally {
       // nullify refs to allow GC
       is = null;
+      buf = null;
       handler = null;
     }
   }
 
   private void doTopLevelParse() throws IOException, SAXException {
-    int top_field_count = XTalkTransporter.readInt(is);
+    int top_field_count = readInt();
     // Skip over intro PI's.
     int marker;
     if (top_field_count < 1) {
       throw new IOException("No top level element.");
     }
-    while ((marker = is.read()) == XTalkTransporter.PI_MARKER) {
+    while ((marker = read()) == XTalkTransporter.PI_MARKER) {
       String target = consumeString();
       String data = consumeString();
       handler.processingInstruction(target, data);
@@ -153,7 +189,7 @@ public class XTalkToSAX {
     top_field_count--;
     // Handle trailing PI's
     while (top_field_count > 0) {
-      if (is.read() != XTalkTransporter.PI_MARKER) {
+      if (read() != XTalkTransporter.PI_MARKER) {
         throw new IOException("Expected PI marker.");
       }
       doProcessingInstruction();
@@ -174,17 +210,66 @@ public class XTalkToSAX {
     }
   }
 
+  private int read() throws IOException {
+    if (buf != null) {
+      return buf.hasRemaining() ? (buf.get() & 0xff) : -1;
+    }
+    return is.read();
+  }
+
+  private int readInt() throws IOException {
+    if (buf != null) {
+      if (buf.remaining() < 4) {
+        throw new EOFException();
+      }
+      return ((buf.get() & 0xff) << 24) + ((buf.get() & 0xff) << 16) + ((buf.get() & 0xff) << 8)
+              + (buf.get() & 0xff);
+    }
+    return XTalkTransporter.readInt(is);
+  }
+
+  /**
+   * Read a string of bytesToRead utf-8 bytes into the char buffer.
+   * 
+   * @return the number of characters read
+   */
+  private int consumeCharacters(int bytesToRead) throws IOException {
+    if (bytesToRead < 0) {
+      throw new IOException("Negative string length: " + bytesToRead);
+    }
+    if (buf == null) {
+      ensureCapacity(bytesToRead);
+      return XTalkTransporter.consumeCharacters(is, byteBuffer, charBuffer, bytesToRead);
+    }
+    if (buf.remaining() < bytesToRead) {
+      throw new EOFException();
+    }
+    int charsRead;
+    if (buf.hasArray()) {
+      // only the char buffer is used
+      if (charBuffer.length < bytesToRead) {
+        charBuffer = new char[charBuffer.length + bytesToRead];
+      }
+      charsRead = UTFConverter.convertUTFToString(buf.array(), buf.arrayOffset() + buf.position(),
+              bytesToRead, charBuffer);
+      buf.position(buf.position() + bytesToRead);
+    } else {
+      ensureCapacity(bytesToRead);
+      buf.get(byteBuffer, 0, bytesToRead);
+      charsRead = UTFConverter.convertUTFToString(byteBuffer, 0, bytesToRead, charBuffer);
+    }
+    return charsRead;
+  }
+
   private String consumeString() throws IOException {
-    int bytesToRead = XTalkTransporter.readInt(is);
-    ensureCapacity(bytesToRead);
-    int charsRead = XTalkTransporter.consumeCharacters(is, byteBuffer, charBuffer, bytesToRead);
+    int charsRead = consumeCharacters(readInt());
     return new String(charBuffer, 0, charsRead);
   }
 
   private void doElement() throws IOException, SAXException {
     // Parse an incoming element.
     String tagName = consumeString();
-    int attribute_count = XTalkTransporter.readInt(is);
+    int attribute_count = readInt();
     workAttributes.clear();
     for (int i = 0; i < attribute_count; i++) {
       String attrName = consumeString();
@@ -192,18 +277,15 @@ public class XTalkToSAX {
       workAttributes.addAttribute("", attrName, attrName, cdataType, attrValue);
     }
     handler.startElement("", tagName, tagName, workAttributes);
-    int field_count = XTalkTransporter.readInt(is);
+    int field_count = readInt();
     for (int i = 0; i < field_count; i++) {
-      int marker = is.read();
+      int marker = read();
       switch ((byte) marker) {
         case XTalkTransporter.PI_MARKER:
           doProcessingInstruction();
           break;
         case XTalkTransporter.STRING_MARKER:
-          int bytesToRead = XTalkTransporter.readInt(is);
-          ensureCapacity(bytesToRead);
-          int charsRead = XTalkTransporter.consumeCharacters(is, byteBuffer, charBuffer,
-                  bytesToRead);
+          int charsRead = consumeCharacters(readInt());
           handler.characters(charBuffer, 0, charsRead);
           break;
         case XTalkTransporter.ELEMENT_MARKER:
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.vinci.transport.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * An output stream which writes into a sequence of buffers acquired from a ByteBufferPool. Unlike a
+ * ByteArrayOutputStream, it never copies what has been written to grow, and the buffers can be
+ * written to a channel with one gathering write, without being copied into a single array first.
+ * 
+ * Once writing to a channel has started, nothing more can be written to the stream. The buffers
+ * must be given back to the pool with release().
+ */
+public class ByteBufferOutputStream extends OutputStream {
+
+  private final ByteBufferPool pool;
+
+  private ByteBuffer[] buffers = new ByteBuffer[4];
+
+  private int count;
+
+  /** the first buffer which has not yet been completely written to a channel */
+  private int first;
+
+  private ByteBuffer current;
+
+  private boolean flipped;
+
+  /**
+   * @param pool -
+   *          the pool the buffers are acquired from
+   */
+  public ByteBufferOutputStream(ByteBufferPool pool) {
+    this.pool = pool;
+  }
+
+  private void nextBuffer() {
+    if (flipped) {
+      throw new IllegalStateException("Writing after the buffers have been read");
+    }
+    if (count == buffers.length) {
+      ByteBuffer[] bigger = new ByteBuffer[count * 2];
+      System.arraycopy(buffers, 0, bigger, 0, count);
+      buffers = bigger;
+    }
+    current = pool.acquire();
+    buffers[count++] = current;
+  }
+
+  public void write(int b) {
+    if (current == null || !current.hasRemaining()) {
+      nextBuffer();
+    }
+    current.put((byte) b);
+  }
+
+  public void write(byte[] b, int off, int len) {
+    while (len > 0) {
+      if (current == null || !current.hasRemaining()) {
+        nextBuffer();
+      }
+      int n = Math.min(len, current.remaining());
+      current.put(b, off, n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * @return the number of bytes written to this stream
+   */
+  public long size() {
+    long size = 0;
+    for (int i = 0; i < count; i++) {
+      ByteBuffer b = buffers[i];
+      size += flipped ? b.limit() : b.position();
+    }
+    return size;
+  }
+
+  private void flip() {
+    if (!flipped) {
+      flipped = true;
+      for (int i = 0; i < count; i++) {
+        buffers[i].flip();
+      }
+    }
+  }
+
+  /**
+   * Write what has not yet been written to the channel, with one gathering write. With a
+   * non-blocking channel, this may have to be called again once the channel is writable.
+   * 
+   * @param channel -
+   * @return true if everything has been written
+   * @throws IOException -
+   */
+  public boolean writeTo(GatheringByteChannel channel) throws IOException {
+    flip();
+    if (first < count) {
+      channel.write(buffers, first, count - first);
+      while (first < count && !buffers[first].hasRemaining()) {
+        first++;
+      }
+    }
+    return first == count;
+  }
+
+  /**
+   * Give the buffers back to the pool, emptying the stream.
+   */
+  public void release() {
+    for (int i = 0; i < count; i++) {
+      pool.release(buffers[i]);
+      buffers[i] = null;
+    }
+    count = 0;
+    first = 0;
+    current = null;
+    flipped = false;
+  }
+}
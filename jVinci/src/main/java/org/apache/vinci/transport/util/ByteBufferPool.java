@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.vinci.transport.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe pool of direct byte buffers of one size. Direct buffers are costly to allocate, and
+ * are released only when garbage collected, so they are worth reusing. Writing a direct buffer to a
+ * channel avoids the copy into a temporary direct buffer the JDK makes for heap buffers.
+ */
+public class ByteBufferPool {
+
+  static public final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  static public final int DEFAULT_MAX_POOLED = 64;
+
+  private final int bufferSize;
+
+  private final int maxPooled;
+
+  private final ConcurrentLinkedQueue<ByteBuffer> pooled = new ConcurrentLinkedQueue<ByteBuffer>();
+
+  private final AtomicInteger pooledCount = new AtomicInteger();
+
+  /**
+   * Create a pool of buffers of the default size, keeping at most the default number of released
+   * buffers.
+   */
+  public ByteBufferPool() {
+    this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+  }
+
+  /**
+   * @param bufferSize -
+   *          the capacity of the buffers
+   * @param maxPooled -
+   *          the maximum number of released buffers kept for reuse, further released buffers are
+   *          left to the garbage collector
+   * @pre bufferSize &gt; 0
+   */
+  public ByteBufferPool(int bufferSize, int maxPooled) {
+    this.bufferSize = bufferSize;
+    this.maxPooled = maxPooled;
+  }
+
+  /**
+   * @return the capacity of the buffers of this pool
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Get a cleared buffer, a pooled one if available, otherwise a newly allocated one.
+   * 
+   * @return -
+   */
+  public ByteBuffer acquire() {
+    ByteBuffer b = pooled.poll();
+    if (b == null) {
+      return ByteBuffer.allocateDirect(bufferSize);
+    }
+    pooledCount.decrementAndGet();
+    b.clear();
+    return b;
+  }
+
+  /**
+   * Give a buffer back to the pool. The buffer must not be used afterwards.
+   * 
+   * @param b -
+   *          a buffer acquired from this pool
+   */
+  public void release(ByteBuffer b) {
+    if (b.capacity() != bufferSize || !b.isDirect()) {
+      return;
+    }
+    if (pooledCount.incrementAndGet() > maxPooled) {
+      pooledCount.decrementAndGet();
+      return;
+    }
+    pooled.add(b);
+  }
+}
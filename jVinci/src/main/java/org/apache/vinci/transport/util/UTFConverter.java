@@ -156,13 +156,13 @@ public class UTFConverter {
           break;
         case 12:
         case 13:
-          if (count + 1 > inputLength)
+          if (count + 1 > endOffset)
             throw new UTFDataFormatException();
           c2 = bytearr[count++];
           result[outputLength++] = (char) (((c1 & 0x1F) << 6) | (c2 & 0x3F));
           break;
         case 14:
-          if (count + 2 > inputLength)
+          if (count + 2 > endOffset)
             throw new UTFDataFormatException();
           c2 = bytearr[count++];
           c3 = bytearr[count++];
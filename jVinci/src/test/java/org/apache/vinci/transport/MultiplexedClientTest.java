@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.vinci.transport;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.vinci.transport.NonBlockingServerTest.EchoServable;
+
+public class MultiplexedClientTest extends TestCase {
+
+  /**
+   * Records the client ports of the connections its requests come from.
+   */
+  static class ConnectionRecordingServable extends EchoServable {
+    final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+
+    public Transportable eval(Transportable in) throws ServiceException {
+      clientPorts.add(BaseServerRunnable.getSocket().getPort());
+      return super.eval(in);
+    }
+  }
+
+  /**
+   * A server as it was before request ids: it responds without the request id.
+   */
+  static class OldServer extends BaseServer {
+    OldServer(VinciServable servable) {
+      super(servable);
+    }
+
+    protected Runnable getRunnable(Socket client) {
+      return new BaseServerRunnable(client, this) {
+        protected boolean serveRequest(InputStream is, OutputStream os) throws IOException {
+          // the request id can't be peeked at
+          return super.serveRequest(new FilterInputStream(is) {
+            public boolean markSupported() {
+              return false;
+            }
+          }, os);
+        }
+      };
+    }
+  }
+
+  private final List<BaseServer> servers = new ArrayList<BaseServer>();
+
+  private int startServer(BaseServer server, boolean nonBlocking) throws Exception {
+    server.setNonBlocking(nonBlocking);
+    server.setThreadPoolSize(1, 8);
+    server.startServing(0);
+    servers.add(server);
+    return server.getServerSocket().getLocalPort();
+  }
+
+  protected void tearDown() throws Exception {
+    for (BaseServer server : servers) {
+      server.shutdownServing();
+    }
+  }
+
+  private static String echo(BaseClient client, String text, int sleep) throws Exception {
+    return ((VinciFrame) client.sendAndReceive(NonBlockingServerTest.request(text, sleep)))
+            .fgetString("echo");
+  }
+
+  /**
+   * Requests of several clients are outstanding at once on one connection, and each client gets
+   * its own response, although the responses come in another order than the requests.
+   */
+  public void testOutOfOrderReplies() throws Exception {
+    ConnectionRecordingServable servable = new ConnectionRecordingServable();
+    int port = startServer(new BaseServer(servable), true);
+    // keeps the shared connection open
+    MultiplexedClient holder = new MultiplexedClient("localhost", port);
+
+    MultiplexedClient slow = new MultiplexedClient("localhost", port);
+    MultiplexedClient fast = new MultiplexedClient("localhost", port);
+    try {
+      assertTrue(slow.isMultiplexed());
+      assertTrue(fast.isMultiplexed());
+      slow.send(NonBlockingServerTest.request("slow", 1000));
+      fast.send(NonBlockingServerTest.request("fast", 0));
+      long start = System.currentTimeMillis();
+      assertEquals("fast", ((VinciFrame) fast.receive()).fgetString("echo"));
+      assertTrue("the fast response waited for the slow one",
+              System.currentTimeMillis() - start < 800);
+      assertEquals("slow", ((VinciFrame) slow.receive()).fgetString("echo"));
+    } finally {
+      slow.close();
+      fast.close();
+    }
+
+    // many threads, each with its own client
+    final int port2 = port;
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < 32; i++) {
+        final String text = Integer.toString(i);
+        final int sleep = (i % 4) * 50;
+        results.add(executor.submit(new Callable<String>() {
+          public String call() throws Exception {
+            MultiplexedClient client = new MultiplexedClient("localhost", port2);
+            try {
+              return echo(client, text, sleep);
+            } finally {
+              client.close();
+            }
+          }
+        }));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals(Integer.toString(i), results.get(i).get(30, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+      holder.close();
+    }
+    assertEquals(1, servable.clientPorts.size());
+  }
+
+  /**
+   * A connection being opened to a service which doesn't respond doesn't hold up the clients of
+   * other services.
+   */
+  public void testSlowProbe() throws Exception {
+    int port = startServer(new BaseServer(new EchoServable()), true);
+    // accepts connections, but never reads from them
+    final ServerSocket silent = new ServerSocket(0);
+    try {
+      final int silentPort = silent.getLocalPort();
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        Future<Boolean> probing = executor.submit(new Callable<Boolean>() {
+          public Boolean call() throws Exception {
+            MultiplexedClient client = new MultiplexedClient("localhost", silentPort,
+                    VinciFrame.getVinciFrameFactory(), 3000);
+            try {
+              return client.isMultiplexed();
+            } finally {
+              client.close();
+            }
+          }
+        });
+        Thread.sleep(200);  // the probe is waiting for the silent service
+
+        long start = System.currentTimeMillis();
+        MultiplexedClient client = new MultiplexedClient("localhost", port);
+        try {
+          assertEquals("x", echo(client, "x", 0));
+        } finally {
+          client.close();
+        }
+        assertTrue("held up by the probe of another service",
+                System.currentTimeMillis() - start < 2000);
+        assertFalse(probing.isDone());
+
+        assertFalse(probing.get(30, TimeUnit.SECONDS));
+      } finally {
+        executor.shutdownNow();
+      }
+    } finally {
+      silent.close();
+    }
+  }
+
+  /**
+   * A blocking server echoes request ids, but would serve the requests of a shared connection one
+   * at a time: the clients fall back to dedicated connections, which are served concurrently.
+   */
+  public void testBlockingServer() throws Exception {
+    ConnectionRecordingServable servable = new ConnectionRecordingServable();
+    int port = startServer(new BaseServer(servable), false);
+    MultiplexedClient client1 = new MultiplexedClient("localhost", port);
+    MultiplexedClient client2 = new MultiplexedClient("localhost", port);
+    try {
+      assertFalse(client1.isMultiplexed());
+      assertFalse(client2.isMultiplexed());
+      client1.send(NonBlockingServerTest.request("1", 1000));
+      client2.send(NonBlockingServerTest.request("2", 0));
+      long start = System.currentTimeMillis();
+      assertEquals("2", ((VinciFrame) client2.receive()).fgetString("echo"));
+      assertTrue("the response waited for the request of the other client",
+              System.currentTimeMillis() - start < 800);
+      assertEquals("1", ((VinciFrame) client1.receive()).fgetString("echo"));
+    } finally {
+      client1.close();
+      client2.close();
+    }
+    // the probes' connections, and one dedicated connection per client
+    assertEquals(4, servable.clientPorts.size());
+  }
+
+  /**
+   * A client which doesn't know request ids gets responses without them, from both kinds of
+   * server.
+   */
+  public void testOldClientNewServer() throws Exception {
+    for (boolean nonBlocking : new boolean[] { true, false }) {
+      int port = startServer(new BaseServer(new EchoServable()), nonBlocking);
+
+      BaseClient client = new BaseClient("localhost", port);
+      MultiplexedClient multiplexed = new MultiplexedClient("localhost", port);
+      try {
+        assertEquals("a", echo(client, "a", 0));
+        assertEquals("m", echo(multiplexed, "m", 0));
+        assertEquals("b", echo(client, "b", 0));
+      } finally {
+        client.close();
+        multiplexed.close();
+      }
+
+      Socket socket = new Socket("localhost", port);
+      try {
+        socket.setSoTimeout(10000);
+        OutputStream os = socket.getOutputStream();
+        NonBlockingServerTest.request("raw", 0).toStream(os);
+        os.flush();
+        InputStream is = new BufferedInputStream(socket.getInputStream());
+        assertEquals(XTalkRequestId.NONE, XTalkRequestId.peek(is));
+        VinciFrame response = new VinciFrame();
+        response.fromStream(is);
+        assertEquals("raw", response.fgetString("echo"));
+      } finally {
+        socket.close();
+      }
+    }
+  }
+
+  /**
+   * Against a server which doesn't echo request ids, the probe fails and the client falls back
+   * to a dedicated connection.
+   */
+  public void testNewClientOldServer() throws Exception {
+    ConnectionRecordingServable servable = new ConnectionRecordingServable();
+    int port = startServer(new OldServer(servable), false);
+
+    MultiplexedClient client1 = new MultiplexedClient("localhost", port);
+    MultiplexedClient client2 = new MultiplexedClient("localhost", port);
+    try {
+      assertFalse(client1.isMultiplexed());
+      assertFalse(client2.isMultiplexed());
+      assertEquals("1", echo(client1, "1", 0));
+      assertEquals("2", echo(client2, "2", 0));
+      assertEquals("3", echo(client1, "3", 0));
+      client1.send(NonBlockingServerTest.request("4", 0));
+      assertEquals("4", ((VinciFrame) client1.receive()).fgetString("echo"));
+    } finally {
+      client1.close();
+      client2.close();
+    }
+    // the probes' connections, and one dedicated connection per client
+    assertEquals(4, servable.clientPorts.size());
+  }
+}
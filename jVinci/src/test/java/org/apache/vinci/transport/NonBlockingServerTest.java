@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.vinci.transport;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+import junit.framework.TestCase;
+
+public class NonBlockingServerTest extends TestCase {
+
+  /**
+   * Echoes the "text" of the request, after sleeping for its "sleep" millis, if any.
+   */
+  static class EchoServable extends VinciServableAdapter {
+    public Transportable eval(Transportable in) throws ServiceException {
+      VinciFrame request = (VinciFrame) in;
+      int sleep = request.fgetInt("sleep");
+      if (sleep > 0) {
+        try {
+          Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      VinciFrame response = new VinciFrame();
+      response.fadd("echo", request.fgetString("text"));
+      return response;
+    }
+  }
+
+  private BaseServer server;
+
+  private int port;
+
+  private void startServer(int socketTimeout) throws Exception {
+    server = new BaseServer(new EchoServable());
+    server.setNonBlocking(true);
+    server.setThreadPoolSize(1, 4);
+    server.setSocketTimeout(socketTimeout);
+    server.startServing(0);
+    port = server.getServerSocket().getLocalPort();
+  }
+
+  protected void tearDown() throws Exception {
+    if (server != null) {
+      server.shutdownServing();
+    }
+  }
+
+  static VinciFrame request(String text, int sleep) {
+    VinciFrame request = new VinciFrame();
+    request.fadd("text", text);
+    request.fadd("sleep", sleep);
+    return request;
+  }
+
+  public void testRequestAndReply() throws Exception {
+    startServer(10000);
+    BaseClient client = new BaseClient("localhost", port);
+    try {
+      assertEquals("hello", client.rpc(request("hello", 0)).fgetString("echo"));
+      // larger than the initial buffer of a connection
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 20000; i++) {
+        sb.append("abcdefghij");
+      }
+      String big = sb.toString();
+      assertEquals(big, client.rpc(request(big, 0)).fgetString("echo"));
+      // the connection is reused
+      assertEquals("again", client.rpc(request("again", 0)).fgetString("echo"));
+    } finally {
+      client.close();
+    }
+  }
+
+  /**
+   * Requests without request id sent back to back on one connection are replied to in order,
+   * even when the first one takes the longest.
+   */
+  public void testInOrderReplies() throws Exception {
+    startServer(10000);
+    Socket socket = new Socket("localhost", port);
+    try {
+      socket.setSoTimeout(10000);
+      ByteArrayOutputStream requests = new ByteArrayOutputStream();
+      request("0", 500).toStream(requests);
+      request("1", 0).toStream(requests);
+      request("2", 100).toStream(requests);
+      OutputStream os = socket.getOutputStream();
+      os.write(requests.toByteArray());
+      os.flush();
+
+      InputStream is = new BufferedInputStream(socket.getInputStream());
+      for (int i = 0; i < 3; i++) {
+        VinciFrame response = new VinciFrame();
+        response.fromStream(is);
+        assertEquals(Integer.toString(i), response.fgetString("echo"));
+      }
+    } finally {
+      socket.close();
+    }
+  }
+
+  /**
+   * A connection which stays idle, or holds an incomplete request, for longer than the socket
+   * timeout is closed.
+   */
+  public void testIdleTimeout() throws Exception {
+    startServer(300);
+
+    Socket socket = new Socket("localhost", port);
+    try {
+      socket.setSoTimeout(10000);
+      VinciFrame response = new VinciFrame();
+      OutputStream os = socket.getOutputStream();
+      request("before idle", 0).toStream(os);
+      os.flush();
+      InputStream is = new BufferedInputStream(socket.getInputStream());
+      response.fromStream(is);
+      assertEquals("before idle", response.fgetString("echo"));
+
+      long start = System.currentTimeMillis();
+      assertEquals(-1, is.read());
+      assertTrue(System.currentTimeMillis() - start < 5000);
+    } finally {
+      socket.close();
+    }
+
+    socket = new Socket("localhost", port);
+    try {
+      socket.setSoTimeout(10000);
+      ByteArrayOutputStream request = new ByteArrayOutputStream();
+      request("incomplete", 0).toStream(request);
+      socket.getOutputStream().write(request.toByteArray(), 0, request.size() / 2);
+      socket.getOutputStream().flush();
+      assertEquals(-1, socket.getInputStream().read());
+    } finally {
+      socket.close();
+    }
+
+    // the server still serves new connections
+    assertEquals("after", BaseClient.rpc(request("after", 0), "localhost", port)
+            .fgetString("echo"));
+  }
+}
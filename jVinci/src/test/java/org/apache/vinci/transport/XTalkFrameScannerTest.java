@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.vinci.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.vinci.transport.document.AFrame;
+
+public class XTalkFrameScannerTest extends TestCase {
+
+  /**
+   * A document with nested frames, attributes, empty frames and strings.
+   */
+  static VinciFrame nestedFrame() {
+    VinciFrame root = new VinciFrame();
+    root.fadd("text", "some text");
+    AFrame child = new AFrame();
+    Attributes attributes = new Attributes();
+    attributes.fadd("kind", "child");
+    attributes.fadd("n", 2);
+    child.setAttributes(attributes);
+    child.fadd("empty", new VinciFrame());
+    VinciFrame grandChild = new VinciFrame();
+    grandChild.fadd("a", "x");
+    grandChild.fadd("b", "");
+    grandChild.fadd("c", new VinciFrame().fadd("d", 12345678L));
+    child.fadd("grandChild", grandChild);
+    root.fadd("child", child);
+    root.fadd("after", "y");
+    return root;
+  }
+
+  static byte[] toBytes(Transportable t, int requestId) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    OutputStream os = (requestId == XTalkRequestId.NONE) ? baos : XTalkRequestId.wrap(baos, requestId);
+    t.toStream(os);
+    os.flush();
+    return baos.toByteArray();
+  }
+
+  public void testWholeDocument() throws Exception {
+    byte[] doc = toBytes(nestedFrame(), XTalkRequestId.NONE);
+    assertEquals(doc.length, new XTalkFrameScanner().scan(doc, doc.length));
+
+    byte[] empty = toBytes(new VinciFrame(), XTalkRequestId.NONE);
+    assertEquals(empty.length, new XTalkFrameScanner().scan(empty, empty.length));
+  }
+
+  /**
+   * The document is complete only once its last byte has been read, wherever it is split.
+   */
+  public void testEverySplitPoint() throws Exception {
+    for (int requestId : new int[] { XTalkRequestId.NONE, 0, 1234567 }) {
+      byte[] doc = toBytes(nestedFrame(), requestId);
+      for (int split = 0; split < doc.length; split++) {
+        XTalkFrameScanner scanner = new XTalkFrameScanner();
+        assertEquals(-1, scanner.scan(doc, split));
+        assertEquals(doc.length, scanner.scan(doc, doc.length));
+      }
+    }
+  }
+
+  /**
+   * Read pieces of various sizes, including one byte at a time; the request id PI marker and
+   * the nested frames are split across reads.
+   */
+  public void testPartialReads() throws Exception {
+    byte[] doc = toBytes(nestedFrame(), 42);
+    assertEquals(XTalkTransporter.PI_MARKER, doc[6]);
+    for (int pieceSize : new int[] { 1, 2, 3, 5, 7, 13, 64 }) {
+      XTalkFrameScanner scanner = new XTalkFrameScanner();
+      // the buffer grows like the one of the server, keeping the bytes read so far
+      byte[] buffer = new byte[1];
+      int end = 0;
+      int result = -1;
+      while (result < 0) {
+        int n = Math.min(pieceSize, doc.length - end);
+        assertTrue("document not complete after all its bytes", n > 0);
+        if (end + n > buffer.length) {
+          buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, end + n));
+        }
+        System.arraycopy(doc, end, buffer, end, n);
+        end += n;
+        result = scanner.scan(buffer, end);
+      }
+      assertEquals(doc.length, result);
+      assertEquals(doc.length, end);
+    }
+  }
+
+  /**
+   * Several documents back to back: the end of the first one is found, and the scanner is reset
+   * for the rest.
+   */
+  public void testConsecutiveDocuments() throws Exception {
+    byte[] doc1 = toBytes(nestedFrame(), 1);
+    byte[] doc2 = toBytes(new VinciFrame().fadd("x", "y"), XTalkRequestId.NONE);
+    byte[] both = new byte[doc1.length + doc2.length];
+    System.arraycopy(doc1, 0, both, 0, doc1.length);
+    System.arraycopy(doc2, 0, both, doc1.length, doc2.length);
+
+    XTalkFrameScanner scanner = new XTalkFrameScanner();
+    assertEquals(-1, scanner.scan(both, doc1.length - 1));
+    assertEquals(doc1.length, scanner.scan(both, both.length));
+
+    scanner.reset();
+    byte[] rest = Arrays.copyOfRange(both, doc1.length, both.length);
+    assertEquals(doc2.length, scanner.scan(rest, rest.length));
+  }
+
+  public void testMalformed() throws Exception {
+    byte[] doc = toBytes(nestedFrame(), XTalkRequestId.NONE);
+
+    byte[] badMarker = doc.clone();
+    badMarker[0] = 'Y';
+    assertScanFails(badMarker);
+
+    byte[] badVersion = doc.clone();
+    badVersion[1] = 9;
+    assertScanFails(badVersion);
+
+    // a top level string is not allowed
+    byte[] badField = doc.clone();
+    assertEquals(XTalkTransporter.ELEMENT_MARKER, badField[6]);
+    badField[6] = XTalkTransporter.STRING_MARKER;
+    assertScanFails(badField);
+
+    // negative length of the root element name
+    byte[] badLength = doc.clone();
+    badLength[7] = (byte) 0xff;
+    assertScanFails(badLength);
+  }
+
+  private static void assertScanFails(byte[] doc) {
+    try {
+      new XTalkFrameScanner().scan(doc, doc.length);
+      fail("no IOException");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
@@ -302,6 +302,7 @@ public class VinciAnalysisEngineService_impl extends VinciServableAdapter {
                       + descriptor.getServerSocketTimeout());
       _server.setSocketTimeout(descriptor.getServerSocketTimeout());
       _server.setThreadPoolSize(descriptor.getThreadPoolMinSize(), descriptor.getThreadPoolMaxSize());
+      _server.setNonBlocking(descriptor.isNonBlocking());
 
       _server.serve();
     } catch (ServiceDownException e) {
@@ -326,6 +327,9 @@ public class VinciAnalysisEngineService_impl extends VinciServableAdapter {
         _server.shutdown(Constants.SHUTDOWN_MSG);
         UIMAFramework.getLogger().log(Level.INFO, Constants.SHUTDOWN_MSG);
       }
+      if (mCasPool != null) {
+        mCasPool.destroy();
+      }
     } catch (Exception ex) {
       ex.printStackTrace();
     }
@@ -324,6 +324,7 @@ public class VinciBinaryAnalysisEngineService_impl extends VinciServableAdapter
                       + descriptor.getServerSocketTimeout());
       _server.setSocketTimeout(descriptor.getServerSocketTimeout());
       _server.setThreadPoolSize(descriptor.getThreadPoolMinSize(), descriptor.getThreadPoolMaxSize());
+      _server.setNonBlocking(descriptor.isNonBlocking());
       _server.serve();
     } catch (ServiceDownException e) {
       UIMAFramework.getLogger().log(Level.SEVERE, e.getMessage());
@@ -347,6 +348,9 @@ public class VinciBinaryAnalysisEngineService_impl extends VinciServableAdapter
         _server.shutdown(Constants.SHUTDOWN_MSG);
         UIMAFramework.getLogger().log(Level.INFO, Constants.SHUTDOWN_MSG);
       }
+      if (mCasPool != null) {
+        mCasPool.destroy();
+      }
     } catch (Exception ex) {
       ex.printStackTrace();
     }
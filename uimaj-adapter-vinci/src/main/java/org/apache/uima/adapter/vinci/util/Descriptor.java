@@ -64,6 +64,9 @@ public class Descriptor extends DefaultHandler {
   /** The thread pool max size. */
   private int threadPoolMaxSize = 20;
 
+  /** Whether the service uses non-blocking I/O. */
+  private boolean nonBlocking = false;
+
   /**
    * Constructor responsible for parsing the descriptor file named in filePath.
    * 
@@ -188,6 +191,8 @@ public class Descriptor extends DefaultHandler {
         } catch (NumberFormatException nbe) {
           setThreadPoolMaxSize(20);
         }
+      } else if ("nonBlocking".equals(att)) {
+        setNonBlocking(Boolean.parseBoolean(value));
       }
     }
     // if none of the above, it is an unexpected element. we ignore these for now
@@ -211,6 +216,24 @@ public class Descriptor extends DefaultHandler {
     this.threadPoolMaxSize = threadPoolMaxSize;
   }
 
+  /**
+   * Checks if the service uses non-blocking I/O.
+   *
+   * @return true, if the service uses non-blocking I/O
+   */
+  public boolean isNonBlocking() {
+    return nonBlocking;
+  }
+
+  /**
+   * Sets whether the service uses non-blocking I/O.
+   *
+   * @param nonBlocking true to use non-blocking I/O
+   */
+  public void setNonBlocking(boolean nonBlocking) {
+    this.nonBlocking = nonBlocking;
+  }
+
   /**
    * Gets the thread pool min size.
    *
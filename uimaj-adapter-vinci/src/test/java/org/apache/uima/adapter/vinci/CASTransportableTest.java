@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.uima.adapter.vinci;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.vinci.transport.util.ByteBufferInputStream;
+import org.apache.vinci.transport.util.ByteBufferOutputStream;
+import org.apache.vinci.transport.util.ByteBufferPool;
+
+import junit.framework.TestCase;
+
+public class CASTransportableTest extends TestCase {
+
+  private static final String TOKEN = "test.Token";
+
+  private CAS createCas() throws Exception {
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory()
+            .createTypeSystemDescription();
+    tsd.addType(TOKEN, "", CAS.TYPE_NAME_ANNOTATION);
+    return CasCreationUtils.createCas(tsd, null, null);
+  }
+
+  private CAS createFilledCas() throws Exception {
+    CAS cas = createCas();
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      text.append("wörd€").append(i).append(' ');
+    }
+    cas.setDocumentText(text.toString());
+    Type tokenType = cas.getTypeSystem().getType(TOKEN);
+    for (int i = 0, begin = 0; i < 2000; i++) {
+      int end = text.indexOf(" ", begin);
+      cas.addFsToIndexes(cas.createAnnotation(tokenType, begin, end));
+      begin = end + 1;
+    }
+    return cas;
+  }
+
+  private String contents(CAS cas) {
+    StringBuilder sb = new StringBuilder(cas.getDocumentText());
+    for (AnnotationFS a : cas.getAnnotationIndex(cas.getTypeSystem().getType(TOKEN))) {
+      sb.append('|').append(a.getBegin()).append('-').append(a.getEnd());
+    }
+    return sb.toString();
+  }
+
+  private byte[] toBytes(CAS cas) throws Exception {
+    CASTransportable t = new CASTransportable(cas, null, null, true);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    t.toStream(os);
+    return os.toByteArray();
+  }
+
+  public void testPooledBuffersRoundTrip() throws Exception {
+    CAS cas = createFilledCas();
+    byte[] expected = toBytes(cas);
+
+    // small buffers, so the CAS spans many of them
+    ByteBufferPool pool = new ByteBufferPool(1024, 4);
+    ByteBufferOutputStream os = new ByteBufferOutputStream(pool);
+    new CASTransportable(cas, null, null, true).toStream(os);
+    assertEquals(expected.length, os.size());
+
+    File file = File.createTempFile("CASTransportableTest", ".xtalk");
+    file.deleteOnExit();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      FileChannel channel = raf.getChannel();
+      assertTrue(os.writeTo(channel));
+      os.release();
+      ByteBuffer read = ByteBuffer.allocate((int) channel.size());
+      channel.read(read, 0);
+      assertTrue(Arrays.equals(expected, read.array()));
+    }
+
+    // decoded in place, from a heap buffer at an offset and from a direct buffer
+    byte[] shifted = new byte[expected.length + 3];
+    System.arraycopy(expected, 0, shifted, 3, expected.length);
+    ByteBuffer heap = ByteBuffer.wrap(shifted, 3, expected.length).slice();
+    ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+    direct.put(expected).flip();
+    for (ByteBuffer request : new ByteBuffer[] { heap, direct }) {
+      CAS target = createCas();
+      new CASTransportable(target, null, null, true).fromStream(new ByteBufferInputStream(request));
+      assertFalse(request.hasRemaining());
+      assertEquals(contents(cas), contents(target));
+    }
+
+    CAS target = createCas();
+    new CASTransportable(target, null, null, true).fromStream(new ByteArrayInputStream(expected));
+    assertEquals(contents(cas), contents(target));
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.uima.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.collection.base_cpm.SynchPoint;
+import org.apache.uima.collection.impl.cpm.Checkpoint;
+import org.apache.uima.util.ProcessTrace;
+import org.apache.uima.util.ProcessTraceEvent;
+import org.apache.uima.util.impl.ProcessTraceEvent_impl;
+import org.apache.uima.util.impl.ProcessTrace_impl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Taking a CPE checkpoint, and restoring from it, with the checkpoint serialized as a Java object
+ * (format "serialized", the default) or appended to the binary checkpoint log (format "log").
+ * 
+ * The ProcessTrace holds nbrEvents top level events, each with 2 sub events. Between two
+ * checkpoints, the durations of 1% of the top level events change, as do the durations of the
+ * aggregated events of a running CPE. The log forces itself to disk every 10 checkpoints; the
+ * serialized format never does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckpointBenchmark {
+
+  /**
+   * SynchPoint holding the number of documents read
+   */
+  public static class CountSynchPoint implements SynchPoint {
+    private static final long serialVersionUID = 1L;
+
+    private Integer count = 0;
+
+    @Override
+    public void set(Object aSynchPointData) {
+      count = (Integer) aSynchPointData;
+    }
+
+    @Override
+    public Object get() {
+      return count;
+    }
+
+    @Override
+    public String serializeToXML() {
+      return "<count>" + count + "</count>";
+    }
+
+    @Override
+    public void deserialize(InputStream aInputStream) throws Exception {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      int b;
+      while ((b = aInputStream.read()) != -1) {
+        bytes.write(b);
+      }
+      String xml = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+      count = Integer.valueOf(xml.replaceAll("<[^>]*>", ""));
+    }
+  }
+
+  @Param({"1000", "100000"})
+  public int nbrEvents;
+
+  @Param({"serialized", "log"})
+  public String format;
+
+  private File dir;
+  private Checkpoint checkpoint;
+  private ProcessTrace processTrace;
+  private List<ProcessTraceEvent> events;
+  private CountSynchPoint synchPoint;
+  private int count;
+
+  @Setup(Level.Trial)
+  public void setupCheckpoint() throws Exception {
+    // no '.' in the directory name, the synch point file name is derived from the first '.'
+    dir = Files.createTempDirectory("uimacheckpoint").toFile();
+    checkpoint = new Checkpoint(null, new File(dir, "checkpoint.dat").getPath(), 0,
+            "log".equals(format) ? Checkpoint.FORMAT_LOG : null);
+    processTrace = new ProcessTrace_impl();
+    for (int i = 0; i < nbrEvents; i++) {
+      ProcessTraceEvent_impl event = new ProcessTraceEvent_impl("Annotator" + (i % 20),
+              "Analysis", "document " + i);
+      event.setDuration(i);
+      event.addSubEvent(new ProcessTraceEvent_impl("Annotator" + (i % 20), "Process", null));
+      event.addSubEvent(new ProcessTraceEvent_impl("Annotator" + (i % 20), "Service", null));
+      processTrace.addEvent(event);
+    }
+    events = processTrace.getEvents();
+    synchPoint = new CountSynchPoint();
+    checkpoint.doCheckpoint(processTrace, synchPoint);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteCheckpoint() {
+    checkpoint.delete();
+    for (File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+  @Benchmark
+  public void doCheckpoint() throws Exception {
+    count++;
+    for (int i = count % 100; i < nbrEvents; i += 100) {
+      ((ProcessTraceEvent_impl) events.get(i)).addToDuration(1);
+    }
+    synchPoint.set(count);
+    checkpoint.doCheckpoint(processTrace, synchPoint);
+  }
+
+  @Benchmark
+  public Object restoreFromCheckpoint() throws Exception {
+    return checkpoint.restoreFromCheckpoint();
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Setting features of indexed Feature Structures, which goes through the
+ * index corruption checking and journaling setter path.
+ *
+ * Run with -prof gc to see the allocation per operation: none is expected, except
+ * for setIndexKeyFeature, which removes and adds back the Feature Structure.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureSetterBenchmark {
+
+  @Param({"10000"})
+  public int nbrTokens;
+
+  private CAS cas;
+  private Annotation[] tokens;
+  private Annotation[] namedEntities;
+  private Feature posFeat;
+  private Feature confidenceFeat;
+
+  @Setup(Level.Trial)
+  public void setupCas() throws Exception {
+    cas = SyntheticDocument.createFilledCas(nbrTokens, 42);
+    Type tokenType = cas.getTypeSystem().getType(SyntheticDocument.TOKEN);
+    Type namedEntityType = cas.getTypeSystem().getType(SyntheticDocument.NAMED_ENTITY);
+    posFeat = tokenType.getFeatureByBaseName("pos");
+    confidenceFeat = namedEntityType.getFeatureByBaseName("confidence");
+    tokens = cas.<Annotation>select(tokenType).asArray(Annotation.class);
+    namedEntities = cas.<Annotation>select(namedEntityType).asArray(Annotation.class);
+  }
+
+  @Benchmark
+  public void setStringFeature() {
+    for (Annotation token : tokens) {
+      token.setStringValue(posFeat, "NN");
+    }
+  }
+
+  @Benchmark
+  public void setDoubleFeature() {
+    for (Annotation ne : namedEntities) {
+      ne.setDoubleValue(confidenceFeat, 0.5);
+    }
+  }
+
+  /**
+   * begin is a key of the annotation index, so each set also removes and adds back the token
+   */
+  @Benchmark
+  public void setIndexKeyFeature() {
+    for (Annotation token : tokens) {
+      token.setBegin(token.getBegin());
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Feature Structure creation (CASImpl.createFS), with and without setting features and indexing.
+ * Each invocation creates nbrFss Feature Structures in a freshly reset CAS.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FsCreationBenchmark {
+
+  @Param({"10000", "100000"})
+  public int nbrFss;
+
+  private CAS cas;
+  private Type tokenType;
+  private Feature posFeat;
+  private Feature lemmaFeat;
+
+  @Setup(Level.Trial)
+  public void setupCas() throws Exception {
+    cas = SyntheticDocument.createCas();
+    tokenType = cas.getTypeSystem().getType(SyntheticDocument.TOKEN);
+    posFeat = tokenType.getFeatureByBaseName("pos");
+    lemmaFeat = tokenType.getFeatureByBaseName("lemma");
+  }
+
+  @Setup(Level.Invocation)
+  public void reset() {
+    cas.reset();
+  }
+
+  @Benchmark
+  public void createFS(Blackhole bh) {
+    for (int i = 0; i < nbrFss; i++) {
+      bh.consume(cas.createFS(tokenType));
+    }
+  }
+
+  @Benchmark
+  public void createAnnotationWithFeatures(Blackhole bh) {
+    for (int i = 0; i < nbrFss; i++) {
+      AnnotationFS token = cas.createAnnotation(tokenType, i * 5, i * 5 + 4);
+      token.setStringValue(posFeat, "NN");
+      token.setStringValue(lemmaFeat, "lemma");
+      bh.consume(token);
+    }
+  }
+
+  @Benchmark
+  public void createAndIndexAnnotation() {
+    for (int i = 0; i < nbrFss; i++) {
+      cas.addFsToIndexes(cas.createAnnotation(tokenType, i * 5, i * 5 + 4));
+    }
+  }
+}
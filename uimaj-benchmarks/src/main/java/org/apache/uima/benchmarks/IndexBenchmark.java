@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FSIndexRepository;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adding to and removing from the indexes:
+ *   - the sorted annotation index (FsIndex_set_sorted), using Token annotations
+ *   - a bag index (FsIndex_bag), using Dependency Feature Structures
+ *
+ * The Feature Structures are created once; each invocation starts with them not indexed.
+ * They are added in text order, or in a random order if shuffled is true.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexBenchmark {
+
+  @Param({"10000", "100000"})
+  public int nbrTokens;
+
+  @Param({"false", "true"})
+  public boolean shuffled;
+
+  private CAS cas;
+  private FSIndexRepository ir;
+  private Type tokenType;
+  private Type dependencyType;
+  private FeatureStructure[] tokens;
+  private FeatureStructure[] dependencies;
+
+  @Setup(Level.Trial)
+  public void setupCas() throws Exception {
+    cas = SyntheticDocument.createFilledCas(nbrTokens, 42);
+    ir = cas.getIndexRepository();
+    tokenType = cas.getTypeSystem().getType(SyntheticDocument.TOKEN);
+    dependencyType = cas.getTypeSystem().getType(SyntheticDocument.DEPENDENCY);
+    tokens = collect(tokenType);
+    dependencies = collect(dependencyType);
+  }
+
+  @Setup(Level.Invocation)
+  public void unindex() {
+    ir.removeAllIncludingSubtypes(tokenType);
+    ir.removeAllIncludingSubtypes(dependencyType);
+  }
+
+  @Benchmark
+  public void addSorted() {
+    for (FeatureStructure fs : tokens) {
+      ir.addFS(fs);
+    }
+  }
+
+  @Benchmark
+  public void addRemoveSorted() {
+    for (FeatureStructure fs : tokens) {
+      ir.addFS(fs);
+    }
+    for (FeatureStructure fs : tokens) {
+      ir.removeFS(fs);
+    }
+  }
+
+  @Benchmark
+  public void addBag() {
+    for (FeatureStructure fs : dependencies) {
+      ir.addFS(fs);
+    }
+  }
+
+  @Benchmark
+  public void addRemoveBag() {
+    for (FeatureStructure fs : dependencies) {
+      ir.addFS(fs);
+    }
+    for (FeatureStructure fs : dependencies) {
+      ir.removeFS(fs);
+    }
+  }
+
+  private FeatureStructure[] collect(Type type) {
+    List<FeatureStructure> fss = new ArrayList<>();
+    cas.select(type).forEach(fss::add);
+    if (shuffled) {
+      Collections.shuffle(fss, new Random(42));
+    }
+    return fss.toArray(new FeatureStructure[fss.size()]);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.uima.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.util.AutoCloseableNoException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Shifting the offsets of every other indexed Token, as a normalizer or detagger would,
+ * one annotation at a time (each one removed from and added back to the indexes),
+ * within protectIndexes, and within a bulkIndexUpdate scope.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OffsetShiftBenchmark {
+
+  @Param({"10000", "100000"})
+  public int nbrTokens;
+
+  private CAS cas;
+  private List<Annotation> tokens;
+  private int delta = 3;
+
+  @Setup(Level.Trial)
+  public void setupCas() throws Exception {
+    cas = SyntheticDocument.createFilledCas(nbrTokens, 42);
+    tokens = cas.<Annotation>select(SyntheticDocument.TOKEN).asList();
+  }
+
+  @Setup(Level.Invocation)
+  public void flipDirection() {
+    delta = -delta;
+  }
+
+  @Benchmark
+  public void shiftEach() {
+    shift();
+  }
+
+  @Benchmark
+  public void shiftProtected() throws Exception {
+    try (AutoCloseable a = cas.protectIndexes()) {
+      shift();
+    }
+  }
+
+  @Benchmark
+  public void shiftBulk() {
+    try (AutoCloseableNoException a = cas.bulkIndexUpdate()) {
+      shift();
+    }
+  }
+
+  private void shift() {
+    for (int i = 0; i < tokens.size(); i += 2) {
+      Annotation token = tokens.get(i);
+      token.setBegin(token.getBegin() + delta);
+      token.setEnd(token.getEnd() + delta);
+    }
+  }
+}
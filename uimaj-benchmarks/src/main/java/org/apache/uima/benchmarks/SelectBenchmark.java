@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.jcas.cas.TOP;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * SelectFSs queries typical of annotators walking a document:
+ * tokens of each sentence, the sentence covering each named entity,
+ * the tokens around each named entity, and a plain walk of all tokens.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectBenchmark {
+
+  @Param({"10000", "100000"})
+  public int nbrTokens;
+
+  private CAS cas;
+  private Type tokenType;
+  private Type sentenceType;
+  private List<Annotation> sentences;
+  private List<Annotation> namedEntities;
+
+  @Setup(Level.Trial)
+  public void setupCas() throws Exception {
+    cas = SyntheticDocument.createFilledCas(nbrTokens, 42);
+    tokenType = cas.getTypeSystem().getType(SyntheticDocument.TOKEN);
+    sentenceType = cas.getTypeSystem().getType(SyntheticDocument.SENTENCE);
+    sentences = cas.<Annotation>select(sentenceType).asList();
+    namedEntities = cas.<Annotation>select(SyntheticDocument.NAMED_ENTITY).asList();
+  }
+
+  @Benchmark
+  public void tokensCoveredBySentence(Blackhole bh) {
+    for (Annotation sentence : sentences) {
+      for (TOP token : cas.<TOP>select(tokenType).coveredBy(sentence)) {
+        bh.consume(token);
+      }
+    }
+  }
+
+  @Benchmark
+  public void sentenceCoveringEntity(Blackhole bh) {
+    for (Annotation ne : namedEntities) {
+      bh.consume(cas.select(sentenceType).covering(ne).get());
+    }
+  }
+
+  @Benchmark
+  public void tokensAroundEntity(Blackhole bh) {
+    for (Annotation ne : namedEntities) {
+      bh.consume(cas.select(tokenType).preceding(ne).limit(3).asList());
+      bh.consume(cas.select(tokenType).following(ne).limit(3).asList());
+    }
+  }
+
+  @Benchmark
+  public long countTokensOfEachSentence() {
+    long n = 0;
+    for (Annotation sentence : sentences) {
+      n += cas.select(tokenType).coveredBy(sentence).count();
+    }
+    return n;
+  }
+
+  @Benchmark
+  public void allTokens(Blackhole bh) {
+    cas.select(tokenType).forEach(bh::consume);
+  }
+}
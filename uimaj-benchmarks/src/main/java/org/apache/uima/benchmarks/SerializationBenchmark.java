@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.SerialFormat;
+import org.apache.uima.cas.impl.BinaryCasSerDes6;
+import org.apache.uima.cas.impl.CasCompressionCodecs;
+import org.apache.uima.cas.impl.XmiCasDeserializer;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.json.JsonCasDeserializer;
+import org.apache.uima.json.JsonCasSerializer;
+import org.apache.uima.util.CasIOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization and deserialization of a synthetic document in the
+ * XMI, JSON and binary formats.
+ *
+ * The binary formats are selected by the format parameter; "S6_LZ4" is
+ * COMPRESSED_FILTERED (form 6) using the lz4 compression codec instead of deflate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+  @Param({"100000"})
+  public int nbrTokens;
+
+  @Param({"BINARY", "COMPRESSED", "COMPRESSED_FILTERED", "S6_LZ4"})
+  public String format;
+
+  private CAS cas;
+  private CAS dest;
+  private byte[] xmi;
+  private byte[] json;
+  private byte[] binary;
+
+  @Setup(Level.Trial)
+  public void setupCas() throws Exception {
+    cas = SyntheticDocument.createFilledCas(nbrTokens, 42);
+    dest = SyntheticDocument.createCas();
+    xmi = serializeXmi().toByteArray();
+    json = serializeJson().toByteArray();
+    binary = serializeBinary().toByteArray();
+  }
+
+  @Setup(Level.Invocation)
+  public void reset() {
+    dest.reset();
+  }
+
+  @Benchmark
+  public ByteArrayOutputStream serializeXmi() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(1 << 20);
+    XmiCasSerializer.serialize(cas, baos);
+    return baos;
+  }
+
+  @Benchmark
+  public CAS deserializeXmi() throws Exception {
+    XmiCasDeserializer.deserialize(new ByteArrayInputStream(xmi), dest);
+    return dest;
+  }
+
+  @Benchmark
+  public ByteArrayOutputStream serializeJson() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(1 << 20);
+    JsonCasSerializer.jsonSerialize(cas, baos);
+    return baos;
+  }
+
+  @Benchmark
+  public CAS deserializeJson() throws Exception {
+    JsonCasDeserializer.jsonDeserialize(new ByteArrayInputStream(json), dest);
+    return dest;
+  }
+
+  @Benchmark
+  public ByteArrayOutputStream serializeBinary() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(1 << 20);
+    if ("S6_LZ4".equals(format)) {
+      new BinaryCasSerDes6(cas)
+          .setCompressionCodec(CasCompressionCodecs.getCodec("lz4"))
+          .serialize(baos);
+    } else {
+      CasIOUtils.save(cas, baos, SerialFormat.valueOf(format));
+    }
+    return baos;
+  }
+
+  @Benchmark
+  public CAS deserializeBinary() throws Exception {
+    // the lz4 codec is recorded in the form 6 header
+    CasIOUtils.load(new ByteArrayInputStream(binary), dest);
+    return dest;
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.ArrayFS;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.FsIndexDescription;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+
+/**
+ * Creates CASes holding synthetic documents, shaped like the output of a typical
+ * NLP pipeline:
+ *   - text made of sentences of words, with a Zipf like word frequency distribution
+ *   - a Sentence annotation per sentence
+ *   - a Token annotation per word, with a part of speech and a lemma
+ *   - NamedEntity annotations over 1 - 3 tokens, with an FSArray of their tokens
+ *   - a Dependency (not an annotation) per token, linking it to another token of the sentence,
+ *     indexed in a bag index
+ *
+ * The documents are deterministic for a given size and seed.
+ */
+public final class SyntheticDocument {
+
+  public static final String TOKEN = "org.apache.uima.benchmarks.Token";
+  public static final String SENTENCE = "org.apache.uima.benchmarks.Sentence";
+  public static final String NAMED_ENTITY = "org.apache.uima.benchmarks.NamedEntity";
+  public static final String DEPENDENCY = "org.apache.uima.benchmarks.Dependency";
+
+  public static final String DEPENDENCY_INDEX = "Dependencies";
+
+  private static final String[] POS = {"NN", "NNS", "NNP", "VB", "VBD", "VBZ", "JJ", "RB", "IN", "DT", "PRP", "CC", "CD"};
+  private static final String[] ENTITY_KINDS = {"PERSON", "ORGANIZATION", "LOCATION", "DATE"};
+  private static final String[] DEPENDENCY_LABELS = {"nsubj", "dobj", "amod", "advmod", "prep", "pobj", "det", "conj", "root"};
+
+  private static final int VOCABULARY_SIZE = 5000;
+
+  private SyntheticDocument() {}  // no instances
+
+  public static TypeSystemDescription typeSystem() {
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory().createTypeSystemDescription();
+    tsd.addType(SENTENCE, "", CAS.TYPE_NAME_ANNOTATION);
+    TypeDescription token = tsd.addType(TOKEN, "", CAS.TYPE_NAME_ANNOTATION);
+    token.addFeature("pos", "", CAS.TYPE_NAME_STRING);
+    token.addFeature("lemma", "", CAS.TYPE_NAME_STRING);
+    TypeDescription namedEntity = tsd.addType(NAMED_ENTITY, "", CAS.TYPE_NAME_ANNOTATION);
+    namedEntity.addFeature("kind", "", CAS.TYPE_NAME_STRING);
+    namedEntity.addFeature("confidence", "", CAS.TYPE_NAME_DOUBLE);
+    namedEntity.addFeature("tokens", "", CAS.TYPE_NAME_FS_ARRAY, TOKEN, false);
+    TypeDescription dependency = tsd.addType(DEPENDENCY, "", CAS.TYPE_NAME_TOP);
+    dependency.addFeature("governor", "", TOKEN);
+    dependency.addFeature("dependent", "", TOKEN);
+    dependency.addFeature("label", "", CAS.TYPE_NAME_STRING);
+    return tsd;
+  }
+
+  public static FsIndexDescription[] indexes() {
+    FsIndexDescription bag = UIMAFramework.getResourceSpecifierFactory().createFsIndexDescription();
+    bag.setLabel(DEPENDENCY_INDEX);
+    bag.setTypeName(DEPENDENCY);
+    bag.setKind(FsIndexDescription.KIND_BAG);
+    return new FsIndexDescription[] {bag};
+  }
+
+  /**
+   * @return a new empty CAS with the synthetic document type system and indexes
+   * @throws ResourceInitializationException passthru
+   */
+  public static CAS createCas() throws ResourceInitializationException {
+    return CasCreationUtils.createCas(typeSystem(), null, indexes());
+  }
+
+  /**
+   * Fill an empty CAS with a synthetic document
+   * @param cas a CAS created by createCas()
+   * @param nbrTokens the number of words in the document
+   * @param seed the random seed
+   */
+  public static void fill(CAS cas, int nbrTokens, long seed) {
+    final Random random = new Random(seed);
+    final TypeSystem ts = cas.getTypeSystem();
+    final Type tokenType = ts.getType(TOKEN);
+    final Type sentenceType = ts.getType(SENTENCE);
+    final Type namedEntityType = ts.getType(NAMED_ENTITY);
+    final Type dependencyType = ts.getType(DEPENDENCY);
+    final String[] vocabulary = vocabulary(new Random(0));
+
+    // text first, recording the token and sentence spans
+    final StringBuilder text = new StringBuilder(nbrTokens * 7);
+    final int[] tokenBegins = new int[nbrTokens];
+    final int[] tokenEnds = new int[nbrTokens];
+    final int[] tokenWords = new int[nbrTokens];
+    final List<int[]> sentences = new ArrayList<>();  // first token, last token + 1
+    int t = 0;
+    while (t < nbrTokens) {
+      final int sentenceLength = Math.min(nbrTokens - t, 5 + random.nextInt(30));
+      sentences.add(new int[] {t, t + sentenceLength});
+      for (int i = 0; i < sentenceLength; i++, t++) {
+        final int word = zipf(random, VOCABULARY_SIZE);
+        tokenWords[t] = word;
+        tokenBegins[t] = text.length();
+        text.append(vocabulary[word]);
+        tokenEnds[t] = text.length();
+        text.append((i == sentenceLength - 1) ? ". " : " ");
+      }
+    }
+    cas.setDocumentText(text.toString());
+
+    final AnnotationFS[] tokens = new AnnotationFS[nbrTokens];
+    for (int[] sentence : sentences) {
+      cas.addFsToIndexes(cas.createAnnotation(sentenceType, tokenBegins[sentence[0]], tokenEnds[sentence[1] - 1] + 1));
+      for (int i = sentence[0]; i < sentence[1]; i++) {
+        final AnnotationFS token = cas.createAnnotation(tokenType, tokenBegins[i], tokenEnds[i]);
+        token.setStringValue(tokenType.getFeatureByBaseName("pos"), POS[tokenWords[i] % POS.length]);
+        token.setStringValue(tokenType.getFeatureByBaseName("lemma"), vocabulary[tokenWords[i] - tokenWords[i] % 3]);
+        cas.addFsToIndexes(token);
+        tokens[i] = token;
+      }
+      for (int i = sentence[0]; i < sentence[1]; i++) {
+        final FeatureStructure dependency = cas.createFS(dependencyType);
+        dependency.setFeatureValue(dependencyType.getFeatureByBaseName("governor"),
+            tokens[sentence[0] + random.nextInt(sentence[1] - sentence[0])]);
+        dependency.setFeatureValue(dependencyType.getFeatureByBaseName("dependent"), tokens[i]);
+        dependency.setStringValue(dependencyType.getFeatureByBaseName("label"),
+            DEPENDENCY_LABELS[random.nextInt(DEPENDENCY_LABELS.length)]);
+        cas.addFsToIndexes(dependency);
+      }
+      // about one named entity per 20 tokens
+      for (int i = sentence[0]; i < sentence[1]; i++) {
+        if (random.nextInt(20) == 0) {
+          final int length = Math.min(sentence[1] - i, 1 + random.nextInt(3));
+          final AnnotationFS ne = cas.createAnnotation(namedEntityType, tokenBegins[i], tokenEnds[i + length - 1]);
+          ne.setStringValue(namedEntityType.getFeatureByBaseName("kind"), ENTITY_KINDS[random.nextInt(ENTITY_KINDS.length)]);
+          ne.setDoubleValue(namedEntityType.getFeatureByBaseName("confidence"), random.nextDouble());
+          final ArrayFS neTokens = cas.createArrayFS(length);
+          for (int j = 0; j < length; j++) {
+            neTokens.set(j, tokens[i + j]);
+          }
+          ne.setFeatureValue(namedEntityType.getFeatureByBaseName("tokens"), neTokens);
+          cas.addFsToIndexes(ne);
+          i += length;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return a new CAS filled with a synthetic document
+   * @param nbrTokens the number of words in the document
+   * @param seed the random seed
+   * @throws ResourceInitializationException passthru
+   */
+  public static CAS createFilledCas(int nbrTokens, long seed) throws ResourceInitializationException {
+    CAS cas = createCas();
+    fill(cas, nbrTokens, seed);
+    return cas;
+  }
+
+  private static String[] vocabulary(Random random) {
+    final String[] words = new String[VOCABULARY_SIZE];
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < VOCABULARY_SIZE; i++) {
+      sb.setLength(0);
+      // frequent words are short
+      final int length = 1 + Math.min(12, (int) Math.log(i + 2) + random.nextInt(4));
+      for (int j = 0; j < length; j++) {
+        sb.append((char) ('a' + random.nextInt(26)));
+      }
+      if (random.nextInt(15) == 0) {
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+      }
+      words[i] = sb.toString();
+    }
+    return words;
+  }
+
+  /**
+   * @return a random int in 0 - n-1, approximately Zipf distributed (small values are most likely)
+   */
+  private static int zipf(Random random, int n) {
+    // inverse transform sampling of a continuous 1/x distribution over [1, n + 1)
+    final int v = (int) Math.exp(random.nextDouble() * Math.log(n + 1)) - 1;
+    return Math.min(n - 1, v);
+  }
+}
@@ -127,6 +127,56 @@ public interface AnalysisEngine extends ConfigurableResource, CasObjectProcessor
    */
   public static final String PARAM_TIMEOUT_PERIOD = "TIMEOUT_PERIOD";
 
+  /**
+   * Key for the initialization parameter whose value is the maximum number of threads used to
+   * initialize the pooled objects (see {@link #PARAM_NUM_SIMULTANEOUS_REQUESTS}). The first object
+   * is always initialized alone, so that the resources shared through the
+   * {@link org.apache.uima.resource.ResourceManager ResourceManager} are loaded only once; the
+   * others are then initialized concurrently, by up to this number of threads. Annotators must
+   * not rely on being initialized one at a time to use this. The default, 1, initializes the
+   * objects one after the other. Not all analysis engine implementations pay attention to this
+   * parameter.
+   * <p>
+   * This value is used as a key in the <code>aAdditionalParams</code> Map that is passed to the
+   * {@link #initialize(ResourceSpecifier,Map)} method.
+   */
+  public static final String PARAM_NUM_INITIALIZATION_THREADS = "NUM_INITIALIZATION_THREADS";
+
+  /**
+   * Key for the initialization parameter whose value is the maximum number of simultaneous calls
+   * to {@link #process(CAS)} that will be supported. If this is greater than
+   * {@link #PARAM_NUM_SIMULTANEOUS_REQUESTS}, the pool of objects serving the calls is elastic:
+   * it starts with {@link #PARAM_NUM_SIMULTANEOUS_REQUESTS} objects, and grows up to this number
+   * when calls wait for an object for longer than {@link #PARAM_POOL_GROWTH_WAIT_TIME}; the
+   * objects left unused for {@link #PARAM_POOL_IDLE_TIME} are destroyed, down to
+   * {@link #PARAM_NUM_SIMULTANEOUS_REQUESTS}. Not all analysis engine implementations pay
+   * attention to this parameter.
+   * <p>
+   * This value is used as a key in the <code>aAdditionalParams</code> Map that is passed to the
+   * {@link #initialize(ResourceSpecifier,Map)} method.
+   */
+  public static final String PARAM_MAX_SIMULTANEOUS_REQUESTS = "MAX_SIMULTANEOUS_REQUESTS";
+
+  /**
+   * Key for the initialization parameter whose value is the number of milliseconds a call to
+   * {@link #process(CAS)} waits for a pooled object before an elastic pool grows (see
+   * {@link #PARAM_MAX_SIMULTANEOUS_REQUESTS}). The default is 100.
+   * <p>
+   * This value is used as a key in the <code>aAdditionalParams</code> Map that is passed to the
+   * {@link #initialize(ResourceSpecifier,Map)} method.
+   */
+  public static final String PARAM_POOL_GROWTH_WAIT_TIME = "POOL_GROWTH_WAIT_TIME";
+
+  /**
+   * Key for the initialization parameter whose value is the number of milliseconds an object of
+   * an elastic pool (see {@link #PARAM_MAX_SIMULTANEOUS_REQUESTS}) can be left unused before it
+   * is destroyed. The default is 60000.
+   * <p>
+   * This value is used as a key in the <code>aAdditionalParams</code> Map that is passed to the
+   * {@link #initialize(ResourceSpecifier,Map)} method.
+   */
+  public static final String PARAM_POOL_IDLE_TIME = "POOL_IDLE_TIME";
+
   /**
    * Key for the initialization parameter whose value is a JMX MBeanServer instance, with which this
    * AnalysisEngine will register an MBean that allows monitoring of the AE's performance through
@@ -166,7 +216,27 @@ public interface AnalysisEngine extends ConfigurableResource, CasObjectProcessor
    * {@link #initialize(ResourceSpecifier,Map)} method.
    */
   public static final String PARAM_MBEAN_NAME_PREFIX = "MBEAN_NAME_PREFIX";
-  
+
+  /**
+   * Key for the initialization parameter whose value is a <code>java.util.concurrent.Executor</code>
+   * on which an aggregate AnalysisEngine runs the delegates of each
+   * {@link org.apache.uima.flow.ParallelStep ParallelStep} concurrently. If this is null, the
+   * delegates of a ParallelStep are run one after the other, in the order of their keys.
+   * <p>
+   * Each delegate but the first works on its own copy of the CAS; when all are done, the changes
+   * made to the copies are merged into the CAS in the order of the keys. This costs a
+   * serialization of the CAS, and of the changes made by each delegate, so it pays off when the
+   * delegates of a ParallelStep each take a significant time. ParallelSteps including a CAS
+   * Multiplier are still run sequentially.
+   * <p>
+   * The parameter applies to the aggregate it is passed to, and is not passed on to its
+   * delegates: the delegates of nested aggregates are run sequentially.
+   * <p>
+   * This value is used as a key in the <code>aAdditionalParams</code> Map that is passed to the
+   * {@link #initialize(ResourceSpecifier,Map)} method.
+   */
+  public static final String PARAM_PARALLEL_STEP_EXECUTOR = "PARALLEL_STEP_EXECUTOR";
+
   /**
    * Sometimes Annotators may log excessively, causing problems in production settings.
    * Although this could be controlled using logging configuration, sometimes when
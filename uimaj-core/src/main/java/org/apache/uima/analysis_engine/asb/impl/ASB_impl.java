@@ -27,9 +27,11 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.Executor;
 
 import org.apache.uima.ResourceFactory;
 import org.apache.uima.UIMAFramework;
@@ -112,6 +114,16 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
 
   private SofaMapping[] mSofaMappings;
 
+  /**
+   * Executor for running the delegates of ParallelSteps concurrently, or null.
+   */
+  private Executor mParallelStepExecutor;
+
+  /**
+   * Runs the delegates of ParallelSteps concurrently, if there's an executor.
+   */
+  private ConcurrentParallelStep mConcurrentParallelStep;
+
   private FlowControllerContainer mFlowControllerContainer;
 
   /**
@@ -159,6 +171,10 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
     // if (mSofaMappings != null)
     // mInitParams.remove(mInitParams.get(Resource.PARAM_AGGREGATE_SOFA_MAPPINGS));
 
+    // the executor is for this aggregate only: nested aggregates waiting for their own
+    // parallel steps could otherwise use up a bounded executor's threads
+    mParallelStepExecutor = (Executor) mInitParams.remove(AnalysisEngine.PARAM_PARALLEL_STEP_EXECUTOR);
+
     UIMAFramework.getLogger(CLASS_NAME).logrb(Level.CONFIG, CLASS_NAME.getName(), "initialize",
             LOG_RESOURCE_BUNDLE, "UIMA_asb_init_successful__CONFIG");
     return true;
@@ -270,6 +286,12 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
 
     mOutputNewCASes = aAggregateMetadata.getOperationalProperties().getOutputsNewCASes();
 
+    if (mParallelStepExecutor != null) {
+      mConcurrentParallelStep = new ConcurrentParallelStep(mParallelStepExecutor,
+              getResourceManager().getCasManager(),
+              (Properties) mInitParams.get(Resource.PARAM_PERFORMANCE_TUNING_SETTINGS));
+    }
+
     // initialize the FlowController
     initFlowController(aFlowControllerDeclaration, aParentContext, aAggregateMetadata);
 
@@ -604,6 +626,13 @@ public class ASB_impl extends Resource_ImplBase implements ASB {
                         new Object[] { nextAeKey });
               }
             } 
+            //ParallelStep run concurrently
+            else if (nextStep instanceof ParallelStep && mConcurrentParallelStep != null &&
+                     mConcurrentParallelStep.canRun(((ParallelStep) nextStep).getAnalysisEngineKeys(),
+                             mComponentAnalysisEngineMap)) {
+              mConcurrentParallelStep.run(cas, flow, ((ParallelStep) nextStep).getAnalysisEngineKeys(),
+                      mComponentAnalysisEngineMap);
+            }
             //ParallelStep (TODO: refactor out common parts with SimpleStep?)
             else if (nextStep instanceof ParallelStep) {
               //create modifiable list of destinations 
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.analysis_engine.asb.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.CasIterator;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Marker;
+import org.apache.uima.cas.impl.AllowPreexistingFS;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.cas.impl.XmiCasDeserializer;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.cas.impl.XmiSerializationSharedData;
+import org.apache.uima.flow.ParallelStep;
+import org.apache.uima.resource.CasManager;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.Level;
+
+/**
+ * Runs the delegates of a {@link ParallelStep} concurrently, see
+ * {@link AnalysisEngine#PARAM_PARALLEL_STEP_EXECUTOR}.
+ * <p>
+ * A CAS may not be updated by several threads at once, so each delegate works on its own view
+ * of the CAS: the first delegate of the step processes the CAS itself, on the calling thread,
+ * while each of the others processes a copy of it, made by XMI serialization, on the executor.
+ * The changes made to each copy are then serialized as a delta CAS, and the deltas are merged
+ * into the CAS, one after the other in the order of the step's keys, in the same way
+ * the replies of remote services processing a CAS in parallel are merged. So the outcome doesn't
+ * depend on which delegate finishes first: Feature Structures are added to the indexes in
+ * that order, and if two delegates set the same feature of a Feature Structure that was in the
+ * CAS before the step, the value set by the later delegate wins.
+ * <p>
+ * CAS Multipliers can't be run this way; a step having one is run sequentially.
+ */
+class ConcurrentParallelStep {
+  /**
+   * resource bundle for log messages
+   */
+  private static final String LOG_RESOURCE_BUNDLE = "org.apache.uima.impl.log_messages";
+
+  /**
+   * current class
+   */
+  private static final Class<ConcurrentParallelStep> CLASS_NAME = ConcurrentParallelStep.class;
+
+  private final Executor mExecutor;
+
+  private final CasManager mCasManager;
+
+  private final Properties mPerformanceTuningSettings;
+
+  /**
+   * Base CASes used for the copies, kept for reuse. Their number grows to the number of delegates
+   * of the widest parallel step, less one.
+   */
+  private final Deque<CASImpl> mFreeCopies = new ArrayDeque<>();
+
+  ConcurrentParallelStep(Executor aExecutor, CasManager aCasManager,
+          Properties aPerformanceTuningSettings) {
+    mExecutor = aExecutor;
+    mCasManager = aCasManager;
+    mPerformanceTuningSettings = aPerformanceTuningSettings;
+  }
+
+  /**
+   * @param aKeys
+   *          the keys of the step's delegates
+   * @param aDelegates
+   *          the delegates of the aggregate, by key
+   * @return true if the step has several delegates, each one appearing once, and none of them
+   *         is a CAS Multiplier
+   */
+  boolean canRun(Collection<String> aKeys, Map<String, AnalysisEngine> aDelegates) {
+    if (aKeys.size() < 2 || new HashSet<>(aKeys).size() != aKeys.size()) {
+      return false;
+    }
+    for (String key : aKeys) {
+      AnalysisEngine ae = aDelegates.get(key);
+      if (ae == null ||  // reported when run sequentially
+          ae.getAnalysisEngineMetaData().getOperationalProperties().getOutputsNewCASes()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Runs the delegates of a parallel step, and merges their results into the CAS.
+   *
+   * @param aCas
+   *          the CAS being routed
+   * @param aFlow
+   *          the flow of the CAS, asked whether to continue if a delegate fails
+   * @param aKeys
+   *          the keys of the step's delegates, for which {@link #canRun(Collection, Map)} is true
+   * @param aDelegates
+   *          the delegates of the aggregate, by key
+   * @throws Exception
+   *           the exception thrown by the first failing delegate for which the flow doesn't
+   *           continue, or an exception serializing or merging the CAS
+   */
+  void run(CAS aCas, FlowContainer aFlow, Collection<String> aKeys,
+          Map<String, AnalysisEngine> aDelegates) throws Exception {
+    final List<String> keys = new ArrayList<>(aKeys);
+    final String viewName = aCas.getViewName();
+    final XmiSerializationSharedData sharedData = new XmiSerializationSharedData();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    XmiCasSerializer.serialize(aCas, null, baos, false, sharedData);
+    final byte[] xmi = baos.toByteArray();
+    final int mergePoint = sharedData.getMaxXmiId();
+
+    final int nbrCopies = keys.size() - 1;
+    List<CASImpl> copies = new ArrayList<>(nbrCopies);
+    List<CompletableFuture<byte[]>> deltas = new ArrayList<>(nbrCopies);
+    try {
+      for (int i = 1; i <= nbrCopies; i++) {
+        final AnalysisEngine ae = aDelegates.get(keys.get(i));
+        final CASImpl copy = getCopy();
+        copies.add(copy);
+        deltas.add(CompletableFuture.supplyAsync(() -> {
+          try {
+            return processCopy(ae, copy, viewName, xmi);
+          } catch (Exception e) {
+            throw new CompletionException(e);
+          }
+        }, mExecutor));
+      }
+
+      Exception failure = null;
+      try {
+        process(aDelegates.get(keys.get(0)), aCas);
+      } catch (Exception e) {
+        failure = e;
+      }
+      continueOrThrow(aFlow, keys.get(0), failure);
+
+      for (int i = 1; i <= nbrCopies; i++) {
+        byte[] delta = null;
+        failure = null;
+        try {
+          delta = deltas.get(i - 1).join();
+        } catch (CompletionException e) {
+          if (!(e.getCause() instanceof Exception)) {
+            throw e;
+          }
+          failure = (Exception) e.getCause();
+        }
+        continueOrThrow(aFlow, keys.get(i), failure);
+        if (delta != null) {
+          XmiCasDeserializer.deserialize(new ByteArrayInputStream(delta), aCas, false, sharedData,
+                  mergePoint, AllowPreexistingFS.allow);
+        }
+      }
+    } finally {
+      // the copies are only reused once no delegate is working on them
+      for (CompletableFuture<byte[]> delta : deltas) {
+        try {
+          delta.join();
+        } catch (CompletionException e) {
+          // already reported, or superseded by the exception being thrown
+        }
+      }
+      for (CASImpl copy : copies) {
+        copy.reset();
+        synchronized (mFreeCopies) {
+          mFreeCopies.push(copy);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the delta CAS of the changes the delegate made to its copy of the CAS
+   */
+  private static byte[] processCopy(AnalysisEngine aDelegate, CASImpl aCopy, String aViewName,
+          byte[] aXmi) throws Exception {
+    XmiSerializationSharedData sharedData = new XmiSerializationSharedData();
+    XmiCasDeserializer.deserialize(new ByteArrayInputStream(aXmi), aCopy, false, sharedData);
+    Marker marker = aCopy.createMarker();
+    process(aDelegate, (aViewName == null) ? aCopy : aCopy.getView(aViewName));
+    ByteArrayOutputStream delta = new ByteArrayOutputStream();
+    XmiCasSerializer.serialize(aCopy, null, delta, false, sharedData, marker);
+    return delta.toByteArray();
+  }
+
+  private static void process(AnalysisEngine aDelegate, CAS aCas) throws Exception {
+    CasIterator casIter = aDelegate.processAndOutputNewCASes(aCas);
+    casIter.hasNext();  // not a CAS Multiplier: no new CAS output
+    // this CAS is done being processed by that AnalysisEngine so clear the componentInfo
+    aCas.setCurrentComponentInfo(null);
+  }
+
+  private static void continueOrThrow(FlowContainer aFlow, String aKey, Exception aFailure)
+          throws Exception {
+    if (aFailure == null) {
+      return;
+    }
+    // ask the FlowController if we should continue
+    if (!aFlow.continueOnFailure(aKey, aFailure)) {
+      throw aFailure;
+    }
+    UIMAFramework.getLogger(CLASS_NAME).logrb(Level.FINE, CLASS_NAME.getName(), "run",
+            LOG_RESOURCE_BUNDLE, "UIMA_continuing_after_exception__FINE", aFailure);
+  }
+
+  private CASImpl getCopy() throws ResourceInitializationException {
+    synchronized (mFreeCopies) {
+      if (!mFreeCopies.isEmpty()) {
+        return mFreeCopies.pop();
+      }
+    }
+    return ((CASImpl) mCasManager.createNewCas(mPerformanceTuningSettings)).getBaseCAS();
+  }
+}
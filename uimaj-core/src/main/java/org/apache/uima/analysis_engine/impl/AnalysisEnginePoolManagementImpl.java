@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.analysis_engine.impl;
+
+import java.lang.ref.WeakReference;
+
+import org.apache.uima.internal.util.AnalysisEnginePool;
+import org.apache.uima.resource.ManagementObject;
+
+/**
+ * Implements Monitoring interface to the pool of AnalysisEngines of a
+ * {@link MultiprocessingAnalysisEngine_impl}.
+ */
+public class AnalysisEnginePoolManagementImpl
+    implements ManagementObject, AnalysisEnginePoolManagementImplMBean {
+
+  private WeakReference<AnalysisEnginePool> mPoolRef;
+  private String mUniqueMBeanName;
+
+  public AnalysisEnginePoolManagementImpl(AnalysisEnginePool aPool, String aUniqueMBeanName) {
+    mPoolRef = new WeakReference<>(aPool);
+    mUniqueMBeanName = aUniqueMBeanName;
+  }
+
+  public int getPoolSize() {
+    AnalysisEnginePool pool = mPoolRef.get();
+    return (pool != null) ? pool.getSize() : -1;
+  }
+
+  public int getMinPoolSize() {
+    AnalysisEnginePool pool = mPoolRef.get();
+    return (pool != null) ? pool.getMinSize() : -1;
+  }
+
+  public int getMaxPoolSize() {
+    AnalysisEnginePool pool = mPoolRef.get();
+    return (pool != null) ? pool.getMaxSize() : -1;
+  }
+
+  public int getAvailableInstances() {
+    AnalysisEnginePool pool = mPoolRef.get();
+    return (pool != null) ? pool.getNumAvailable() : -1;
+  }
+
+  public int getWaitingRequests() {
+    AnalysisEnginePool pool = mPoolRef.get();
+    return (pool != null) ? pool.getNumWaiting() : -1;
+  }
+
+  public String getUtilization() {
+    AnalysisEnginePool pool = mPoolRef.get();
+    if (pool == null) {
+      return "-1";
+    }
+    int size = pool.getSize();
+    if (size == 0) {
+      return "0";
+    }
+    return AnalysisEngineManagementImpl.format.format(
+            (float) (size - pool.getNumAvailable()) / size);
+  }
+
+  public long getNumberOfWaits() {
+    AnalysisEnginePool pool = mPoolRef.get();
+    return (pool != null) ? pool.getWaitCount() : -1;
+  }
+
+  public long getTotalWaitTime() {
+    AnalysisEnginePool pool = mPoolRef.get();
+    return (pool != null) ? pool.getTotalWaitTime() : -1;
+  }
+
+  /* (non-Javadoc)
+   * @see org.apache.uima.resource.ManagementObject#getUniqueMBeanName()
+   */
+  public String getUniqueMBeanName() {
+    return mUniqueMBeanName;
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.analysis_engine.impl;
+
+/**
+ * JMX MBean interface for monitoring the pool of AnalysisEngines of a
+ * {@link MultiprocessingAnalysisEngine_impl}.
+ */
+public interface AnalysisEnginePoolManagementImplMBean {
+  /**
+   * Get the current number of AnalysisEngines in the pool.
+   * @return the pool size
+   */
+  public int getPoolSize();
+
+  /**
+   * Get the minimum number of AnalysisEngines in the pool, which is its size unless it is elastic.
+   * @return the minimum pool size
+   */
+  public int getMinPoolSize();
+
+  /**
+   * Get the maximum number of AnalysisEngines in the pool, which is its size unless it is elastic.
+   * @return the maximum pool size
+   */
+  public int getMaxPoolSize();
+
+  /**
+   * Get the number of AnalysisEngines currently available in the pool.
+   * @return the number of available AnalysisEngines
+   */
+  public int getAvailableInstances();
+
+  /**
+   * Get the number of requests currently waiting for an AnalysisEngine.
+   * @return the number of waiting requests
+   */
+  public int getWaitingRequests();
+
+  /**
+   * Get the fraction of the AnalysisEngines of the pool currently in use.
+   * @return the utilization of the pool, between 0 and 1
+   */
+  public String getUtilization();
+
+  /**
+   * Get the number of requests which had to wait for an AnalysisEngine.
+   * @return the number of requests which waited
+   */
+  public long getNumberOfWaits();
+
+  /**
+   * Get the total time, in milliseconds, requests waited for an AnalysisEngine.
+   * @return the total wait time in milliseconds
+   */
+  public long getTotalWaitTime();
+}
@@ -32,6 +32,7 @@ import org.apache.uima.analysis_engine.ResultSpecification;
 import org.apache.uima.analysis_engine.TextAnalysisEngine;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.internal.util.AnalysisEnginePool;
+import org.apache.uima.internal.util.JmxMBeanAgent;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ConfigurationManager;
 import org.apache.uima.resource.Resource;
@@ -47,7 +48,10 @@ import org.apache.uima.util.ProcessTrace;
  * simultaneously. This is accomplished by maintaining a pool of {@link AnalysisEngine}
  * instances. When initialized, this class checks for the parameter
  * {@link #PARAM_NUM_SIMULTANEOUS_REQUESTS} to determine how many <code>AnalysisEngine</code>
- * instances to put in the pool.
+ * instances to put in the pool, and {@link #PARAM_NUM_INITIALIZATION_THREADS} to determine how
+ * many of them may be initialized at once. If {@link #PARAM_MAX_SIMULTANEOUS_REQUESTS} is greater,
+ * the pool is elastic, growing and shrinking with the load. The utilization of the pool is
+ * reported by an MBean registered along with the MBean of this AnalysisEngine.
  */
 public class MultiprocessingAnalysisEngine_impl extends AnalysisEngineImplBase implements
         TextAnalysisEngine {
@@ -61,6 +65,17 @@ public class MultiprocessingAnalysisEngine_impl extends AnalysisEngineImplBase i
 
   private static int DEFAULT_TIMEOUT_PERIOD = 0;
 
+  private static int DEFAULT_NUM_INITIALIZATION_THREADS = 1;
+
+  private static int DEFAULT_POOL_GROWTH_WAIT_TIME = 100;
+
+  private static int DEFAULT_POOL_IDLE_TIME = 60000;
+
+  /**
+   * MBean reporting the utilization of the pool.
+   */
+  private AnalysisEnginePoolManagementImpl mPoolMBean;
+
   private int mTimeout;
 
   /**
@@ -106,6 +121,16 @@ public class MultiprocessingAnalysisEngine_impl extends AnalysisEngineImplBase i
 
     Integer timeoutInteger = (Integer) aAdditionalParams.get(PARAM_TIMEOUT_PERIOD);
     mTimeout = (timeoutInteger != null) ? timeoutInteger : DEFAULT_TIMEOUT_PERIOD;
+    Integer initThreadsInteger = (Integer) aAdditionalParams.get(PARAM_NUM_INITIALIZATION_THREADS);
+    int initThreads = (initThreadsInteger != null) ? initThreadsInteger
+            : DEFAULT_NUM_INITIALIZATION_THREADS;
+    Integer maxPoolSizeInteger = (Integer) aAdditionalParams.get(PARAM_MAX_SIMULTANEOUS_REQUESTS);
+    int maxPoolSize = (maxPoolSizeInteger != null) ? maxPoolSizeInteger : poolSize;
+    Integer growthWaitTimeInteger = (Integer) aAdditionalParams.get(PARAM_POOL_GROWTH_WAIT_TIME);
+    int growthWaitTime = (growthWaitTimeInteger != null) ? growthWaitTimeInteger
+            : DEFAULT_POOL_GROWTH_WAIT_TIME;
+    Integer idleTimeInteger = (Integer) aAdditionalParams.get(PARAM_POOL_IDLE_TIME);
+    int idleTime = (idleTimeInteger != null) ? idleTimeInteger : DEFAULT_POOL_IDLE_TIME;
 
     // Share resource manager, but don't share uima-context
 //    // add UimaContext to params map so that all AEs in pool will share it
@@ -115,7 +140,24 @@ public class MultiprocessingAnalysisEngine_impl extends AnalysisEngineImplBase i
     // create pool (REMOVE pool size parameter from map so we don't try to
     // fill pool with other MultiprocessingAnalysisEngines!)
     aAdditionalParams.remove(PARAM_NUM_SIMULTANEOUS_REQUESTS);
-    mPool = new AnalysisEnginePool("", poolSize, aSpecifier, aAdditionalParams);
+    aAdditionalParams.remove(PARAM_NUM_INITIALIZATION_THREADS);
+    aAdditionalParams.remove(PARAM_MAX_SIMULTANEOUS_REQUESTS);
+    aAdditionalParams.remove(PARAM_POOL_GROWTH_WAIT_TIME);
+    aAdditionalParams.remove(PARAM_POOL_IDLE_TIME);
+    mPool = new AnalysisEnginePool("", poolSize, aSpecifier, aAdditionalParams, initThreads);
+    if (maxPoolSize > poolSize) {
+      mPool.makeElastic(maxPoolSize, growthWaitTime, idleTime);
+    }
+
+    // register the pool's MBean next to this AnalysisEngine's
+    String mbeanName = getMBean().getUniqueMBeanName();
+    if (mbeanName != null) {
+      mbeanName = mbeanName.endsWith("\"")
+              ? mbeanName.substring(0, mbeanName.length() - 1) + " Pool\""
+              : mbeanName + " Pool";
+      mPoolMBean = new AnalysisEnginePoolManagementImpl(mPool, mbeanName);
+      JmxMBeanAgent.registerMBean(mPoolMBean, getMBeanServer());
+    }
 
     // update metadata from pool (this gets the merged type system for aggregates)
     this.setMetaData(mPool.getMetaData());
@@ -326,6 +368,15 @@ public class MultiprocessingAnalysisEngine_impl extends AnalysisEngineImplBase i
     super.destroy();
   }
 
+  @Override
+  protected void finalize() throws Throwable {
+    // unregister the pool's MBean when GC occurs, as the AnalysisEngine's MBean
+    if (mPoolMBean != null) {
+      JmxMBeanAgent.unregisterMBean(mPoolMBean, getMBeanServer());
+    }
+    super.finalize();
+  }
+
   /**
    * @see org.apache.uima.analysis_engine.AnalysisEngine#setLogger(org.apache.uima.util.Logger)
    */
@@ -48,6 +48,7 @@ import org.apache.uima.jcas.cas.ShortArray;
 import org.apache.uima.jcas.cas.StringArray;
 import org.apache.uima.jcas.cas.TOP;
 import org.apache.uima.jcas.impl.JCasImpl;
+import org.apache.uima.util.AutoCloseableNoException;
 
 /**
  * Object-oriented CAS (Common Analysis System) API.
@@ -1165,6 +1166,22 @@ public interface CAS extends AbstractCas {
    * @param runnable code to execute while protecting the indexes. 
    */
   void protectIndexes(Runnable runnable);
+  
+  /**
+   * Call this method to set up a region for updating the keys of many indexed annotations,
+   * ended by a close() call on the returned object, best done using the try-with-resources statement.
+   * <p>
+   * Like {@link #protectIndexes()}, this protects the indexes from being corrupted by the updates, 
+   * but instead of removing and adding back each updated annotation, the affected indexes are 
+   * reordered once, when the region ends, or before they are next used within the region.
+   * So, for speed, do all the updates before using the indexes again, for instance when shifting
+   * the offsets of the annotations after changing the document text.
+   * 
+   * @return an object whose close method ends the region
+   */
+  default AutoCloseableNoException bulkIndexUpdate() {
+    return ((CASImpl)getLowLevelCAS()).bulkIndexUpdate();
+  }
 
   /**
    * @param <T> the Type of the elements being accessed
@@ -96,6 +96,11 @@ public enum SerialFormat {
    *   used to reinitialize the CAS
    */
   COMPRESSED_TSI("bcas"),
+
+  /**
+   * JSON-serialized CAS, needs the uimaj-json module
+   */
+  JSON("json"),
   ;
   
   private String defaultFileExtension;
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.util.List;
+
+import org.apache.uima.jcas.cas.TOP;
+import org.apache.uima.jcas.tcas.Annotation;
+
+/**
+ * An augmented interval tree over a read-only copy of the contents of one
+ * single-type sorted annotation index (an FsIndex_set_sorted).
+ *
+ * The items are kept in index order (begin ascending, end descending, id ascending).
+ * On top of that order, an implicit balanced binary tree (a segment tree) records,
+ * for each subtree, the max and min "end" value of the annotations in it.
+ *
+ * This allows
+ *   - covering(b, e):  all annotations with begin &lt;= b and end &gt;= e
+ *   - coveredBy(b, e): all annotations within the bounds, skipping those whose end is &gt; e
+ * to be found in O(log n + k), where k is the number of results, instead of
+ * walking all the annotations between (e - maxAnnotSpan) and b.
+ *
+ * Instances are immutable; the owning index drops its instance when it is modified,
+ * and lazily builds a new one on demand.
+ *
+ * Results are appended to a caller supplied list, in index order.
+ */
+final class AnnotationIntervalTree {
+
+  /** the annotations, in index order */
+  private final Annotation[] fss;
+  private final int[] begins;
+  private final int[] ends;
+
+  /** number of leaves in the implicit tree, a power of 2 &gt;= the number of annotations */
+  private final int nbrLeaves;
+
+  /**
+   * implicit tree: node 1 is the root, children of node i are 2i and 2i+1,
+   * leaf for item at position p is node (nbrLeaves + p)
+   */
+  private final int[] maxEnd;
+  private final int[] minEnd;
+
+  /**
+   * @param sorted the contents of a single type annotation index, in index order
+   */
+  AnnotationIntervalTree(TOP[] sorted) {
+    final int size = sorted.length;
+    fss = new Annotation[size];
+    begins = new int[size];
+    ends = new int[size];
+    for (int i = 0; i < size; i++) {
+      Annotation a = (Annotation) sorted[i];
+      fss[i] = a;
+      begins[i] = a.getBegin();
+      ends[i] = a.getEnd();
+    }
+
+    int n = 1;
+    while (n < size) {
+      n <<= 1;
+    }
+    nbrLeaves = n;
+    maxEnd = new int[n << 1];
+    minEnd = new int[n << 1];
+
+    for (int i = 0; i < n; i++) {
+      maxEnd[n + i] = (i < size) ? ends[i] : Integer.MIN_VALUE;
+      minEnd[n + i] = (i < size) ? ends[i] : Integer.MAX_VALUE;
+    }
+    for (int i = n - 1; i > 0; i--) {
+      maxEnd[i] = Math.max(maxEnd[i << 1], maxEnd[(i << 1) + 1]);
+      minEnd[i] = Math.min(minEnd[i << 1], minEnd[(i << 1) + 1]);
+    }
+  }
+
+  int size() {
+    return fss.length;
+  }
+
+  /**
+   * Collect all annotations having begin &lt;= boundBegin and end &gt;= boundEnd
+   * @param boundBegin -
+   * @param boundEnd -
+   * @param result where the annotations found are added, in index order
+   */
+  void collectCovering(int boundBegin, int boundEnd, List<Annotation> result) {
+    final int hi = firstBeginGreaterThan(boundBegin);
+    if (hi > 0) {
+      collectMaxEndAtLeast(1, 0, nbrLeaves, 0, hi, boundEnd, result);
+    }
+  }
+
+  /**
+   * Collect all annotations positioned at or after the bounds (in index order, ignoring type)
+   * and whose begin is &lt;= boundEnd; if strict, also skip those whose end is &gt; boundEnd.
+   *
+   * This is the same set the Subiterator visits for coveredBy, before skipping
+   * annotations equal to the bounds.
+   * @param boundBegin -
+   * @param boundEnd -
+   * @param isStrict true to skip annotations whose end is beyond the boundEnd
+   * @param result where the annotations found are added, in index order
+   */
+  void collectCoveredBy(int boundBegin, int boundEnd, boolean isStrict, List<Annotation> result) {
+    final int lo = firstAtOrAfterBounds(boundBegin, boundEnd);
+    final int hi = firstBeginGreaterThan(boundEnd);
+    if (lo >= hi) {
+      return;
+    }
+    if (isStrict) {
+      collectMinEndAtMost(1, 0, nbrLeaves, lo, hi, boundEnd, result);
+    } else {
+      for (int i = lo; i < hi; i++) {
+        result.add(fss[i]);
+      }
+    }
+  }
+
+  /**
+   * in-order walk of the subtree for node, limited to positions [lo, hi),
+   * pruning subtrees whose max end is &lt; boundEnd
+   */
+  private void collectMaxEndAtLeast(int node, int nodeLo, int nodeHi, int lo, int hi, int boundEnd, List<Annotation> result) {
+    if (nodeLo >= hi || nodeHi <= lo || maxEnd[node] < boundEnd) {
+      return;
+    }
+    if (node >= nbrLeaves) {
+      result.add(fss[nodeLo]);
+      return;
+    }
+    final int mid = (nodeLo + nodeHi) >>> 1;
+    collectMaxEndAtLeast(node << 1, nodeLo, mid, lo, hi, boundEnd, result);
+    collectMaxEndAtLeast((node << 1) + 1, mid, nodeHi, lo, hi, boundEnd, result);
+  }
+
+  /**
+   * in-order walk of the subtree for node, limited to positions [lo, hi),
+   * pruning subtrees whose min end is &gt; boundEnd
+   */
+  private void collectMinEndAtMost(int node, int nodeLo, int nodeHi, int lo, int hi, int boundEnd, List<Annotation> result) {
+    if (nodeLo >= hi || nodeHi <= lo || minEnd[node] > boundEnd) {
+      return;
+    }
+    if (node >= nbrLeaves) {
+      result.add(fss[nodeLo]);
+      return;
+    }
+    final int mid = (nodeLo + nodeHi) >>> 1;
+    collectMinEndAtMost(node << 1, nodeLo, mid, lo, hi, boundEnd, result);
+    collectMinEndAtMost((node << 1) + 1, mid, nodeHi, lo, hi, boundEnd, result);
+  }
+
+  /**
+   * @return the position of the first item whose begin is &gt; begin, or size if none
+   */
+  private int firstBeginGreaterThan(int begin) {
+    int lo = 0;
+    int hi = begins.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (begins[mid] <= begin) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Uses the index order ignoring type priorities and ids: begin ascending, end descending
+   * @return the position of the first item which is &gt;= the bounds, or size if none
+   */
+  private int firstAtOrAfterBounds(int begin, int end) {
+    int lo = 0;
+    int hi = begins.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      final int b = begins[mid];
+      if (b < begin || (b == begin && ends[mid] > end)) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+}
@@ -589,6 +589,7 @@ public class BinaryCasSerDes {
             BinaryCasSerDes6 bcsd = (f6 != null) 
                 ? new BinaryCasSerDes6(f6, ts_for_decoding)
                 : new BinaryCasSerDes6(baseCas, ts_for_decoding);
+            bcsd.setCompressionCodecForDeserialization(h.getCodecId());
             bcsd.deserializeAfterVersion(dis, delta, AllowPreexistingFS.allow);
             return h.typeSystemIndexDefIncluded 
                 ? SerialFormat.COMPRESSED_FILTERED_TSI
@@ -1189,14 +1190,17 @@ public class BinaryCasSerDes {
       return;
     }
     final int end1 = idx + length;    
-    // add FSs to index
-    for (; idx < end1; idx++) {
-      TOP fs = getFsFromAddr.apply(fsindexes[idx]);
-      if (isAdd) {
-        ir.addFS(fs);
-      } else {
-        ir.removeFS(fs);
+    if (isAdd) {
+      // add FSs to index, sorting them once per index
+      final List<TOP> fss = new ArrayList<>(length);
+      for (; idx < end1; idx++) {
+        fss.add(getFsFromAddr.apply(fsindexes[idx]));
       }
+      ir.addFSs(fss);
+      return;
+    }
+    for (; idx < end1; idx++) {
+      ir.removeFS(getFsFromAddr.apply(fsindexes[idx]));
     }
   }
      
@@ -37,10 +37,18 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.IntFunction;
 import java.util.stream.Stream;
@@ -49,6 +57,7 @@ import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
+import org.apache.uima.UIMAFramework;
 import org.apache.uima.UimaSerializable;
 import org.apache.uima.cas.AbstractCas;
 import org.apache.uima.cas.CASRuntimeException;
@@ -58,6 +67,7 @@ import org.apache.uima.cas.impl.CASImpl.FsChange;
 import org.apache.uima.cas.impl.CommonSerDes.Header;
 import org.apache.uima.cas.impl.FSsTobeAddedback.FSsTobeAddedbackSingle;
 import org.apache.uima.cas.impl.SlotKinds.SlotKind;
+import org.apache.uima.internal.util.ByteBufferDataInputStream;
 import org.apache.uima.internal.util.Int2ObjHashMap;
 import org.apache.uima.internal.util.IntListIterator;
 import org.apache.uima.internal.util.IntVector;
@@ -79,6 +89,7 @@ import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.util.AutoCloseableNoException;
 import org.apache.uima.util.CasIOUtils;
 import org.apache.uima.util.CasLoadMode;
+import org.apache.uima.util.Level;
 import org.apache.uima.util.impl.DataIO;
 import org.apache.uima.util.impl.OptimizeStrings;
 import org.apache.uima.util.impl.SerializationMeasures;
@@ -206,6 +217,41 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
   
   private static final boolean TRACE_STR_ARRAY = false;
   
+  /**
+   * Inflaters are reused across deserializations, to avoid the cost of allocating
+   * and freeing their native zlib space for each of the compressed streams of each CAS.
+   * The pool is bounded; extra Inflaters returned are ended.
+   */
+  private static final int INFLATER_POOL_MAX = 4 * NBR_SLOT_KIND_ZIP_STREAMS;
+  private static final ConcurrentLinkedQueue<Inflater> inflaterPool = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger inflaterPoolSize = new AtomicInteger(0);
+  
+  /** max size of the buffers used when inflating directly from a mapped file */
+  private static final int MAX_ZIP_BUF_SIZE = 1 << 15;
+  
+  /**
+   * Set this JVM property to the name of a registered CasCompressionCodec, e.g. "lz4", to have
+   * serializations use it instead of Deflate, unless a codec is set with setCompressionCodec.
+   * Deserialization uses the codec recorded in the serialized data.
+   */
+  public static final String COMPRESSION_CODEC = "uima.serialize_compression_codec";
+  
+  private static final CasCompressionCodec defaultCodec = getDefaultCodec();
+  
+  /**
+   * Set this JVM property to have serializations compress, and deserializations decompress, 
+   * the independent slot kind streams concurrently on the common ForkJoinPool, 
+   * unless another executor is set with setExecutor.
+   */
+  public static final String PARALLEL_COMPRESSION = "uima.serdes6_parallel_compression";
+  
+  private static final Executor defaultExecutor = Misc.getNoValueSystemProperty(PARALLEL_COMPRESSION) 
+      ? ForkJoinPool.commonPool()
+      : null;
+  
+  /** below this total number of bytes, the streams are compressed / decompressed sequentially, even if there is an executor */
+  private static final int PARALLEL_COMPRESSION_MIN_BYTES = 1 << 16;
+  
   /**
    * Compression alternatives
    */
@@ -281,6 +327,10 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
   final private TypeSystemImpl tgtTs;
   final private CompressLevel compressLevel;
   final private CompressStrat compressStrategy;  
+  /** null means the built-in Deflate compression, using the compressLevel and compressStrategy */
+  private CasCompressionCodec codec;
+  /** if not null, used to compress / decompress the streams concurrently */
+  private Executor executor;
   
   /*****************************************************
    *  Things for both serialization and Deserialization
@@ -567,6 +617,8 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
 
     this.compressLevel = compressLevel;
     this.compressStrategy = compressStrategy;
+    this.codec = defaultCodec;
+    this.executor = defaultExecutor;
     reuseInfoProvided = (rfs != null);
     if (reuseInfoProvided) {
       foundFSs = rfs.foundFSs;  // broken for serialization - not reused
@@ -598,6 +650,8 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
     this.tgtTs = tgtTs;  // passed in argument !
     this.compressLevel = f6.compressLevel;
     this.compressStrategy = f6.compressStrategy;
+    this.codec = f6.codec;
+    this.executor = f6.executor;
 
     this.mark = f6.mark;
     if (null != mark && !mark.isValid() ) {
@@ -690,6 +744,72 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
     this(cas, null, null, storeTS, storeTSI, rfs, false, CompressLevel.Default, CompressStrat.Default);
   }
 
+  /**
+   * Set the compression codec used for serializing; deserializing uses the codec recorded in the serialized data.
+   * @param codec the codec to use, or null to use the built-in Deflate compression with this instance's
+   *        compress level and strategy
+   * @return this instance, for chaining
+   */
+  public BinaryCasSerDes6 setCompressionCodec(CasCompressionCodec codec) {
+    this.codec = codec;
+    return this;
+  }
+  
+  /**
+   * @return the compression codec used for serializing, or null if the built-in Deflate compression is used
+   */
+  public CasCompressionCodec getCompressionCodec() {
+    return codec;
+  }
+
+  /**
+   * Set an executor, used to compress (when serializing) or decompress (when deserializing)
+   * the independent slot kind streams concurrently.  
+   * This reduces the latency for large CASes to about the time for the largest stream.
+   * @param executor the executor, for instance a ForkJoinPool, or null to do all the streams in the calling thread
+   * @return this instance, for chaining
+   */
+  public BinaryCasSerDes6 setExecutor(Executor executor) {
+    this.executor = executor;
+    return this;
+  }
+  
+  /**
+   * @return the executor used to compress / decompress the streams concurrently, or null
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Set the codec for deserializing from the id in the header of the serialized data
+   * @param codecId the id from the header
+   * @throws IOException if no codec is registered for the id
+   */
+  void setCompressionCodecForDeserialization(int codecId) throws IOException {
+    if (codecId == CasCompressionCodecs.DEFLATE_CODEC_ID) {
+      codec = null;
+      return;
+    }
+    codec = CasCompressionCodecs.getCodec(codecId);
+    if (codec == null) {
+      throw new IOException(String.format("No compression codec is registered for the id %d used by the serialized data", codecId));
+    }
+  }
+  
+  private static CasCompressionCodec getDefaultCodec() {
+    final String name = System.getProperty(COMPRESSION_CODEC);
+    if (name == null || name.isEmpty()) {
+      return null;
+    }
+    final CasCompressionCodec c = CasCompressionCodecs.getCodec(name);
+    if (c == null) {
+      UIMAFramework.getLogger(BinaryCasSerDes6.class).log(Level.WARNING,
+          "No compression codec named \"" + name + "\" is registered, using Deflate");
+    }
+    return c;
+  }
+
   /*********************************************************************************************
    * S e r i a l i z e r   Class for sharing variables among routines
    * Class instantiated once per serialization
@@ -725,6 +845,7 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
     .v3()
     .typeSystemIncluded(isTsIncluded)
     .typeSystemIndexDefIncluded(isTsiIncluded)
+    .codec((codec == null) ? CasCompressionCodecs.DEFLATE_CODEC_ID : codec.getId())
     .write(serializedOut);
     
     if (isTsIncluded || isTsiIncluded) {
@@ -1110,6 +1231,10 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
    * @throws IOException passthru
    */
   private void collectAndZip() throws IOException {
+    if (executor != null && isWorthParallelizing()) {
+      collectAndZipParallel();
+      return;
+    }
     ByteArrayOutputStream baosZipped = new ByteArrayOutputStream(4096);
     Deflater deflater = new Deflater(compressLevel.lvl, true);
     deflater.setStrategy(compressStrategy.strat);
@@ -1123,6 +1248,19 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
         nbrEntries ++;
         dosZipSources[i].close();
         long startTime = System.currentTimeMillis();
+        if (codec != null) {
+          final int bytesOrig = baos.size();
+          final int bytesCompr = codec.compress(baos.toByteArray(), bytesOrig, baosZipped);
+          idxAndLen.add(i);
+          idxAndLen.add(bytesCompr);
+          idxAndLen.add(bytesOrig);
+          if (doMeasurements) {
+            sm.statDetails[i].afterZip = bytesCompr;
+            sm.statDetails[i].beforeZip = bytesOrig;
+            sm.statDetails[i].zipTime = System.currentTimeMillis() - startTime;
+          }
+          continue;
+        }
         int zipBufSize = Math.max(1024, baos.size() / 100);
         deflater.reset();
         DeflaterOutputStream cds = new DeflaterOutputStream(baosZipped, deflater, zipBufSize);       
@@ -1157,6 +1295,110 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
     }
     baosZipped.writeTo(serializedOut);                      // write Compressed info
   }  
+  
+  private boolean isWorthParallelizing() {
+    int nbrStreams = 0;
+    long totalSize = 0;
+    for (ByteArrayOutputStream baos : baosZipSources) {
+      if (baos != null) {
+        nbrStreams ++;
+        totalSize += baos.size();
+      }
+    }
+    return nbrStreams > 1 && totalSize >= PARALLEL_COMPRESSION_MIN_BYTES;
+  }
+  
+  /**
+   * Same result as collectAndZip, but the streams are compressed concurrently using the executor,
+   * each with its own Deflater, into its own buffer
+   * @throws IOException passthru
+   */
+  private void collectAndZipParallel() throws IOException {
+    final List<CompletableFuture<ByteArrayOutputStream>> zipped = 
+        new ArrayList<>(Collections.nCopies(baosZipSources.length, null));
+    final long[] zipTimes = new long[baosZipSources.length];
+    int nbrEntries = 0;
+    for (int i = 0; i < baosZipSources.length; i++) {
+      final ByteArrayOutputStream baos = baosZipSources[i];
+      if (baos != null) {
+        nbrEntries ++;
+        dosZipSources[i].close();
+        final int slotIndex = i;
+        zipped.set(i, CompletableFuture.supplyAsync(() -> {
+          long startTime = System.currentTimeMillis();
+          try {
+            return compressStream(baos);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          } finally {
+            zipTimes[slotIndex] = System.currentTimeMillis() - startTime;
+          }
+        }, executor));
+      }
+    }
+    
+    // same format as collectAndZip
+    serializedOut.writeInt(nbrEntries);                     // write number of entries
+    for (int i = 0; i < zipped.size(); i++) {
+      if (zipped.get(i) != null) {
+        final int bytesCompr = join(zipped.get(i)).size();
+        final int bytesOrig = baosZipSources[i].size();
+        serializedOut.write(i);
+        serializedOut.writeInt(bytesCompr);
+        serializedOut.writeInt(bytesOrig);
+        if (doMeasurements) {
+          sm.statDetails[i].afterZip = bytesCompr;
+          sm.statDetails[i].beforeZip = bytesOrig;
+          sm.statDetails[i].zipTime = zipTimes[i];
+        }
+      }
+    }
+    for (int i = 0; i < zipped.size(); i++) {
+      if (zipped.get(i) != null) {
+        join(zipped.get(i)).writeTo(serializedOut);             // write Compressed info
+      }
+    }
+  }
+  
+  private ByteArrayOutputStream compressStream(ByteArrayOutputStream baos) throws IOException {
+    ByteArrayOutputStream baosZipped = new ByteArrayOutputStream(Math.max(1024, baos.size() / 4));
+    if (codec != null) {
+      codec.compress(baos.toByteArray(), baos.size(), baosZipped);
+      return baosZipped;
+    }
+    Deflater deflater = new Deflater(compressLevel.lvl, true);
+    try {
+      deflater.setStrategy(compressStrategy.strat);
+      int zipBufSize = Math.max(1024, baos.size() / 100);
+      DeflaterOutputStream cds = new DeflaterOutputStream(baosZipped, deflater, zipBufSize);       
+      baos.writeTo(cds);
+      cds.close();
+    } finally {
+      deflater.end();
+    }
+    return baosZipped;
+  }
+  
+  /**
+   * Wait for a compression / decompression task, rethrowing its IOException if any
+   */
+  private static <T> T join(CompletableFuture<T> future) throws IOException {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException) {
+        throw ((UncheckedIOException)cause).getCause();
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
  
   private void writeLong(long v, long prev) throws IOException {
     writeDiff(long_High_i, (int)(v >>> 32), (int)(prev >>> 32));
@@ -3231,11 +3473,15 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
     for (int i = 0; i < nbrEntries; i++) {
       idxAndLen.add(deserIn.readUnsignedByte());  // slot ordinal number
       idxAndLen.add(deserIn.readInt());           // compressed size, bytes
-      idxAndLen.add(deserIn.readInt());           // decompressed size, bytes (not currently used)
+      idxAndLen.add(deserIn.readInt());           // decompressed size, bytes
     }
     
-    for (int i = 0; i < idxAndLen.size();) {
-      setupReadStream(idxAndLen.get(i++), idxAndLen.get(i++), idxAndLen.get(i++));
+    if (executor != null && nbrEntries > 1 && isWorthParallelizing(idxAndLen)) {
+      setupReadStreamsParallel(idxAndLen);
+    } else {
+      for (int i = 0; i < idxAndLen.size();) {
+        setupReadStream(idxAndLen.get(i++), idxAndLen.get(i++), idxAndLen.get(i++));
+      }
     }
 
     arrayLength_dis = dataInputs[arrayLength_i];
@@ -3259,10 +3505,91 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
     strSeg_dis = dataInputs[strSeg_i];
   }
   
+  private static boolean isWorthParallelizing(IntVector idxAndLen) {
+    long totalSize = 0;
+    for (int i = 2; i < idxAndLen.size(); i += 3) {
+      totalSize += idxAndLen.get(i);
+    }
+    return totalSize >= PARALLEL_COMPRESSION_MIN_BYTES;
+  }
+  
+  /**
+   * The compressed bytes of each stream are located (mapped input) or read, in order, 
+   * and then each stream is fully decompressed concurrently, using the executor.
+   * @param idxAndLen triples of slot index, compressed size, decompressed size
+   * @throws IOException passthru
+   */
+  private void setupReadStreamsParallel(IntVector idxAndLen) throws IOException {
+    final List<CompletableFuture<InputStream>> decompressed = 
+        new ArrayList<>(Collections.nCopies(NBR_SLOT_KIND_ZIP_STREAMS, null));
+    for (int i = 0; i < idxAndLen.size();) {
+      final int slotIndex = idxAndLen.get(i++);
+      final int bytesCompr = idxAndLen.get(i++);
+      final int bytesOrig = idxAndLen.get(i++);
+      final InputStream compressed;
+      if (deserIn instanceof ByteBufferDataInputStream) {
+        compressed = ((ByteBufferDataInputStream)deserIn).sliceStream(bytesCompr, codec == null);
+      } else {
+        byte[] b = new byte[bytesCompr + 1];
+        deserIn.readFully(b, 0, bytesCompr);  // this leaves 1 extra 0 byte at the end, for Inflater nowrap
+        compressed = new ByteArrayInputStream(b, 0, (codec == null) ? bytesCompr + 1 : bytesCompr);
+      }
+      decompressed.set(slotIndex, CompletableFuture.supplyAsync(() -> {
+        try {
+          return decompressStream(compressed, bytesCompr, bytesOrig);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, executor));
+    }
+    for (int i = 0; i < decompressed.size(); i++) {
+      if (decompressed.get(i) != null) {
+        dataInputs[i] = new DataInputStream(join(decompressed.get(i)));
+      }
+    }
+  }
+  
+  private InputStream decompressStream(InputStream compressed, int bytesCompr, int bytesOrig) throws IOException {
+    if (codec != null) {
+      return codec.decompress(compressed, bytesCompr, bytesOrig);
+    }
+    final Inflater inflater = getPooledInflater();
+    try {
+      int zipBufSize = Math.max(1 << 10, Math.min(MAX_ZIP_BUF_SIZE, bytesCompr));
+      byte[] uncompressed = new byte[bytesOrig];
+      new DataInputStream(new InflaterInputStream(compressed, inflater, zipBufSize)).readFully(uncompressed);
+      return new ByteArrayInputStream(uncompressed);
+    } finally {
+      releasePooledInflater(inflater);
+    }
+  }
+  
   private void setupReadStream(
       int slotIndex, 
       int bytesCompr,
       int bytesOrig) throws IOException {
+    if (codec != null) {
+      InputStream compressed = (deserIn instanceof ByteBufferDataInputStream)
+          ? ((ByteBufferDataInputStream)deserIn).sliceStream(bytesCompr, false)
+          : deserIn;
+      dataInputs[slotIndex] = new DataInputStream(codec.decompress(compressed, bytesCompr, bytesOrig));
+      return;
+    }
+    
+    Inflater inflater = getPooledInflater();
+    inflaters[slotIndex] = inflater;  // save to be able to return it to the pool when done. 
+    
+    if (deserIn instanceof ByteBufferDataInputStream) {
+      // inflate directly from the (typically memory mapped) buffer, without copying
+      //   the compressed bytes to a separate array.
+      //   The extra dummy byte may be required by Inflater with nowrap option - see Inflater javadoc
+      InputStream compressed = ((ByteBufferDataInputStream)deserIn).sliceStream(bytesCompr, true);
+      int zipBufSize = Math.max(1 << 10, Math.min(MAX_ZIP_BUF_SIZE, bytesCompr));
+      InflaterInputStream iis = new InflaterInputStream(compressed, inflater, zipBufSize);
+      dataInputs[slotIndex] = new DataInputStream(new BufferedInputStream(iis, zipBufSize));
+      return;
+    }
+    
     byte[] b = new byte[bytesCompr + 1];
     deserIn.readFully(b, 0, bytesCompr);  // this leaves 1 extra 0 byte at the end
     // which may be required by Inflater with nowrap option - see Inflater javadoc
@@ -3285,8 +3612,6 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
 //          SlotKind.values()[slotIndex], System.currentTimeMillis() - startTime); 
 //      
 //      dataInputs[slotIndex] = new DataInputStream(new ByteArrayInputStream(uncompressed));
-    Inflater inflater = new Inflater(true);
-    inflaters[slotIndex] = inflater;  // save to be able to call end() when done. 
     ByteArrayInputStream baiStream = new ByteArrayInputStream(b);      
     int zipBufSize = Math.max(1 << 10, bytesCompr); // 32768 == 1<< 15.  Tuned by trials on 2015 intel i7
      // caches: L1 = 128KB    L2 = 1M     L3 = 6M
@@ -3305,13 +3630,33 @@ public class BinaryCasSerDes6 implements SlotKindsConstants {
         }
       }
     }
-    // release any space inflater holding on to
-    for (Inflater inflater : inflaters) {
-      if (null != inflater) {
-        inflater.end();
+    // return the inflaters to the pool
+    for (int i = 0; i < inflaters.length; i++) {
+      if (null != inflaters[i]) {
+        releasePooledInflater(inflaters[i]);
+        inflaters[i] = null;
       }
     }
   }
+  
+  private static Inflater getPooledInflater() {
+    Inflater inflater = inflaterPool.poll();
+    if (inflater == null) {
+      return new Inflater(true);
+    }
+    inflaterPoolSize.decrementAndGet();
+    return inflater;
+  }
+  
+  private static void releasePooledInflater(Inflater inflater) {
+    if (inflaterPoolSize.incrementAndGet() > INFLATER_POOL_MAX) {
+      inflaterPoolSize.decrementAndGet();
+      inflater.end();  // release any space inflater holding on to
+      return;
+    }
+    inflater.reset();
+    inflaterPool.offer(inflater);
+  }
 
   /*********************************************
    * HEADERS
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.uima.jcas.cas.TOP;
+import org.apache.uima.util.AutoCloseableNoException;
+
+/**
+ * A bulk index update scope, see {@link CASImpl#bulkIndexUpdate()}.
+ *
+ * Within the scope, setting a key feature of an indexed annotation leaves it where it is
+ * in its set and sorted indexes, and records it in those indexes as needing reordering.
+ * Instead of removing the annotation and adding it back (each costing a binary search and
+ * moving on average 1/4 of the index), the index is reordered once, with one sort-merge,
+ * at the end of the scope, or before the index is next used, if that happens first.
+ *
+ * Scopes may be nested; the reordering happens when the outermost scope is closed.
+ */
+class BulkIndexUpdate implements AutoCloseableNoException {
+
+  private final CASImpl cas;
+
+  private int nestingLevel = 0;
+
+  /**
+   * the indexes which have had FSs recorded for reordering,
+   * maybe already reordered because they were used
+   */
+  private final List<FsIndex_set_sorted<?>> indexesToReorder = new ArrayList<>();
+
+  BulkIndexUpdate(CASImpl cas) {
+    this.cas = cas;
+  }
+
+  BulkIndexUpdate enter() {
+    nestingLevel ++;
+    return this;
+  }
+
+  /**
+   * Called when an index first has an FS recorded for reordering, since it was last reordered
+   * @param index the index
+   */
+  void addIndexToReorder(FsIndex_set_sorted<?> index) {
+    indexesToReorder.add(index);
+  }
+
+  /**
+   * Record an FS whose key feature is about to be modified
+   * @param fs an indexed annotation (not bag-only indexed)
+   */
+  void recordUpdate(TOP fs) {
+    ((FSIndexRepositoryImpl) fs._casView.getIndexRepository()).deferReorder(fs, this);
+  }
+
+  @Override
+  public void close() {
+    if (--nestingLevel > 0) {
+      return;
+    }
+    try {
+      for (FsIndex_set_sorted<?> index : indexesToReorder) {
+        index.reorderBulkUpdated();
+      }
+    } finally {
+      indexesToReorder.clear();
+      cas.dropBulkIndexUpdate(this);
+    }
+  }
+}
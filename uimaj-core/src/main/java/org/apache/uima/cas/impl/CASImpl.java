@@ -486,6 +486,11 @@ public class CASImpl extends AbstractCas_ImplBase implements CAS, CASMgr, LowLev
      */
     boolean fsTobeAddedbackSingleInUse = false;
     
+    /**
+     * The active bulk index update scope, or null
+     */
+    private BulkIndexUpdate bulkIndexUpdate = null;
+    
     /**
      * temporarily set to true by deserialization routines doing their own management of this check
      */
@@ -724,6 +729,7 @@ public class CASImpl extends AbstractCas_ImplBase implements CAS, CASMgr, LowLev
       fsTobeAddedbackSingle.clear();
       fsTobeAddedbackSingleInUse = false; 
       disableAutoCorruptionCheck = false;
+      bulkIndexUpdate = null;
 
       // misc
       flushEnabled = true;      
@@ -1358,6 +1364,12 @@ public class CASImpl extends AbstractCas_ImplBase implements CAS, CASMgr, LowLev
     return this.tsi_local;
   }
   
+  // For internal use only, by deserializers outside this package
+  // see TypeSystemImpl.fixupFSArrayTypes
+  public void fixupFSArrayTypes(TypeImpl featRange, TOP arrayFs) {
+    getTypeSystemImpl().fixupFSArrayTypes(featRange, arrayFs);
+  }
+  
   /**
    * Set the shared svd type system ref, in all views
    * @param ts
@@ -2193,6 +2205,51 @@ public class CASImpl extends AbstractCas_ImplBase implements CAS, CASMgr, LowLev
     }
     maybeLogUpdate(fs, feat);
   }
+
+  /**
+   * version for values held in one int slot (boolean, byte, short, int, float)
+   * Does the same as setWithCheckAndJournal, but without needing a setter Runnable,
+   *   which would be allocated (capturing the fs, feature and value) for each set.
+   * @param fsIn      the feature structure
+   * @param feat    the feature to set
+   * @param v -
+   */
+  public void setIntValue(FeatureStructureImplC fsIn, FeatureImpl feat, int v) {
+    TOP fs = (TOP) fsIn;
+    if (fs._inSetSortedIndex()) {
+      boolean wasRemoved = checkForInvalidFeatureSetting(fs, feat.getCode());
+      fs._setIntValueNcNj(feat, v);
+      if (wasRemoved) {
+        maybeAddback(fs);
+      }
+      
+    } else {
+      fs._setIntValueNcNj(feat, v);
+    }
+    maybeLogUpdate(fs, feat);
+  }
+
+  /**
+   * version for values held in a ref slot (String, Feature Structure references)
+   * Does the same as setWithCheckAndJournal, but without needing a setter Runnable.
+   * @param fsIn      the feature structure
+   * @param feat    the feature to set
+   * @param v -
+   */
+  public void setRefValue(FeatureStructureImplC fsIn, FeatureImpl feat, Object v) {
+    TOP fs = (TOP) fsIn;
+    if (fs._inSetSortedIndex()) {
+      boolean wasRemoved = checkForInvalidFeatureSetting(fs, feat.getCode());
+      fs._setFeatureValueNcNj(feat, v);
+      if (wasRemoved) {
+        maybeAddback(fs);
+      }
+      
+    } else {
+      fs._setFeatureValueNcNj(feat, v);
+    }
+    maybeLogUpdate(fs, feat);
+  }
     
   void setFeatureValue(int fsRef, int featureCode, TOP value) {
     getFsFromId_checked(fsRef).setFeatureValue(getFeatFromCode_checked(featureCode), value); 
@@ -3075,11 +3132,17 @@ public JCasImpl getJCasImpl() {
    * @param featCode - the feature being tested
    * @return true if something may need to be added back
    */  
-  private boolean checkForInvalidFeatureSetting(TOP fs, int featCode) {
+  boolean checkForInvalidFeatureSetting(TOP fs, int featCode) {
     if (doInvalidFeatSettingCheck(fs)) {
       if (!svd.featureCodesInIndexKeys.get(featCode)) { // skip if no index uses this feature
         return false;
       }
+      
+      // in a bulk index update scope, annotations (only indexed in their own view) are left in place
+      if (svd.bulkIndexUpdate != null && fs._getTypeImpl().isAnnotationBaseType()) {
+        svd.bulkIndexUpdate.recordUpdate(fs);
+        return false;
+      }
  
       boolean wasRemoved = checkForInvalidFeatureSetting2(fs);
       if (wasRemoved && doCorruptReport()) {
@@ -3172,7 +3235,7 @@ public JCasImpl getJCasImpl() {
     return 
         // skip message if wasn't removed
         // skip message if protected in explicit block
-        IS_REPORT_FS_UPDATE_CORRUPTS_INDEX && svd.fssTobeAddedback.size() == 0;
+        IS_REPORT_FS_UPDATE_CORRUPTS_INDEX && svd.fssTobeAddedback.size() == 0 && svd.bulkIndexUpdate == null;
   }
   
   /**
@@ -3188,7 +3251,7 @@ public JCasImpl getJCasImpl() {
     
     final int ssz = svd.fssTobeAddedback.size();
     // skip if protection is disabled, and no explicit protection block
-    if (IS_DISABLED_PROTECT_INDEXES && ssz == 0) {
+    if (IS_DISABLED_PROTECT_INDEXES && ssz == 0 && svd.bulkIndexUpdate == null) {
       return false;
     }
     return true;
@@ -4854,6 +4917,36 @@ public JCasImpl getJCasImpl() {
     addbacks.addback();
   }
   
+  /**
+   * bulkIndexUpdate
+   * 
+   * Within the scope of bulkIndexUpdate, 
+   *   feature updates are checked as for protectIndexes, but if found to be a key, 
+   *     an annotation is left where it is in its set and sorted indexes, and those indexes are
+   *     marked as needing to be reordered.
+   *   
+   *   Each such index is reordered, with one sort-merge, when the scope is closed,
+   *   or before it is next used within the scope, if that happens first.
+   *   Updates of many annotations (e.g. shifting offsets) should therefore be done together,
+   *   without using the indexes in between.
+   *   
+   *   Other kinds of Feature Structures are removed and added back, as outside of the scope.
+   *   Scopes may be nested.
+   */
+  @Override
+  public AutoCloseableNoException bulkIndexUpdate() {
+    if (svd.bulkIndexUpdate == null) {
+      svd.bulkIndexUpdate = new BulkIndexUpdate(this);
+    }
+    return svd.bulkIndexUpdate.enter();
+  }
+  
+  void dropBulkIndexUpdate(BulkIndexUpdate bulk) {
+    if (svd.bulkIndexUpdate == bulk) {
+      svd.bulkIndexUpdate = null;
+    }
+  }
+  
   /**
    * 
    * @param r an inner block of code to be run with 
@@ -0,0 +1,894 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CASRuntimeException;
+import org.apache.uima.jcas.cas.TOP;
+import org.apache.uima.jcas.tcas.Annotation;
+
+/**
+ * A read-only, columnar copy of the indexed Feature Structures of one CAS view,
+ * held in a single ByteBuffer (direct, or memory-mapped from a file).
+ *
+ * Intended for consumers which only read results (e.g. type, begin, end, and a few features)
+ * of many CASes, without deserializing them into CASes and Java objects.
+ *
+ * Layout:
+ *   - a dictionary of all the strings (type names, feature names, string feature values),
+ *     each stored once, UTF-8 encoded; string values in columns are codes into this dictionary.
+ *   - per type having indexed instances, a table with one row per indexed Feature Structure,
+ *     an id column, and one column per feature:
+ *       - boolean, byte, short and int values are stored as ints,
+ *       - float and double values as their bits,
+ *       - strings as dictionary codes (-1 for null),
+ *       - references to other Feature Structures as their id (0 for null).
+ *     Java Object features are skipped.
+ *   - Annotation tables are sorted by begin (ascending), end (descending), id;
+ *     other tables by id.
+ *
+ * The buffer can be written to a file, and later memory mapped; only the table directory
+ * is read into Java objects, and strings are decoded only when asked for.
+ *
+ * Queries use {@link #select(String)}, similar to (a small subset of) SelectFSs:
+ * a type (including its subtypes), optionally bounded by coveredBy or covering, and limited.
+ * Results are delivered as (table, row) pairs.
+ *
+ * Instances are thread-safe.
+ */
+public final class CasColumnarSnapshot {
+
+  private static final int MAGIC = 0x55434331;  // "UCC1"
+  private static final int VERSION = 1;
+
+  /**
+   * The kinds of columns
+   */
+  public enum ColumnKind {
+    /** boolean (0 / 1), byte, short and int values */
+    INT(4),
+    FLOAT(4),
+    LONG(8),
+    DOUBLE(8),
+    /** string dictionary codes, -1 for null */
+    STRING(4),
+    /** ids of the referenced Feature Structures, 0 for null */
+    REF(4);
+
+    final int width;
+
+    ColumnKind(int width) {
+      this.width = width;
+    }
+  }
+
+  /**
+   * Receives query results
+   */
+  @FunctionalInterface
+  public interface RowConsumer {
+    /**
+     * @param table the table of the type of the Feature Structure
+     * @param row the row in the table
+     */
+    void accept(Table table, int row);
+  }
+
+  private final ByteBuffer buffer;
+
+  /** positions of the UTF-8 bytes of the strings, each preceded by the int length */
+  private final int[] stringPositions;
+
+  /** decoded strings, filled lazily */
+  private final String[] strings;
+
+  private final int documentTextCode;
+
+  private final List<Table> tables;
+
+  private final Map<String, Table> tablesByTypeName;
+
+  /**
+   * A table holds the indexed Feature Structures of one type (not including subtypes)
+   */
+  public final class Table {
+    private final int index;
+    private final String typeName;
+    /** type names of this type and all its supertypes */
+    private final List<String> typeAndSuperTypeNames;
+    private final int size;
+    private final boolean isAnnotation;
+    private final int idPosition;
+    private final Map<String, Column> columns;
+    private final Column beginColumn;
+    private final Column endColumn;
+
+    private Table(int index, String typeName, List<String> typeAndSuperTypeNames, int size, boolean isAnnotation,
+        int idPosition, Map<String, Column> columns) {
+      this.index = index;
+      this.typeName = typeName;
+      this.typeAndSuperTypeNames = typeAndSuperTypeNames;
+      this.size = size;
+      this.isAnnotation = isAnnotation;
+      this.idPosition = idPosition;
+      this.columns = columns;
+      this.beginColumn = isAnnotation ? columns.get(CAS.FEATURE_BASE_NAME_BEGIN) : null;
+      this.endColumn = isAnnotation ? columns.get(CAS.FEATURE_BASE_NAME_END) : null;
+    }
+
+    /**
+     * @return the fully qualified name of the type of this table
+     */
+    public String getTypeName() {
+      return typeName;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * @return true if the type is uima.tcas.Annotation or a subtype of it
+     */
+    public boolean isAnnotation() {
+      return isAnnotation;
+    }
+
+    /**
+     * @return the short names of the features having columns
+     */
+    public List<String> getFeatureNames() {
+      return new ArrayList<>(columns.keySet());
+    }
+
+    /**
+     * @param featureShortName the short name of a feature
+     * @return the column for the feature, or null if there is none
+     */
+    public Column getColumn(String featureShortName) {
+      return columns.get(featureShortName);
+    }
+
+    /**
+     * @param row the row
+     * @return the id of the Feature Structure in the CAS the snapshot was created from
+     */
+    public int getId(int row) {
+      return buffer.getInt(idPosition + (row << 2));
+    }
+
+    /**
+     * @param row the row of an annotation table
+     * @return the begin value
+     */
+    public int getBegin(int row) {
+      return beginColumn.getInt(row);
+    }
+
+    /**
+     * @param row the row of an annotation table
+     * @return the end value
+     */
+    public int getEnd(int row) {
+      return endColumn.getInt(row);
+    }
+
+    /**
+     * @param row the row of an annotation table
+     * @return the document text between begin and end, or null if there is no document text
+     */
+    public String getCoveredText(int row) {
+      String text = getDocumentText();
+      return (text == null) ? null : text.substring(getBegin(row), getEnd(row));
+    }
+
+    /**
+     * @return the first row whose begin is &gt;= begin, or size if none
+     */
+    private int firstBeginAtOrAfter(int begin) {
+      int lo = 0;
+      int hi = size;
+      while (lo < hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (getBegin(mid) < begin) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    /**
+     * @return the first row whose begin is &gt; begin, or size if none
+     */
+    private int firstBeginGreaterThan(int begin) {
+      int lo = 0;
+      int hi = size;
+      while (lo < hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (getBegin(mid) <= begin) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    @Override
+    public String toString() {
+      return "Table[" + typeName + ", " + size + " rows]";
+    }
+  }
+
+  /**
+   * The values of one feature, for all the rows of a table
+   */
+  public final class Column {
+    private final String name;
+    private final ColumnKind kind;
+    private final int position;
+
+    private Column(String name, ColumnKind kind, int position) {
+      this.name = name;
+      this.kind = kind;
+      this.position = position;
+    }
+
+    /**
+     * @return the short name of the feature
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the kind of column
+     */
+    public ColumnKind getKind() {
+      return kind;
+    }
+
+    /**
+     * @param row the row
+     * @return the value of an INT column
+     */
+    public int getInt(int row) {
+      return buffer.getInt(position + (row << 2));
+    }
+
+    /**
+     * @param row the row
+     * @return the value of a FLOAT column
+     */
+    public float getFloat(int row) {
+      return CASImpl.int2float(buffer.getInt(position + (row << 2)));
+    }
+
+    /**
+     * @param row the row
+     * @return the value of a LONG column
+     */
+    public long getLong(int row) {
+      return buffer.getLong(position + (row << 3));
+    }
+
+    /**
+     * @param row the row
+     * @return the value of a DOUBLE column
+     */
+    public double getDouble(int row) {
+      return CASImpl.long2double(buffer.getLong(position + (row << 3)));
+    }
+
+    /**
+     * @param row the row
+     * @return the dictionary code of the value of a STRING column, -1 for null; equal codes are equal strings
+     */
+    public int getStringCode(int row) {
+      return buffer.getInt(position + (row << 2));
+    }
+
+    /**
+     * @param row the row
+     * @return the value of a STRING column
+     */
+    public String getString(int row) {
+      return CasColumnarSnapshot.this.getString(getStringCode(row));
+    }
+
+    /**
+     * @param row the row
+     * @return the id of the referenced Feature Structure in a REF column, 0 for null
+     */
+    public int getRefId(int row) {
+      return buffer.getInt(position + (row << 2));
+    }
+  }
+
+  /**
+   * A query over the snapshot
+   */
+  public final class Select {
+    private final String typeName;
+    private boolean isCoveredBy = false;
+    private boolean isCovering = false;
+    private int boundBegin;
+    private int boundEnd;
+    private int limit = -1;
+
+    private Select(String typeName) {
+      this.typeName = typeName;
+    }
+
+    /**
+     * Select annotations with begin &gt;= begin and end &lt;= end
+     * @param begin -
+     * @param end -
+     * @return this, for chaining
+     */
+    public Select coveredBy(int begin, int end) {
+      isCoveredBy = true;
+      isCovering = false;
+      boundBegin = begin;
+      boundEnd = end;
+      return this;
+    }
+
+    /**
+     * Select annotations with begin &lt;= begin and end &gt;= end
+     * @param begin -
+     * @param end -
+     * @return this, for chaining
+     */
+    public Select covering(int begin, int end) {
+      isCovering = true;
+      isCoveredBy = false;
+      boundBegin = begin;
+      boundEnd = end;
+      return this;
+    }
+
+    /**
+     * @param n the maximum number of results
+     * @return this, for chaining
+     */
+    public Select limit(int n) {
+      limit = n;
+      return this;
+    }
+
+    /**
+     * @return the number of results
+     */
+    public int count() {
+      int[] count = new int[1];
+      forEach((table, row) -> count[0]++);
+      return count[0];
+    }
+
+    /**
+     * Delivers the results in order: if all the tables are annotation tables, by begin, end (descending), id;
+     * otherwise by id.
+     * @param action called for each result
+     */
+    public void forEach(RowConsumer action) {
+      final boolean isBounded = isCoveredBy || isCovering;
+      final List<Table> selected = new ArrayList<>();
+      boolean isAllAnnotations = true;
+      for (Table table : tables) {
+        if (table.typeAndSuperTypeNames.contains(typeName) && (table.isAnnotation || !isBounded)) {
+          selected.add(table);
+          isAllAnnotations &= table.isAnnotation;
+        }
+      }
+      if (selected.isEmpty()) {
+        return;
+      }
+
+      if (selected.size() == 1) {
+        Table table = selected.get(0);
+        final int lim = (limit < 0) ? Integer.MAX_VALUE : limit;
+        int n = 0;
+        for (int row = firstCandidate(table), end = lastCandidate(table); row < end && n < lim; row++) {
+          if (isMatch(table, row)) {
+            action.accept(table, row);
+            n++;
+          }
+        }
+        return;
+      }
+
+      // multiple tables: collect (table index in the high 32 bits, row in the low ones), one run per table
+      long[] results = new long[16];
+      int size = 0;
+      final int[] runEnds = new int[selected.size()];
+      for (int t = 0; t < runEnds.length; t++) {
+        Table table = selected.get(t);
+        for (int row = firstCandidate(table), end = lastCandidate(table); row < end; row++) {
+          if (isMatch(table, row)) {
+            if (size == results.length) {
+              results = Arrays.copyOf(results, size << 1);
+            }
+            results[size++] = (((long)table.index) << 32) | row;
+          }
+        }
+        runEnds[t] = size;
+      }
+      final int lim = (limit < 0) ? size : Math.min(limit, size);
+
+      if (isAllAnnotations) {
+        // the rows of each table are already in annotation order: merge the runs
+        final int[] heads = new int[runEnds.length];
+        for (int t = 1; t < heads.length; t++) {
+          heads[t] = runEnds[t - 1];
+        }
+        for (int n = 0; n < lim; n++) {
+          int next = -1;
+          for (int t = 0; t < heads.length; t++) {
+            if (heads[t] < runEnds[t] && (next < 0 || compareAnnotations(results[heads[t]], results[heads[next]]) < 0)) {
+              next = t;
+            }
+          }
+          long r = results[heads[next]++];
+          action.accept(tableOf(r), rowOf(r));
+        }
+        return;
+      }
+
+      // ids are not negative: sort the ids, each with the position of its result in the low 32 bits
+      final long[] byId = new long[size];
+      for (int i = 0; i < size; i++) {
+        byId[i] = (((long)tableOf(results[i]).getId(rowOf(results[i]))) << 32) | i;
+      }
+      Arrays.sort(byId);
+      for (int i = 0; i < lim; i++) {
+        long r = results[(int) byId[i]];
+        action.accept(tableOf(r), rowOf(r));
+      }
+    }
+
+    /**
+     * Annotation order: by begin, end (descending), id
+     */
+    private int compareAnnotations(long r1, long r2) {
+      final Table t1 = tableOf(r1), t2 = tableOf(r2);
+      final int row1 = rowOf(r1), row2 = rowOf(r2);
+      int c = Integer.compare(t1.getBegin(row1), t2.getBegin(row2));
+      if (c != 0) return c;
+      c = Integer.compare(t2.getEnd(row2), t1.getEnd(row1));
+      return (c != 0) ? c : Integer.compare(t1.getId(row1), t2.getId(row2));
+    }
+
+    private Table tableOf(long r) {
+      return tables.get((int)(r >>> 32));
+    }
+
+    private int rowOf(long r) {
+      return (int) r;
+    }
+
+    private int firstCandidate(Table table) {
+      return isCoveredBy ? table.firstBeginAtOrAfter(boundBegin) : 0;
+    }
+
+    /**
+     * @return the end (exclusive) of the candidate rows; 
+     *   for coveredBy or covering, the rows beyond this have begin greater than the bound's end or begin
+     */
+    private int lastCandidate(Table table) {
+      return isCoveredBy ? table.firstBeginGreaterThan(boundEnd)
+           : isCovering  ? table.firstBeginGreaterThan(boundBegin)
+                         : table.size;
+    }
+
+    private boolean isMatch(Table table, int row) {
+      if (isCoveredBy) {
+        return table.getEnd(row) <= boundEnd;
+      }
+      if (isCovering) {
+        return table.getEnd(row) >= boundEnd;
+      }
+      return true;
+    }
+  }
+
+  /*****************************************************
+   *  Creating, writing, reading
+   *****************************************************/
+
+  /**
+   * Creates a snapshot of the indexed Feature Structures of a CAS view, in a direct ByteBuffer
+   * @param view the CAS view
+   * @return the snapshot
+   */
+  public static CasColumnarSnapshot create(CAS view) {
+    return wrap(new Builder((CASImpl) view.getLowLevelCAS()).build());
+  }
+
+  /**
+   * @param buffer a buffer holding a snapshot, for example from {@link #getBuffer()};
+   *          the snapshot starts at position 0
+   * @return the snapshot
+   */
+  public static CasColumnarSnapshot wrap(ByteBuffer buffer) {
+    return new CasColumnarSnapshot(buffer);
+  }
+
+  /**
+   * Memory maps a snapshot previously written to a file
+   * @param file the file
+   * @return the snapshot
+   * @throws IOException if the file could not be mapped
+   */
+  public static CasColumnarSnapshot map(Path file) throws IOException {
+    try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+      return wrap(fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()));
+    }
+  }
+
+  /**
+   * @param file the file to write this snapshot to
+   * @throws IOException if the write failed
+   */
+  public void write(Path file) throws IOException {
+    try (FileChannel fc = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                 StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeTo(fc);
+    }
+  }
+
+  /**
+   * @param channel the channel to write this snapshot to
+   * @throws IOException if the write failed
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    ByteBuffer b = getBuffer();
+    while (b.hasRemaining()) {
+      channel.write(b);
+    }
+  }
+
+  private CasColumnarSnapshot(ByteBuffer aBuffer) {
+    buffer = aBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    buffer.position(0);
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      /** Unrecognized serialized CAS format */
+      throw new CASRuntimeException(CASRuntimeException.UNRECOGNIZED_SERIALIZED_CAS_FORMAT);
+    }
+
+    final int nbrStrings = buffer.getInt();
+    stringPositions = new int[nbrStrings];
+    strings = new String[nbrStrings];
+    for (int i = 0; i < nbrStrings; i++) {
+      final int length = buffer.getInt();
+      stringPositions[i] = buffer.position();
+      buffer.position(buffer.position() + length);
+    }
+
+    documentTextCode = buffer.getInt();
+
+    final int nbrTables = buffer.getInt();
+    List<Table> tableList = new ArrayList<>(nbrTables);
+    Map<String, Table> byName = new HashMap<>();
+    for (int t = 0; t < nbrTables; t++) {
+      final String typeName = getString(buffer.getInt());
+      final int nbrSupertypes = buffer.getInt();
+      List<String> typeNames = new ArrayList<>(nbrSupertypes + 1);
+      typeNames.add(typeName);
+      for (int i = 0; i < nbrSupertypes; i++) {
+        typeNames.add(getString(buffer.getInt()));
+      }
+      final int size = buffer.getInt();
+      final boolean isAnnotation = buffer.getInt() != 0;
+      final int idPosition = buffer.getInt();
+      final int nbrColumns = buffer.getInt();
+      Map<String, Column> columns = new LinkedHashMap<>();
+      for (int c = 0; c < nbrColumns; c++) {
+        final String name = getString(buffer.getInt());
+        final ColumnKind kind = ColumnKind.values()[buffer.getInt()];
+        columns.put(name, new Column(name, kind, buffer.getInt()));
+      }
+      Table table = new Table(t, typeName, typeNames, size, isAnnotation, idPosition, columns);
+      tableList.add(table);
+      byName.put(typeName, table);
+    }
+    tables = Collections.unmodifiableList(tableList);
+    tablesByTypeName = byName;
+  }
+
+  /**
+   * @return a read-only view of the whole snapshot buffer
+   */
+  public ByteBuffer getBuffer() {
+    ByteBuffer b = buffer.asReadOnlyBuffer();
+    b.position(0);
+    b.limit(buffer.limit());
+    return b;
+  }
+
+  /**
+   * @return the tables, one per type having indexed Feature Structures
+   */
+  public List<Table> getTables() {
+    return tables;
+  }
+
+  /**
+   * @param typeName the fully qualified name of a type
+   * @return the table for exactly this type, or null if there were no indexed instances
+   */
+  public Table getTable(String typeName) {
+    return tablesByTypeName.get(typeName);
+  }
+
+  /**
+   * @param typeName the fully qualified name of a type
+   * @return a query over the rows of this type and its subtypes
+   */
+  public Select select(String typeName) {
+    return new Select(typeName);
+  }
+
+  /**
+   * @return the document text of the view, or null
+   */
+  public String getDocumentText() {
+    return getString(documentTextCode);
+  }
+
+  /**
+   * @param code a string dictionary code
+   * @return the string, or null if the code is -1
+   */
+  public String getString(int code) {
+    if (code < 0) {
+      return null;
+    }
+    String s = strings[code];
+    if (s == null) {
+      final int pos = stringPositions[code];
+      final int length = buffer.getInt(pos - 4);
+      byte[] bytes = new byte[length];
+      ByteBuffer b = buffer.duplicate();
+      b.position(pos);
+      b.get(bytes);
+      strings[code] = s = new String(bytes, StandardCharsets.UTF_8);  // benign race
+    }
+    return s;
+  }
+
+  /**
+   * Collects the indexed FSs by type, and writes the snapshot
+   */
+  private static class Builder {
+
+    private final CASImpl cas;
+
+    private final Map<String, Integer> stringCodes = new HashMap<>();
+    private final List<byte[]> stringBytes = new ArrayList<>();
+
+    Builder(CASImpl cas) {
+      this.cas = cas;
+    }
+
+    private int code(String s) {
+      if (s == null) {
+        return -1;
+      }
+      Integer code = stringCodes.get(s);
+      if (code == null) {
+        code = stringBytes.size();
+        stringCodes.put(s, code);
+        stringBytes.add(s.getBytes(StandardCharsets.UTF_8));
+      }
+      return code;
+    }
+
+    private static ColumnKind kindOf(FeatureImpl fi) {
+      switch (fi.getSlotKind()) {
+      case Slot_Boolean: case Slot_Byte: case Slot_Short: case Slot_Int: return ColumnKind.INT;
+      case Slot_Float:      return ColumnKind.FLOAT;
+      case Slot_LongRef:    return ColumnKind.LONG;
+      case Slot_DoubleRef:  return ColumnKind.DOUBLE;
+      case Slot_StrRef:     return ColumnKind.STRING;
+      case Slot_HeapRef:    return fi.getRangeImpl().isRefType ? ColumnKind.REF : null;  // skip Java Objects
+      default:              return null;
+      }
+    }
+
+    ByteBuffer build() {
+      // collect by type, ordered by type code
+      final Map<TypeImpl, List<TOP>> fssByType = new TreeMap<>(Comparator.comparingInt(TypeImpl::getCode));
+      cas.indexRepository.walkIndexedFSs(fs -> fssByType.computeIfAbsent(fs._getTypeImpl(), k -> new ArrayList<>()).add(fs));
+
+      final int documentTextCode = code(cas.getDocumentText());
+
+      // sort the rows, drop duplicates, and set up the directory entries, which also fills the string dictionary
+      final List<TypeImpl> types = new ArrayList<>(fssByType.keySet());
+      final List<TOP[]> rowsByType = new ArrayList<>();
+      final List<int[]> directory = new ArrayList<>();  // type name code, supertype name codes
+      final List<FeatureImpl[]> featuresByType = new ArrayList<>();
+      final List<ColumnKind[]> kindsByType = new ArrayList<>();
+      for (TypeImpl type : types) {
+        List<TOP> fss = fssByType.get(type);
+        if (type.isAnnotationType()) {
+          fss.sort((fs1, fs2) -> {
+            Annotation a1 = (Annotation) fs1;
+            Annotation a2 = (Annotation) fs2;
+            int c = Integer.compare(a1.getBegin(), a2.getBegin());
+            if (c != 0) return c;
+            c = Integer.compare(a2.getEnd(), a1.getEnd());
+            return (c != 0) ? c : Integer.compare(fs1._id, fs2._id);
+          });
+        } else {
+          fss.sort((fs1, fs2) -> Integer.compare(fs1._id, fs2._id));
+        }
+        List<TOP> unique = new ArrayList<>(fss.size());
+        for (TOP fs : fss) {
+          if (unique.isEmpty() || unique.get(unique.size() - 1) != fs) {
+            unique.add(fs);
+          }
+        }
+        rowsByType.add(unique.toArray(new TOP[unique.size()]));
+
+        List<Integer> names = new ArrayList<>();
+        names.add(code(type.getName()));
+        for (TypeImpl st = type.getSuperType(); st != null; st = st.getSuperType()) {
+          names.add(code(st.getName()));
+        }
+        directory.add(names.stream().mapToInt(Integer::intValue).toArray());
+
+        List<FeatureImpl> feats = new ArrayList<>();
+        List<ColumnKind> kinds = new ArrayList<>();
+        for (FeatureImpl fi : type.getFeatureImpls()) {
+          ColumnKind kind = kindOf(fi);
+          if (kind != null) {
+            feats.add(fi);
+            kinds.add(kind);
+            code(fi.getShortName());
+          }
+        }
+        featuresByType.add(feats.toArray(new FeatureImpl[feats.size()]));
+        kindsByType.add(kinds.toArray(new ColumnKind[kinds.size()]));
+      }
+
+      // string values
+      for (int t = 0; t < types.size(); t++) {
+        FeatureImpl[] feats = featuresByType.get(t);
+        ColumnKind[] kinds = kindsByType.get(t);
+        for (int f = 0; f < feats.length; f++) {
+          if (kinds[f] == ColumnKind.STRING) {
+            for (TOP fs : rowsByType.get(t)) {
+              code(fs._getStringValueNc(feats[f]));
+            }
+          }
+        }
+      }
+
+      // compute the size of the header, then the positions of the columns
+      int headerSize = 4 * 3;
+      for (byte[] bytes : stringBytes) {
+        headerSize += 4 + bytes.length;
+      }
+      headerSize += 4 * 2;
+      for (int t = 0; t < types.size(); t++) {
+        headerSize += 4 * (1 + directory.get(t).length + 4) + 4 * 3 * featuresByType.get(t).length;
+      }
+      int position = align8(headerSize);
+      final int[] idPositions = new int[types.size()];
+      final List<int[]> columnPositions = new ArrayList<>();
+      for (int t = 0; t < types.size(); t++) {
+        final int nbrRows = rowsByType.get(t).length;
+        idPositions[t] = position;
+        position = align8(position + 4 * nbrRows);
+        ColumnKind[] kinds = kindsByType.get(t);
+        int[] positions = new int[kinds.length];
+        for (int f = 0; f < kinds.length; f++) {
+          positions[f] = position;
+          position = align8(position + kinds[f].width * nbrRows);
+        }
+        columnPositions.add(positions);
+      }
+
+      final ByteBuffer b = ByteBuffer.allocateDirect(position).order(ByteOrder.LITTLE_ENDIAN);
+
+      // header
+      b.putInt(MAGIC).putInt(VERSION).putInt(stringBytes.size());
+      for (byte[] bytes : stringBytes) {
+        b.putInt(bytes.length).put(bytes);
+      }
+      b.putInt(documentTextCode).putInt(types.size());
+      for (int t = 0; t < types.size(); t++) {
+        int[] names = directory.get(t);
+        b.putInt(names[0]).putInt(names.length - 1);
+        for (int i = 1; i < names.length; i++) {
+          b.putInt(names[i]);
+        }
+        b.putInt(rowsByType.get(t).length)
+         .putInt(types.get(t).isAnnotationType() ? 1 : 0)
+         .putInt(idPositions[t])
+         .putInt(featuresByType.get(t).length);
+        FeatureImpl[] feats = featuresByType.get(t);
+        for (int f = 0; f < feats.length; f++) {
+          b.putInt(code(feats[f].getShortName()))
+           .putInt(kindsByType.get(t)[f].ordinal())
+           .putInt(columnPositions.get(t)[f]);
+        }
+      }
+
+      // columns
+      for (int t = 0; t < types.size(); t++) {
+        final TOP[] fss = rowsByType.get(t);
+        for (int r = 0; r < fss.length; r++) {
+          b.putInt(idPositions[t] + (r << 2), fss[r]._id);
+        }
+        FeatureImpl[] feats = featuresByType.get(t);
+        ColumnKind[] kinds = kindsByType.get(t);
+        for (int f = 0; f < feats.length; f++) {
+          final FeatureImpl fi = feats[f];
+          final int pos = columnPositions.get(t)[f];
+          for (int r = 0; r < fss.length; r++) {
+            final TOP fs = fss[r];
+            switch (kinds[f]) {
+            case INT: case FLOAT: b.putInt(pos + (r << 2), fs._getIntValueNc(fi)); break;
+            case LONG:            b.putLong(pos + (r << 3), fs._getLongValueNc(fi)); break;
+            case DOUBLE:          b.putLong(pos + (r << 3), CASImpl.double2long(fs._getDoubleValueNc(fi))); break;
+            case STRING:          b.putInt(pos + (r << 2), code(fs._getStringValueNc(fi))); break;
+            case REF:
+              TOP ref = fs._getFeatureValueNc(fi);
+              b.putInt(pos + (r << 2), (ref == null) ? 0 : ref._id);
+              break;
+            default: throw new RuntimeException("internal error");
+            }
+          }
+        }
+      }
+      b.clear();
+      return b;
+    }
+
+    private static int align8(int position) {
+      return (position + 7) & ~7;
+    }
+  }
+}
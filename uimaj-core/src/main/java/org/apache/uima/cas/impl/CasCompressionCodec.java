@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A codec used to compress the individual slot kind streams of the
+ * compressed binary form 6 serialization (BinaryCasSerDes6), as an alternative
+ * to the built-in Deflate compression.
+ *
+ * The id of the codec is recorded in the serialized header, and is used
+ * on deserialization to find the codec, via {@link CasCompressionCodecs#getCodec(int)}.
+ *
+ * Implementations must be thread safe; a single instance is shared by all serializations.
+ * They are made available by registering them with {@link CasCompressionCodecs#register(CasCompressionCodec)},
+ * or via the java.util.ServiceLoader mechanism.
+ */
+public interface CasCompressionCodec {
+
+  /**
+   * @return the id recorded in the serialized form, 1 - 255.  The id 0 is reserved for the built-in Deflate compression.
+   */
+  int getId();
+
+  /**
+   * @return the name of the codec, used to select it by name
+   */
+  String getName();
+
+  /**
+   * Compress some bytes
+   * @param src the bytes to compress
+   * @param length the number of bytes to compress, starting at 0
+   * @param out where the compressed bytes are written
+   * @return the number of compressed bytes written
+   * @throws IOException passthru
+   */
+  int compress(byte[] src, int length, OutputStream out) throws IOException;
+
+  /**
+   * Decompress some bytes
+   * @param in the input, positioned at the start of the compressed bytes.
+   *           Exactly compressedLength bytes must be read from this.
+   * @param compressedLength the number of compressed bytes
+   * @param uncompressedLength the number of bytes the compressed bytes decompress to
+   * @return an input stream returning the decompressed bytes
+   * @throws IOException if the compressed bytes are malformed, or passthru
+   */
+  InputStream decompress(InputStream in, int compressedLength, int uncompressedLength) throws IOException;
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.util.Level;
+
+/**
+ * The registry of the compression codecs usable with BinaryCasSerDes6, by id and by name.
+ *
+ * The LZ4 style codec (id 1, name "lz4") is always available.
+ * Other codecs are found via the java.util.ServiceLoader mechanism, or may be registered explicitly.
+ */
+public final class CasCompressionCodecs {
+
+  /** the id recorded in the serialized form for the built-in Deflate compression */
+  public static final int DEFLATE_CODEC_ID = 0;
+
+  /** indexed by the codec id */
+  private static final CasCompressionCodec[] codecs = new CasCompressionCodec[256];
+
+  static {
+    register(Lz4CasCompressionCodec.INSTANCE);
+    try {
+      Iterator<CasCompressionCodec> it = ServiceLoader.load(CasCompressionCodec.class).iterator();
+      while (it.hasNext()) {
+        try {
+          register(it.next());
+        } catch (ServiceConfigurationError | IllegalArgumentException e) {
+          UIMAFramework.getLogger(CasCompressionCodecs.class).log(Level.WARNING, "Skipping compression codec", e);
+        }
+      }
+    } catch (ServiceConfigurationError e) {
+      UIMAFramework.getLogger(CasCompressionCodecs.class).log(Level.WARNING, "Skipping compression codecs", e);
+    }
+  }
+
+  private CasCompressionCodecs() {}  // no instances
+
+  /**
+   * Register a codec
+   * @param codec the codec to register
+   * @throws IllegalArgumentException if the id is out of range, or a different codec is already registered with the id or name
+   */
+  public static synchronized void register(CasCompressionCodec codec) {
+    final int id = codec.getId();
+    if (id <= DEFLATE_CODEC_ID || id >= codecs.length) {
+      throw new IllegalArgumentException(String.format("Compression codec id %d for codec %s is not in the range 1 - 255",
+          id, codec.getName()));
+    }
+    final CasCompressionCodec existing = codecs[id];
+    if (existing != null && existing != codec) {
+      throw new IllegalArgumentException(String.format("Compression codec id %d for codec %s is already used by codec %s",
+          id, codec.getName(), existing.getName()));
+    }
+    final CasCompressionCodec sameName = getCodec(codec.getName());
+    if (sameName != null && sameName != codec) {
+      throw new IllegalArgumentException(String.format("Compression codec name %s is already used by the codec with id %d",
+          codec.getName(), sameName.getId()));
+    }
+    codecs[id] = codec;
+  }
+
+  /**
+   * @param id the id of the codec
+   * @return the codec, or null if the id is DEFLATE_CODEC_ID or no codec is registered for the id
+   */
+  public static synchronized CasCompressionCodec getCodec(int id) {
+    return (id <= DEFLATE_CODEC_ID || id >= codecs.length) ? null : codecs[id];
+  }
+
+  /**
+   * @param name the name of the codec
+   * @return the codec, or null if no codec is registered with the name
+   */
+  public static synchronized CasCompressionCodec getCodec(String name) {
+    for (CasCompressionCodec codec : codecs) {
+      if (codec != null && codec.getName().equals(name)) {
+        return codec;
+      }
+    }
+    return null;
+  }
+}
@@ -67,6 +67,8 @@ public class CommonSerDes {
    *         
    *   Second word:
    *     - bit in 0x01 position: on means form6, off = form 4 
+   *     - byte in 0xFF 00 position: for form 6, the compression codec id, 
+   *               0 = the built-in Deflate, see CasCompressionCodecs 
    *********************************************/
   
   public static class Header {
@@ -78,6 +80,7 @@ public class CommonSerDes {
     boolean typeSystemIndexDefIncluded;
     byte seqVersionNbr = 2;  // safety, might be changed to write v2 style 
     boolean isV3;
+    int codecId;  // for form 6, the compression codec, 0 = Deflate
     boolean swap;
     int v;      // for error messages
 
@@ -93,6 +96,7 @@ public class CommonSerDes {
     public Header typeSystemIndexDefIncluded(boolean f) {typeSystemIndexDefIncluded = f; return this; }
     public Header seqVer(int v2) { assert (v2 >= 0 && v2 < 256); seqVersionNbr = (byte)v2; return this; }
     public Header v3() {isV3 = true; return this; }
+    public Header codec(int id) { assert (id >= 0 && id < 256); codecId = id; return this; }
     
     
     public void write(DataOutputStream dos) throws IOException {
@@ -122,7 +126,7 @@ public class CommonSerDes {
       dos.writeInt(v);
       
       if (isCompressed) {
-        dos.writeInt(form6 ? 1 : 0);
+        dos.writeInt(form6 ? (1 | (codecId << 8)) : 0);
       }
       
     }
@@ -152,6 +156,9 @@ public class CommonSerDes {
     public boolean isV3() {
       return isV3;
     }
+    public int getCodecId() {
+      return codecId;
+    }
 
     
   }
@@ -208,7 +215,8 @@ public class CommonSerDes {
     if (h.isCompressed) {
       v = r.readInt();
       h.form4 = v == 0;
-      h.form6 = v == 1;
+      h.form6 = (v & 0xFF) == 1;
+      h.codecId = h.form6 ? ((v >> 8) & 0xFF) : 0;
     } 
     
     return h;
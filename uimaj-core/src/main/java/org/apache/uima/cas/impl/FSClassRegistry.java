@@ -34,11 +34,11 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.UIMARuntimeException;
@@ -154,7 +154,7 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
   /**
    * Map from class loaders used to load JCas Classes, both PEAR and non-Pear cases, to JCasClassInfo for that loaded JCas class instance.
    *   key is the class loader
-   *   value is a plain HashMapmap from string form of typenames to JCasClassInfo corresponding to the JCas class covering that type
+   *   value is a concurrent map from string form of typenames to JCasClassInfo corresponding to the JCas class covering that type
    *     (which may be a supertype of the type name).
    *     
    *     Key is JCas fully qualified name (not UIMA type name).
@@ -165,11 +165,49 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
    *         
    * Cache of FsGenerator[]s kept in TypeSystemImpl instance, since it depends on type codes.
    * Current FsGenerator[] kept in CASImpl shared view data, switched as needed for PEARs. 
+   * 
+   * Concurrent, because the JCas classes for different class loaders and type systems are loaded in parallel.
+   *   (class loaders have identity equality)
    */
-  private static final Map<ClassLoader, Map<String, JCasClassInfo>> cl_to_type2JCas = Collections.synchronizedMap(new IdentityHashMap<>());  // identity: key is classloader
+  private static final Map<ClassLoader, Map<String, JCasClassInfo>> cl_to_type2JCas = new ConcurrentHashMap<>();
+  
+  /**
+   * The loads of JCas classes in progress, one per pair of type system and class loader, 
+   *   for other threads needing the same pair to wait for its completion.
+   * Removed when done; the results are kept in the type system, per class loader.
+   */
+  private static final Map<TypeSystemAndClassLoader, CompletableFuture<Void>> jcasLoadsInProgress = new ConcurrentHashMap<>();
+  
+  /** serializes the global synchronization of the call sites updated by the loads */
+  private static final Object syncCallSitesLock = new Object();
   
 //  private static final Map<ClassLoader, Map<String, JCasClassInfo>> cl_4pears_to_type2JCas = Collections.synchronizedMap(new IdentityHashMap<>()); // identity: key is classloader
 
+  /**
+   * Key of a load in progress: identity of both the type system and the class loader
+   *   (equal type systems might not be consolidated)
+   */
+  private static class TypeSystemAndClassLoader {
+    final TypeSystemImpl tsi;
+    final ClassLoader cl;
+    TypeSystemAndClassLoader(TypeSystemImpl tsi, ClassLoader cl) {
+      this.tsi = tsi;
+      this.cl = cl;
+    }
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(tsi) + System.identityHashCode(cl);
+    }
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof TypeSystemAndClassLoader)) {
+        return false;
+      }
+      TypeSystemAndClassLoader other = (TypeSystemAndClassLoader) obj;
+      return tsi == other.tsi && cl == other.cl;
+    }
+  }
+
   static private class ErrorReport {
     final Exception e;
     final boolean doThrow;
@@ -286,10 +324,9 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
     // Class loader used for builtins is the UIMA framework's class loader
     ArrayList<MutableCallSite> callSites_toSync = new ArrayList<>();
     ClassLoader cl = tsi.getClass().getClassLoader();
-    loadBuiltins(tsi.topType, cl, cl_to_type2JCas.computeIfAbsent(cl, x -> new HashMap<>()), callSites_toSync);
+    loadBuiltins(tsi.topType, cl, get_className_to_jcci(cl, false), callSites_toSync);
     
-    MutableCallSite[] sync = callSites_toSync.toArray(new MutableCallSite[callSites_toSync.size()]);
-    MutableCallSite.syncAll(sync);
+    syncAll(callSites_toSync);
 
     reportErrors();
   }
@@ -317,15 +354,61 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
     }
   }
     
+  /**
+   * Load JCas types for some combination of class loader and type system, 
+   * unless another thread is already doing it, in which case wait for it to be done.
+   * 
+   * Different combinations are loaded in parallel; see loadJCasForTSandClassLoader for what's shared between them.
+   * @param ts the type system
+   * @param cl the class loader. For Pears, is the pear class loader
+   * @param type2jcci the map of JCas classes for the class loader
+   */
+  private static void loadJCasForTSandClassLoaderOnce(TypeSystemImpl ts, ClassLoader cl, Map<String, JCasClassInfo> type2jcci) {
+    TypeSystemAndClassLoader key = new TypeSystemAndClassLoader(ts, cl);
+    CompletableFuture<Void> load = new CompletableFuture<>();
+    CompletableFuture<Void> inProgress = jcasLoadsInProgress.putIfAbsent(key, load);
+    if (inProgress != null) {
+      try {
+        inProgress.join();
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause();  // the failure of the other thread
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw e;
+      }
+      return;
+    }
+    
+    try {
+      loadJCasForTSandClassLoader(ts, true, cl, type2jcci);
+      load.complete(null);
+    } catch (RuntimeException | Error e) {
+      load.completeExceptionally(e);
+      throw e;
+    } finally {
+      jcasLoadsInProgress.remove(key);
+    }
+  }
+  
   /**
    * Load JCas types for some combination of class loader and type system
    * Some of these classes may have already been loaded for this type system
    * Some of these classes may have already been loaded (perhaps for another type system)
+   * 
+   * Not synchronized: may run in parallel for other combinations.  Shared with them are 
+   *   - the concurrent map of JCas classes of the class loader: the first JCasClassInfo put for a class is kept,
+   *   - the call sites of the JCas classes (also shared with the other class loaders loading the same classes 
+   *     through a common parent): each one is set, or validated, atomically, 
+   *   - the global synchronization of the updated call sites, which is serialized.
    * @param ts the type system
    * @param isDoUserJCasLoading always true, left in for experimentation in the future with dynamic generation of JCas classes
    * @param cl the class loader. For Pears, is the pear class loader
    */
-  private static synchronized void loadJCasForTSandClassLoader(
+  private static void loadJCasForTSandClassLoader(
       TypeSystemImpl ts, 
       boolean isDoUserJCasLoading, 
       ClassLoader cl, 
@@ -371,6 +454,8 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
     /* ========================================================= */
 
     
+    JCasMetadataCache cache = JCasMetadataCache.get(cl);
+    
     if (isDoUserJCasLoading) {
       /**
        * Two passes are needed loading is needed.  
@@ -389,15 +474,52 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
       Lookup lookup = getLookup(cl);
 
       ArrayList<MutableCallSite> callSites_toSync = new ArrayList<>();
-      maybeLoadJCasAndSubtypes(ts, ts.topType, type2jcci.get(TOP.class.getCanonicalName()), cl, type2jcci, callSites_toSync, lookup);
+      Class<?>[] javaClasses = new Class<?>[ts.getTypeArraySize()];
+      maybeLoadJCasAndSubtypes(ts, ts.topType, type2jcci.get(TOP.class.getCanonicalName()), cl, type2jcci, callSites_toSync, javaClasses, lookup);
       
-      MutableCallSite[] sync = callSites_toSync.toArray(new MutableCallSite[callSites_toSync.size()]);
-      MutableCallSite.syncAll(sync);
+      syncAll(callSites_toSync);
+      setJavaClasses(ts, javaClasses);
 
-      checkConformance(ts, ts.topType, type2jcci);
+      // the conformance check can be skipped if it was passed before, by the same JCas classes:
+      //   the offsets, which also depend on what was loaded before in this JVM, were validated
+      //   above while updating the call sites
+      String tsHash = (cache == null || !ts.isCommitted()) ? null : JCasMetadataCache.typeSystemHash(ts);
+      if (tsHash == null || !cache.isConforming(tsHash)) {
+        checkConformance(ts, ts.topType, type2jcci);
+        if (tsHash != null && isNoErrors()) {
+          cache.addConforming(tsHash);
+        }
+      }
     }
         
     reportErrors();
+    
+    if (cache != null) {
+      cache.save();
+    }
+  }
+
+  private static void syncAll(ArrayList<MutableCallSite> callSites_toSync) {
+    MutableCallSite[] sync = callSites_toSync.toArray(new MutableCallSite[callSites_toSync.size()]);
+    synchronized (syncCallSitesLock) {
+      MutableCallSite.syncAll(sync);
+    }
+  }
+
+  /**
+   * Set the java classes of the types of a type system, all together, so that they are the classes of
+   * one class loader: the last one for which the JCas classes of this type system were loaded.
+   * @param tsi the type system
+   * @param javaClasses the JCas classes, by type code; null for primitives
+   */
+  private static void setJavaClasses(TypeSystemImpl tsi, Class<?>[] javaClasses) {
+    synchronized (tsi.javaClassesLock) {
+      for (int typecode = 1; typecode < javaClasses.length; typecode++) {
+        if (javaClasses[typecode] != null) {
+          tsi.getTypeForCode(typecode).setJavaClass(javaClasses[typecode]);
+        }
+      }
+    }
   }
 
   private static void setTypeFromJCasIDforBuiltIns(JCasClassInfo jcci, TypeSystemImpl tsi, int typeCode) {
@@ -424,6 +546,7 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
    * @param copyDownDefault_jcasClassInfo
    * @param cl the loader used to load, and to save the results under the key of the class loader the results
    * @param type2JCas map holding the results of loading JCas classes
+   * @param javaClasses the java classes to set into the types, by type code, once all are loaded 
    */
   private static void maybeLoadJCasAndSubtypes(
       TypeSystemImpl tsi, 
@@ -432,6 +555,7 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
       ClassLoader cl,
       Map<String, JCasClassInfo> type2jcci,
       ArrayList<MutableCallSite> callSites_toSync,
+      Class<?>[] javaClasses,
       Lookup lookup) {
     
     JCasClassInfo jcci = getOrCreateJCasClassInfo(ti, cl, type2jcci, lookup);
@@ -515,17 +639,19 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
     
     if (!ti.isPrimitive()) {  // bypass this for primitives because the jcasClassInfo is the "inherited one" of TOP
       /**
-       * Note: this value sets into the shared TypeImpl (maybe shared among many JCas impls) the "latest" jcasClass
-       * It is "read" by the conformance testing, while still under the type system lock.
-       * Other uses of this may get an arbitrary (the latest) version of the class
+       * Note: this value is set later into the shared TypeImpl (maybe shared among many JCas impls), 
+       * together with the ones of the other types, under the type system's javaClassesLock: 
+       * all the types of a type system get the jcasClasses of the "latest" class loader.
+       * Uses of this may get an arbitrary (the latest) version of the class; the conformance testing
+       * uses the jcasClasses of its own class loader instead.
        * Currently the only other use is in backwards compatibility with low level type system "switching" an existing type.
        */
-      ti.setJavaClass(jcci_or_copyDown.jcasClass);
+      javaClasses[ti.getCode()] = jcci_or_copyDown.jcasClass;
     }
     
     
     for (TypeImpl subtype : ti.getDirectSubtypes()) {
-      maybeLoadJCasAndSubtypes(tsi, subtype, jcci_or_copyDown, cl, type2jcci, callSites_toSync, lookup);
+      maybeLoadJCasAndSubtypes(tsi, subtype, jcci_or_copyDown, cl, type2jcci, callSites_toSync, javaClasses, lookup);
     }
   }
   
@@ -566,7 +692,11 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
     JCasClassInfo jcci = createJCasClassInfo(ti, cl, lookup); // does update of callsites if was able find JCas class
     
     if (null != jcci) {    
-      type2jcci.put(ti.getJCasClassName(), jcci);
+      // another thread, loading for another type system, may have put one first: use that one
+      JCasClassInfo prev = type2jcci.putIfAbsent(ti.getJCasClassName(), jcci);
+      if (prev != null) {
+        jcci = prev;
+      }
       // non-creatable JCas types (e.g. FSList) do not have a valid jcasType    
     }
     return jcci;    
@@ -576,9 +706,17 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
       TypeImpl ti, 
       ClassLoader cl, 
       Lookup lookup) {
+    JCasMetadataCache cache = JCasMetadataCache.get(cl);
+    if (cache != null && cache.isMissing(ti.getJCasClassName())) {
+      return null;  // found to be missing in a previous run, with the same classpath
+    }
+    
     Class<? extends TOP> clazz = maybeLoadJCas(ti, cl);
     
     if (null == clazz || ! TOP.class.isAssignableFrom(clazz)) {
+      if (cache != null) {
+        cache.addMissing(ti.getJCasClassName());
+      }
       return null;
     }
     
@@ -1195,10 +1333,10 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
       
       // have the feature, check the range
       Class<?> returnClass = m.getReturnType(); // for primitive, is int.class, etc.
-      Class<?> rangeClass = range.getJavaClass();
+      Class<?> rangeClass = getJavaClass(range, type2jcci);
       if (range.isArray()) {
         if (p.length == 1 && p[0].getType() == int.class) {
-          rangeClass = range.getComponentType().getJavaClass();
+          rangeClass = getJavaClass(range.getComponentType(), type2jcci);
         }
       }
       if (!rangeClass.isAssignableFrom(returnClass)) {   // can return subclass of TOP, OK if range is TOP
@@ -1255,6 +1393,27 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
     }
   }
   
+  /**
+   * The Java class of a type for a class loader.
+   *   Not using the type's javaClass, which is the one of the latest class loader loading JCas classes for the type system, 
+   *   maybe in parallel.
+   * @param ti the type
+   * @param type2jcci the JCas classes of the class loader
+   * @return the JCas class for the type or its closest super type having one, or for primitives, the Java primitive class
+   */
+  private static Class<?> getJavaClass(TypeImpl ti, Map<String, JCasClassInfo> type2jcci) {
+    if (ti.isPrimitive()) {
+      return ti.getJavaClass();
+    }
+    for (TypeImpl t = ti; t != null; t = t.getSuperType()) {
+      JCasClassInfo jcci = type2jcci.get(t.getJCasClassName());
+      if (jcci != null) {
+        return jcci.jcasClass;
+      }
+    }
+    return ti.getJavaClass();
+  }
+  
   private static void add2errors(ThreadLocal<List<ErrorReport>> errors, Exception e) {
     add2errors(errors, e, true);
   }
@@ -1268,6 +1427,11 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
     es.add(new ErrorReport(e, doThrow));
   }
   
+  private static boolean isNoErrors() {
+    List<ErrorReport> es = errorSet.get();
+    return es == null || es.isEmpty();
+  }
+  
   private static void reportErrors() {
     boolean throwWhenDone = false;
     List<ErrorReport> es = errorSet.get();
@@ -1317,7 +1481,7 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
       // This is the first time this class loader is being used - load the classes for this type system, or
       // This is the first time this class loader is being used with this particular type system
 
-    loadJCasForTSandClassLoader(tsi, true, cl, type2jcci);
+    loadJCasForTSandClassLoaderOnce(tsi, cl, type2jcci);
 
     FsGenerator3[] r = new FsGenerator3[tsi.getTypeArraySize()];
                           
@@ -1434,13 +1598,19 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
             continue;  // will be set later when type system is committed.
           }
           
-          int prev = (int) c.getTarget().invokeExact();
-          if (prev == -1) { // the static method in JCas classes, TypeSystemImpl.createCallSite,
-                            // initializes the call site with a method handle that returns -1
-            MethodHandle mh_constant = getConstantIntMethodHandle(index);
-            c.setTarget(mh_constant);
+          int prev;
+          synchronized (c) {  // may be set in parallel by the loads for other type systems or class loaders
+            prev = (int) c.getTarget().invokeExact();
+            if (prev == -1) { // the static method in JCas classes, TypeSystemImpl.createCallSite,
+                              // initializes the call site with a method handle that returns -1
+              MethodHandle mh_constant = getConstantIntMethodHandle(index);
+              c.setTarget(mh_constant);
+            }
+          }
+          if (prev == -1 || prev == index) {
+            // the same value may have just been set by a load in parallel, which may not have synchronized it yet 
             callSites_toSync.add(c);
-          } else if (prev != index) {
+          } else {
             // This is one of two errors.  
             // It could also be caused by the range type switching from ref array to the int array
             checkConformance(clazz.getClassLoader(), type.getTypeSystem());
@@ -1462,7 +1632,7 @@ public abstract class FSClassRegistry { // abstract to prevent instantiating; th
   
   static Map<String, JCasClassInfo> get_className_to_jcci(ClassLoader cl, boolean is_pear) {
     final Map<ClassLoader, Map<String, JCasClassInfo>> cl2t2j = cl_to_type2JCas;   /*is_pear ? cl_4pears_to_type2JCas :*/
-    return cl2t2j.computeIfAbsent(cl, x -> new HashMap<>());
+    return cl2t2j.computeIfAbsent(cl, x -> new ConcurrentHashMap<>());
   }
   
   static Lookup getLookup(ClassLoader cl) {
@@ -384,6 +384,11 @@ public class FSIndexRepositoryImpl implements FSIndexRepositoryMgr, LowLevelInde
 
   private ProcessedIndexInfo mPii;
   
+  /**
+   * non-null only within addFSs: the set and sorted indexes having FSs recorded to be added
+   */
+  private List<FsIndex_set_sorted<?>> bulkLoadingIndexes = null;
+  
   /** ----------------------- Support for flattened indexes -----------------*/
 
   // this approach doesn't work, because an iterator over a subtype could do an invalid->valid transition
@@ -1218,6 +1223,30 @@ public class FSIndexRepositoryImpl implements FSIndexRepositoryMgr, LowLevelInde
   public <T extends FeatureStructure> void addFS(T fs) {
     addFS_common((TOP)fs, false);
   }
+  
+  /**
+   * Adds FSs to the indexes, with the same result as calling addFS for each one, in order.
+   * 
+   * Used by deserializers, which add many FSs at once. Instead of inserting each FS in turn, 
+   * each set and sorted index collects its new FSs, and then adds them with one sort and merge. 
+   * The sort is adaptive: linear time if the FSs are already in index order, and fast if they are nearly so,
+   * which is usual for serialized CASs.
+   * 
+   * @param fss the FSs to add to the indexes
+   */
+  public void addFSs(Collection<? extends TOP> fss) {
+    final List<FsIndex_set_sorted<?>> loadingIndexes = bulkLoadingIndexes = new ArrayList<>();
+    try {
+      for (TOP fs : fss) {
+        addFS_common(fs, false);
+      }
+    } finally {
+      bulkLoadingIndexes = null;
+      for (FsIndex_set_sorted<?> index : loadingIndexes) {
+        index.finishBulkLoad();
+      }
+    }
+  }
 
 //  private void incrementIllegalIndexUpdateDetector(int typeCode) {
 //    this.detectIllegalIndexUpdates[typeCode] ++;
@@ -1330,7 +1359,11 @@ public class FSIndexRepositoryImpl implements FSIndexRepositoryMgr, LowLevelInde
           continue;  // skip adding back to bags - because removes are skipped for bags
         }
       }
-      iicp.fsIndex_singletype.insert(fs);
+      if (bulkLoadingIndexes != null && iicp.fsIndex_singletype.isSetOrSorted()) {
+        ((FsIndex_set_sorted<TOP>)iicp.fsIndex_singletype).insertDeferred(fs, bulkLoadingIndexes);
+      } else {
+        iicp.fsIndex_singletype.insert(fs);
+      }
       
       // remember if we get any index other than set by turning this false;
       if (noIndexOrOnlySetindexes) {
@@ -1452,6 +1485,28 @@ public class FSIndexRepositoryImpl implements FSIndexRepositoryMgr, LowLevelInde
     return wasRemoved;    
   }
    
+  /**
+   * Bulk index update version of removeFS_ret(fs, SKIP_BAG_INDEXES) followed by addback(fs):
+   * the fs is left in its set and sorted indexes, which are reordered later.
+   * @param fs the fs whose key is about to be modified
+   * @param bulk the bulk index update scope
+   */
+  void deferReorder(TOP fs, BulkIndexUpdate bulk) {
+    boolean isFirstUpdate = false;
+    for (FsIndex_iicp<TOP> iicp : getIndexesForType(fs._getTypeImpl().getCode()).indexesForType) {
+      FsIndex_singletype<TOP> st = iicp.fsIndex_singletype;
+      if (st.isSetOrSorted()) {
+        isFirstUpdate |= ((FsIndex_set_sorted<TOP>)st).deferReorder(fs, bulk);
+      }
+    }
+    
+    // journal as removed and added back, like the non-bulk case
+    if (isFirstUpdate && this.cas.getCurrentMark() != null) {
+      logIndexOperation(fs, false);
+      logIndexOperation(fs, true);
+    }
+  }
+   
   public <T extends FeatureStructure> LowLevelIterator<T> ll_getAllIndexedFS(Type type) {
     return (LowLevelIterator<T>) getAllIndexedFS(type);
   }
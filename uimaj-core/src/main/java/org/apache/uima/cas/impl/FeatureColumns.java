@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import org.apache.uima.cas.CASRuntimeException;
+import org.apache.uima.cas.FSIndex;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.jcas.cas.TOP;
+import org.apache.uima.util.AutoCloseableNoException;
+
+/**
+ * Bulk (columnar) access to the values of one primitive feature, for all the
+ * Feature Structures in an index.
+ *
+ * The getters fill a caller supplied array with the values, in index iteration order;
+ * the setters set the values from an array, in index iteration order.
+ *
+ * The feature and its range are validated once per call, rather than once per Feature Structure.
+ * The setters do the same index corruption protection and journaling (for delta CAS)
+ * as the individual setters; all the Feature Structures are removed and added back
+ * in one protect block, if the feature is used as an index key.
+ *
+ * For example, to get the begin values of all the annotations:
+ * <pre>
+ *   AnnotationIndex&lt;Annotation&gt; index = cas.getAnnotationIndex();
+ *   int[] begins = new int[index.size()];
+ *   FeatureColumns.getIntValues(cas.getBeginFeature(), index, begins);
+ * </pre>
+ */
+public final class FeatureColumns {
+
+  private FeatureColumns() {}  // no instances
+
+  /**
+   * @param feat a feature whose range is uima.cas.Integer, defined for the index type
+   * @param index the index
+   * @param values filled with the values, in index iteration order; must be at least index.size() long
+   * @return the number of values set
+   */
+  public static int getIntValues(Feature feat, FSIndex<? extends FeatureStructure> index, int[] values) {
+    final int adjOffset = validate(feat, index, TypeSystemConstants.intTypeCode, values.length);
+    int i = 0;
+    for (FSIterator<? extends FeatureStructure> it = index.iterator(); it.isValid(); it.moveToNextNvc()) {
+      values[i++] = ((TOP)it.getNvc())._getIntValueNc(adjOffset);
+    }
+    return i;
+  }
+
+  /**
+   * @param feat a feature whose range is uima.cas.Float, defined for the index type
+   * @param index the index
+   * @param values filled with the values, in index iteration order; must be at least index.size() long
+   * @return the number of values set
+   */
+  public static int getFloatValues(Feature feat, FSIndex<? extends FeatureStructure> index, float[] values) {
+    final int adjOffset = validate(feat, index, TypeSystemConstants.floatTypeCode, values.length);
+    int i = 0;
+    for (FSIterator<? extends FeatureStructure> it = index.iterator(); it.isValid(); it.moveToNextNvc()) {
+      values[i++] = ((TOP)it.getNvc())._getFloatValueNc(adjOffset);
+    }
+    return i;
+  }
+
+  /**
+   * @param feat a feature whose range is uima.cas.Long, defined for the index type
+   * @param index the index
+   * @param values filled with the values, in index iteration order; must be at least index.size() long
+   * @return the number of values set
+   */
+  public static int getLongValues(Feature feat, FSIndex<? extends FeatureStructure> index, long[] values) {
+    final int adjOffset = validate(feat, index, TypeSystemConstants.longTypeCode, values.length);
+    int i = 0;
+    for (FSIterator<? extends FeatureStructure> it = index.iterator(); it.isValid(); it.moveToNextNvc()) {
+      values[i++] = ((TOP)it.getNvc())._getLongValueNc(adjOffset);
+    }
+    return i;
+  }
+
+  /**
+   * @param feat a feature whose range is uima.cas.Double, defined for the index type
+   * @param index the index
+   * @param values filled with the values, in index iteration order; must be at least index.size() long
+   * @return the number of values set
+   */
+  public static int getDoubleValues(Feature feat, FSIndex<? extends FeatureStructure> index, double[] values) {
+    final int adjOffset = validate(feat, index, TypeSystemConstants.doubleTypeCode, values.length);
+    int i = 0;
+    for (FSIterator<? extends FeatureStructure> it = index.iterator(); it.isValid(); it.moveToNextNvc()) {
+      values[i++] = ((TOP)it.getNvc())._getDoubleValueNc(adjOffset);
+    }
+    return i;
+  }
+
+  /**
+   * @param feat a feature whose range is uima.cas.Integer, defined for the index type
+   * @param index the index
+   * @param values the values to set, in index iteration order; must be at least index.size() long
+   */
+  public static void setIntValues(Feature feat, FSIndex<? extends FeatureStructure> index, int[] values) {
+    final FeatureImpl fi = (FeatureImpl) feat;
+    final int adjOffset = validate(feat, index, TypeSystemConstants.intTypeCode, values.length);
+    final TOP[] fss = snapshot(index);
+    final CASImpl cas = ((LowLevelIndex<?>)index).getCasImpl();
+    try (AutoCloseableNoException a = cas.protectIndexes()) {
+      for (int i = 0; i < fss.length; i++) {
+        final TOP fs = fss[i];
+        cas.checkForInvalidFeatureSetting(fs, fi.getCode());
+        fs._setIntValueNcNj(adjOffset, values[i]);
+        cas.maybeLogUpdate(fs, fi);
+      }
+    }
+  }
+
+  /**
+   * @param feat a feature whose range is uima.cas.Float, defined for the index type
+   * @param index the index
+   * @param values the values to set, in index iteration order; must be at least index.size() long
+   */
+  public static void setFloatValues(Feature feat, FSIndex<? extends FeatureStructure> index, float[] values) {
+    final FeatureImpl fi = (FeatureImpl) feat;
+    final int adjOffset = validate(feat, index, TypeSystemConstants.floatTypeCode, values.length);
+    final TOP[] fss = snapshot(index);
+    final CASImpl cas = ((LowLevelIndex<?>)index).getCasImpl();
+    try (AutoCloseableNoException a = cas.protectIndexes()) {
+      for (int i = 0; i < fss.length; i++) {
+        final TOP fs = fss[i];
+        cas.checkForInvalidFeatureSetting(fs, fi.getCode());
+        fs._setFloatValueNcNj(adjOffset, values[i]);
+        cas.maybeLogUpdate(fs, fi);
+      }
+    }
+  }
+
+  /**
+   * @param feat a feature whose range is uima.cas.Long, defined for the index type
+   * @param index the index
+   * @param values the values to set, in index iteration order; must be at least index.size() long
+   */
+  public static void setLongValues(Feature feat, FSIndex<? extends FeatureStructure> index, long[] values) {
+    final FeatureImpl fi = (FeatureImpl) feat;
+    final int adjOffset = validate(feat, index, TypeSystemConstants.longTypeCode, values.length);
+    final TOP[] fss = snapshot(index);
+    final CASImpl cas = ((LowLevelIndex<?>)index).getCasImpl();
+    try (AutoCloseableNoException a = cas.protectIndexes()) {
+      for (int i = 0; i < fss.length; i++) {
+        final TOP fs = fss[i];
+        cas.checkForInvalidFeatureSetting(fs, fi.getCode());
+        fs._setLongValueNcNj(adjOffset, values[i]);
+        cas.maybeLogUpdate(fs, fi);
+      }
+    }
+  }
+
+  /**
+   * @param feat a feature whose range is uima.cas.Double, defined for the index type
+   * @param index the index
+   * @param values the values to set, in index iteration order; must be at least index.size() long
+   */
+  public static void setDoubleValues(Feature feat, FSIndex<? extends FeatureStructure> index, double[] values) {
+    final FeatureImpl fi = (FeatureImpl) feat;
+    final int adjOffset = validate(feat, index, TypeSystemConstants.doubleTypeCode, values.length);
+    final TOP[] fss = snapshot(index);
+    final CASImpl cas = ((LowLevelIndex<?>)index).getCasImpl();
+    try (AutoCloseableNoException a = cas.protectIndexes()) {
+      for (int i = 0; i < fss.length; i++) {
+        final TOP fs = fss[i];
+        cas.checkForInvalidFeatureSetting(fs, fi.getCode());
+        fs._setDoubleValueNcNj(adjOffset, values[i]);
+        cas.maybeLogUpdate(fs, fi);
+      }
+    }
+  }
+
+  /**
+   * Setting a key feature removes and adds back FSs, so the FSs are collected before any are changed
+   */
+  private static TOP[] snapshot(FSIndex<? extends FeatureStructure> index) {
+    final TOP[] fss = new TOP[index.size()];
+    int i = 0;
+    for (FSIterator<? extends FeatureStructure> it = index.iterator(); it.isValid(); it.moveToNextNvc()) {
+      fss[i++] = (TOP) it.getNvc();
+    }
+    return fss;
+  }
+
+  /**
+   * Checks, once for all the FSs in the index, that
+   *   - the feature is defined for the index's type (and therefore for all its subtypes)
+   *   - the range of the feature is the expected one
+   *   - the array is big enough
+   * @return the adjusted offset of the feature
+   */
+  private static int validate(Feature feat, FSIndex<? extends FeatureStructure> index, int rangeCode, int length) {
+    final FeatureImpl fi = (FeatureImpl) feat;
+    final TypeImpl indexType = (TypeImpl) index.getType();
+    if (!((TypeImpl) fi.getDomain()).subsumes(indexType)) {
+      /* Feature "{0}" is not defined for type "{1}". */
+      throw new CASRuntimeException(CASRuntimeException.INAPPROP_FEAT, fi.getName(), indexType.getName());
+    }
+    final TypeImpl range = fi.getRangeImpl();
+    if (range.getCode() != rangeCode) {
+      final TypeImpl expected = indexType.getTypeSystem().getTypeForCode(rangeCode);
+      /* Trying to access value of feature "{0}" as "{1}", but range of feature is "{2}". */
+      throw new CASRuntimeException(CASRuntimeException.INAPPROP_RANGE, fi.getName(), expected.getName(), range.getName());
+    }
+    if (length < index.size()) {
+      throw new IllegalArgumentException(String.format(
+          "Array length %d is less than the index size %d", length, index.size()));
+    }
+    return fi.getAdjustedOffset();
+  }
+}
@@ -671,7 +671,7 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
       
     }
     if (IS_ENABLE_RUNTIME_FEATURE_VALIDATION) _Check_feature_defined_for_this_type(fi);
-    _casView.setWithCheckAndJournal((TOP)this, fi.getCode(), () -> _setIntValueCommon(fi, v)); 
+    _casView.setIntValue(this, fi, v); 
 
   }
   
@@ -697,7 +697,7 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
    */
   protected void _setIntValueNfcCJ(int adjOffset, int v) {
     FeatureImpl fi = _getFeatFromAdjOffset(adjOffset, true);
-    _casView.setWithCheckAndJournal((TOP)this, fi, () -> _setIntValueCommon(adjOffset, v));
+    _casView.setIntValue(this, fi, v);
   }
   
   /**
@@ -715,7 +715,7 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
       throw new CASRuntimeException(CASRuntimeException.INAPPROP_RANGE, fi.getName(), "int", fi.getRange().getName());
     }
     if (IS_ENABLE_RUNTIME_FEATURE_VALIDATION) _Check_feature_defined_for_this_type(fi);
-    _casView.setWithCheckAndJournal((TOP)this, fi.getCode(), () -> _setRefValueCommon(fi, v)); 
+    _casView.setRefValue(this, fi, v); 
   
   }
   
@@ -725,7 +725,7 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
    * @param v - the value
    */
   protected void _setRefValueNfcCJ(FeatureImpl fi, Object v) {
-    _casView.setWithCheckAndJournal((TOP)this, fi.getCode(), () -> _setRefValueCommon(fi, v)); 
+    _casView.setRefValue(this, fi, v); 
   }
 
   /********************************************************************************************************   
@@ -1757,7 +1757,7 @@ public class FeatureStructureImplC implements FeatureStructureImpl {
 //  protected Object[] _getRefData() {
 //    return _refData;
 //  }
- 
+  
   /**
    * @param src the FS to copy features from
    */
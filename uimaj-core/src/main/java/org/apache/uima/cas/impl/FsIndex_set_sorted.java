@@ -20,10 +20,14 @@
 package org.apache.uima.cas.impl;
 
 import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.uima.cas.FeatureStructure;
 import org.apache.uima.cas.Type;
@@ -60,6 +64,19 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
     
   // only an optimization used for select.covering for AnnotationIndexes
   private int maxAnnotSpan = -1;
+  
+  // only an optimization used for select.covering and coveredBy for AnnotationIndexes
+  //   built on the 2nd request following a modification, dropped when the index is modified
+  //   For read-only CASes, this may be built on multiple threads, so it's volatile
+  private volatile AnnotationIntervalTree intervalTree = null;
+  private volatile boolean isIntervalTreeRequested = false;
+  
+  // FSs whose keys may have been modified within a bulk index update scope;
+  //   they are still in indexedFSs, maybe out of order, until reorderBulkUpdated is called
+  private Set<TOP> bulkUpdated = null;
+  
+  // FSs added by FSIndexRepositoryImpl.addFSs, not yet in indexedFSs until finishBulkLoad is called
+  private ArrayList<TOP> bulkLoaded = null;
      
   FsIndex_set_sorted(CASImpl cas, Type type, int indexType, FSIndexComparator comparatorForIndexSpecs) {
     super(cas, type, indexType, comparatorForIndexSpecs);
@@ -71,6 +88,9 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
   public void flush() {
     super.flush();
     this.indexedFSs.clear();
+    bulkUpdated = null;
+    bulkLoaded = null;
+    dropIntervalTree();
   }
 
   /**
@@ -89,10 +109,12 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
    */
   @Override
   void insert(T fs) {
+    reorderBulkUpdated();
     
     // past the initial load, or item is not > previous largest item to be added 
     maybeCopy();
     if (isAnnotIdx) {
+      dropIntervalTree();
       int span = ((Annotation)fs).getEnd() - ((Annotation)fs).getBegin();
       if (span > maxAnnotSpan) {
         maxAnnotSpan = span;
@@ -123,6 +145,7 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
    */
   @Override
   public T find(FeatureStructure templateKey) {
+    reorderBulkUpdated();
     int pos = this.indexedFSs.findWithoutID((TOP)templateKey);
     return (pos >= 0)
              ? this.indexedFSs.getAtPos(pos)
@@ -190,6 +213,7 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
    */
   @Override
   public int size() {
+    reorderBulkUpdated();  // a set index may drop FSs updated to the same key as another
     return this.indexedFSs.size()/* + itemsToBeAdded.size()*/;
   }
 
@@ -212,12 +236,15 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
             ((TOP)fs)._getTypeImpl().getName(), this.type.getName()));
     }
 //    maybeProcessBulkAdds(); // moved to OrderedFsSet_array class
+    reorderBulkUpdated();
     maybeCopy();
+    dropIntervalTree();
     return this.indexedFSs.remove(fs);
   }
   
   @Override
   protected void bulkAddTo(List<T> v) {
+    reorderBulkUpdated();
     Collection<T> coll = new AbstractCollection<T>() {
 
       @Override
@@ -256,6 +283,12 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
              ? new FsIterator_set_sorted_pear<>(this, cow_wrapper, comparatorMaybeNoTypeWithoutID)
              : new FsIterator_set_sorted2<>(this, cow_wrapper, comparatorMaybeNoTypeWithoutID);  }
 
+  @Override
+  protected CopyOnWriteIndexPart<T> getNonNullCow() {
+    reorderBulkUpdated();  // all iterators get their cow from here
+    return super.getNonNullCow();
+  }
+
   @Override
   protected CopyOnWriteIndexPart createCopyOnWriteIndexPart() {
     if (CASImpl.traceCow) {
@@ -266,8 +299,122 @@ final public class FsIndex_set_sorted<T extends FeatureStructure> extends FsInde
   
   @Override
   public int ll_maxAnnotSpan() {
+    reorderBulkUpdated();
     return maxAnnotSpan;
   }
+  
+  /**
+   * The interval tree is built lazily, and only if requested twice with no intervening
+   * modification of this index, to avoid rebuilding it when updates and queries are interleaved.
+   * @return the interval tree for this annotation index, or null if not (yet) available
+   */
+  AnnotationIntervalTree getIntervalTree() {
+    reorderBulkUpdated();
+    // using double-checked sync - see http://en.wikipedia.org/wiki/Double-checked_locking#Usage_in_Java
+    AnnotationIntervalTree t = intervalTree;
+    if (t != null) {
+      return t;
+    }
+    if (!isAnnotIdx || !isIntervalTreeRequested) {
+      isIntervalTreeRequested = true;
+      return null;
+    }
+    synchronized (this) {
+      t = intervalTree;
+      if (t == null) {
+        t = new AnnotationIntervalTree(indexedFSs.toArray());
+        // assign to "volatile" at end, after the tree is complete
+        intervalTree = t;
+      }
+    }
+    return t;
+  }
+  
+  private void dropIntervalTree() {
+    intervalTree = null;
+    isIntervalTreeRequested = false;
+  }
+  
+  /**
+   * Within a bulk index update scope, record an FS whose key is about to be modified.
+   * The FS is left in place (it may not be in this index at all), 
+   * and this index is reordered before it is next used, or when the scope ends.
+   * @param fs the FS
+   * @param bulk the bulk index update scope
+   * @return true if the fs was not already recorded
+   */
+  boolean deferReorder(TOP fs, BulkIndexUpdate bulk) {
+    // the key is modified in place, so iterators sharing the array must get their copy first
+    maybeCopy();
+    if (bulkUpdated == null) {
+      bulkUpdated = Collections.newSetFromMap(new IdentityHashMap<>());
+      bulk.addIndexToReorder(this);
+    }
+    return bulkUpdated.add(fs);
+  }
+  
+  /**
+   * Restore the order of this index, if FSs in it were modified within a bulk index update scope
+   */
+  void reorderBulkUpdated() {
+    final Set<TOP> updated = bulkUpdated;
+    if (updated == null) {
+      return;
+    }
+    bulkUpdated = null;
+    maybeCopy();
+    dropIntervalTree();
+    if (isAnnotIdx) {
+      for (TOP fs : updated) {
+        int span = ((Annotation)fs).getEnd() - ((Annotation)fs).getBegin();
+        if (span > maxAnnotSpan) {
+          maxAnnotSpan = span;
+        }
+      }
+    }
+    indexedFSs.reorder(updated, isSorted() 
+                                  ? comparatorNoTypeWithID 
+                                  : comparatorNoTypeWithoutID);
+  }
+  
+  /**
+   * Within FSIndexRepositoryImpl.addFSs, record an FS to be added; 
+   * the recorded FSs are added together by finishBulkLoad
+   * @param fs the FS to add
+   * @param loadingIndexes the indexes having FSs recorded, this one is added if this is its first FS
+   */
+  void insertDeferred(TOP fs, List<FsIndex_set_sorted<?>> loadingIndexes) {
+    if (bulkLoaded == null) {
+      bulkLoaded = new ArrayList<>();
+      loadingIndexes.add(this);
+    }
+    bulkLoaded.add(fs);
+  }
+  
+  /**
+   * Add the FSs recorded by insertDeferred, with one sort and merge
+   */
+  void finishBulkLoad() {
+    final ArrayList<TOP> loaded = bulkLoaded;
+    if (loaded == null) {
+      return;
+    }
+    bulkLoaded = null;
+    reorderBulkUpdated();
+    maybeCopy();
+    if (isAnnotIdx) {
+      dropIntervalTree();
+      for (TOP fs : loaded) {
+        int span = ((Annotation)fs).getEnd() - ((Annotation)fs).getBegin();
+        if (span > maxAnnotSpan) {
+          maxAnnotSpan = span;
+        }
+      }
+    }
+    indexedFSs.addAll(loaded, isSorted() 
+                                ? comparatorNoTypeWithID 
+                                : comparatorNoTypeWithoutID);
+  }
 
   /* (non-Javadoc)
    * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
@@ -0,0 +1,388 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.util.Level;
+
+/**
+ * An on-disk cache of what {@link FSClassRegistry} learns, reflectively, about the JCas classes
+ * of a class loader, so that JVMs started again with the same classpath can skip that work:
+ * <ul>
+ * <li>the JCas class names, from the types of the type systems used so far, for which there is
+ * no class: loading them is not attempted again,</li>
+ * <li>the hashes of the type systems which the JCas classes were found to conform to, without
+ * any error or warning: the conformance check is skipped for them.</li>
+ * </ul>
+ * The JCas classes which exist are still loaded and initialized, and their generators created,
+ * in each JVM. The feature offsets the classes are bound to are still validated when they are
+ * bound, for each type system.
+ * <p>
+ * The cache is enabled by setting the {@link #JCAS_METADATA_CACHE_DIR} JVM property to the
+ * directory where to keep the cache files. There is one file per classpath, named by a hash of
+ * the classpath of the class loader and of its parents, including the size and the last
+ * modification time of each of the jars and of each of the files in the directories of the
+ * classpath, so that the file isn't used anymore once any of them changes. Only the class
+ * loaders whose classpath is made of local files can be cached: {@link URLClassLoader}s (this
+ * includes the UIMA extension and PEAR class loaders), and the system class loader.
+ */
+class JCasMetadataCache {
+
+  /**
+   * Define this JVM property to the directory where to keep the JCas metadata cache files.
+   */
+  static final String JCAS_METADATA_CACHE_DIR = "uima.jcas_metadata_cache_dir";
+
+  /**
+   * resource bundle for log messages
+   */
+  private static final String LOG_RESOURCE_BUNDLE = "org.apache.uima.impl.log_messages";
+
+  /**
+   * current class
+   */
+  private static final Class<JCasMetadataCache> CLASS_NAME = JCasMetadataCache.class;
+
+  /** changed when the content of the cache files changes */
+  private static final String FORMAT_VERSION = "1";
+
+  private static final String MISSING = "missing";
+
+  private static final String CONFORMING = "conforming";
+
+  /**
+   * The directory of the cache files, or null if the cache is not enabled. Not final, for test
+   * cases.
+   */
+  static volatile Path cacheDir = getCacheDir();
+
+  /** the value of {@link #cl_to_cache} for the class loaders which can't be cached */
+  private static final JCasMetadataCache NOT_CACHEABLE = new JCasMetadataCache(null);
+
+  /**
+   * Map from class loaders to their cache. Concurrent, the classpaths of different class loaders
+   * are hashed in parallel (class loaders have identity equality). Not private, for test cases.
+   */
+  static final Map<ClassLoader, JCasMetadataCache> cl_to_cache = new ConcurrentHashMap<>();
+
+  private final Path file;
+
+  private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+  private final Set<String> conforming = ConcurrentHashMap.newKeySet();
+
+  /** true if something not in the file was learned */
+  private volatile boolean isChanged = false;
+
+  JCasMetadataCache(Path file) {
+    this.file = file;
+    Properties p = (file == null) ? null : read(file);
+    if (p != null) {
+      addAll(missing, p.getProperty(MISSING));
+      addAll(conforming, p.getProperty(CONFORMING));
+    }
+  }
+
+  private static Path getCacheDir() {
+    String dir = System.getProperty(JCAS_METADATA_CACHE_DIR);
+    return (dir == null || dir.isEmpty()) ? null : Paths.get(dir);
+  }
+
+  /**
+   * @param cl the class loader
+   * @return the cache for the class loader, or null if the cache is not enabled, or the class
+   *         loader can't be cached
+   */
+  static JCasMetadataCache get(ClassLoader cl) {
+    Path dir = cacheDir;
+    if (dir == null) {
+      return null;
+    }
+    JCasMetadataCache cache = cl_to_cache.get(cl);
+    if (cache == null) {
+      // hashed and read outside of the map, which may be done twice for a class loader
+      // by threads in parallel: the first one put is kept
+      cache = forClassLoader(dir, cl);
+      if (cache == null) {
+        cache = NOT_CACHEABLE;
+      }
+      JCasMetadataCache prev = cl_to_cache.putIfAbsent(cl, cache);
+      if (prev != null) {
+        cache = prev;
+      }
+    }
+    return (cache == NOT_CACHEABLE) ? null : cache;
+  }
+
+  /**
+   * @param dir the directory of the cache files
+   * @param cl the class loader
+   * @return the cache for the class loader, or null if its classpath can't be hashed
+   */
+  static JCasMetadataCache forClassLoader(Path dir, ClassLoader cl) {
+    String key = classpathHash(cl);
+    return (key == null) ? null : new JCasMetadataCache(dir.resolve(key + ".properties"));
+  }
+
+  /**
+   * @param jcasClassName the name of a JCas class
+   * @return true if the class was previously found to be missing
+   */
+  boolean isMissing(String jcasClassName) {
+    return missing.contains(jcasClassName);
+  }
+
+  void addMissing(String jcasClassName) {
+    if (missing.add(jcasClassName)) {
+      isChanged = true;
+    }
+  }
+
+  /**
+   * @param typeSystemHash the value of {@link #typeSystemHash(TypeSystemImpl)}
+   * @return true if the JCas classes were previously found to conform to the type system
+   */
+  boolean isConforming(String typeSystemHash) {
+    return conforming.contains(typeSystemHash);
+  }
+
+  void addConforming(String typeSystemHash) {
+    if (conforming.add(typeSystemHash)) {
+      isChanged = true;
+    }
+  }
+
+  /**
+   * Writes what was learned to the file, merged with what other JVMs may have written to it
+   * in the meantime. The file is replaced atomically, so that readers never see a partial file.
+   */
+  synchronized void save() {
+    if (!isChanged) {
+      return;
+    }
+    isChanged = false;
+    Properties onDisk = read(file);
+    Set<String> allMissing = new TreeSet<>(missing);
+    Set<String> allConforming = new TreeSet<>(conforming);
+    if (onDisk != null) {
+      addAll(allMissing, onDisk.getProperty(MISSING));
+      addAll(allConforming, onDisk.getProperty(CONFORMING));
+    }
+    Properties p = new Properties();
+    p.setProperty("version", FORMAT_VERSION);
+    p.setProperty(MISSING, String.join(" ", allMissing));
+    p.setProperty(CONFORMING, String.join(" ", allConforming));
+
+    Path tmp = null;
+    try {
+      Files.createDirectories(file.getParent());
+      tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try (OutputStream os = Files.newOutputStream(tmp)) {
+        p.store(os, "UIMA JCas metadata cache");
+      }
+      try {
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+      tmp = null;
+    } catch (IOException e) {
+      UIMAFramework.getLogger(CLASS_NAME).logrb(Level.WARNING, CLASS_NAME.getName(), "save",
+              LOG_RESOURCE_BUNDLE, "UIMA_jcas_metadata_cache_not_saved__WARNING",
+              new Object[] { file, e });
+    } finally {
+      if (tmp != null) {
+        try {
+          Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+          // ignored, only a leftover temporary file
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the content of the file, or null if it doesn't exist, can't be read, or was written
+   *         in another format
+   */
+  private static Properties read(Path file) {
+    Properties p = new Properties();
+    try (InputStream is = Files.newInputStream(file)) {
+      p.load(is);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException | IllegalArgumentException e) {
+      UIMAFramework.getLogger(CLASS_NAME).logrb(Level.WARNING, CLASS_NAME.getName(), "read",
+              LOG_RESOURCE_BUNDLE, "UIMA_jcas_metadata_cache_not_read__WARNING",
+              new Object[] { file, e });
+      return null;
+    }
+    return FORMAT_VERSION.equals(p.getProperty("version")) ? p : null;
+  }
+
+  private static void addAll(Collection<String> c, String names) {
+    if (names != null && !names.isEmpty()) {
+      for (String name : names.split(" ")) {
+        c.add(name);
+      }
+    }
+  }
+
+  /**
+   * @param tsi a committed type system
+   * @return a hash of the names of the types, of their super types, and of their features
+   *         with their ranges
+   */
+  static String typeSystemHash(TypeSystemImpl tsi) {
+    MessageDigest md = newDigest();
+    for (TypeImpl ti : tsi.getAllTypes()) {
+      update(md, ti.getName());
+      TypeImpl superType = ti.getSuperType();
+      update(md, (superType == null) ? "" : superType.getName());
+      for (FeatureImpl fi : ti.getFeatureImpls()) {
+        update(md, fi.getShortName());
+        update(md, fi.getRangeImpl().getName());
+        update(md, fi.isMultipleReferencesAllowed() ? "+" : "-");
+      }
+      update(md, ";");
+    }
+    return toHex(md.digest());
+  }
+
+  /**
+   * @param cl a class loader
+   * @return a hash of the classpath of the class loader and of its parents, or null if a part of
+   *         the classpath is not a local file, or a class loader is of an unknown kind
+   */
+  static String classpathHash(ClassLoader cl) {
+    List<Path> classpath = new ArrayList<>();
+    ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+    for (ClassLoader c = cl; ; c = c.getParent()) {
+      if (c == systemClassLoader && !(c instanceof URLClassLoader)) {
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+          if (!entry.isEmpty()) {
+            try {
+              classpath.add(Paths.get(entry));
+            } catch (InvalidPathException e) {
+              return null;
+            }
+          }
+        }
+      } else if (c instanceof URLClassLoader) {
+        for (URL url : ((URLClassLoader) c).getURLs()) {
+          if (!"file".equals(url.getProtocol())) {
+            return null;
+          }
+          try {
+            classpath.add(Paths.get(url.toURI()));
+          } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+          }
+        }
+      } else {
+        return null;
+      }
+      if (c == systemClassLoader || c.getParent() == null) {
+        break; // the parents of the system class loader load the classes of the JVM
+      }
+    }
+
+    MessageDigest md = newDigest();
+    update(md, FORMAT_VERSION);
+    update(md, System.getProperty("java.version"));
+    try {
+      for (Path p : classpath) {
+        Path entry = p.toAbsolutePath();
+        update(md, entry.toString());
+        if (Files.isDirectory(entry)) {
+          List<Path> files;
+          try (Stream<Path> s = Files.walk(entry)) {
+            files = s.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+          }
+          for (Path f : files) {
+            update(md, entry.relativize(f).toString());
+            update(md, attributes(f));
+          }
+        } else if (Files.exists(entry)) {
+          update(md, attributes(entry));
+        }
+        update(md, ";");
+      }
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+    return toHex(md.digest());
+  }
+
+  private static String attributes(Path f) throws IOException {
+    BasicFileAttributes a = Files.readAttributes(f, BasicFileAttributes.class);
+    return a.size() + "," + a.lastModifiedTime().toMillis();
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every JVM has SHA-256
+    }
+  }
+
+  private static void update(MessageDigest md, String s) {
+    md.update(s.getBytes(StandardCharsets.UTF_8));
+    md.update((byte) 0);
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+}
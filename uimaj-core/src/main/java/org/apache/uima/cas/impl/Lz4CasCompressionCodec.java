@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A pure Java fast compression codec, producing the LZ4 block format.
+ *
+ * This trades compression ratio for speed: compression is a single greedy pass
+ * using a hash table of 4 byte sequences, and decompression is mostly array copies.
+ *
+ * Each call compresses its input as one block; the decompressed size is
+ * supplied on decompression (it is recorded in the form 6 serialized data).
+ */
+public final class Lz4CasCompressionCodec implements CasCompressionCodec {
+
+  public static final int ID = 1;
+  public static final String NAME = "lz4";
+
+  public static final Lz4CasCompressionCodec INSTANCE = new Lz4CasCompressionCodec();
+
+  private static final int MIN_MATCH = 4;
+  /** the last 5 bytes are always literals */
+  private static final int LAST_LITERALS = 5;
+  /** the last match must start at least 12 bytes before the end */
+  private static final int MF_LIMIT = 12;
+  private static final int MAX_OFFSET = 0xFFFF;
+  private static final int HASH_LOG = 16;
+  private static final int MIN_HASH_LOG = 8;
+  /** the step used to skip over incompressible data increases every 64 bytes without a match */
+  private static final int SKIP_TRIGGER = 6;
+
+  private static final int RUN_MASK = 0x0F;
+
+  /** the hash tables are reused per thread, to avoid allocating 256K per call */
+  private static final ThreadLocal<int[]> hashTables = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+  private Lz4CasCompressionCodec() {}
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public int compress(byte[] src, int length, OutputStream out) throws IOException {
+    final byte[] dst = new byte[maxCompressedLength(length)];
+    final int compressedLength = compress(src, length, dst);
+    out.write(dst, 0, compressedLength);
+    return compressedLength;
+  }
+
+  @Override
+  public InputStream decompress(InputStream in, int compressedLength, int uncompressedLength) throws IOException {
+    final byte[] src = new byte[compressedLength];
+    new DataInputStream(in).readFully(src);
+    final byte[] dst = new byte[uncompressedLength];
+    decompress(src, compressedLength, dst, uncompressedLength);
+    return new ByteArrayInputStream(dst);
+  }
+
+  static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * @param src the bytes to compress
+   * @param srcLength the number of bytes to compress
+   * @param dst where to put the compressed bytes, at least maxCompressedLength(srcLength) long
+   * @return the number of compressed bytes
+   */
+  static int compress(byte[] src, int srcLength, byte[] dst) {
+    int op = 0;
+    int anchor = 0;  // start of the pending literals
+    if (srcLength > MF_LIMIT) {
+      final int[] hashTable = hashTables.get();
+      // small inputs use (and clear) only part of the table
+      final int hashLog = Math.max(MIN_HASH_LOG, Math.min(HASH_LOG, 32 - Integer.numberOfLeadingZeros(srcLength)));
+      Arrays.fill(hashTable, 0, 1 << hashLog, -1);
+      final int mfLimit = srcLength - MF_LIMIT;
+      final int matchLimit = srcLength - LAST_LITERALS;
+      int ip = 0;
+      int searchMatchNb = 1 << SKIP_TRIGGER;
+
+      while (ip < mfLimit) {
+        final int seq = readInt(src, ip);
+        final int h = hash(seq, hashLog);
+        int ref = hashTable[h];
+        hashTable[h] = ip;
+        if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+          ip += searchMatchNb++ >>> SKIP_TRIGGER;
+          continue;
+        }
+        searchMatchNb = 1 << SKIP_TRIGGER;
+
+        // extend backwards, into the pending literals
+        while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+          ip--;
+          ref--;
+        }
+        // extend forwards
+        int matchLength = MIN_MATCH;
+        while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength]) {
+          matchLength++;
+        }
+
+        op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+        ip += matchLength;
+        anchor = ip;
+        if (ip < mfLimit) {
+          // make the position just before the next search start findable
+          hashTable[hash(readInt(src, ip - 2), hashLog)] = ip - 2;
+        }
+      }
+    }
+    return writeLastLiterals(src, anchor, srcLength - anchor, dst, op);
+  }
+
+  /**
+   * @param src the compressed bytes
+   * @param srcLength the number of compressed bytes
+   * @param dst where to put the decompressed bytes
+   * @param dstLength the expected number of decompressed bytes
+   * @throws IOException if the compressed bytes are malformed
+   */
+  static void decompress(byte[] src, int srcLength, byte[] dst, int dstLength) throws IOException {
+    int ip = 0;
+    int op = 0;
+    try {
+      while (true) {
+        final int token = src[ip++] & 0xFF;
+
+        // literals
+        int literalLength = token >>> 4;
+        if (literalLength == RUN_MASK) {
+          int b;
+          do {
+            b = src[ip++] & 0xFF;
+            literalLength += b;
+          } while (b == 0xFF);
+        }
+        System.arraycopy(src, ip, dst, op, literalLength);
+        ip += literalLength;
+        op += literalLength;
+        if (ip >= srcLength) {
+          break;  // the last sequence has only literals
+        }
+
+        // match
+        final int offset = (src[ip++] & 0xFF) | ((src[ip++] & 0xFF) << 8);
+        int matchLength = token & RUN_MASK;
+        if (matchLength == RUN_MASK) {
+          int b;
+          do {
+            b = src[ip++] & 0xFF;
+            matchLength += b;
+          } while (b == 0xFF);
+        }
+        matchLength += MIN_MATCH;
+        final int ref = op - offset;
+        if (offset == 0 || ref < 0 || op + matchLength > dstLength) {
+          throw new IOException("Malformed LZ4 compressed data");
+        }
+        if (offset >= matchLength) {
+          System.arraycopy(dst, ref, dst, op, matchLength);
+        } else {
+          // overlapping copy, repeats the last offset bytes
+          for (int i = 0; i < matchLength; i++) {
+            dst[op + i] = dst[ref + i];
+          }
+        }
+        op += matchLength;
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Malformed LZ4 compressed data", e);
+    }
+    if (op != dstLength || ip != srcLength) {
+      throw new IOException(String.format("Malformed LZ4 compressed data, decompressed %d bytes, expected %d", op, dstLength));
+    }
+  }
+
+  private static int writeSequence(byte[] src, int literalStart, int literalLength, int offset, int matchLength,
+      byte[] dst, int op) {
+    final int tokenPos = op++;
+    int token;
+    if (literalLength >= RUN_MASK) {
+      token = RUN_MASK << 4;
+      op = writeLength(literalLength - RUN_MASK, dst, op);
+    } else {
+      token = literalLength << 4;
+    }
+    System.arraycopy(src, literalStart, dst, op, literalLength);
+    op += literalLength;
+
+    dst[op++] = (byte) offset;
+    dst[op++] = (byte) (offset >>> 8);
+
+    final int ml = matchLength - MIN_MATCH;
+    if (ml >= RUN_MASK) {
+      token |= RUN_MASK;
+      op = writeLength(ml - RUN_MASK, dst, op);
+    } else {
+      token |= ml;
+    }
+    dst[tokenPos] = (byte) token;
+    return op;
+  }
+
+  private static int writeLastLiterals(byte[] src, int literalStart, int literalLength, byte[] dst, int op) {
+    if (literalLength >= RUN_MASK) {
+      dst[op++] = (byte) (RUN_MASK << 4);
+      op = writeLength(literalLength - RUN_MASK, dst, op);
+    } else {
+      dst[op++] = (byte) (literalLength << 4);
+    }
+    System.arraycopy(src, literalStart, dst, op, literalLength);
+    return op + literalLength;
+  }
+
+  private static int writeLength(int length, byte[] dst, int op) {
+    while (length >= 0xFF) {
+      dst[op++] = (byte) 0xFF;
+      length -= 0xFF;
+    }
+    dst[op++] = (byte) length;
+    return op;
+  }
+
+  private static int readInt(byte[] b, int i) {
+    return (b[i] & 0xFF) | ((b[i + 1] & 0xFF) << 8) | ((b[i + 2] & 0xFF) << 16) | ((b[i + 3] & 0xFF) << 24);
+  }
+
+  private static int hash(int seq, int hashLog) {
+    return (seq * -1640531535) >>> (32 - hashLog);
+  }
+}
@@ -47,6 +47,7 @@ import java.util.stream.StreamSupport;
 
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASRuntimeException;
+import org.apache.uima.cas.FSComparators;
 import org.apache.uima.cas.FSIndex;
 import org.apache.uima.cas.FSIterator;
 import org.apache.uima.cas.FeatureStructure;
@@ -55,6 +56,7 @@ import org.apache.uima.cas.Type;
 import org.apache.uima.cas.impl.Subiterator.BoundsUse;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.cas.text.AnnotationIndex;
+import org.apache.uima.internal.util.Misc;
 import org.apache.uima.jcas.cas.EmptyFSList;
 import org.apache.uima.jcas.cas.FSArray;
 import org.apache.uima.jcas.cas.FSList;
@@ -89,6 +91,9 @@ import org.apache.uima.jcas.tcas.Annotation;
  *        == affects both FsIterator_aggregation_common and FsIterator_subtypes_ordered
  *   for 3 other boundings:
  *     - use subiterator, pass in strict and skipeq
+ *     - for covering and strict coveredBy over large annotation indexes, when the iterator is not 
+ *       returned to the user (all terminal ops except fsIterator() and get/single),
+ *       use the interval trees of the FsIndex_set_sorted indexes to compute a snapshot of the results
  *     
    finish this javadoc comment edit
  *   T extends FeatureStructure, not TOP, because of ref from FSIndex 
@@ -101,6 +106,19 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
   private final static boolean IS_UNAMBIGUOUS = false;
   private final static boolean IS_NOT_STRICT = false;
   
+  /**
+   * Define this JVM property to disable the use of interval trees for covering and coveredBy selects.
+   */
+  public static final String DISABLE_ANNOTATION_INTERVAL_TREE = "uima.disable_annotation_interval_tree";
+  
+  private static final boolean IS_DISABLE_ANNOTATION_INTERVAL_TREE = 
+      Misc.getNoValueSystemProperty(DISABLE_ANNOTATION_INTERVAL_TREE);
+  
+  /**
+   * Annotation indexes (type + subtypes) smaller than this are always iterated using the Subiterator
+   */
+  static final int MIN_SIZE_FOR_INTERVAL_TREE = 1024;
+  
   private CASImpl view;
   private JCasImpl jcas;
   private LowLevelIndex<T> index; 
@@ -586,9 +604,18 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
    */
   @Override
   public FSIterator<T> fsIterator() {
+    return fsIterator(false);
+  }
+  
+  /**
+   * @param isSnapshotOk true if the iterator is only used internally by a terminal operation, 
+   *                     so it may be a snapshot which is not updated by moveToFirst etc.
+   * @return the iterator
+   */
+  private FSIterator<T> fsIterator(boolean isSnapshotOk) {
     if (isFollowing && isBackwards) {
       isBackwards = false;
-      return make_or_copy_snapshot(fsIterator1(), true);
+      return make_or_copy_snapshot(fsIterator1(isSnapshotOk), true);
 //      LowLevelIterator<T> baseIterator = fsIterator1();
 //      FSIterator<T> it;
 //      if (baseIterator instanceof FsIterator_subtypes_snapshot) {
@@ -612,7 +639,7 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
       boolean bkwd = isBackwards;   // save isBackwards flag.  
                                     
       isBackwards = true;   // because need the iterator to move from the position to the front.
-      return make_or_copy_snapshot(fsIterator1(), bkwd);  // this iterator fails to skip annotations whose end is > positioning begin
+      return make_or_copy_snapshot(fsIterator1(isSnapshotOk), bkwd);  // this iterator fails to skip annotations whose end is > positioning begin
 //      LowLevelIterator<T> baseIterator = fsIterator1();  // this iterator fails to skip annotations whose end is > positioning begin
 //      T[] a = (T[]) asArray(baseIterator);
 //      FSIterator<T> it = new FsIterator_subtypes_snapshot<T>(
@@ -630,7 +657,7 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
     }
     
     // all others, including isFollowing but not backwards
-    return fsIterator1();
+    return fsIterator1(isSnapshotOk);
   }
   
   private FSIterator<T> make_or_copy_snapshot(LowLevelIterator<T> baseIterator, boolean bkwd) {
@@ -653,12 +680,12 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
         : new FsIterator_limited<>(it, limit);
   }
   
-  private LowLevelIterator<T> fsIterator1() {
+  private LowLevelIterator<T> fsIterator1(boolean isSnapshotOk) {
     prepareTerminalOp();
     LowLevelIterator<T> it = isAllViews 
                       ? //new FsIterator_aggregation_common<T>(getPlainIteratorsForAllViews(), )
                         createFsIterator_for_all_views()
-                      : plainFsIterator(index, view);
+                      : plainFsIterator(index, view, isSnapshotOk);
 
     it = maybeWrapBackwards(it);                  
     maybePosition(it);  // position needs to come after backwards because that sets the position
@@ -678,7 +705,7 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
     for (int i = 1; i <= nbrViews; i++) {
       CASImpl v = (i == 1) ? view.getInitialView() : (CASImpl) view.getView(i);
       LowLevelIndex<T> index_local = (LowLevelIndex<T>) getIndexForView(v);
-      ita[i - 1] = plainFsIterator(index_local, v);
+      ita[i - 1] = plainFsIterator(index_local, v, false);
 //      indexes[i - 1] = index;
     }
 //    return new FsIterator_aggregation_common<T>(ita, new FsIndex_aggr<>(indexes));
@@ -722,9 +749,10 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
    * @param idx the index selected, corresponds to a type + its subtypes, 
    *        or if null, either an alternate source or means all types
    * @param v the cas
+   * @param isSnapshotOk true if the iterator may be a snapshot
    * @return an iterator
    */
-  private LowLevelIterator<T> plainFsIterator(LowLevelIndex<T> idx, CASImpl v) {
+  private LowLevelIterator<T> plainFsIterator(LowLevelIndex<T> idx, CASImpl v, boolean isSnapshotOk) {
     if (null == idx) { 
       // no bounds, not ordered
       // type could be null
@@ -770,6 +798,12 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
       if (isEmptyBoundingFs) {
         return (LowLevelIterator<T>) LowLevelIterator.FS_ITERATOR_LOW_LEVEL_EMPTY;
       }
+      if (isSnapshotOk) {
+        it = intervalTreeIterator(idx, v);
+        if (it != null) {
+          return it;
+        }
+      }
       // bounds in use, index must be annotation index, is ordered
       it = (LowLevelIterator<T>) new Subiterator<>(
           (FSIterator<Annotation>) idx.iterator(isUnordered, !isTypePriority),
@@ -784,6 +818,116 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
     return it;
   }
   
+  /**
+   * Computes the result of a covering or strict coveredBy select using the interval trees
+   * of the single type indexes making up the annotation index.
+   * 
+   * The results and their order are the same as those of the Subiterator, 
+   * which is used when this isn't applicable.
+   * 
+   * @param idx the annotation index (type + subtypes)
+   * @param v the cas
+   * @return a snapshot iterator over the results, or null if interval trees are not applicable or not (yet) available
+   */
+  private LowLevelIterator<T> intervalTreeIterator(LowLevelIndex<T> idx, CASImpl v) {
+    final boolean isCovering = boundsUse == BoundsUse.covering;
+    if (IS_DISABLE_ANNOTATION_INTERVAL_TREE ||
+        !(isCovering || (boundsUse == BoundsUse.coveredBy && !isIncludeAnnotBeyondBounds)) ||
+        isNonOverlapping ||
+        isTypePriority ||
+        v.inPearContext() ||
+        !(idx instanceof FsIndex_iicp)) {
+      return null;
+    }
+    
+    final FsIndex_iicp<T> iicp = (FsIndex_iicp<T>) idx;
+    final FsIndex_singletype<T> rootIdx = iicp.getFsIndex_singleType();
+    if (!(rootIdx instanceof FsIndex_set_sorted) || 
+        !rootIdx.isAnnotIdx || 
+        iicp.size() < MIN_SIZE_FOR_INTERVAL_TREE) {  // also sets up the subindex cache
+      return null;
+    }
+    
+    final FsIndex_singletype<TOP>[] subIndexes = iicp.cachedSubFsLeafIndexes;
+    final AnnotationIntervalTree[] trees = new AnnotationIntervalTree[subIndexes.length];
+    boolean isAllAvailable = true;
+    for (int i = 0; i < subIndexes.length; i++) {
+      // request all of them, even after one is not available, so they're all available next time
+      if (subIndexes[i].size() > 0) {
+        trees[i] = ((FsIndex_set_sorted<TOP>)subIndexes[i]).getIntervalTree();
+        isAllAvailable &= trees[i] != null;
+      }
+    }
+    if (!isAllAvailable) {
+      return null;
+    }
+    
+    final Annotation bound = (Annotation) boundingFs;
+    final int boundBegin = bound.getBegin();
+    final int boundEnd = bound.getEnd();
+    final ArrayList<Annotation> found = new ArrayList<>();
+    int nbrTreesWithResults = 0;
+    for (AnnotationIntervalTree tree : trees) {
+      if (tree != null) {
+        int prevSize = found.size();
+        if (isCovering) {
+          tree.collectCovering(boundBegin, boundEnd, found);
+        } else {
+          tree.collectCoveredBy(boundBegin, boundEnd, true, found);
+        }
+        if (found.size() > prevSize) {
+          nbrTreesWithResults++;
+        }
+      }
+    }
+    if (nbrTreesWithResults > 1) {
+      // same order as the ordered subtypes iterator when ignoring type priorities: ties broken by id
+      found.sort(v.indexRepository.getAnnotationFsComparator(FSComparators.WITH_ID, FSComparators.WITHOUT_TYPE_ORDER));
+    }
+
+    // skip (coveredBy) or stop at (covering) annotations equal to the bounds, like the Subiterator
+    final boolean isDoEqualsTest = !isCovering && bound._inSetSortedIndex();
+    final TypeImpl boundType = bound._getTypeImpl();
+    // for coveredBy, the Subiterator starts with a moveTo(bound) on the subtype iterators, which
+    // use type priorities if there's more than one of them
+    final Comparator<TOP> startComparator = (subIndexes.length == 1) 
+                                              ? rootIdx.comparatorNoTypeWithoutID 
+                                              : rootIdx.comparatorWithoutID;
+    int nbrKept = 0;
+    for (int i = 0; i < found.size(); i++) {
+      Annotation fs = found.get(i);
+      if (!isCovering && 
+          fs.getBegin() == boundBegin && 
+          fs.getEnd() == boundEnd &&
+          startComparator.compare(fs, bound) < 0) {
+        continue;  // is before the start position
+      }
+      boolean isEqualToBounds = 
+          (isDoEqualsTest && fs._id == bound._id) ||
+          (isSkipSameBeginEndType &&
+           fs.getBegin() == boundBegin &&
+           fs.getEnd() == boundEnd &&
+           fs._getTypeImpl() == boundType);
+      if (isEqualToBounds) {
+        if (!isCovering) {
+          continue;  // skip
+        }
+        if (i > 0) {  // the Subiterator doesn't test the first covering annotation
+          break;
+        }
+      }
+      found.set(nbrKept++, fs);
+    }
+    
+    @SuppressWarnings("unchecked")
+    final T[] results = (T[]) found.subList(0, nbrKept).toArray(new Annotation[nbrKept]);
+    return new FsIterator_subtypes_snapshot<>(
+        results,
+        idx,
+        IS_ORDERED,
+        rootIdx.comparatorNoTypeWithoutID);
+  }
+  
   private LowLevelIterator<T> maybeWrapBackwards(LowLevelIterator<T> it) {
     if (isBackwards) {
       it = new FsIterator_backwards<>(it);  // positions the underlying iterator to last,
@@ -848,7 +992,7 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
   
   @Override
   public Iterator<T> iterator() {
-    return fsIterator();
+    return fsIterator(true);
   }
 
   /*
@@ -861,7 +1005,7 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
    */
   @Override
   public ArrayList<T> asList() {
-    return asArrayList((LowLevelIterator<T>) fsIterator());
+    return asArrayList((LowLevelIterator<T>) fsIterator(true));
   }
   
   private ArrayList<T> asArrayList(LowLevelIterator<T> it) {
@@ -875,7 +1019,7 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
    */
   @Override
   public T[] asArray(Class<? super T> clazz) {
-    return asArray((LowLevelIterator<T>)fsIterator(), clazz);
+    return asArray((LowLevelIterator<T>)fsIterator(true), clazz);
   }
   
   /**
@@ -916,83 +1060,186 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
    *   ORDERED - unless orderNotNeeded index or not SORTED_INDEX or SET_INDEX
    *   SORTED - only for SORTED_INDEX (and not orderNotNeeded?)
    *   SIZED - if exact size is (easily) known, just from index.
-   *           false if bounded, unambiguous
-   *   SUBSIZED - if spliterator result from trysplit also is SIZED, set to true for now
+   *           false if bounded, unambiguous, limited, shifted or positioned
+   *   SUBSIZED - the results of trySplit are always SIZED
    * 
    * trySplit impl: 
-   *   always returns null (no parallelism support for now) 
+   *   The first trySplit call takes a snapshot of the remaining elements into an array, 
+   *   in iterator order; this and subsequent calls split off the first half of the 
+   *   remaining array range.  Sequential streams never call trySplit, and 
+   *   don't pay for the snapshot.
+   *   
+   *   Parallel streams are only supported for reading, with no concurrent updates to the CAS.
    * @return the spliterator 
    */
   @Override
   public Spliterator<T> spliterator() {
-    return new Spliterator<T>() {
+    FSIterator<T> it = fsIterator(true);
+    
+    final FSIndex<T> localIndex = index;
+    
+    final Comparator<? super T> comparator = 
+        (localIndex != null && localIndex.getIndexingStrategy() == FSIndex.SORTED_INDEX) 
+          ? (Comparator<? super T>)localIndex 
+          : null;
+    
+    // always set
+    int c = Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.DISTINCT;
+    
+    final boolean isSized = 
+        localIndex != null &&
+        boundsUse == BoundsUse.notBounded && 
+        !isNonOverlapping &&
+        !isAllViews &&
+        limit == -1 &&
+        shift == 0 &&
+        startingFs == null;
+    if (isSized) {
+      c |= Spliterator.SIZED | Spliterator.SUBSIZED;
+    }
+    
+    // set per indexing strategy
+    switch ((null == localIndex) ? -1 : localIndex.getIndexingStrategy()) {
+    case FSIndex.SORTED_INDEX: c |= Spliterator.ORDERED | Spliterator.SORTED; break;
+    case FSIndex.SET_INDEX: c |= Spliterator.ORDERED; break;
+    default: // do nothing
+    }
+    
+    return new FsSpliterator(it, isSized ? localIndex.size() : Long.MAX_VALUE, c, comparator);
+  }
+  
+  /**
+   * Spliterator over the results of a select, either
+   *   - using the select's iterator, before any split, or
+   *   - over a range of a snapshot array, after the first split
+   */
+  private class FsSpliterator implements Spliterator<T> {
+    
+    /** don't split ranges smaller than this */
+    private static final int MIN_SPLIT_SIZE = 64;
 
-      private final FSIterator<T> it = fsIterator();
-      
-      private final FSIndex<T> localIndex = index;
-      
-      private final Comparator<? super T> comparator = 
-          (localIndex != null && localIndex.getIndexingStrategy() == FSIndex.SORTED_INDEX) 
-            ? (Comparator<? super T>)localIndex 
-            : null;
-                                                          
-      private final int characteristics;
-      { // set the characteristics and comparator
-        // always set
-        int c = Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.DISTINCT;
-        
-        if (boundsUse == BoundsUse.notBounded && !isNonOverlapping) {
-          c |= Spliterator.SIZED | Spliterator.SUBSIZED;
-        }
-        
-        // set per indexing strategy
-        switch ((null == localIndex) ? -1 : localIndex.getIndexingStrategy()) {
-        case FSIndex.SORTED_INDEX: c |= Spliterator.ORDERED | Spliterator.SORTED; break;
-        case FSIndex.SET_INDEX: c |= Spliterator.ORDERED; break;
-        default: // do nothing
+    /** null after the snapshot is taken */
+    private FSIterator<T> it;
+    
+    private final long sizeFromIndex;
+    
+    private int characteristics;
+    
+    private final Comparator<? super T> comparator;
+    
+    /** the snapshot, null until the first split */
+    private T[] a = null;
+    /** next item in the snapshot */
+    private int pos;
+    /** end of the range of the snapshot, exclusive */
+    private int end;
+    
+    FsSpliterator(FSIterator<T> it, long sizeFromIndex, int characteristics, Comparator<? super T> comparator) {
+      this.it = it;
+      this.sizeFromIndex = sizeFromIndex;
+      this.characteristics = characteristics;
+      this.comparator = comparator;
+    }
+    
+    FsSpliterator(T[] a, int pos, int end, int characteristics, Comparator<? super T> comparator) {
+      this.it = null;
+      this.sizeFromIndex = -1;
+      this.a = a;
+      this.pos = pos;
+      this.end = end;
+      this.characteristics = characteristics;
+      this.comparator = comparator;
+    }
+    
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      if (a != null) {
+        if (pos < end) {
+          action.accept(a[pos++]);
+          return true;
         }
-        
-        characteristics = c;        
+        return false;
       }
       
-      @Override
-      public boolean tryAdvance(Consumer<? super T> action) {
-        if (it.isValid()) {
-          action.accept(it.getNvc());
-          incr(it);
-          return true;
+      if (it.isValid()) {
+        action.accept(it.getNvc());
+        incr(it);
+        return true;
+      }
+      return false;
+    }
+    
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+      if (a != null) {
+        final T[] la = a;
+        final int lend = end;
+        for (int i = pos; i < lend; i++) {
+          action.accept(la[i]);
         }
-        return false;
+        pos = lend;
+        return;
+      }
+      
+      while (it.isValid()) {
+        action.accept(it.getNvc());
+        incr(it);
       }
+    }
 
-      @Override
-      public Spliterator<T> trySplit() {
-        // return null for now
-        // could implement something based on type of fsIterator.
+    @Override
+    public Spliterator<T> trySplit() {
+      if (a == null) {
+        takeSnapshot();
+      }
+      final int mid = (pos + end) >>> 1;
+      if (mid - pos < MIN_SPLIT_SIZE) {
         return null;
       }
-
-      @Override
-      public long estimateSize() {
-        return ((characteristics & Spliterator.SIZED) == Spliterator.SIZED && localIndex != null) ? localIndex.size() : Long.MAX_VALUE;
+      Spliterator<T> prefix = new FsSpliterator(a, pos, mid, characteristics, comparator);
+      pos = mid;
+      return prefix;
+    }
+    
+    /**
+     * Converts this spliterator to the array form, 
+     * holding the elements from the current iterator position to the end
+     */
+    private void takeSnapshot() {
+      ArrayList<T> al = new ArrayList<>();
+      while (it.isValid()) {
+        al.add(it.getNvc());
+        incr(it);
       }
+      @SuppressWarnings("unchecked")
+      final T[] snapshot = (T[]) al.toArray(new FeatureStructure[al.size()]);
+      a = snapshot;
+      pos = 0;
+      end = a.length;
+      it = null;
+      characteristics |= Spliterator.SIZED | Spliterator.SUBSIZED;
+    }
 
-      @Override
-      public int characteristics() {
-        return characteristics;
-      }
+    @Override
+    public long estimateSize() {
+      return (a != null) ? (end - pos) : sizeFromIndex;
+    }
 
-      @Override
-      public Comparator<? super T> getComparator() {
-        if (comparator != null) {
-          return comparator;
-        }
-        if ((characteristics & Spliterator.SORTED) == Spliterator.SORTED) {
-          return null;
-        }
-        throw new IllegalStateException();
+    @Override
+    public int characteristics() {
+      return characteristics;
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+      if (comparator != null) {
+        return comparator;
       }
-    };
+      if ((characteristics & Spliterator.SORTED) == Spliterator.SORTED) {
+        return null;
+      }
+      throw new IllegalStateException();
+    }
   }
   
   /*
@@ -1559,6 +1806,6 @@ public class SelectFSs_impl <T extends FeatureStructure> implements SelectFSs<T>
   @Override
   public boolean isEmpty() {
     if (this.limit == 0) return true;
-    return fsIterator().size() == 0;
+    return fsIterator(true).size() == 0;
   }
 }
@@ -448,6 +448,12 @@ public class TypeSystemImpl implements TypeSystem, TypeSystemMgr, LowLevelTypeSy
    */
   private final Map<ClassLoader, FsGenerator3[]> generators4pearsByClassLoader = new IdentityHashMap<>();
   
+  /**
+   * Lock for setting the java classes of the types of this type system, 
+   * whose JCas classes may be loaded for several class loaders in parallel
+   */
+  final Object javaClassesLock = new Object();
+  
   private int nextI;  // temp value used in computing adjusted offsets 
   private int nextR;  // temp value used in computing adjusted offsets
   private Map<String, JCasClassInfo> type2jcci;  // temp value used in computing adjusted offsets
@@ -2911,6 +2917,9 @@ public class TypeSystemImpl implements TypeSystem, TypeSystemMgr, LowLevelTypeSy
   /**
    * Called when switching or initializing CAS's shared-view-data instance of FsGenerator[]
    * generators are kept in a map, unique for each type system, keyed by classloader.
+   * 
+   * The map is not locked while loading the JCas classes, so that several class loaders can load them in parallel;
+   * concurrent loads for the same class loader are done once, by FSClassRegistry.
    * @param cl the class loader
    * @param isPear -
    * @return the generators
@@ -2918,13 +2927,16 @@ public class TypeSystemImpl implements TypeSystem, TypeSystemMgr, LowLevelTypeSy
   public FsGenerator3[] getGeneratorsForClassLoader(ClassLoader cl, boolean isPear) {
     Map<ClassLoader, FsGenerator3[]> gByC = isPear ? generators4pearsByClassLoader : generatorsByClassLoader;
     synchronized (gByC) {
-      
       FsGenerator3[] g = gByC.get(cl); // a separate map per type system instance
-      if (g == null && ! skip_loading_user_jcas) {
-        g = FSClassRegistry.getGeneratorsForClassLoader(cl, isPear, this);
-        gByC.put(cl, g);
+      if (g != null || skip_loading_user_jcas) {
+        return g;
       } 
-      return g;
+    }
+    
+    FsGenerator3[] g = FSClassRegistry.getGeneratorsForClassLoader(cl, isPear, this);
+    synchronized (gByC) {
+      FsGenerator3[] prev = gByC.putIfAbsent(cl, g);
+      return (prev == null) ? g : prev;
     }
   }
     
@@ -152,6 +152,11 @@ public class XCASDeserializer {
     final private List<Runnable> fixupToDos = new ArrayList<>();
     final private List<Runnable> uimaSerializableFixups = new ArrayList<>();
     
+    /**
+     * a list by view of FSs to be added to the indexes, once all are finalized
+     */
+    final private DeferredIndexUpdates toBeAdded = new DeferredIndexUpdates();
+    
     // What we expect next.
     private int state;
 
@@ -845,6 +850,9 @@ public class XCASDeserializer {
       for (int i = 0; i < idLess.size(); i++) {
         finalizeFS(idLess.get(i));
       }
+      for (Map.Entry<FSIndexRepositoryImpl, List<TOP>> e : toBeAdded.entrySet()) {
+        e.getKey().addFSs(e.getValue());
+      }
       // time = System.currentTimeMillis() - time;
       // System.out.println("Done in " + new TimeSpan(time));
 
@@ -877,7 +885,7 @@ public class XCASDeserializer {
     }
 
     private void finalizeFS(FSInfo fsInfo) {
-      finalizeAddToIndexes(fsInfo);  // must be done after fixes the sofa refs
+      finalizeAddToIndexes(fsInfo);  // must be done after fixes the sofa refs; the adding is deferred to the end
     }
 
     /**
@@ -954,10 +962,10 @@ public class XCASDeserializer {
         // Now add FS to all specified index repositories
         for (int i = 0; i < fsInfo.indexRep.size(); i++) {
           if (indexMap.size() == 1) {
-            ((FSIndexRepositoryImpl) indexRepositories.get(fsInfo.indexRep.get(i))).addFS(fsInfo.fs);
+            toBeAdded.addTodo((FSIndexRepositoryImpl) indexRepositories.get(fsInfo.indexRep.get(i)), fsInfo.fs);
           } else {
-            ((FSIndexRepositoryImpl) indexRepositories.get(indexMap.get(fsInfo.indexRep.get(i))))
-                    .addFS(fsInfo.fs);
+            toBeAdded.addTodo((FSIndexRepositoryImpl) indexRepositories.get(indexMap.get(fsInfo.indexRep.get(i))),
+                    fsInfo.fs);
           }
         }
       }
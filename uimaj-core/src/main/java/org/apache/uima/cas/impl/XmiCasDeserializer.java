@@ -1774,11 +1774,7 @@ public class XmiCasDeserializer {
       //   These come from the add list
       // https://issues.apache.org/jira/browse/UIMA-4099
       for (Entry<FSIndexRepositoryImpl, List<TOP>> e : toBeAdded.entrySet()) {
-        FSIndexRepositoryImpl indexRep = e.getKey();
-        final List<TOP> todo = e.getValue();
-        for (TOP fs : todo) {
-          indexRep.addFS(fs);
-        }
+        e.getKey().addFSs(e.getValue());
       }
       
       // remove FSs from indexes
@@ -97,6 +97,29 @@ public interface CpeCasProcessors extends MetaDataObject {
    */
   public int getConcurrentPUCount();
 
+  /**
+   * Sets how the threads running the ProcessingUnits are created: <code>null</code> to run each
+   * ProcessingUnit in its own platform thread, <code>virtual</code> to run them in virtual threads
+   * (requires Java 21 or later), or the name of a class implementing
+   * {@link java.util.concurrent.ThreadFactory}, with a public no-argument constructor.
+   * 
+   * <p>Running ProcessingUnits in virtual threads allows a large number of them when most of their
+   * time is spent waiting for remote CasProcessors.
+   * 
+   * @param aThreadFactory -
+   *          <code>null</code>, <code>virtual</code>, or a ThreadFactory class name
+   * @throws CpeDescriptorException tbd
+   */
+  public void setProcessingUnitThreadFactory(String aThreadFactory) throws CpeDescriptorException;
+
+  /**
+   * Returns how the threads running the ProcessingUnits are created, see
+   * {@link #setProcessingUnitThreadFactory(String)}.
+   * 
+   * @return - <code>null</code>, <code>virtual</code>, or a ThreadFactory class name
+   */
+  public String getProcessingUnitThreadFactory();
+
   /**
    * Inserts a new CasProcessor at an indicated position.
    * 
@@ -77,4 +77,21 @@ public interface CpeCheckpoint extends MetaDataObject {
 
   public int getBatchSize();
 
+  /**
+   * Sets the format of the checkpoint file: <code>null</code> to serialize each checkpoint as a
+   * Java object, or <code>log</code> to append the checkpoints to a binary log, which only holds
+   * what changed since the previous checkpoint.
+   * 
+   * @param aFormat -
+   *          <code>null</code> or <code>log</code>
+   */
+  public void setFormat(String aFormat);
+
+  /**
+   * Returns the format of the checkpoint file, see {@link #setFormat(String)}.
+   * 
+   * @return - <code>null</code> or <code>log</code>
+   */
+  public String getFormat();
+
 }
@@ -24,7 +24,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
 
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -81,6 +80,31 @@ public class AnalysisEnginePool {
    */
   public AnalysisEnginePool(String aName, int aNumInstances, ResourceSpecifier aResourceSpecifier,
           Map<String, Object> aResourceInitParams) throws ResourceInitializationException {
+    this(aName, aNumInstances, aResourceSpecifier, aResourceInitParams, 1);
+  }
+
+  /**
+   * Creates a new AnalysisEnginePool.
+   * 
+   * @param aName
+   *          the pool name
+   * @param aNumInstances
+   *          the number of Resource instances in the pool
+   * @param aResourceSpecifier
+   *          specifier that describes how to create the Resource instances for the pool
+   * @param aResourceInitParams
+   *          additional parameters to be passed to
+   *          {@link Resource#initialize(ResourceSpecifier,Map)} methods. May be null if there are
+   *          no parameters.
+   * @param aNumInitializationThreads
+   *          the maximum number of threads initializing the AnalysisEngines after the first one
+   * 
+   * @throws ResourceInitializationException
+   *           if the Resource instances could not be created
+   */
+  public AnalysisEnginePool(String aName, int aNumInstances, ResourceSpecifier aResourceSpecifier,
+          Map<String, Object> aResourceInitParams, int aNumInitializationThreads)
+          throws ResourceInitializationException {
     if (aResourceInitParams == null) {
       aResourceInitParams = new HashMap<>();
     } else {
@@ -89,7 +113,38 @@ public class AnalysisEnginePool {
 
     // initialize ResourcePool
     mPool = new ResourcePool(aNumInstances, aResourceSpecifier, getResourceClass(),
-            aResourceInitParams);
+            aResourceInitParams, aNumInitializationThreads) {
+      @Override
+      protected void prepareNewInstance(Resource aResource) {
+        // apply what was set on the instances of the pool before this one was added
+        AnalysisEngine ae = (AnalysisEngine) aResource;
+        ResultSpecification resultSpec = mResultSpec;
+        if (resultSpec != null) {
+          ae.setResultSpecification(resultSpec);
+        }
+        Logger logger = mLogger;
+        if (logger != null) {
+          ae.setLogger(logger);
+        }
+      }
+    };
+  }
+
+  /**
+   * Makes this pool elastic: its current size becomes its minimum size, and it grows up to
+   * <code>aMaxInstances</code> AnalysisEngines when requests have to wait, and shrinks back when
+   * AnalysisEngines are left idle.
+   * 
+   * @param aMaxInstances
+   *          the maximum number of AnalysisEngines in the pool
+   * @param aGrowthWaitTime
+   *          the time, in milliseconds, a request waits for an AnalysisEngine before the pool grows
+   * @param aIdleTime
+   *          the time, in milliseconds, an AnalysisEngine is left unused before it is destroyed
+   * @see ResourcePool#makeElastic(int, long, long)
+   */
+  public void makeElastic(int aMaxInstances, long aGrowthWaitTime, long aIdleTime) {
+    mPool.makeElastic(aMaxInstances, aGrowthWaitTime, aIdleTime);
   }
 
   /**
@@ -152,14 +207,20 @@ public class AnalysisEnginePool {
    * @param aResultSpec -
    */
   public void setResultSpecification(ResultSpecification aResultSpec) {
+    mResultSpec = aResultSpec;
     
     // set Result Spec on each AnalysisEngine in the pool
-
-    Vector<Resource> allInstances = mPool.getAllInstances();
-    for (int i = 0; i < mPool.getSize(); i++) {
-      AnalysisEngine ae = (AnalysisEngine)allInstances.get(i);
+    // (a copy of the instances, as an elastic pool may change them meanwhile)
+    List<Resource> allInstances;
+    synchronized (mPool) {
+      allInstances = new ArrayList<>(mPool.getAllInstances());
+    }
+    for (Resource r : allInstances) {
+      AnalysisEngine ae = (AnalysisEngine) r;
       
-      mPool.checkoutSpecificResource(ae);
+      if (!mPool.checkoutSpecificResource(ae)) {
+        continue;  // destroyed by an elastic pool
+      }
       
       try {
       //    set result spec
@@ -186,25 +247,7 @@ public class AnalysisEnginePool {
    */
   public synchronized void reconfigure() throws ResourceConfigurationException {
     // reconfigure each AnalysisEngine in the pool
-    List<AnalysisEngine> toRelease = new ArrayList<>();
-    try {
-      for (int i = 0; i < mPool.getSize(); i++) {
-        // get an Analysis Engine from the pool
-        AnalysisEngine ae = (AnalysisEngine) mPool.getResource(0); // wait forever
-
-        // store AE instance on List to be released later
-        toRelease.add(ae);
-
-        // reconfigure
-        ae.reconfigure();
-      }
-    } finally {
-      // release all AnalysisEngines back to pool
-      Iterator<AnalysisEngine> it = toRelease.iterator();
-      while (it.hasNext()) {
-        mPool.releaseResource(it.next());
-      }
-    }
+    forEachInstance(ae -> ae.reconfigure());
   }
 
   /**
@@ -212,24 +255,7 @@ public class AnalysisEnginePool {
    * @throws AnalysisEngineProcessException -
    */
   public synchronized void batchProcessComplete() throws AnalysisEngineProcessException {
-    List<AnalysisEngine> toRelease = new ArrayList<>();
-    try {
-      for (int i = 0; i < mPool.getSize(); i++) {
-        // get an Analysis Engine from the pool
-        AnalysisEngine ae = (AnalysisEngine) mPool.getResource(0); // wait forever
-
-        // store AE instance on List to be released later
-        toRelease.add(ae);
-
-        ae.batchProcessComplete();
-      }
-    } finally {
-      // release all AnalysisEngines back to pool
-      Iterator<AnalysisEngine> it = toRelease.iterator();
-      while (it.hasNext()) {
-        mPool.releaseResource(it.next());
-      }
-    }
+    forEachInstance(ae -> ae.batchProcessComplete());
   }
 
   /**
@@ -237,24 +263,7 @@ public class AnalysisEnginePool {
    * @throws AnalysisEngineProcessException -
    */
   public synchronized void collectionProcessComplete() throws AnalysisEngineProcessException {
-    List<AnalysisEngine> toRelease = new ArrayList<>();
-    try {
-      for (int i = 0; i < mPool.getSize(); i++) {
-        // get an Analysis Engine from the pool
-        AnalysisEngine ae = (AnalysisEngine) mPool.getResource(0); // wait forever
-
-        // store AE instance on List to be released later
-        toRelease.add(ae);
-
-        ae.collectionProcessComplete();
-      }
-    } finally {
-      // release all AnalysisEngines back to pool
-      Iterator<AnalysisEngine> it = toRelease.iterator();
-      while (it.hasNext()) {
-        mPool.releaseResource(it.next());
-      }
-    }
+    forEachInstance(ae -> ae.collectionProcessComplete());
   }
 
   /**
@@ -267,22 +276,102 @@ public class AnalysisEnginePool {
     return mPool.getSize();
   }
 
+  /**
+   * @return the minimum size of this pool, which is its size unless it is elastic
+   */
+  public int getMinSize() {
+    return mPool.getMinSize();
+  }
+
+  /**
+   * @return the maximum size of this pool, which is its size unless it is elastic
+   */
+  public int getMaxSize() {
+    return mPool.getMaxSize();
+  }
+
+  /**
+   * @return the number of AnalysisEngines currently available in this pool
+   */
+  public int getNumAvailable() {
+    return mPool.getNumAvailable();
+  }
+
+  /**
+   * @return the number of requests currently waiting for an AnalysisEngine
+   */
+  public int getNumWaiting() {
+    return mPool.getNumWaiting();
+  }
+
+  /**
+   * @return the number of requests which had to wait for an AnalysisEngine
+   */
+  public long getWaitCount() {
+    return mPool.getWaitCount();
+  }
+
+  /**
+   * @return the total time, in milliseconds, requests waited for an AnalysisEngine
+   */
+  public long getTotalWaitTime() {
+    return mPool.getTotalWaitTime();
+  }
+
+  /**
+   * Gets the time it took to create and initialize each AnalysisEngine of this pool.
+   * 
+   * @return the initialization time of each instance, in milliseconds
+   */
+  public long[] getInitializationTimes() {
+    return mPool.getInitializationTimes();
+  }
+
   /**
    * Sets logger for all AnalysisEngines in pool.
    * @param aLogger -
    */
   public synchronized void setLogger(Logger aLogger) {
+    mLogger = aLogger;
+    forEachInstance(ae -> ae.setLogger(aLogger));
+  }
+
+  /**
+   * An action on an AnalysisEngine of the pool
+   * @param <E> the exception it may throw
+   */
+  private interface AnalysisEngineAction<E extends Exception> {
+    void apply(AnalysisEngine ae) throws E;
+  }
+
+  /**
+   * Applies an action to all the AnalysisEngines in the pool, checking out each of them,
+   * and releasing them all when done.
+   * 
+   * The instances are the ones in the pool when called, checked out specifically: waiting for
+   * any instance would make an elastic pool grow when one is busy.
+   * @param aAction the action
+   * @param <E> the exception the action may throw
+   * @throws E the first exception thrown by the action, after which it is not applied to the 
+   *           remaining instances 
+   */
+  private <E extends Exception> void forEachInstance(AnalysisEngineAction<E> aAction) throws E {
+    List<Resource> allInstances;
+    synchronized (mPool) {
+      allInstances = new ArrayList<>(mPool.getAllInstances());
+    }
     List<AnalysisEngine> toRelease = new ArrayList<>();
     try {
-      for (int i = 0; i < mPool.getSize(); i++) {
-        // get an Analysis Engine from the pool
-        AnalysisEngine ae = (AnalysisEngine) mPool.getResource(0); // wait forever
+      for (Resource r : allInstances) {
+        AnalysisEngine ae = (AnalysisEngine) r;
+        if (!mPool.checkoutSpecificResource(ae)) {
+          continue;  // destroyed by an elastic pool
+        }
 
         // store AE instance on List to be released later
         toRelease.add(ae);
 
-        // reconfigure
-        ae.setLogger(aLogger);
+        aAction.apply(ae);
       }
     } finally {
       // release all AnalysisEngines back to pool
@@ -305,4 +394,9 @@ public class AnalysisEnginePool {
 
   /** Pool of AnalysisEngine instances. */
   private ResourcePool mPool;
+
+  /** the last Result Specification and logger set on all the instances, if any */
+  private volatile ResultSpecification mResultSpec;
+
+  private volatile Logger mLogger;
 }
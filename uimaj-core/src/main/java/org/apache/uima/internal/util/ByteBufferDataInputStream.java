@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.internal.util;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A DataInputStream reading from a ByteBuffer, typically a MappedByteBuffer
+ * over a file.
+ *
+ * Besides the normal DataInputStream reads, this supports handing out
+ * a stream over the next n bytes which shares the underlying buffer (no copy),
+ * used by the Form 6 deserializer to inflate the compressed
+ * streams directly from the mapped file.
+ *
+ * Mark / reset are supported; the readlimit is ignored.
+ *
+ * Not thread safe.
+ */
+public class ByteBufferDataInputStream extends DataInputStream {
+
+  private final ByteBufferInputStream bbis;
+
+  /**
+   * @param buffer the bytes to read, from its position to its limit.
+   *        The buffer's position is advanced as the bytes are read.
+   */
+  public ByteBufferDataInputStream(ByteBuffer buffer) {
+    super(new ByteBufferInputStream(buffer, false));
+    bbis = (ByteBufferInputStream) in;
+  }
+
+  /**
+   * @return the underlying buffer, positioned at the next byte to read
+   */
+  public ByteBuffer getBuffer() {
+    return bbis.buf;
+  }
+
+  /**
+   * Returns a stream over the next length bytes, which shares the underlying buffer,
+   * and skips over those bytes in this stream.
+   *
+   * @param length the number of bytes to include
+   * @param addDummyByte true to have the returned stream return one extra 0 byte at the end,
+   *          as required by an Inflater using the nowrap option
+   * @return an input stream over the next length bytes
+   * @throws EOFException if there are fewer than length bytes remaining
+   */
+  public InputStream sliceStream(int length, boolean addDummyByte) throws EOFException {
+    final ByteBuffer buf = bbis.buf;
+    if (length > buf.remaining()) {
+      throw new EOFException();
+    }
+    final ByteBuffer slice = buf.duplicate();
+    slice.limit(slice.position() + length);
+    buf.position(buf.position() + length);
+    return new ByteBufferInputStream(slice, addDummyByte);
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buf;
+
+    /** if true, a single 0 byte is returned after the buffer contents, before end-of-stream */
+    private boolean isDummyBytePending;
+
+    private int markPos = -1;
+
+    private boolean markIsDummyBytePending;
+
+    ByteBufferInputStream(ByteBuffer buf, boolean addDummyByte) {
+      this.buf = buf;
+      this.isDummyBytePending = addDummyByte;
+    }
+
+    @Override
+    public int read() {
+      if (buf.hasRemaining()) {
+        return buf.get() & 0xff;
+      }
+      if (isDummyBytePending) {
+        isDummyBytePending = false;
+        return 0;
+      }
+      return -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      final int remaining = buf.remaining();
+      if (remaining == 0) {
+        if (isDummyBytePending) {
+          isDummyBytePending = false;
+          b[off] = 0;
+          return 1;
+        }
+        return -1;
+      }
+      final int n = Math.min(len, remaining);
+      buf.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      final int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+      buf.position(buf.position() + k);
+      return k;
+    }
+
+    @Override
+    public int available() {
+      return buf.remaining() + (isDummyBytePending ? 1 : 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+      markPos = buf.position();
+      markIsDummyBytePending = isDummyBytePending;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+      if (markPos < 0) {
+        throw new IOException("Resetting to invalid mark");
+      }
+      buf.position(markPos);
+      isDummyBytePending = markIsDummyBytePending;
+    }
+  }
+}
@@ -21,6 +21,7 @@ package org.apache.uima.internal.util;
 
 import java.lang.reflect.Array;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -428,6 +429,148 @@ public class OrderedFsSet_array<T extends FeatureStructure> implements Iterable<
     return true;
   }
   
+  /**
+   * Restores the order after the keys of some elements may have been modified in place.
+   * 
+   * The modified elements are taken out in one pass, sorted, and merged back in one pass, 
+   * which is much faster than removing and adding back each one when there are many.
+   * The unmodified elements are still in order relative to each other.
+   * 
+   * @param modified the elements whose keys may have been modified;
+   *                 ones not in this set are ignored (identity is used)
+   * @param comparator the comparator used for adding: if an element compares equal to another, 
+   *                   (only possible for set indexes), it is not added back
+   */
+  public void reorder(Set<? extends FeatureStructure> modified, Comparator<TOP> comparator) {
+    final int end = a_nextFreeslot;
+    TOP[] moved = new TOP[Math.min(modified.size(), size())];
+    int nbrMoved = 0;
+    
+    // take out the modified ones, compacting the rest toward the front
+    int keptEnd = a_firstUsedslot;
+    for (int i = a_firstUsedslot; i < end; i++) {
+      final TOP fs = a[i];
+      if (nbrMoved < moved.length && modified.contains(fs)) {
+        moved[nbrMoved++] = fs;
+      } else {
+        a[keptEnd++] = fs;
+      }
+    }
+    if (nbrMoved == 0) {
+      return;
+    }
+    Arrays.sort(moved, 0, nbrMoved, comparator);
+    nbrMoved = removeEqualNeighbors(moved, nbrMoved, comparator);
+    mergeIn(keptEnd, moved, nbrMoved, comparator);
+    Arrays.fill(a, a_nextFreeslot, end, null);
+  }
+  
+  /**
+   * Adds all the items, with the same result as calling add(fs, comparator) for each, in order.
+   * 
+   * The items are sorted (an adaptive merge sort, linear time for items already in order, 
+   * fast for items which are nearly in order) and then merged with the existing elements in one pass,
+   * instead of doing a binary search and a shift of the existing elements for each one.
+   *   
+   * @param fss the items to add
+   * @param comparator either the comparator without type with ID for sorted indexes, or the comparator withoutType without ID for set indexes
+   */
+  public void addAll(Collection<? extends TOP> fss, Comparator<TOP> comparator) {
+    final int n = fss.size();
+    if (n == 0) {
+      return;
+    }
+    
+    if (isEmpty()) {
+      // sort in place
+      if (a.length < n) {
+        a = new TOP[n];
+      }
+      int i = 0;
+      for (TOP fs : fss) {
+        a[i++] = fs;
+      }
+      Arrays.sort(a, 0, n, comparator);
+      final int nbrAdded = removeEqualNeighbors(a, n, comparator);
+      Arrays.fill(a, nbrAdded, n, null);
+      a_firstUsedslot = 0;
+      a_nextFreeslot = nbrAdded;
+    } else {
+      TOP[] added = fss.toArray(new TOP[n]);
+      Arrays.sort(added, comparator);
+      final int nbrAdded = removeEqualNeighbors(added, n, comparator);
+      final int minLength = a_nextFreeslot + nbrAdded;
+      if (a.length < minLength) {
+        a = Arrays.copyOf(a, Math.max(minLength, (a.length > multiplication_limit)
+                                                   ? a.length + multiplication_limit
+                                                   : (a.length << 1)));
+      }
+      mergeIn(a_nextFreeslot, added, nbrAdded, comparator);
+    }
+    maxSize = Math.max(maxSize, size());
+  }
+  
+  /**
+   * Removes, from sorted items, any which compare equal to the one before (only possible for set indexes),
+   * keeping the first of each equal run
+   * @param fss the sorted items
+   * @param n the number of items, &gt; 0
+   * @param comparator the comparator used to sort
+   * @return the number of items remaining, at the front of fss
+   */
+  private static int removeEqualNeighbors(TOP[] fss, int n, Comparator<TOP> comparator) {
+    int w = 1;
+    for (int i = 1; i < n; i++) {
+      if (comparator.compare(fss[i], fss[w - 1]) != 0) {
+        fss[w++] = fss[i];
+      }
+    }
+    return w;
+  }
+  
+  /**
+   * Merges sorted items, no two equal, into the elements from a_firstUsedslot up to keptEnd,
+   * leaving out any item equal to one of those elements (only possible for set indexes).
+   * 
+   * The merge goes from the end backwards, so it never overwrites unread elements. 
+   * There must be room in a for all the items after keptEnd.
+   * 
+   * Side effects: a_nextFreeslot set to keptEnd + nbrItems;
+   *               a_firstUsedslot adjusted if some items were left out
+   * 
+   * @param keptEnd the end (exclusive) of the existing elements
+   * @param items the sorted items to merge in
+   * @param nbrItems the number of items
+   * @param comparator the comparator the elements and items are sorted by
+   */
+  private void mergeIn(int keptEnd, TOP[] items, int nbrItems, Comparator<TOP> comparator) {
+    final int end = keptEnd + nbrItems;
+    int k = keptEnd - 1;
+    int m = nbrItems - 1;
+    int w = end - 1;
+    while (m >= 0) {
+      final TOP fs = items[m];
+      final int c = (k >= a_firstUsedslot) ? comparator.compare(fs, a[k]) : 1;
+      if (c < 0) {
+        a[w--] = a[k--];
+        continue;
+      }
+      m--;
+      if (c == 0) {
+        continue;  // set index: keep the existing one
+      }
+      a[w--] = fs;
+    }
+    // shift the rest of the existing ones, if some items were left out
+    if (w > k) {
+      while (k >= a_firstUsedslot) {
+        a[w--] = a[k--];
+      }
+      Arrays.fill(a, a_firstUsedslot, w + 1, null);
+      a_firstUsedslot = w + 1;
+    }
+    a_nextFreeslot = end;
+  }
   
   /**
    * @see Set#clear()
@@ -19,10 +19,20 @@
 
 package org.apache.uima.internal.util;
 
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.resource.Resource;
@@ -42,6 +52,13 @@ import org.apache.uima.util.Level;
  * pool. All resources are assumed to be equivalent and to share the same metadata. Therefore, the
  * resource metadata can be retrieved via the {@link #getMetaData()} method without checking out a
  * Resource instance from the pool.
+ * <p>
+ * The first instance is initialized alone. The others may then be initialized concurrently (see
+ * {@link #ResourcePool(int, ResourceSpecifier, Class, Map, int)}); for them to share the resources
+ * loaded by the first one, the initialization parameters must include the
+ * {@link Resource#PARAM_RESOURCE_MANAGER ResourceManager} to share.
+ * <p>
+ * The pool has a fixed size, unless it is made elastic by {@link #makeElastic(int, long, long)}.
  * 
  * 
  * 
@@ -95,7 +112,37 @@ public class ResourcePool {
    */
   public ResourcePool(int aNumInstances, ResourceSpecifier aResourceSpecifier,
           Class<? extends Resource> aResourceClass, Map<String, Object> aResourceInitParams) throws ResourceInitializationException {
+    this(aNumInstances, aResourceSpecifier, aResourceClass, aResourceInitParams, 1);
+  }
+
+  /**
+   * Creates new ResourcePool_impl
+   * 
+   * @param aNumInstances
+   *          the number of Resource instances in the pool
+   * @param aResourceSpecifier
+   *          specifier that describes how to create the Resource instances for the pool
+   * @param aResourceClass
+   *          class of resource to instantiate
+   * @param aResourceInitParams
+   *          additional parameters to be passed to
+   *          {@link Resource#initialize(ResourceSpecifier,Map)} methods. May be null if there are
+   *          no parameters.
+   * @param aNumInitializationThreads
+   *          the maximum number of threads initializing the Resource instances after the first
+   *          one. A value of 1 initializes them one after the other.
+   * 
+   * @throws ResourceInitializationException
+   *           if the Resource instances could not be created
+   */
+  public ResourcePool(int aNumInstances, ResourceSpecifier aResourceSpecifier,
+          Class<? extends Resource> aResourceClass, Map<String, Object> aResourceInitParams,
+          int aNumInitializationThreads) throws ResourceInitializationException {
     mNumInstances = aNumInstances;
+    mNumInitializationThreads = aNumInitializationThreads;
+    mResourceSpecifier = aResourceSpecifier;
+    mResourceClass = aResourceClass;
+    mResourceInitParams = aResourceInitParams;
 
     fillPool(aResourceSpecifier, aResourceClass, aResourceInitParams);
 
@@ -112,7 +159,10 @@ public class ResourcePool {
    */
   public synchronized Resource getResource() {
     if (!mFreeInstances.isEmpty()) {
-      Resource r = mFreeInstances.remove(0);
+      // an elastic pool hands out the instance released last, leaving the others idle
+      // so that they can be destroyed if the load decreases
+      Resource r = isElastic() ? mFreeInstances.remove(mFreeInstances.size() - 1)
+              : mFreeInstances.remove(0);
       /*
        * UIMAFramework.getLogger().log( "Acquired resource " + r.getMetaData().getUUID() + " from
        * pool.");
@@ -144,6 +194,9 @@ public class ResourcePool {
        */
       // Add the Resource to the end of the free instances List
       mFreeInstances.add(aResource);
+      if (isElastic()) {
+        mIdleSince.put(aResource, System.currentTimeMillis());
+      }
     }
 
     // Notify any threads waiting on this object
@@ -152,7 +205,8 @@ public class ResourcePool {
 
   /**
    * Checks out a Resource from the pool. If none is currently available, wait for the specified
-   * amount of time for one to be checked in.
+   * amount of time for one to be checked in. An elastic pool adds an instance, if it may, when a
+   * request has waited for its growth wait time.
    * 
    * @param aTimeout
    *          the time to wait in milliseconds. A value of &lt;=0 will wait forever.
@@ -162,40 +216,197 @@ public class ResourcePool {
    *         becomes available).
    */
   public synchronized Resource getResource(long aTimeout) {
-    long startTime = new Date().getTime();
-    Resource resource;
-    while ((resource = getResource()) == null) {
-      try {
-        wait(aTimeout);
-      } catch (InterruptedException e) {
-      }
-      if (aTimeout > 0 && (new Date().getTime() - startTime) >= aTimeout) {
-        // Timeout has expired
-        return null;
+    Resource resource = getResource();
+    if (resource != null) {
+      return resource;
+    }
+    long startTime = System.currentTimeMillis();
+    mNumWaiting++;
+    try {
+      while ((resource = getResource()) == null) {
+        long waited = System.currentTimeMillis() - startTime;
+        if (aTimeout > 0 && waited >= aTimeout) {
+          // Timeout has expired
+          return null;
+        }
+        long waitTime = (aTimeout > 0) ? aTimeout - waited : 0;
+        if (isElastic()) {
+          if (waited >= mGrowthWaitTime) {
+            grow();
+          } else if (waitTime == 0 || waitTime > mGrowthWaitTime - waited) {
+            waitTime = mGrowthWaitTime - waited;
+          }
+        }
+        try {
+          wait(waitTime);
+        } catch (InterruptedException e) {
+        }
       }
+      return resource;
+    } finally {
+      mNumWaiting--;
+      mWaitCount++;
+      mTotalWaitTime += System.currentTimeMillis() - startTime;
     }
-    return resource;
   }
 
-  /*
-   * Checks out a specific resource from the pool, waiting as long as needed until it is free
+  /**
+   * Checks out a specific resource from the pool, waiting as long as needed until it is free.
+   * 
    * @param r
+   *          the resource to check out
+   * @return false if the resource is not, or no longer, in the pool
    */
-
-  public synchronized void checkoutSpecificResource(Resource r) {
+  public synchronized boolean checkoutSpecificResource(Resource r) {
     while (!mFreeInstances.contains(r)) {
+      if (!mAllInstances.contains(r)) {
+        return false;
+      }
       try {
         wait();
       } catch (InterruptedException e) {
       }
     }
     mFreeInstances.remove(r);
+    mIdleSince.remove(r);
+    return true;
   }
-  
+
+  /**
+   * Makes this pool elastic: its current size becomes its minimum size, and it grows up to
+   * <code>aMaxInstances</code> instances when requests have to wait, one instance at a time. An
+   * instance added to the pool is initialized on a background thread, with the same parameters
+   * as the others. When an instance has not been used for <code>aIdleTime</code>, and there are
+   * more than the minimum number of instances, it is destroyed.
+   * 
+   * @param aMaxInstances
+   *          the maximum number of Resource instances in the pool
+   * @param aGrowthWaitTime
+   *          the time, in milliseconds, a request waits for an instance before the pool grows
+   * @param aIdleTime
+   *          the time, in milliseconds, an instance is left unused before it is destroyed
+   */
+  public synchronized void makeElastic(int aMaxInstances, long aGrowthWaitTime, long aIdleTime) {
+    if (isElastic()) {
+      throw new IllegalStateException();
+    }
+    mMinInstances = mNumInstances;
+    mMaxInstances = Math.max(aMaxInstances, mNumInstances);
+    mGrowthWaitTime = aGrowthWaitTime;
+    mIdleTime = aIdleTime;
+    long now = System.currentTimeMillis();
+    for (Resource resource : mFreeInstances) {
+      mIdleSince.put(resource, now);
+    }
+    mElasticityExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "UIMA elastic ResourcePool");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long period = Math.max(1, aIdleTime / 2);
+    mElasticityExecutor.scheduleWithFixedDelay(this::shrink, period, period,
+            TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Adds an instance to the pool, on the elasticity thread, unless one is already being added
+   * or the pool has its maximum size. Called holding the lock on this pool.
+   */
+  private void grow() {
+    if (mGrowing || mNumInstances >= mMaxInstances || mElasticityExecutor.isShutdown()) {
+      return;
+    }
+    mGrowing = true;
+    final int instance = mNumInstances;
+    final int maxInstances = mMaxInstances;
+    mElasticityExecutor.execute(() -> addInstance(instance, maxInstances));
+  }
+
+  private void addInstance(int aInstance, int aMaxInstances) {
+    Resource resource = null;
+    try {
+      resource = produceInstance(aInstance, aMaxInstances, mResourceSpecifier, mResourceClass,
+              mResourceInitParams);
+      prepareNewInstance(resource);
+    } catch (Exception e) {
+      UIMAFramework.getLogger(CLASS_NAME).logrb(Level.WARNING, CLASS_NAME.getName(), "grow",
+              LOG_RESOURCE_BUNDLE, "UIMA_pool_growth_failed__WARNING", e);
+      if (resource != null) {
+        mInitializationTimes.remove(resource);
+        resource.destroy();
+        resource = null;
+      }
+    }
+    synchronized (this) {
+      mGrowing = false;
+      if (resource == null) {
+        // don't try again, it would likely fail the same way
+        mMaxInstances = mNumInstances;
+      } else if (mElasticityExecutor.isShutdown()) {
+        // the pool was destroyed meanwhile
+        mInitializationTimes.remove(resource);
+        resource.destroy();
+      } else {
+        mAllInstances.add(resource);
+        mFreeInstances.add(resource);
+        mIdleSince.put(resource, System.currentTimeMillis());
+        mNumInstances++;
+      }
+      notifyAll();
+    }
+  }
+
+  /**
+   * Destroys the instances idle for longer than the idle time, down to the minimum size of the
+   * pool. Run periodically on the elasticity thread.
+   */
+  private void shrink() {
+    List<Resource> idleInstances = new ArrayList<>();
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      // the first free instances are the ones released first
+      while (mNumWaiting == 0 && mNumInstances > mMinInstances && !mFreeInstances.isEmpty()
+              && now - mIdleSince.get(mFreeInstances.get(0)) >= mIdleTime) {
+        Resource resource = mFreeInstances.remove(0);
+        mAllInstances.remove(resource);
+        mIdleSince.remove(resource);
+        mInitializationTimes.remove(resource);
+        mNumInstances--;
+        idleInstances.add(resource);
+      }
+    }
+    for (Resource resource : idleInstances) {
+      resource.destroy();
+      UIMAFramework.getLogger(CLASS_NAME).logrb(Level.CONFIG, CLASS_NAME.getName(), "shrink",
+              LOG_RESOURCE_BUNDLE, "UIMA_pool_instance_destroyed__CONFIG",
+              new Object[] { mIdleTime, mNumInstances });
+    }
+  }
+
+  /**
+   * Called for each instance added to an elastic pool after its creation, before it is made
+   * available. Does nothing by default; subclasses may override this to give the new instance
+   * the state set on the other instances since they were created.
+   * 
+   * @param aResource
+   *          the new Resource instance
+   * @throws Exception
+   *           if the instance can't be prepared, in which case it is destroyed
+   */
+  protected void prepareNewInstance(Resource aResource) throws Exception {
+  }
+
+  private boolean isElastic() {
+    return mElasticityExecutor != null;
+  }
+
   /**
    * Destroys all Resources in this pool.
    */
   public synchronized void destroy() {
+    if (isElastic()) {
+      mElasticityExecutor.shutdown();
+    }
     Iterator<Resource> i = mAllInstances.iterator();
     while (i.hasNext()) {
       Resource current = i.next();
@@ -203,10 +414,12 @@ public class ResourcePool {
     }
     mAllInstances.clear();
     mFreeInstances.clear();
+    mIdleSince.clear();
+    mInitializationTimes.clear();
   }
 
   /**
-   * Gets the size of this pool (the total number of instances that it can hold).
+   * Gets the size of this pool (the total number of instances that it currently holds).
    * 
    * @return the size of this pool
    */
@@ -214,6 +427,60 @@ public class ResourcePool {
     return mNumInstances;
   }
 
+  /**
+   * Gets the minimum size of this pool, which is its size unless it is elastic.
+   * 
+   * @return the minimum number of instances
+   */
+  public synchronized int getMinSize() {
+    return isElastic() ? mMinInstances : mNumInstances;
+  }
+
+  /**
+   * Gets the maximum size of this pool, which is its size unless it is elastic.
+   * 
+   * @return the maximum number of instances
+   */
+  public synchronized int getMaxSize() {
+    return isElastic() ? mMaxInstances : mNumInstances;
+  }
+
+  /**
+   * Gets the number of instances currently available in this pool.
+   * 
+   * @return the number of available instances
+   */
+  public synchronized int getNumAvailable() {
+    return mFreeInstances.size();
+  }
+
+  /**
+   * Gets the number of requests currently waiting for an instance.
+   * 
+   * @return the number of waiting requests
+   */
+  public synchronized int getNumWaiting() {
+    return mNumWaiting;
+  }
+
+  /**
+   * Gets the number of requests which had to wait for an instance.
+   * 
+   * @return the number of requests which waited
+   */
+  public synchronized long getWaitCount() {
+    return mWaitCount;
+  }
+
+  /**
+   * Gets the total time requests waited for an instance.
+   * 
+   * @return the total wait time in milliseconds
+   */
+  public synchronized long getTotalWaitTime() {
+    return mTotalWaitTime;
+  }
+
   /**
    * Gets the metadata for the Resources in this pool. This pool implementation currently assumes
    * that all Resource instances in the pool are equivalent and share the same metadata.
@@ -224,6 +491,20 @@ public class ResourcePool {
     return mMetaData;
   }
 
+  /**
+   * Gets the time it took to create and initialize each Resource instance of this pool, in the
+   * order of {@link #getAllInstances()}.
+   * 
+   * @return the initialization time of each instance, in milliseconds
+   */
+  public synchronized long[] getInitializationTimes() {
+    long[] times = new long[mAllInstances.size()];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = mInitializationTimes.get(mAllInstances.get(i));
+    }
+    return times;
+  }
+
   /**
    * Utility method used in the constructor to fill the pool with Resource instances.
    * 
@@ -241,16 +522,97 @@ public class ResourcePool {
    */
   protected void fillPool(ResourceSpecifier aResourceSpecifier, Class<? extends Resource> aResourceClass,
           Map<String, Object> aResourceInitParams) throws ResourceInitializationException {
-    // fill the pool
-    for (int i = 0; i < mNumInstances; i++) {
-      Resource_ImplBase resource = (Resource_ImplBase) UIMAFramework.produceResource(
-              aResourceClass, aResourceSpecifier, aResourceInitParams);
+    // the first instance is created alone, so that what the others share through the
+    // ResourceManager (imports, external resources, the CAS definition) is set up only once
+    mAllInstances.add(produceInstance(0, mNumInstances, aResourceSpecifier, aResourceClass,
+            aResourceInitParams));
+
+    int numThreads = Math.min(mNumInitializationThreads, mNumInstances - 1);
+    if (numThreads <= 1) {
+      for (int i = 1; i < mNumInstances; i++) {
+        mAllInstances.add(produceInstance(i, mNumInstances, aResourceSpecifier, aResourceClass,
+                aResourceInitParams));
+      }
+    } else {
+      fillPoolConcurrently(numThreads, aResourceSpecifier, aResourceClass, aResourceInitParams);
+    }
+    mFreeInstances.addAll(mAllInstances);
+  }
+
+  private void fillPoolConcurrently(int aNumThreads, ResourceSpecifier aResourceSpecifier,
+          Class<? extends Resource> aResourceClass, Map<String, Object> aResourceInitParams)
+          throws ResourceInitializationException {
+    final AtomicBoolean failed = new AtomicBoolean();
+    List<Future<Resource>> futures = new ArrayList<>(mNumInstances - 1);
+    ExecutorService executor = Executors.newFixedThreadPool(aNumThreads);
+    try {
+      for (int i = 1; i < mNumInstances; i++) {
+        final int instance = i;
+        futures.add(executor.submit(() -> failed.get() ? null
+                : produceInstance(instance, mNumInstances, aResourceSpecifier, aResourceClass,
+                        aResourceInitParams)));
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // wait for all the instances, even after a failure, so that none is left undestroyed
+    Throwable failure = null;
+    boolean interrupted = false;
+    for (Future<Resource> future : futures) {
+      while (true) {
+        try {
+          Resource resource = future.get();
+          if (resource != null) {
+            mAllInstances.add(resource);
+          }
+          break;
+        } catch (ExecutionException e) {
+          failed.set(true);
+          if (failure == null) {
+            failure = e.getCause();
+          }
+          break;
+        } catch (InterruptedException e) {
+          failed.set(true);
+          if (failure == null) {
+            failure = e;
+          }
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
 
-      mAllInstances.add(resource);
-      mFreeInstances.add(resource);
+    if (failure != null) {
+      for (Resource resource : mAllInstances) {
+        resource.destroy();
+      }
+      mAllInstances.clear();
+      mInitializationTimes.clear();
+      if (failure instanceof ResourceInitializationException) {
+        throw (ResourceInitializationException) failure;
+      }
+      throw new ResourceInitializationException(failure);
     }
   }
 
+  private Resource produceInstance(int aInstance, int aNumInstances,
+          ResourceSpecifier aResourceSpecifier, Class<? extends Resource> aResourceClass,
+          Map<String, Object> aResourceInitParams) throws ResourceInitializationException {
+    long startTime = System.nanoTime();
+    Resource_ImplBase resource = (Resource_ImplBase) UIMAFramework.produceResource(
+            aResourceClass, aResourceSpecifier, aResourceInitParams);
+    long initializationTime = (System.nanoTime() - startTime) / 1000000;
+    mInitializationTimes.put(resource, initializationTime);
+    UIMAFramework.getLogger(CLASS_NAME).logrb(Level.CONFIG, CLASS_NAME.getName(), "fillPool",
+            LOG_RESOURCE_BUNDLE, "UIMA_pool_instance_initialized__CONFIG",
+            new Object[] { aInstance + 1, aNumInstances, initializationTime });
+    return resource;
+  }
+
   protected Vector<Resource> getAllInstances() {
     return mAllInstances;
   }
@@ -263,7 +625,46 @@ public class ResourcePool {
 
   private final Vector<Resource> mFreeInstances = new Vector<>();
 
-  private final int mNumInstances;
+  /** the current number of instances */
+  private volatile int mNumInstances;
+
+  private final int mNumInitializationThreads;
+
+  /** initialization time of each instance, in milliseconds */
+  private final Map<Resource, Long> mInitializationTimes = new ConcurrentHashMap<>();
+
+  private final ResourceSpecifier mResourceSpecifier;
+
+  private final Class<? extends Resource> mResourceClass;
+
+  private final Map<String, Object> mResourceInitParams;
+
+  private int mNumWaiting;
+
+  private long mWaitCount;
+
+  private long mTotalWaitTime;
+
+  /*
+   * elastic pools only: these are set by makeElastic, and mElasticityExecutor is null for a pool
+   * of fixed size
+   */
+
+  private ScheduledExecutorService mElasticityExecutor;
+
+  private int mMinInstances;
+
+  private int mMaxInstances;
+
+  private long mGrowthWaitTime;
+
+  private long mIdleTime;
+
+  /** true while an instance is being added */
+  private boolean mGrowing;
+
+  /** time at which each free instance was released */
+  private final Map<Resource, Long> mIdleSince = new HashMap<>();
 
   private final ResourceMetaData mMetaData;
 }
@@ -69,6 +69,7 @@ import org.apache.uima.jcas.cas.TOP;
 import org.apache.uima.jcas.cas.TOP_Type;
 import org.apache.uima.jcas.impl.JCasImpl;
 import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.util.AutoCloseableNoException;
 
 /**
  * Java Cover Classes based Object-oriented CAS (Common Analysis System) API.
@@ -947,6 +948,17 @@ public interface JCas extends AbstractCas {
    */
   void protectIndexes(Runnable runnable);
   
+  /**
+   * Call this method to set up a region for updating the keys of many indexed annotations,
+   * ended by a close() call on the returned object.
+   * See {@link CAS#bulkIndexUpdate()}.
+   * 
+   * @return an object whose close method ends the region
+   */
+  default AutoCloseableNoException bulkIndexUpdate() {
+    return getCas().bulkIndexUpdate();
+  }
+  
   /**
    * Retrieve an index according to a label and a type specified using a JCas class. 
    * The type is used to narrow down the index of a more general type to a more specific one.
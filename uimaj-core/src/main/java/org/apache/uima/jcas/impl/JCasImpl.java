@@ -67,6 +67,7 @@ import org.apache.uima.jcas.cas.StringArray;
 import org.apache.uima.jcas.cas.TOP;
 import org.apache.uima.jcas.cas.TOP_Type;
 import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.util.AutoCloseableNoException;
 
 // *********************************
 // * Implementation of JCas *
@@ -1126,6 +1127,14 @@ public class JCasImpl extends AbstractCas_ImplBase implements AbstractCas, JCas
   public void protectIndexes(Runnable runnable) {
     casImpl.protectIndexes(runnable);  
   }
+
+  /* (non-Javadoc)
+   * @see org.apache.uima.jcas.JCas#bulkIndexUpdate()
+   */
+  @Override
+  public AutoCloseableNoException bulkIndexUpdate() {
+    return casImpl.bulkIndexUpdate();
+  }
   
   /**
    * Static method to get the corresponding Type for a JCas class object 
@@ -396,6 +396,21 @@ public class CasManager_impl implements CasManager {
     return aMinimumSize;
   }
 
+  /**
+   * Destroys the CAS pools of this CAS Manager, stopping their background threads, if any.
+   */
+  public void destroy() {
+    synchronized (mRequestorToCasPoolMap) {
+      for (CasPool pool : mRequestorToCasPoolMap.values()) {
+        pool.destroy();
+      }
+    }
+  }
+
+  ResourceManager getResourceManager() {
+    return mResourceManager;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -920,7 +920,12 @@ public class ResourceManager_impl implements ResourceManager {
     // not clearing importCache, importUrlsCache - might be in used by other Resource Managers (shared) 
     
        
-    // no destroy of caspool at this time
+    // a CAS Manager set by setCasManager may be shared with other resource managers (e.g. of PEARs)
+    CasManager casManager = mCasManager;
+    if (casManager instanceof CasManager_impl && 
+        ((CasManager_impl) casManager).getResourceManager() == this) {
+      ((CasManager_impl) casManager).destroy();
+    }
     
   }
   
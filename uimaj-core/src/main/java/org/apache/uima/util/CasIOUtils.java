@@ -26,7 +26,12 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 
 import org.apache.uima.UIMARuntimeException;
@@ -48,6 +53,8 @@ import org.apache.uima.cas.impl.Serialization;
 import org.apache.uima.cas.impl.TypeSystemImpl;
 import org.apache.uima.cas.impl.XCASSerializer;
 import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.internal.util.ByteBufferDataInputStream;
+import org.apache.uima.internal.util.Class_TCCL;
 import org.xml.sax.SAXException;
 
 import static org.apache.uima.cas.impl.Serialization.serializeCAS;
@@ -105,7 +112,9 @@ import static org.apache.uima.cas.impl.Serialization.serializeWithCompression;
  *   <li>the CAS's type system</li>
  * </ul>
  *
- * <p>The serialization formats supported here are specified in the SerialFormat enum.</p>
+ * <p>The serialization formats supported here are specified in the SerialFormat enum.
+ *    The JSON format needs the uimaj-json module, loaded by the thread context class loader
+ *    or by the class loader of uimaj-core; otherwise an IOException is thrown.</p>
  *
  * <p>The <code>load </code>api's automatically use the appropriate deserializers, based on the input data format.</p>
  *
@@ -151,6 +160,10 @@ import static org.apache.uima.cas.impl.Serialization.serializeWithCompression;
 
 public class CasIOUtils {
 
+  /** The JSON serializer and deserializer are in the uimaj-json module, which uimaj-core does not depend on */
+  private static final String JSON_SERIALIZER = "org.apache.uima.json.JsonCasSerializer";
+  private static final String JSON_DESERIALIZER = "org.apache.uima.json.JsonCasDeserializer";
+
   /**
    * Loads a Cas from a URL source. 
    * For SerialFormats ending with _TSI except for COMPRESSED_FILTERED_TSI, 
@@ -343,6 +356,65 @@ public class CasIOUtils {
   public static SerialFormat load(InputStream casInputStream, CAS aCAS, TypeSystem typeSystem) throws IOException {
     return load(casInputStream, null, aCAS, CasLoadMode.DEFAULT, (TypeSystemImpl) typeSystem);
   }
+
+  /**
+   * Loads a CAS from a FileChannel, from its current position to the end of the file.
+   * The format is determined from the content.
+   * 
+   * The file is memory mapped; for the COMPRESSED_FILTERED_xxx (Form 6) formats, the compressed
+   * streams are inflated directly out of the mapped region, instead of being first copied 
+   * to the Java heap.
+   * 
+   * Except for how the bytes are read, the behavior is identical to load(casInputStream, aCAS).
+   * 
+   * @param casChannel
+   *          The file channel containing the CAS.  On return, its position is after the bytes read.
+   * @param aCAS
+   *          The CAS that should be filled
+   * @return the SerialFormat of the loaded CAS
+   * @throws IOException
+   *           - Problem loading from given FileChannel
+   */
+  public static SerialFormat load(FileChannel casChannel, CAS aCAS) throws IOException {
+    return load(casChannel, null, aCAS, CasLoadMode.DEFAULT);
+  }
+
+  /**
+   * Loads a CAS from a FileChannel, from its current position to the end of the file.
+   * The format is determined from the content.
+   * 
+   * The file is memory mapped; for the COMPRESSED_FILTERED_xxx (Form 6) formats, the compressed
+   * streams are inflated directly out of the mapped region, instead of being first copied 
+   * to the Java heap.
+   * 
+   * Except for how the bytes are read, the behavior is identical to 
+   * load(casInputStream, tsiInputStream, aCAS, casLoadMode).
+   * 
+   * @param casChannel
+   *          The file channel containing the CAS.  On return, its position is after the bytes read.
+   * @param tsiInputStream
+   *          The optional input stream containing the type system, appropriately buffered. 
+   * @param aCAS
+   *          The CAS that should be filled
+   * @param casLoadMode specifies loading alternative like lenient and reinit, see CasLoadMode.
+   * @return the SerialFormat of the loaded CAS
+   * @throws IOException
+   *           - Problem loading from given FileChannel
+   */
+  public static SerialFormat load(FileChannel casChannel, InputStream tsiInputStream, CAS aCAS,
+          CasLoadMode casLoadMode) throws IOException {
+    final long startPosition = casChannel.position();
+    final long length = casChannel.size() - startPosition;
+    if (length > Integer.MAX_VALUE) {
+      // too big for a single mapped buffer, read it as a stream
+      return load(new BufferedInputStream(Channels.newInputStream(casChannel)), tsiInputStream, aCAS, casLoadMode, null);
+    }
+    MappedByteBuffer mapped = casChannel.map(FileChannel.MapMode.READ_ONLY, startPosition, length);
+    ByteBufferDataInputStream casInputStream = new ByteBufferDataInputStream(mapped);
+    SerialFormat format = load(casInputStream, tsiInputStream, aCAS, casLoadMode, null);
+    casChannel.position(startPosition + mapped.position());
+    return format;
+  }
   
   private static SerialFormat load(InputStream casInputStream, InputStream tsiInputStream, CAS aCAS,
       CasLoadMode casLoadMode, TypeSystemImpl typeSystem) throws IOException {
@@ -370,6 +442,13 @@ public class CasIOUtils {
         throw new UIMARuntimeException(e);
       }
     }
+
+    if (start.trim().startsWith("{")) {  // JSON
+      bcsd.setupCasFromCasMgrSerializer(readCasManager(tsiInputStream));
+      invokeJson(JSON_DESERIALIZER, "jsonDeserialize", new Class<?>[] {Object.class, CAS.class, boolean.class},
+          casInputStream, aCAS, casLoadMode == CasLoadMode.LENIENT);
+      return SerialFormat.JSON;
+    }
     
     //  Not an XML file, decode as binary file
     DataInputStream deserIn = CommonSerDes.maybeWrapToDataInputStream(casInputStream);
@@ -483,6 +562,9 @@ public class CasIOUtils {
           serializeWithCompression(aCas, docOS, false, true);
           typeSystemWritten = true; // Embedded type system
           break;
+        case JSON:
+          invokeJson(JSON_SERIALIZER, "jsonSerialize", new Class<?>[] {CAS.class, Object.class}, aCas, docOS);
+          break;
         default:
           StringBuilder sb = new StringBuilder();
           for (SerialFormat sf : SerialFormat.values()) {
@@ -504,6 +586,34 @@ public class CasIOUtils {
     }
   }
 
+  /**
+   * Calls a static method of the uimaj-json module, found via the thread context class loader, 
+   * as for OSGi or application server class loaders, or else via the class loader of this class
+   */
+  private static void invokeJson(String className, String methodName, Class<?>[] parameterTypes, Object... args)
+          throws IOException {
+    final Method method;
+    try {
+      method = Class_TCCL.forName(className).getMethod(methodName, parameterTypes);
+    } catch (ClassNotFoundException | NoSuchMethodException e) {
+      throw new IOException("The JSON format needs the uimaj-json module, which was not found", e);
+    }
+    try {
+      method.invoke(null, args);
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    } catch (IllegalAccessException e) {
+      throw new UIMARuntimeException(e);
+    }
+  }
+
   private static CASMgrSerializer readCasManager(InputStream tsiInputStream) throws IOException {
     try {
       if (null == tsiInputStream) {
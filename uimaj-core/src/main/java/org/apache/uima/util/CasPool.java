@@ -22,13 +22,22 @@ package org.apache.uima.util;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.analysis_engine.AnalysisEngine;
@@ -57,10 +66,42 @@ import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
  *   If more threads request CASes from the pool than are available, the pool (optionally) puts requesting
  *   threads into a wait state.  When CASes become available, the longest-waiting thread gets the CAS; this
  *   approach prevents starvation behavior (where some threads get all the CASes and others get none).
+ *   
+ *   An optional lock-free mode (see {@link #LOCK_FREE_CAS_POOL}) keeps the free CASes in a concurrent
+ *   LIFO list, and uses per CAS atomic state instead of locking, for pools shared by many threads.
+ *   Optionally (see {@link #CAS_POOL_THREAD_AFFINITY}), a thread getting a CAS first tries 
+ *   the one it most recently released.
+ *   In lock-free mode, releaseCas does not call notifyAll on this object; use {@link #getCas(long)}
+ *   to wait for a CAS instead.
+ *   
+ *   An optional background reset mode (see {@link #CAS_POOL_BACKGROUND_RESET}) takes the CAS reset
+ *   off the releasing thread: released CASes are reset on pool owned threads, and only then become
+ *   available again.  The time spent resetting CASes is tracked in either case.
+ *   The reset threads are daemon threads; {@link #destroy()} stops them.
  * 
  */
 public class CasPool {
 
+  /**
+   * Define this JVM property to have CasPools, created afterwards, use the lock-free mode.
+   */
+  public static final String LOCK_FREE_CAS_POOL = "uima.lock_free_cas_pool";
+  
+  /**
+   * Define this JVM property to have CasPools, created afterwards, use the lock-free mode,
+   * and have threads prefer the CAS they most recently released.
+   */
+  public static final String CAS_POOL_THREAD_AFFINITY = "uima.cas_pool_thread_affinity";
+  
+  /**
+   * Define this JVM property to have CasPools, created afterwards, reset released CASes
+   * on background threads.  The value, if a positive integer, is the number of threads per pool; 
+   * otherwise 1 thread is used.  Idle threads time out.
+   */
+  public static final String CAS_POOL_BACKGROUND_RESET = "uima.cas_pool_background_reset";
+  
+  private static final AtomicInteger resetThreadNumber = new AtomicInteger(0);
+
   /**
    * resource bundle for log messages
    */
@@ -86,13 +127,100 @@ public class CasPool {
   // a fair lock to prevent starvation of a thread
   final private Semaphore permits;
   
+  /*
+   * lock-free mode only, otherwise null
+   */
+  
+  // no sync needed, filled during initialization, and read-only after that
+  final private Map<CAS, PoolEntry> mEntries;
+  
+  // LIFO list of entries, which may also hold entries no longer free (taken via thread affinity);
+  // these are skipped when encountered
+  final private ConcurrentLinkedDeque<PoolEntry> mFreeList;
+  
+  // the entry most recently released by a thread, null if thread affinity is not enabled
+  final private ThreadLocal<PoolEntry> mLastReleased;
+  
+  /*
+   * background reset mode only, otherwise null
+   */
+  
+  final private ThreadPoolExecutor mResetExecutor;
+  
+  // CASes being reset, not yet free; lets the default mode detect multiple releases
+  final private Set<CAS> mResetting;
+  
+  // reset time metrics
+  final private AtomicLong mResetTimeNanos = new AtomicLong(0);
+  final private AtomicLong mResetCount = new AtomicLong(0);
+  
+  private static final int CHECKED_OUT = 0;
+  private static final int RELEASING   = 1;
+  private static final int FREE        = 2;
+  
+  /**
+   * Lock-free mode bookkeeping for one CAS
+   */
+  private static class PoolEntry {
+    final CAS cas;
+    /** one of CHECKED_OUT, RELEASING, FREE */
+    final AtomicInteger state = new AtomicInteger(FREE);
+    /** true while the entry is in the free list; used to keep at most one copy there */
+    final AtomicBoolean isQueued = new AtomicBoolean(true);
+    
+    PoolEntry(CAS cas) {
+      this.cas = cas;
+    }
+  }
+  
   private CasPool(int aNumInstances, Set<CAS> allInstances) {
     mNumInstances = aNumInstances;
     permits = new Semaphore(mNumInstances, true);
     mAllInstances = allInstances;
-    Set<CAS> free = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    free.addAll(mAllInstances);
-    mFreeInstances = free;  // concurrent safe publishing idiom 
+    
+    final boolean isThreadAffinity = Misc.getNoValueSystemProperty(CAS_POOL_THREAD_AFFINITY);
+    if (isThreadAffinity || Misc.getNoValueSystemProperty(LOCK_FREE_CAS_POOL)) {
+      Map<CAS, PoolEntry> entries = new IdentityHashMap<>(aNumInstances);
+      ConcurrentLinkedDeque<PoolEntry> freeList = new ConcurrentLinkedDeque<>();
+      for (CAS cas : mAllInstances) {
+        PoolEntry entry = new PoolEntry(cas);
+        entries.put(cas, entry);
+        freeList.add(entry);
+      }
+      mEntries = entries;
+      mFreeList = freeList;
+      mLastReleased = isThreadAffinity ? new ThreadLocal<>() : null;
+      mFreeInstances = null;
+    } else {
+      mEntries = null;
+      mFreeList = null;
+      mLastReleased = null;
+      Set<CAS> free = Collections.newSetFromMap(new ConcurrentHashMap<>());
+      free.addAll(mAllInstances);
+      mFreeInstances = free;  // concurrent safe publishing idiom 
+    }
+    
+    if (Misc.getNoValueSystemProperty(CAS_POOL_BACKGROUND_RESET)) {
+      int nbrThreads = 1;
+      try {
+        nbrThreads = Math.max(1, Integer.parseInt(System.getProperty(CAS_POOL_BACKGROUND_RESET)));
+      } catch (NumberFormatException e) {
+        // use 1 thread
+      }
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(nbrThreads, nbrThreads, 
+          60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), 
+          r -> {
+            Thread t = new Thread(r, "CasPool reset " + resetThreadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          });
+      executor.allowCoreThreadTimeOut(true);
+      mResetExecutor = executor;
+      mResetting = (mFreeList == null) ? Collections.newSetFromMap(new ConcurrentHashMap<>()) : null;
+    } else {
+      mResetExecutor = null;
+      mResetting = null;
+    }
   }
 
   /**
@@ -257,6 +385,9 @@ public class CasPool {
 
   
   private CAS getCasAfterPermitAcquired() {
+    if (mFreeList != null) {
+      return getCasAfterPermitAcquiredLockFree();
+    }
     // synchronize so only one iterator is running
     synchronized (mFreeInstances) {
       final Iterator<CAS> freeIterator = mFreeInstances.iterator();
@@ -274,12 +405,43 @@ public class CasPool {
       return cas;
     }
   }
+  
+  /**
+   * Holding a permit guarantees there is some FREE entry, which is either 
+   * in the free list, or about to be tried by another thread which will then 
+   * take it or leave it for this thread.
+   */
+  private CAS getCasAfterPermitAcquiredLockFree() {
+    if (mLastReleased != null) {
+      final PoolEntry entry = mLastReleased.get();
+      if (entry != null && entry.state.compareAndSet(FREE, CHECKED_OUT)) {
+        return entry.cas;
+      }
+    }
+    
+    while (true) {
+      final PoolEntry entry = mFreeList.pollFirst();
+      if (entry == null) {
+        // a release is between updating the entry state and adding it to the list
+        Thread.yield();
+        continue;
+      }
+      // clear before trying the state, so a release racing with this finds it not queued
+      entry.isQueued.set(false);
+      if (entry.state.compareAndSet(FREE, CHECKED_OUT)) {
+        return entry.cas;
+      }
+      // was already taken via thread affinity; skip it
+    }
+  }
 
   /**
    * Checks in a CAS to the pool. This automatically calls the {@link CAS#reset()} method, to ensure
    * that when the CAS is later retrieved from the pool it will be ready to use. Also notifies other
    * Threads that may be waiting for an instance to become available.
    * 
+   * In background reset mode, the reset and the notification happen later, on another thread.
+   * 
    * Synchronized on the CAS to avoid the unnatural case where 
    * multiple threads attempt to return the same CAS to the pool
    * at the same time. 
@@ -291,11 +453,17 @@ public class CasPool {
     // note the pool stores references to the InitialView of each CAS
     aCas.setCurrentComponentInfo(null);  // https://issues.apache.org/jira/browse/UIMA-3655
     CAS cas = aCas.getView(CAS.NAME_DEFAULT_SOFA);
+    
+    if (mFreeList != null) {
+      releaseCasLockFree(cas);
+      return;
+    }
 
     // make sure this CAS actually belongs to this pool and is checked out
     // synchronize to avoid the same CAS being released on 2 threads
     synchronized (cas) {
-      if (!mAllInstances.contains(cas) || mFreeInstances.contains(cas)) {
+      if (!mAllInstances.contains(cas) || mFreeInstances.contains(cas) || 
+          (mResetting != null && mResetting.contains(cas))) {
         UIMAFramework.getLogger(CLASS_NAME).logrb(Level.WARNING, CLASS_NAME.getName(), "releaseCas",
                 LOG_RESOURCE_BUNDLE, "UIMA_return_cas_to_pool__WARNING");
       } else {
@@ -303,8 +471,25 @@ public class CasPool {
         // from within a CAS Multiplier.
         ((CASImpl)cas).restoreClassLoaderUnlockCas(); 
         
+        if (mResetExecutor != null) {
+          mResetting.add(cas);
+          if (executeReset(() -> {
+            if (resetCasInBackground(cas)) {
+              synchronized (cas) {
+                mFreeInstances.add(cas);
+                mResetting.remove(cas);
+              }
+              permits.release();
+              notifyWaiters();
+            }
+          })) {
+            return;
+          }
+          mResetting.remove(cas);
+        }
+        
         // reset CAS
-        cas.reset();
+        resetCas(cas);
         
         // Add the CAS to the end of the free instances List
         mFreeInstances.add(cas);
@@ -312,14 +497,104 @@ public class CasPool {
       }
     }
 
+    notifyWaiters();
+  }
+  
+  private void notifyWaiters() {
     // Notify any threads waiting on this object
     // not needed by UIMA Core - other users may need.
     synchronized (this) {
       notifyAll();
     }
   }
+  
+  private void resetCas(CAS cas) {
+    final long startTime = System.nanoTime();
+    cas.reset();
+    mResetTimeNanos.addAndGet(System.nanoTime() - startTime);
+    mResetCount.incrementAndGet();
+  }
+  
+  /**
+   * @return false if the pool was destroyed, in which case the CAS is to be reset on this thread
+   */
+  private boolean executeReset(Runnable reset) {
+    try {
+      mResetExecutor.execute(reset);
+      return true;
+    } catch (RejectedExecutionException e) {
+      return false;
+    }
+  }
+  
+  /**
+   * A CAS which fails to reset is not returned to the pool, as it would be 
+   * when resetting on the releasing thread, where the exception is thrown to the caller.
+   * @return true if the reset worked
+   */
+  private boolean resetCasInBackground(CAS cas) {
+    try {
+      resetCas(cas);
+      return true;
+    } catch (Throwable e) {
+      UIMAFramework.getLogger(CLASS_NAME).log(Level.WARNING, "CAS reset failed; the CAS is dropped from the pool", e);
+      return false;
+    }
+  }
 
 
+  private void releaseCasLockFree(CAS cas) {
+    // make sure this CAS actually belongs to this pool and is checked out;
+    // the state change avoids the same CAS being released on 2 threads
+    final PoolEntry entry = mEntries.get(cas);
+    if (entry == null || !entry.state.compareAndSet(CHECKED_OUT, RELEASING)) {
+      UIMAFramework.getLogger(CLASS_NAME).logrb(Level.WARNING, CLASS_NAME.getName(), "releaseCas",
+              LOG_RESOURCE_BUNDLE, "UIMA_return_cas_to_pool__WARNING");
+      return;
+    }
+    
+    // restore the ClassLoader and unlock the CAS, since release() can be called 
+    // from within a CAS Multiplier.
+    ((CASImpl)cas).restoreClassLoaderUnlockCas(); 
+    
+    // set on the releasing thread; only used once the entry is FREE
+    if (mLastReleased != null) {
+      mLastReleased.set(entry);
+    }
+    
+    if (mResetExecutor != null && executeReset(() -> {
+          if (resetCasInBackground(cas)) {
+            makeFree(entry);
+          }
+        })) {
+      return;
+    }
+    
+    // reset CAS
+    resetCas(cas);
+    
+    makeFree(entry);
+  }
+  
+  private void makeFree(PoolEntry entry) {
+    entry.state.set(FREE);
+    if (entry.isQueued.compareAndSet(false, true)) {
+      mFreeList.addFirst(entry);
+    }
+    permits.release();  // should follow adding cas back to mFreeList
+  }
+
+  /**
+   * Stops the threads resetting released CASes in the background, if any, once the CASes already
+   * released are reset. CASes released afterwards are reset on the releasing thread.
+   * Called when the owner of this pool is destroyed.
+   */
+  public void destroy() {
+    if (mResetExecutor != null) {
+      mResetExecutor.shutdown();
+    }
+  }
+
   /**
    * Gets the size of this pool (the total number of CAS instances that it can hold).
    * 
@@ -329,12 +604,26 @@ public class CasPool {
     return mNumInstances;
   }
   
+  /**
+   * @return the total time, in nanoseconds, spent resetting CASes released to this pool
+   */
+  public long getTotalResetTimeNanos() {
+    return mResetTimeNanos.get();
+  }
+  
+  /**
+   * @return the number of CAS resets done by this pool
+   */
+  public long getResetCount() {
+    return mResetCount.get();
+  }
+  
   /**
    * Gets the number of CASes currently available in this pool.
    * @return the numberof available CASes 
    */
   public int getNumAvailable() {
-    return mFreeInstances.size();
+    return (mFreeList != null) ? permits.availablePermits() : mFreeInstances.size();
   }  
 
   /**
@@ -386,6 +675,15 @@ public class CasPool {
   // no callers as of March 2014
   // left as Vector
   protected Vector<CAS> getFreeInstances() {
+    if (mFreeList != null) {
+      Vector<CAS> free = new Vector<>();
+      for (PoolEntry entry : mEntries.values()) {
+        if (entry.state.get() == FREE) {
+          free.add(entry.cas);
+        }
+      }
+      return free;
+    }
     return new Vector<>(mFreeInstances);
   }
 }
@@ -38,6 +38,18 @@ public interface CasPoolManagement extends ManagementObject {
    */
   public int getAvailableInstances();
   
+  /**
+   * Get the total time, in milliseconds, spent resetting CASes released to the pool.
+   * @return the total reset time in milliseconds
+   */
+  public long getTotalResetTime();
+  
+  /**
+   * Get the number of CAS resets done by the pool.
+   * @return the number of resets
+   */
+  public long getResetCount();
+  
 //  /**
 //   * Get the average time, in milliseconds, that getCas() requests on
 //   * the pool have to wait for a CAS to become available
@@ -19,6 +19,7 @@
 package org.apache.uima.util.impl;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.uima.util.CasPool;
 import org.apache.uima.util.CasPoolManagement;
@@ -56,6 +57,30 @@ public class CasPoolManagementImpl implements CasPoolManagement, CasPoolManageme
 //    return 0;
 //  }
 
+  /* (non-Javadoc)
+   * @see org.apache.uima.util.CasPoolManagement#getTotalResetTime()
+   */
+  public long getTotalResetTime() {
+    CasPool casPool = mCasPoolRef.get();
+    if (casPool != null) {
+      return TimeUnit.NANOSECONDS.toMillis(casPool.getTotalResetTimeNanos());
+    } else {
+      return -1;
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.apache.uima.util.CasPoolManagement#getResetCount()
+   */
+  public long getResetCount() {
+    CasPool casPool = mCasPoolRef.get();
+    if (casPool != null) {
+      return casPool.getResetCount();
+    } else {
+      return -1;
+    }
+  }
+
   /* (non-Javadoc)
    * @see org.apache.uima.util.CasPoolManagement#getPoolSize()
    */
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.analysis_engine.asb.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.Constants;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_component.CasAnnotator_ImplBase;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.analysis_engine.impl.AnalysisEngineDescription_impl;
+import org.apache.uima.analysis_engine.metadata.FlowControllerDeclaration;
+import org.apache.uima.analysis_engine.metadata.impl.FlowControllerDeclaration_impl;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.flow.FlowControllerDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.resource.metadata.impl.TypeSystemDescription_impl;
+import org.apache.uima.test.junit_extension.JUnitExtension;
+import org.apache.uima.util.XMLInputSource;
+
+import junit.framework.TestCase;
+
+public class ConcurrentParallelStepTest extends TestCase {
+
+  /** if not null, the annotators wait for each other */
+  static volatile CyclicBarrier barrier;
+
+  private ExecutorService executor;
+
+  /**
+   * Annotates the words, and sets the language
+   */
+  public static class WordAnnotator extends CasAnnotator_ImplBase {
+    @Override
+    public void process(CAS aCAS) throws AnalysisEngineProcessException {
+      await();
+      annotate(aCAS, "test.Word", false);
+      aCAS.setDocumentLanguage("en");
+    }
+  }
+
+  /**
+   * Annotates the capitalized words, and sets the language
+   */
+  public static class CapitalAnnotator extends CasAnnotator_ImplBase {
+    @Override
+    public void process(CAS aCAS) throws AnalysisEngineProcessException {
+      await();
+      annotate(aCAS, "test.Capital", true);
+      aCAS.setDocumentLanguage("de");
+    }
+  }
+
+  /**
+   * Adds a new view
+   */
+  public static class ViewAnnotator extends CasAnnotator_ImplBase {
+    @Override
+    public void process(CAS aCAS) throws AnalysisEngineProcessException {
+      await();
+      CAS upper = aCAS.createView("upper");
+      upper.setDocumentText(aCAS.getDocumentText().toUpperCase());
+      annotate(upper, "test.Word", false);
+    }
+  }
+
+  public static class FailingAnnotator extends CasAnnotator_ImplBase {
+    @Override
+    public void process(CAS aCAS) throws AnalysisEngineProcessException {
+      await();
+      throw new AnalysisEngineProcessException(new IllegalStateException("failing"));
+    }
+  }
+
+  private static void await() throws AnalysisEngineProcessException {
+    if (barrier != null) {
+      try {
+        barrier.await(10, TimeUnit.SECONDS);
+      } catch (Exception e) {
+        throw new AnalysisEngineProcessException(e);
+      }
+    }
+  }
+
+  private static void annotate(CAS aCAS, String aTypeName, boolean aCapitalsOnly) {
+    Type type = aCAS.getTypeSystem().getType(aTypeName);
+    String text = aCAS.getDocumentText();
+    int begin = 0;
+    for (String word : text.split(" ")) {
+      if (!aCapitalsOnly || Character.isUpperCase(word.charAt(0))) {
+        aCAS.addFsToIndexes(aCAS.createAnnotation(type, begin, begin + word.length()));
+      }
+      begin += word.length() + 1;
+    }
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    barrier = null;
+    executor.shutdownNow();
+  }
+
+  private AnalysisEngine createAggregate(boolean aConcurrent, Class<?>... aAnnotators)
+          throws Exception {
+    TypeSystemDescription typeSystem = new TypeSystemDescription_impl();
+    typeSystem.addType("test.Word", "", CAS.TYPE_NAME_ANNOTATION);
+    typeSystem.addType("test.Capital", "", CAS.TYPE_NAME_ANNOTATION);
+
+    AnalysisEngineDescription aggDesc = new AnalysisEngineDescription_impl();
+    aggDesc.setPrimitive(false);
+    aggDesc.getMetaData().setName("Parallel Step Test Aggregate");
+    for (Class<?> annotator : aAnnotators) {
+      AnalysisEngineDescription desc = new AnalysisEngineDescription_impl();
+      desc.setFrameworkImplementation(Constants.JAVA_FRAMEWORK_NAME);
+      desc.setPrimitive(true);
+      desc.setAnnotatorImplementationName(annotator.getName());
+      desc.getMetaData().setName(annotator.getSimpleName());
+      desc.getAnalysisEngineMetaData().setTypeSystem(typeSystem);
+      aggDesc.getDelegateAnalysisEngineSpecifiersWithImports().put(annotator.getSimpleName(), desc);
+    }
+    FlowControllerDescription fcDesc = UIMAFramework.getXMLParser().parseFlowControllerDescription(
+            new XMLInputSource(JUnitExtension.getFile("TextAnalysisEngineImplTest/ParallelFlowController.xml")));
+    FlowControllerDeclaration fcDecl = new FlowControllerDeclaration_impl();
+    fcDecl.setKey("ParallelFlowController");
+    fcDecl.setSpecifier(fcDesc);
+    aggDesc.setFlowControllerDeclaration(fcDecl);
+
+    Map<String, Object> params = new HashMap<>();
+    if (aConcurrent) {
+      params.put(AnalysisEngine.PARAM_PARALLEL_STEP_EXECUTOR, executor);
+    }
+    return UIMAFramework.produceAnalysisEngine(aggDesc, params);
+  }
+
+  private static List<String> process(AnalysisEngine aAe) throws Exception {
+    CAS cas = aAe.newCAS();
+    cas.setDocumentText("The Parallel Step of an Aggregate");
+    aAe.process(cas);
+    List<String> result = new ArrayList<>();
+    result.add(cas.getDocumentLanguage());
+    for (CAS view : (Iterable<CAS>) () -> cas.getViewIterator()) {
+      for (AnnotationFS a : view.getAnnotationIndex()) {
+        result.add(view.getViewName() + " " + a.getType().getShortName() + " " + a.getCoveredText());
+      }
+    }
+    return result;
+  }
+
+  public void testSameResultAsSequential() throws Exception {
+    List<String> expected = process(createAggregate(false,
+            WordAnnotator.class, CapitalAnnotator.class, ViewAnnotator.class));
+    AnalysisEngine ae = createAggregate(true,
+            WordAnnotator.class, CapitalAnnotator.class, ViewAnnotator.class);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(expected, process(ae));
+    }
+    assertTrue(expected.contains("upper Word PARALLEL"));
+    assertTrue(expected.contains("_InitialView Capital Aggregate"));
+  }
+
+  public void testConcurrent() throws Exception {
+    AnalysisEngine ae = createAggregate(true,
+            WordAnnotator.class, CapitalAnnotator.class, ViewAnnotator.class);
+    // each annotator waits for the other two: would time out if run sequentially
+    barrier = new CyclicBarrier(3);
+    // the language, the initial view's document annotation, 6 words and 4 capitals,
+    // the new view's document annotation and 6 words
+    assertEquals(1 + 1 + 6 + 4 + 1 + 6, process(ae).size());
+  }
+
+  public void testFailure() throws Exception {
+    AnalysisEngine ae = createAggregate(true, WordAnnotator.class, FailingAnnotator.class);
+    for (int i = 0; i < 2; i++) {  // the second time with the copy of the CAS reused
+      try {
+        process(ae);
+        fail();
+      } catch (AnalysisEngineProcessException e) {
+        Throwable cause = e;
+        while (!(cause instanceof IllegalStateException)) {
+          cause = cause.getCause();
+        }
+        assertEquals("failing", cause.getMessage());
+      }
+    }
+  }
+}
@@ -23,6 +23,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
 
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
 import org.apache.uima.Constants;
 import org.apache.uima.UIMAException;
 import org.apache.uima.UIMAFramework;
@@ -140,6 +144,63 @@ public class MultiprocessingAnalysisEngine_implTest extends TestCase {
     }
   }
 
+  public void testElasticPool() throws Exception {
+    MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+    Map<String, Object> map = new HashMap<>();
+    map.put(AnalysisEngine.PARAM_NUM_SIMULTANEOUS_REQUESTS, 2);
+    map.put(AnalysisEngine.PARAM_MAX_SIMULTANEOUS_REQUESTS, 4);
+    map.put(AnalysisEngine.PARAM_POOL_IDLE_TIME, 1000);
+    map.put(AnalysisEngine.PARAM_MBEAN_SERVER, mbeanServer);
+    MultiprocessingAnalysisEngine_impl mtae = new MultiprocessingAnalysisEngine_impl();
+    mtae.initialize(mSimpleDesc, map);
+    try {
+      Assert.assertEquals(2, mtae.getPool().getMinSize());
+      Assert.assertEquals(4, mtae.getPool().getMaxSize());
+
+      // the pool's utilization is reported next to the AnalysisEngine's MBean
+      ObjectName name = new ObjectName(mtae.getManagementInterface().getUniqueMBeanName() + " Pool");
+      Assert.assertEquals(2, mbeanServer.getAttribute(name, "PoolSize"));
+      Assert.assertEquals(4, mbeanServer.getAttribute(name, "MaxPoolSize"));
+      Assert.assertEquals(2, mbeanServer.getAttribute(name, "AvailableInstances"));
+      AnalysisEngine ae = mtae.getPool().getAnalysisEngine();
+      Assert.assertEquals("0.5", mbeanServer.getAttribute(name, "Utilization"));
+      mtae.getPool().releaseAnalysisEngine(ae);
+
+      CAS cas = mtae.newCAS();
+      cas.setDocumentText("new test");
+      mtae.process(cas);
+      Assert.assertEquals(0L, mbeanServer.getAttribute(name, "NumberOfWaits"));
+    } finally {
+      mtae.destroy();
+    }
+  }
+
+  public void testElasticPoolNotGrownByCollectionProcessComplete() throws Exception {
+    Map<String, Object> map = new HashMap<>();
+    map.put(AnalysisEngine.PARAM_NUM_SIMULTANEOUS_REQUESTS, 2);
+    map.put(AnalysisEngine.PARAM_MAX_SIMULTANEOUS_REQUESTS, 4);
+    map.put(AnalysisEngine.PARAM_POOL_GROWTH_WAIT_TIME, 50);
+    MultiprocessingAnalysisEngine_impl mtae = new MultiprocessingAnalysisEngine_impl();
+    mtae.initialize(mSimpleDesc, map);
+    try {
+      // one instance is busy for longer than the growth wait time
+      AnalysisEngine busy = mtae.getPool().getAnalysisEngine();
+      Thread releaser = new Thread(() -> {
+        try {
+          Thread.sleep(500);
+        } catch (InterruptedException e) {
+        }
+        mtae.getPool().releaseAnalysisEngine(busy);
+      });
+      releaser.start();
+      mtae.collectionProcessComplete();
+      releaser.join();
+      Assert.assertEquals(2, mtae.getPool().getSize());
+    } finally {
+      mtae.destroy();
+    }
+  }
+
   public void testGetAnalysisEngineMetaData() throws Exception {
     try {
       MultiprocessingAnalysisEngine_impl mtae = new MultiprocessingAnalysisEngine_impl();
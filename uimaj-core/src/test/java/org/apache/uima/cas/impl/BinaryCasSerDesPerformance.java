@@ -20,15 +20,27 @@
 package org.apache.uima.cas.impl;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.SerialFormat;
+import org.apache.uima.cas.Type;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.CasIOUtils;
 import org.apache.uima.util.XMLInputSource;
 
 import junit.framework.TestCase;
@@ -74,5 +86,133 @@ public class BinaryCasSerDesPerformance extends TestCase {
     System.out.format("Time to deserialize all files was %,d milliseconds%n", accumDeser / 1000000); // (System.nanoTime() - startTime) / 1000000L);
     System.out.format("Time to serialize   all files was %,d milliseconds%n", accumSer / 1000000);
   }
+  
+  /**
+   * Compares loading a Form 6 compressed CAS from an input stream with loading it from a memory mapped file
+   * (which inflates directly from the mapped region), measuring the elapsed time and the GC activity.
+   */
+  public void testMappedDeserialization6Performance() throws Exception {
+    CAS cas = createLargeCas();
+    
+    File file = File.createTempFile("bin6perf", ".bins6");
+    try {
+      try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+        CasIOUtils.save(cas, os, SerialFormat.COMPRESSED_FILTERED);
+      }
+      final int size = cas.getAnnotationIndex().size();
+      
+      for (int warmup = 0; warmup < 2; warmup++) {
+        timeLoads(cas, file, size, warmup == 0);
+      }
+    } finally {
+      file.delete();
+    }
+  }
+  
+  private void timeLoads(CAS cas, File file, int size, boolean isWarmup) throws Exception {
+    final int iterations = 10;
+    long[] gcBefore = gcCountAndTime();
+    long startTime = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      cas.reset();
+      try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+        CasIOUtils.load(is, cas);
+      }
+      assertEquals(size, cas.getAnnotationIndex().size());
+    }
+    long streamTime = System.nanoTime() - startTime;
+    long[] gcStream = gcCountAndTime();
+    
+    startTime = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      cas.reset();
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        CasIOUtils.load(channel, cas);
+      }
+      assertEquals(size, cas.getAnnotationIndex().size());
+    }
+    long mappedTime = System.nanoTime() - startTime;
+    long[] gcMapped = gcCountAndTime();
+    
+    if (!isWarmup) {
+      double mb = ((double) file.length() * iterations) / (1024 * 1024);
+      System.out.format("Form 6 load from stream: %,d ms, %.1f MB/s, %d GCs taking %,d ms%n",
+          streamTime / 1000000, mb / (streamTime / 1e9), gcStream[0] - gcBefore[0], gcStream[1] - gcBefore[1]);
+      System.out.format("Form 6 load from mapped: %,d ms, %.1f MB/s, %d GCs taking %,d ms%n",
+          mappedTime / 1000000, mb / (mappedTime / 1e9), gcMapped[0] - gcStream[0], gcMapped[1] - gcStream[1]);
+    }
+  }
+  
+  /**
+   * Compares the size and the serialization and deserialization times of Form 6 
+   * using the built-in Deflate compression and using the LZ4 style codec 
+   */
+  public void testCompressionCodecPerformance() throws Exception {
+    CAS cas = createLargeCas();
+    CAS cas2 = CasCreationUtils.createCas((TypeSystemDescription) null, null, null);
+    final int size = cas.getAnnotationIndex().size();
+    
+    for (int warmup = 0; warmup < 2; warmup++) {
+      for (CasCompressionCodec codec : new CasCompressionCodec[] {null, Lz4CasCompressionCodec.INSTANCE}) {
+        final int iterations = 10;
+        ByteArrayOutputStream baos = null;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          baos = new ByteArrayOutputStream(1024 * 512);
+          new BinaryCasSerDes6(cas).setCompressionCodec(codec).serialize(baos);
+        }
+        long serTime = System.nanoTime() - startTime;
+        
+        byte[] bytes = baos.toByteArray();
+        startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          cas2.reset();
+          Serialization.deserializeCAS(cas2, new ByteArrayInputStream(bytes));
+        }
+        long deserTime = System.nanoTime() - startTime;
+        assertEquals(size, cas2.getAnnotationIndex().size());
+        
+        if (warmup == 1) {
+          System.out.format("Form 6 %-7s: size %,d bytes, serialize %,d ms, deserialize %,d ms (%d iterations)%n",
+              (codec == null) ? "deflate" : codec.getName(), bytes.length, serTime / 1000000, deserTime / 1000000, iterations);
+        }
+      }
+    }
+  }
+  
+  private static CAS createLargeCas() throws Exception {
+    CAS cas = CasCreationUtils.createCas((TypeSystemDescription) null, null, null);
+    Random random = new Random(42);
+    StringBuilder sb = new StringBuilder();
+    int[] ends = new int[200000];
+    for (int i = 0; i < ends.length; i++) {
+      int length = 1 + random.nextInt(12);
+      for (int j = 0; j < length; j++) {
+        sb.append((char) ('a' + random.nextInt(26)));
+      }
+      ends[i] = sb.length();
+      sb.append(' ');
+    }
+    cas.setDocumentText(sb.toString());
+    Type annotType = cas.getAnnotationType();
+    for (int i = 0, begin = 0; i < ends.length; i++) {
+      cas.addFsToIndexes(cas.createAnnotation(annotType, begin, ends[i]));
+      if (i % 10 == 0) {  // some longer spans
+        cas.addFsToIndexes(cas.createAnnotation(annotType, begin, ends[Math.min(ends.length - 1, i + random.nextInt(20))]));
+      }
+      begin = ends[i] + 1;
+    }
+    return cas;
+  }
+  
+  private static long[] gcCountAndTime() {
+    long count = 0;
+    long time = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+      time += Math.max(0, gc.getCollectionTime());
+    }
+    return new long[] {count, time};
+  }
 
 }
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FSIndex;
+import org.apache.uima.cas.Marker;
+import org.apache.uima.cas.Type;
+import org.apache.uima.jcas.cas.TOP;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.metadata.FsIndexDescription;
+import org.apache.uima.resource.metadata.FsIndexKeyDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.resource.metadata.impl.FsIndexDescription_impl;
+import org.apache.uima.resource.metadata.impl.FsIndexKeyDescription_impl;
+import org.apache.uima.util.AutoCloseableNoException;
+import org.apache.uima.util.CasCreationUtils;
+
+import junit.framework.TestCase;
+
+public class BulkIndexUpdateTest extends TestCase {
+
+  private static final String TOKEN = "test.Token";
+  private static final String BEGIN_SET_INDEX = "TokenBegins";
+  private static final int NBR_TOKENS = 2000;
+
+  private CASImpl createCas() throws Exception {
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory().createTypeSystemDescription();
+    tsd.addType(TOKEN, "", CAS.TYPE_NAME_ANNOTATION);
+
+    FsIndexDescription setIndex = new FsIndexDescription_impl();
+    setIndex.setLabel(BEGIN_SET_INDEX);
+    setIndex.setTypeName(TOKEN);
+    setIndex.setKind(FsIndexDescription.KIND_SET);
+    FsIndexKeyDescription key = new FsIndexKeyDescription_impl();
+    key.setFeatureName(CAS.FEATURE_BASE_NAME_BEGIN);
+    key.setComparator(FsIndexKeyDescription.STANDARD_COMPARE);
+    setIndex.setKeys(new FsIndexKeyDescription[] {key});
+
+    return (CASImpl) CasCreationUtils.createCas(tsd, null, new FsIndexDescription[] {setIndex});
+  }
+
+  private List<Annotation> fill(CASImpl cas) {
+    Random r = new Random(1);
+    Type tokenType = cas.getTypeSystem().getType(TOKEN);
+    List<Annotation> tokens = new ArrayList<>();
+    for (int i = 0; i < NBR_TOKENS; i++) {
+      int begin = r.nextInt(1000);
+      Annotation token = cas.createAnnotation(tokenType, begin, begin + r.nextInt(20));
+      cas.addFsToIndexes(token);
+      tokens.add(token);
+    }
+    return tokens;
+  }
+
+  /**
+   * shift the offsets of about 1/2 of the tokens
+   */
+  private void shift(List<Annotation> tokens, long seed) {
+    Random r = new Random(seed);
+    for (Annotation token : tokens) {
+      if (r.nextBoolean()) {
+        int delta = r.nextInt(100) - 50;
+        int begin = Math.max(0, token.getBegin() + delta);
+        token.setBegin(begin);
+        token.setEnd(Math.max(begin, token.getEnd() + delta));
+      }
+    }
+  }
+
+  private List<String> annotationIndexContents(CASImpl cas) {
+    List<String> r = new ArrayList<>();
+    Annotation prev = null;
+    for (Annotation a : cas.<Annotation>select(TOKEN)) {
+      if (prev != null) {
+        assertTrue(prev.getBegin() < a.getBegin() ||
+                   (prev.getBegin() == a.getBegin() && prev.getEnd() >= a.getEnd()));
+      }
+      r.add(a.getBegin() + "-" + a.getEnd() + ":" + a._id());
+      prev = a;
+    }
+    return r;
+  }
+
+  private Set<Annotation> setIndexContents(CASImpl cas) {
+    Set<Annotation> r = Collections.newSetFromMap(new IdentityHashMap<>());
+    FSIndex<Annotation> index = cas.getIndexRepository().getIndex(BEGIN_SET_INDEX);
+    int prevBegin = -1;
+    for (Annotation a : index) {
+      assertTrue(prevBegin < a.getBegin());  // ordered, no duplicate keys
+      prevBegin = a.getBegin();
+      r.add(a);
+    }
+    return r;
+  }
+
+  /**
+   * The members of a set index after an update are the members before, except for
+   * updated ones which now have the same key as another member.
+   */
+  private void assertSetIndexUpdated(Set<Annotation> before, Set<Annotation> after) {
+    Set<Integer> keys = new HashSet<>();
+    for (Annotation a : after) {
+      assertTrue(before.contains(a));
+      keys.add(a.getBegin());
+    }
+    for (Annotation a : before) {
+      assertTrue(after.contains(a) || keys.contains(a.getBegin()));
+    }
+  }
+
+  public void testSameAsProtectIndexes() throws Exception {
+    CASImpl casBulk = createCas();
+    List<Annotation> tokensBulk = fill(casBulk);
+    CASImpl casProtect = createCas();
+    List<Annotation> tokensProtect = fill(casProtect);
+
+    for (int round = 0; round < 3; round++) {
+      Set<Annotation> setIndexBefore = setIndexContents(casBulk);
+      try (AutoCloseableNoException a = casBulk.bulkIndexUpdate()) {
+        shift(tokensBulk, round);
+      }
+      try (AutoCloseableNoException a = casProtect.protectIndexes()) {
+        shift(tokensProtect, round);
+      }
+      assertEquals(NBR_TOKENS, casBulk.getAnnotationIndex(casBulk.getTypeSystem().getType(TOKEN)).size());
+      assertEquals(annotationIndexContents(casProtect), annotationIndexContents(casBulk));
+      assertSetIndexUpdated(setIndexBefore, setIndexContents(casBulk));
+    }
+  }
+
+  public void testIndexUseWithinScope() throws Exception {
+    CASImpl cas = createCas();
+    List<Annotation> tokens = fill(cas);
+    CASImpl casExpected = createCas();
+    List<Annotation> tokensExpected = fill(casExpected);
+
+    try (AutoCloseableNoException a = cas.bulkIndexUpdate()) {
+      shift(tokens.subList(0, NBR_TOKENS / 2), 1);
+      // uses the index: reorders it
+      assertEquals(NBR_TOKENS, annotationIndexContents(cas).size());
+      shift(tokens.subList(NBR_TOKENS / 2, NBR_TOKENS), 2);
+      // adding to the index: reorders it
+      cas.addFsToIndexes(cas.createAnnotation(cas.getTypeSystem().getType(TOKEN), 5, 7));
+      shift(tokens, 3);
+      // removing from the index
+      cas.removeFsFromIndexes(tokens.get(0));
+      shift(tokens, 4);
+      // the size of the set index, where updated FSs may now be duplicates, is the size after reordering
+      int size = cas.getIndexRepository().getIndex(BEGIN_SET_INDEX).size();
+      assertEquals(setIndexContents(cas).size(), size);
+    }
+
+    shift(tokensExpected.subList(0, NBR_TOKENS / 2), 1);
+    shift(tokensExpected.subList(NBR_TOKENS / 2, NBR_TOKENS), 2);
+    casExpected.addFsToIndexes(casExpected.createAnnotation(casExpected.getTypeSystem().getType(TOKEN), 5, 7));
+    shift(tokensExpected, 3);
+    casExpected.removeFsFromIndexes(tokensExpected.get(0));
+    shift(tokensExpected, 4);
+
+    assertEquals(annotationIndexContents(casExpected), annotationIndexContents(cas));
+    setIndexContents(cas);
+  }
+
+  /**
+   * An iterator created before the scope sees the index as updated, like outside of a scope,
+   * and keeps iterating over its copy of the index as it was
+   */
+  public void testIteratorCreatedBeforeScope() throws Exception {
+    CASImpl cas = createCas();
+    List<Annotation> tokens = fill(cas);
+    List<Annotation> expected = new ArrayList<>();
+    for (Annotation a : cas.<Annotation>select(TOKEN)) {
+      expected.add(a);
+    }
+
+    LowLevelIterator<Annotation> it = (LowLevelIterator<Annotation>) 
+        cas.<Annotation>getAnnotationIndex(cas.getTypeSystem().getType(TOKEN)).iterator();
+    List<Annotation> actual = new ArrayList<>();
+    for (int i = 0; i < NBR_TOKENS / 2; i++) {
+      actual.add(it.next());
+    }
+    try (AutoCloseableNoException a = cas.bulkIndexUpdate()) {
+      shift(tokens, 1);
+      assertTrue(it.isIndexesHaveBeenUpdated());
+      while (it.hasNext()) {
+        actual.add(it.next());
+      }
+    }
+    assertEquals(expected, actual);
+  }
+
+  public void testNestingAndReset() throws Exception {
+    CASImpl cas = createCas();
+    List<Annotation> tokens = fill(cas);
+    try (AutoCloseableNoException outer = cas.getJCas().bulkIndexUpdate()) {
+      try (AutoCloseableNoException inner = cas.bulkIndexUpdate()) {
+        shift(tokens, 1);
+      }
+      shift(tokens, 2);
+    }
+    assertEquals(NBR_TOKENS, annotationIndexContents(cas).size());
+
+    // reset within the scope
+    try (AutoCloseableNoException a = cas.bulkIndexUpdate()) {
+      shift(tokens, 3);
+      cas.reset();
+      tokens = fill(cas);
+      shift(tokens, 4);  // not in a scope any more
+    }
+    try (AutoCloseableNoException a = cas.bulkIndexUpdate()) {
+      shift(tokens, 5);
+    }
+    assertEquals(NBR_TOKENS, annotationIndexContents(cas).size());
+  }
+
+  public void testJournaling() throws Exception {
+    CASImpl cas = createCas();
+    List<Annotation> tokens = fill(cas);
+    Marker marker = cas.createMarker();
+    try (AutoCloseableNoException a = cas.bulkIndexUpdate()) {
+      for (int i = 0; i < 10; i++) {
+        tokens.get(i).setBegin(tokens.get(i).getBegin() + 1);
+        tokens.get(i).setBegin(tokens.get(i).getBegin() + 1);
+      }
+    }
+    assertTrue(marker.isValid());
+    FSIndexRepositoryImpl ir = (FSIndexRepositoryImpl) cas.getIndexRepository();
+    for (int i = 0; i < 10; i++) {
+      assertTrue(ir.getReindexedFSs().contains((TOP) tokens.get(i)));
+      assertTrue(marker.isModified(tokens.get(i)));
+    }
+    assertFalse(ir.getReindexedFSs().contains((TOP) tokens.get(10)));
+  }
+}
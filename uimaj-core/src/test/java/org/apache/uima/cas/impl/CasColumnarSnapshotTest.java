@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.impl.CasColumnarSnapshot.Column;
+import org.apache.uima.cas.impl.CasColumnarSnapshot.ColumnKind;
+import org.apache.uima.cas.impl.CasColumnarSnapshot.Table;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.resource.metadata.impl.TypeSystemDescription_impl;
+import org.apache.uima.util.CasCreationUtils;
+
+import junit.framework.TestCase;
+
+public class CasColumnarSnapshotTest extends TestCase {
+
+  private CAS cas;
+  private Type tokenType;
+  private Type sentenceType;
+  private Feature posFeat;
+  private Feature scoreFeat;
+  private Feature countFeat;
+  private Feature sentenceFeat;
+
+  public void setUp() throws Exception {
+    TypeSystemDescription tsd = new TypeSystemDescription_impl();
+    TypeDescription sentence = tsd.addType("test.Sentence", "", CAS.TYPE_NAME_ANNOTATION);
+    TypeDescription token = tsd.addType("test.Token", "", CAS.TYPE_NAME_ANNOTATION);
+    tsd.addType("test.Note", "", CAS.TYPE_NAME_TOP);
+    token.addFeature("pos", "", CAS.TYPE_NAME_STRING);
+    token.addFeature("score", "", CAS.TYPE_NAME_DOUBLE);
+    token.addFeature("count", "", CAS.TYPE_NAME_LONG);
+    token.addFeature("sentence", "", sentence.getName());
+    cas = CasCreationUtils.createCas(tsd, null, null);
+    tokenType = cas.getTypeSystem().getType("test.Token");
+    sentenceType = cas.getTypeSystem().getType("test.Sentence");
+    posFeat = tokenType.getFeatureByBaseName("pos");
+    scoreFeat = tokenType.getFeatureByBaseName("score");
+    countFeat = tokenType.getFeatureByBaseName("count");
+    sentenceFeat = tokenType.getFeatureByBaseName("sentence");
+
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      sb.append("w").append(i % 10).append(' ');
+    }
+    cas.setDocumentText(sb.toString());
+
+    AnnotationFS s = null;
+    for (int i = 0; i < 200; i++) {
+      if (i % 20 == 0) {
+        s = cas.createAnnotation(sentenceType, i * 3, (i + 20) * 3 - 1);
+        cas.addFsToIndexes(s);
+      }
+      AnnotationFS t = cas.createAnnotation(tokenType, i * 3, i * 3 + 2);
+      t.setStringValue(posFeat, (i % 3 == 0) ? null : ("P" + (i % 4)));
+      t.setDoubleValue(scoreFeat, i / 7.0);
+      t.setLongValue(countFeat, -i * 10_000_000_000L);
+      t.setFeatureValue(sentenceFeat, s);
+      cas.addFsToIndexes(t);
+      if (i % 50 == 0) {
+        cas.addFsToIndexes(cas.createFS(cas.getTypeSystem().getType("test.Note")));
+      }
+    }
+  }
+
+  public void testColumns() {
+    checkColumns(CasColumnarSnapshot.create(cas));
+  }
+
+  public void testWriteAndMap() throws Exception {
+    File file = File.createTempFile("casSnapshot", ".bin");
+    try {
+      CasColumnarSnapshot.create(cas).write(file.toPath());
+      checkColumns(CasColumnarSnapshot.map(file.toPath()));
+    } finally {
+      file.delete();
+    }
+  }
+
+  public void testSelect() {
+    CasColumnarSnapshot snapshot = CasColumnarSnapshot.create(cas);
+    assertEquals(cas.getAnnotationIndex(tokenType).size(), snapshot.select("test.Token").count());
+    assertEquals(cas.getAnnotationIndex().size(), snapshot.select(CAS.TYPE_NAME_ANNOTATION).count());
+    assertEquals(0, snapshot.select("test.NoSuchType").count());
+    assertEquals(5, snapshot.select("test.Token").limit(5).count());
+
+    // same results and order as select, across types
+    for (AnnotationFS bound : cas.<AnnotationFS>getAnnotationIndex(sentenceType)) {
+      assertSameResults(snapshot.select(CAS.TYPE_NAME_ANNOTATION).coveredBy(bound.getBegin(), bound.getEnd()),
+          cas.<Annotation>select(Annotation.class).coveredBy(bound.getBegin(), bound.getEnd()).asList());
+      assertSameResults(snapshot.select("test.Sentence").covering(bound.getBegin() + 3, bound.getBegin() + 5),
+          cas.<Annotation>select(sentenceType).covering(bound.getBegin() + 3, bound.getBegin() + 5).asList());
+    }
+    List<Annotation> annotations = cas.<Annotation>select(Annotation.class).asList();
+    assertSameResults(snapshot.select(CAS.TYPE_NAME_ANNOTATION).limit(30), annotations.subList(0, 30));
+
+    // not all annotations: by id
+    List<Integer> ids = new ArrayList<>();
+    snapshot.select(CAS.TYPE_NAME_TOP).forEach((table, row) -> ids.add(table.getId(row)));
+    assertEquals(annotations.size() + 4, ids.size());
+    List<Integer> sortedIds = new ArrayList<>(ids);
+    Collections.sort(sortedIds);
+    assertEquals(sortedIds, ids);
+    List<Integer> firstIds = new ArrayList<>();
+    snapshot.select(CAS.TYPE_NAME_TOP).limit(10).forEach((table, row) -> firstIds.add(table.getId(row)));
+    assertEquals(ids.subList(0, 10), firstIds);
+  }
+
+  private void assertSameResults(CasColumnarSnapshot.Select select, List<Annotation> expected) {
+    List<Integer> ids = new ArrayList<>();
+    select.forEach((table, row) -> ids.add(table.getId(row)));
+    List<Integer> expectedIds = new ArrayList<>();
+    for (Annotation a : expected) {
+      // the cas select may include the document annotation, which is equal in begin / end
+      if (a.getType() != cas.getDocumentAnnotation().getType()) {
+        expectedIds.add(a._id());
+      }
+    }
+    ids.removeIf(id -> id == cas.getDocumentAnnotation()._id());
+    assertEquals(expectedIds, ids);
+  }
+
+  private void checkColumns(CasColumnarSnapshot snapshot) {
+    assertEquals(cas.getDocumentText(), snapshot.getDocumentText());
+    Table tokens = snapshot.getTable("test.Token");
+    assertEquals(200, tokens.size());
+    assertTrue(tokens.isAnnotation());
+    assertEquals(ColumnKind.STRING, tokens.getColumn("pos").getKind());
+    Column pos = tokens.getColumn("pos");
+    Column score = tokens.getColumn("score");
+    Column count = tokens.getColumn("count");
+    Column sentence = tokens.getColumn("sentence");
+    int row = 0;
+    for (AnnotationFS t : cas.<AnnotationFS>getAnnotationIndex(tokenType)) {
+      assertEquals(((FeatureStructureImplC)t)._id(), tokens.getId(row));
+      assertEquals(t.getBegin(), tokens.getBegin(row));
+      assertEquals(t.getEnd(), tokens.getEnd(row));
+      assertEquals(t.getCoveredText(), tokens.getCoveredText(row));
+      assertEquals(t.getStringValue(posFeat), pos.getString(row));
+      assertEquals(t.getDoubleValue(scoreFeat), score.getDouble(row));
+      assertEquals(t.getLongValue(countFeat), count.getLong(row));
+      assertEquals(((FeatureStructureImplC)t.getFeatureValue(sentenceFeat))._id(), sentence.getRefId(row));
+      row++;
+    }
+    // dictionary encoding: equal strings have equal codes
+    assertEquals(pos.getStringCode(1), pos.getStringCode(5));
+    assertEquals(-1, pos.getStringCode(0));
+    assertEquals(10, snapshot.getTable("test.Sentence").size());
+  }
+}
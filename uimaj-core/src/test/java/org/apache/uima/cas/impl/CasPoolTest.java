@@ -38,7 +38,9 @@ import org.apache.uima.internal.util.Misc;
 import org.apache.uima.internal.util.MultiThreadUtils;
 import org.apache.uima.resource.CasManager;
 import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceManager;
 import org.apache.uima.test.junit_extension.JUnitExtension;
+import org.apache.uima.util.CasPool;
 import org.apache.uima.util.InvalidXMLException;
 import org.apache.uima.util.XMLInputSource;
 import org.apache.uima.util.XMLizable;
@@ -139,6 +141,138 @@ public class CasPoolTest extends TestCase {
         }});
   }
   
+  public void testMultiThreadLockFree() throws Exception {
+    System.setProperty(CasPool.LOCK_FREE_CAS_POOL, "true");
+    try {
+      testMultiThread();
+    } finally {
+      System.clearProperty(CasPool.LOCK_FREE_CAS_POOL);
+    }
+  }
+
+  public void testMultiThreadThreadAffinity() throws Exception {
+    System.setProperty(CasPool.CAS_POOL_THREAD_AFFINITY, "true");
+    try {
+      testMultiThread();
+    } finally {
+      System.clearProperty(CasPool.CAS_POOL_THREAD_AFFINITY);
+    }
+  }
+  
+  public void testLockFreeGetRelease() throws Exception {
+    System.setProperty(CasPool.CAS_POOL_THREAD_AFFINITY, "true");
+    try {
+      CasPool pool = new CasPool(3, casManager, null);
+      assertEquals(3, pool.getNumAvailable());
+      CAS c1 = pool.getCas();
+      CAS c2 = pool.getCas();
+      CAS c3 = pool.getCas(0);
+      assertTrue(c1 != c2 && c2 != c3 && c1 != c3);
+      assertNull(pool.getCas());
+      assertNull(pool.getCas(10));
+      assertEquals(0, pool.getNumAvailable());
+      
+      c2.setDocumentText("some text");
+      pool.releaseCas(c2);
+      assertEquals(1, pool.getNumAvailable());
+      pool.releaseCas(c2);  // released twice: warning, ignored
+      assertEquals(1, pool.getNumAvailable());
+      
+      CAS c = pool.getCas();
+      assertTrue(c == c2);
+      assertNull(c.getDocumentText());  // was reset
+      
+      pool.releaseCas(c1);
+      pool.releaseCas(c2);
+      pool.releaseCas(c3);
+      assertEquals(3, pool.getNumAvailable());
+      assertTrue(pool.getCas() == c3);  // most recently released by this thread
+    } finally {
+      System.clearProperty(CasPool.CAS_POOL_THREAD_AFFINITY);
+    }
+  }
+  
+  public void testMultiThreadBackgroundReset() throws Exception {
+    System.setProperty(CasPool.CAS_POOL_BACKGROUND_RESET, "2");
+    try {
+      testMultiThread();
+      System.setProperty(CasPool.LOCK_FREE_CAS_POOL, "true");
+      setUp();  // new cas manager, to define the pool again
+      testMultiThread();
+    } finally {
+      System.clearProperty(CasPool.CAS_POOL_BACKGROUND_RESET);
+      System.clearProperty(CasPool.LOCK_FREE_CAS_POOL);
+    }
+  }
+  
+  public void testBackgroundReset() throws Exception {
+    System.setProperty(CasPool.CAS_POOL_BACKGROUND_RESET, "true");
+    try {
+      backgroundReset();
+      System.setProperty(CasPool.LOCK_FREE_CAS_POOL, "true");
+      backgroundReset();
+    } finally {
+      System.clearProperty(CasPool.CAS_POOL_BACKGROUND_RESET);
+      System.clearProperty(CasPool.LOCK_FREE_CAS_POOL);
+    }
+  }
+  
+  private void backgroundReset() throws Exception {
+    CasPool pool = new CasPool(1, casManager, null);
+    CAS c1 = pool.getCas();
+    c1.setDocumentText("some text");
+    pool.releaseCas(c1);
+    pool.releaseCas(c1);  // released twice: warning, ignored
+    
+    CAS c = pool.getCas(0);  // waits for the reset
+    assertTrue(c == c1);
+    assertNull(c.getDocumentText());
+    assertEquals(1, pool.getResetCount());
+    assertTrue(pool.getTotalResetTimeNanos() > 0);
+    assertNull(pool.getCas());
+    pool.releaseCas(c);
+  }
+  
+  public void testDestroy() throws Exception {
+    System.setProperty(CasPool.CAS_POOL_BACKGROUND_RESET, "true");
+    try {
+      CasPool pool = new CasPool(1, casManager, null);
+      CAS c = pool.getCas();
+      pool.releaseCas(c);
+      assertTrue(c == pool.getCas(0));
+      boolean found = false;
+      for (Thread t : Thread.getAllStackTraces().keySet()) {
+        if (t.getName().startsWith("CasPool reset ")) {
+          assertTrue(t.isDaemon());
+          found = true;
+        }
+      }
+      assertTrue(found);
+      
+      pool.destroy();
+      c.setDocumentText("some text");
+      pool.releaseCas(c);  // reset on this thread
+      assertEquals(2, pool.getResetCount());
+      assertTrue(c == pool.getCas());
+      assertNull(c.getDocumentText());
+      pool.releaseCas(c);
+      
+      // destroying the resource manager destroys the pools of its CAS Manager
+      ResourceManager rm = UIMAFramework.newDefaultResourceManager();
+      CasManager cm = rm.getCasManager();
+      cm.addMetaData(aed.getAnalysisEngineMetaData());
+      cm.defineCasPool("id", 1, null);
+      c = cm.getCas("id");
+      c.setDocumentText("some text");
+      rm.destroy();
+      cm.releaseCas(c);
+      assertNull(c.getDocumentText());
+      assertTrue(c == cm.getCas("id"));
+    } finally {
+      System.clearProperty(CasPool.CAS_POOL_BACKGROUND_RESET);
+    }
+  }
+  
   private void getAndRelease(StringBuilder sb, Random r) {
     CAS c1 = getCas(sb);
     try {
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceManager;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.test.junit_extension.JUnitExtension;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.XMLInputSource;
+
+import junit.framework.TestCase;
+import x.y.z.Sentence;
+import x.y.z.Token;
+
+/**
+ * Loads the JCas classes for several type systems and class loaders at once
+ */
+public class ConcurrentJCasLoadingTest extends TestCase {
+
+  private static final int NBR_THREADS = 8;
+
+  public void testConcurrentLoading() throws Exception {
+    TypeSystemDescription[] tsds = new TypeSystemDescription[2];
+    for (int i = 0; i < tsds.length; i++) {
+      tsds[i] = UIMAFramework.getXMLParser().parseTypeSystemDescription(new XMLInputSource(
+              JUnitExtension.getFile("ExampleCas/testTypeSystem_token_sentence_no_features.xml")));
+    }
+    tsds[1].addType("test.Extra", "", CAS.TYPE_NAME_ANNOTATION);
+
+    // each pair of type system and class loader is used by 2 threads
+    ClassLoader[] cls = new ClassLoader[2];
+    for (int i = 0; i < cls.length; i++) {
+      cls[i] = new URLClassLoader(new URL[0], getClass().getClassLoader());
+    }
+
+    CyclicBarrier barrier = new CyclicBarrier(NBR_THREADS);
+    ExecutorService executor = Executors.newFixedThreadPool(NBR_THREADS);
+    try {
+      List<Future<CAS>> futures = new ArrayList<>();
+      for (int i = 0; i < NBR_THREADS; i++) {
+        TypeSystemDescription tsd = tsds[(i / 2) % 2];
+        ClassLoader cl = cls[i % 2];
+        futures.add(executor.submit(() -> {
+          ResourceManager rm = UIMAFramework.newDefaultResourceManager();
+          rm.setExtensionClassLoader(cl, false);
+          barrier.await(10, TimeUnit.SECONDS);
+          CAS cas = CasCreationUtils.createCas(tsd, null, null, null, rm);
+          JCas jcas = cas.getJCas();
+          jcas.setDocumentText("A B");
+          new Token(jcas, 0, 1).addToIndexes();
+          new Token(jcas, 2, 3).addToIndexes();
+          new Sentence(jcas, 0, 3).addToIndexes();
+          return cas;
+        }));
+      }
+
+      for (Future<CAS> f : futures) {
+        JCas jcas = f.get(30, TimeUnit.SECONDS).getJCas();
+        assertEquals(2, jcas.select(Token.class).count());
+        assertEquals("B", jcas.select(Token.class).following(0).get().getCoveredText());
+        assertEquals(2, jcas.select(Token.class).coveredBy(jcas.select(Sentence.class).get()).count());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
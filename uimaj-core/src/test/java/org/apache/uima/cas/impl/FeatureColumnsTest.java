@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CASRuntimeException;
+import org.apache.uima.cas.FSIndex;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.resource.metadata.impl.TypeSystemDescription_impl;
+import org.apache.uima.util.CasCreationUtils;
+
+import junit.framework.TestCase;
+
+public class FeatureColumnsTest extends TestCase {
+
+  private CAS cas;
+  private Type scoredType;
+  private Feature scoreFeat;
+  private Feature countFeat;
+  private Feature weightFeat;
+  private Feature beginFeat;
+
+  public void setUp() throws Exception {
+    TypeSystemDescription tsd = new TypeSystemDescription_impl();
+    TypeDescription scored = tsd.addType("test.Scored", "", CAS.TYPE_NAME_ANNOTATION);
+    scored.addFeature("score", "", CAS.TYPE_NAME_FLOAT);
+    scored.addFeature("count", "", CAS.TYPE_NAME_LONG);
+    scored.addFeature("weight", "", CAS.TYPE_NAME_DOUBLE);
+    cas = CasCreationUtils.createCas(tsd, null, null);
+    scoredType = cas.getTypeSystem().getType("test.Scored");
+    scoreFeat = scoredType.getFeatureByBaseName("score");
+    countFeat = scoredType.getFeatureByBaseName("count");
+    weightFeat = scoredType.getFeatureByBaseName("weight");
+    beginFeat = cas.getBeginFeature();
+
+    for (int i = 0; i < 100; i++) {
+      AnnotationFS a = cas.createAnnotation(scoredType, (i * 7) % 100, 100 + i);
+      a.setFloatValue(scoreFeat, i * 0.5f);
+      a.setLongValue(countFeat, ((long)i) << 33);
+      a.setDoubleValue(weightFeat, -i * 1.25);
+      cas.addFsToIndexes(a);
+    }
+  }
+
+  public void testGetValues() {
+    FSIndex<AnnotationFS> index = cas.getAnnotationIndex(scoredType);
+    int[] begins = new int[index.size() + 5];
+    float[] scores = new float[index.size()];
+    long[] counts = new long[index.size()];
+    double[] weights = new double[index.size()];
+    assertEquals(100, FeatureColumns.getIntValues(beginFeat, index, begins));
+    assertEquals(100, FeatureColumns.getFloatValues(scoreFeat, index, scores));
+    assertEquals(100, FeatureColumns.getLongValues(countFeat, index, counts));
+    assertEquals(100, FeatureColumns.getDoubleValues(weightFeat, index, weights));
+
+    int i = 0;
+    for (FSIterator<AnnotationFS> it = index.iterator(); it.isValid(); it.moveToNext()) {
+      AnnotationFS a = it.get();
+      assertEquals(a.getBegin(), begins[i]);
+      assertEquals(a.getFloatValue(scoreFeat), scores[i]);
+      assertEquals(a.getLongValue(countFeat), counts[i]);
+      assertEquals(a.getDoubleValue(weightFeat), weights[i]);
+      i++;
+    }
+
+    // feature defined for a supertype of the index type
+    FSIndex<AnnotationFS> allAnnotations = cas.getAnnotationIndex();
+    int[] allBegins = new int[allAnnotations.size()];
+    assertEquals(100, FeatureColumns.getIntValues(beginFeat, allAnnotations, allBegins));
+  }
+
+  public void testSetValues() {
+    FSIndex<AnnotationFS> index = cas.getAnnotationIndex(scoredType);
+    final int size = index.size();
+    float[] scores = new float[size];
+    long[] counts = new long[size];
+    double[] weights = new double[size];
+    int[] begins = new int[size];
+    for (int i = 0; i < size; i++) {
+      scores[i] = i;
+      counts[i] = -i;
+      weights[i] = i / 3.0;
+      begins[i] = 1000 - i;   // reverses the index order
+    }
+    FeatureColumns.setFloatValues(scoreFeat, index, scores);
+    FeatureColumns.setLongValues(countFeat, index, counts);
+    FeatureColumns.setDoubleValues(weightFeat, index, weights);
+
+    int i = 0;
+    for (FSIterator<AnnotationFS> it = index.iterator(); it.isValid(); it.moveToNext()) {
+      AnnotationFS a = it.get();
+      assertEquals(scores[i], a.getFloatValue(scoreFeat));
+      assertEquals(counts[i], a.getLongValue(countFeat));
+      assertEquals(weights[i], a.getDoubleValue(weightFeat));
+      i++;
+    }
+
+    // setting a key feature keeps the index valid
+    FeatureColumns.setIntValues(beginFeat, index, begins);
+    assertEquals(size, index.size());
+    int[] newBegins = new int[size];
+    FeatureColumns.getIntValues(beginFeat, index, newBegins);
+    float[] newScores = new float[size];
+    FeatureColumns.getFloatValues(scoreFeat, index, newScores);
+    for (i = 0; i < size; i++) {
+      assertEquals(1000 - size + 1 + i, newBegins[i]);
+      assertEquals(scores[size - 1 - i], newScores[i]);
+    }
+  }
+
+  public void testValidation() {
+    FSIndex<AnnotationFS> index = cas.getAnnotationIndex(scoredType);
+    boolean caught = false;
+    try {
+      FeatureColumns.getIntValues(scoreFeat, index, new int[index.size()]);  // wrong range
+    } catch (CASRuntimeException e) {
+      caught = true;
+    }
+    assertTrue(caught);
+
+    caught = false;
+    try {
+      FSIndex<AnnotationFS> allAnnotations = cas.getAnnotationIndex();
+      FeatureColumns.getFloatValues(scoreFeat, allAnnotations, new float[allAnnotations.size()]);  // not defined for all
+    } catch (CASRuntimeException e) {
+      caught = true;
+    }
+    assertTrue(caught);
+
+    caught = false;
+    try {
+      FeatureColumns.getIntValues(beginFeat, index, new int[index.size() - 1]);
+    } catch (IllegalArgumentException e) {
+      caught = true;
+    }
+    assertTrue(caught);
+  }
+}
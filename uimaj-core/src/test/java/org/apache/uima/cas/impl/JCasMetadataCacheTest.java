@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.resource.ResourceManager;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.resource.metadata.impl.TypeSystemDescription_impl;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.FileUtils;
+
+import junit.framework.TestCase;
+
+public class JCasMetadataCacheTest extends TestCase {
+
+  private Path classpathDir;
+
+  private Path cacheDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    classpathDir = Files.createTempDirectory("jcasMetadataCacheTestClasspath");
+    Files.write(classpathDir.resolve("a.txt"), "a".getBytes(StandardCharsets.UTF_8));
+    cacheDir = Files.createTempDirectory("jcasMetadataCacheTest");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    JCasMetadataCache.cacheDir = null;
+    FileUtils.deleteRecursive(classpathDir.toFile());
+    FileUtils.deleteRecursive(cacheDir.toFile());
+  }
+
+  /**
+   * Counts the attempts to load the class with no JCas
+   */
+  private static class CountingClassLoader extends URLClassLoader {
+    final AtomicInteger nbrNoJCasLoads = new AtomicInteger();
+
+    CountingClassLoader(URL[] urls, ClassLoader parent) {
+      super(urls, parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (name.equals("test.NoJCas")) {
+        nbrNoJCasLoads.incrementAndGet();
+      }
+      return super.loadClass(name, resolve);
+    }
+  }
+
+  /**
+   * Records the answers of the cache to the type system conformance queries
+   */
+  private static class ConformingSpy extends JCasMetadataCache {
+    final List<Boolean> answers = new ArrayList<>();
+
+    ConformingSpy(Path file) {
+      super(file);
+    }
+
+    @Override
+    boolean isConforming(String typeSystemHash) {
+      boolean answer = super.isConforming(typeSystemHash);
+      answers.add(answer);
+      return answer;
+    }
+  }
+
+  private ConformingSpy spyOn(ClassLoader cl) {
+    ConformingSpy spy = new ConformingSpy(
+            cacheDir.resolve(JCasMetadataCache.classpathHash(cl) + ".properties"));
+    JCasMetadataCache.cl_to_cache.put(cl, spy);
+    return spy;
+  }
+
+  private CountingClassLoader newClassLoader() throws Exception {
+    return new CountingClassLoader(new URL[] { classpathDir.toUri().toURL() },
+            getClass().getClassLoader());
+  }
+
+  public void testClasspathHash() throws Exception {
+    String hash = JCasMetadataCache.classpathHash(newClassLoader());
+    assertNotNull(hash);
+    assertEquals(hash, JCasMetadataCache.classpathHash(newClassLoader()));
+
+    Files.write(classpathDir.resolve("b.txt"), "b".getBytes(StandardCharsets.UTF_8));
+    assertFalse(hash.equals(JCasMetadataCache.classpathHash(newClassLoader())));
+
+    // not a URLClassLoader: the classes it loads are unknown
+    assertNull(JCasMetadataCache.classpathHash(new ClassLoader(newClassLoader()) {}));
+  }
+
+  public void testSaveAndRead() throws Exception {
+    JCasMetadataCache cache = JCasMetadataCache.forClassLoader(cacheDir, newClassLoader());
+    assertFalse(cache.isMissing("x.Missing"));
+    cache.addMissing("x.Missing");
+    cache.addConforming("1234");
+    cache.save();
+
+    JCasMetadataCache cache2 = JCasMetadataCache.forClassLoader(cacheDir, newClassLoader());
+    assertTrue(cache2.isMissing("x.Missing"));
+    assertFalse(cache2.isMissing("x.Other"));
+    assertTrue(cache2.isConforming("1234"));
+    assertFalse(cache2.isConforming("5678"));
+
+    // what was saved by others in the meantime is kept
+    cache2.addMissing("x.Missing2");
+    cache.addMissing("x.Missing3");
+    cache2.save();
+    cache.save();
+    JCasMetadataCache cache3 = JCasMetadataCache.forClassLoader(cacheDir, newClassLoader());
+    assertTrue(cache3.isMissing("x.Missing2"));
+    assertTrue(cache3.isMissing("x.Missing3"));
+
+    // a file in another format is ignored
+    Path file = getCacheFiles().get(0);
+    Files.write(file, "version=0\nmissing=x.Other\n".getBytes(StandardCharsets.ISO_8859_1));
+    JCasMetadataCache cache4 = JCasMetadataCache.forClassLoader(cacheDir, newClassLoader());
+    assertFalse(cache4.isMissing("x.Missing"));
+    assertFalse(cache4.isMissing("x.Other"));
+
+    // another classpath, another file
+    Files.write(classpathDir.resolve("b.txt"), "b".getBytes(StandardCharsets.UTF_8));
+    assertFalse(JCasMetadataCache.forClassLoader(cacheDir, newClassLoader()).isConforming("1234"));
+  }
+
+  public void testTypeSystemHash() throws Exception {
+    CAS cas1 = CasCreationUtils.createCas(typeSystem("uima.cas.Integer"), null, null);
+    CAS cas2 = CasCreationUtils.createCas(typeSystem("uima.cas.String"), null, null);
+    String hash1 = JCasMetadataCache.typeSystemHash((TypeSystemImpl) cas1.getTypeSystem());
+    assertEquals(hash1, JCasMetadataCache.typeSystemHash((TypeSystemImpl) cas1.getTypeSystem()));
+    assertFalse(hash1.equals(JCasMetadataCache.typeSystemHash((TypeSystemImpl) cas2.getTypeSystem())));
+  }
+
+  public void testLoadingJCas() throws Exception {
+    JCasMetadataCache.cacheDir = cacheDir;
+    TypeSystemDescription tsd = typeSystem("uima.cas.Integer");
+
+    CountingClassLoader cl = newClassLoader();
+    ResourceManager rm = newResourceManager(cl);
+    ConformingSpy spy = spyOn(rm.getExtensionClassLoader());
+    CAS cas = CasCreationUtils.createCas(tsd, null, null, null, rm);
+    cas.getJCas();
+    assertTrue(cl.nbrNoJCasLoads.get() > 0);
+    // not known yet: the conformance is checked
+    assertEquals(Arrays.asList(false), spy.answers);
+    List<Path> files = getCacheFiles();
+    assertEquals(1, files.size());
+    Properties p = new Properties();
+    try (InputStream is = Files.newInputStream(files.get(0))) {
+      p.load(is);
+    }
+    assertTrue(Arrays.asList(p.getProperty("missing").split(" ")).contains("test.NoJCas"));
+    String tsHash = JCasMetadataCache.typeSystemHash((TypeSystemImpl) cas.getTypeSystem());
+    assertEquals(tsHash, p.getProperty("conforming"));
+
+    // a new class loader with the same classpath uses the cache:
+    //   no attempt to load the missing class, no conformance check
+    cl = newClassLoader();
+    rm = newResourceManager(cl);
+    spy = spyOn(rm.getExtensionClassLoader());
+    cas = CasCreationUtils.createCas(tsd, null, null, null, rm);
+    assertEquals("test.NoJCas",
+            cas.createFS(cas.getTypeSystem().getType("test.NoJCas")).getType().getName());
+    assertEquals(0, cl.nbrNoJCasLoads.get());
+    assertEquals(Arrays.asList(true), spy.answers);
+    assertEquals(1, getCacheFiles().size());
+
+    // without the cache, both are done again
+    JCasMetadataCache.cacheDir = null;
+    cl = newClassLoader();
+    rm = newResourceManager(cl);
+    spy = spyOn(rm.getExtensionClassLoader());
+    cas = CasCreationUtils.createCas(tsd, null, null, null, rm);
+    assertTrue(cl.nbrNoJCasLoads.get() > 0);
+    assertTrue(spy.answers.isEmpty());
+  }
+
+  private ResourceManager newResourceManager(ClassLoader cl) throws Exception {
+    ResourceManager rm = UIMAFramework.newDefaultResourceManager();
+    rm.setExtensionClassLoader(cl, false);
+    return rm;
+  }
+
+  private static TypeSystemDescription typeSystem(String aRange) {
+    TypeSystemDescription tsd = new TypeSystemDescription_impl();
+    tsd.addType("test.NoJCas", "", CAS.TYPE_NAME_TOP).addFeature("f", "", aRange);
+    return tsd;
+  }
+
+  private List<Path> getCacheFiles() throws Exception {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(cacheDir)) {
+      for (Path p : ds) {
+        files.add(p);
+      }
+    }
+    return files;
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.cas.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class Lz4CasCompressionCodecTest extends TestCase {
+
+  private final CasCompressionCodec codec = Lz4CasCompressionCodec.INSTANCE;
+
+  public void testRoundTrip() throws IOException {
+    Random r = new Random(1234);
+
+    roundTrip(new byte[0]);
+    roundTrip(new byte[] {1});
+    roundTrip(new byte[13]);
+    roundTrip("abcabcabcabcabcabcabcabcabcabc".getBytes(StandardCharsets.UTF_8));
+
+    // long runs use overlapping matches and multi byte lengths
+    byte[] zeros = new byte[100_000];
+    assertTrue(roundTrip(zeros) < 1000);
+
+    // incompressible
+    byte[] random = new byte[70_000];
+    r.nextBytes(random);
+    roundTrip(random);
+
+    // repeats further apart than the max offset, and long literal runs
+    byte[] mixed = new byte[300_000];
+    byte[] chunk = new byte[1000];
+    r.nextBytes(chunk);
+    for (int i = 0; i < mixed.length; i += chunk.length) {
+      if ((i / chunk.length) % 3 == 0) {
+        r.nextBytes(chunk);
+      }
+      System.arraycopy(chunk, 0, mixed, i, Math.min(chunk.length, mixed.length - i));
+    }
+    roundTrip(mixed);
+
+    // small alphabet text-like data
+    byte[] text = new byte[50_000];
+    for (int i = 0; i < text.length; i++) {
+      text[i] = (byte) ('a' + r.nextInt(4));
+    }
+    roundTrip(text);
+  }
+
+  public void testMalformed() throws IOException {
+    byte[] data = "abcabcabcabcabcabcabcabcabcabc".getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    int len = codec.compress(data, data.length, baos);
+    byte[] compressed = baos.toByteArray();
+
+    boolean caught = false;
+    try {
+      decompress(Arrays.copyOf(compressed, len - 2), data.length);
+    } catch (IOException e) {
+      caught = true;
+    }
+    assertTrue(caught);
+
+    caught = false;
+    try {
+      decompress(compressed, data.length + 1);
+    } catch (IOException e) {
+      caught = true;
+    }
+    assertTrue(caught);
+  }
+
+  public void testRegistry() {
+    assertSame(codec, CasCompressionCodecs.getCodec(Lz4CasCompressionCodec.ID));
+    assertSame(codec, CasCompressionCodecs.getCodec("lz4"));
+    assertNull(CasCompressionCodecs.getCodec(CasCompressionCodecs.DEFLATE_CODEC_ID));
+    assertNull(CasCompressionCodecs.getCodec("no-such-codec"));
+    CasCompressionCodecs.register(codec);  // same instance again is OK
+
+    boolean caught = false;
+    try {
+      CasCompressionCodecs.register(new CasCompressionCodec() {
+        public int getId() { return Lz4CasCompressionCodec.ID; }
+        public String getName() { return "other"; }
+        public int compress(byte[] src, int length, java.io.OutputStream out) { return 0; }
+        public InputStream decompress(InputStream in, int compressedLength, int uncompressedLength) { return in; }
+      });
+    } catch (IllegalArgumentException e) {
+      caught = true;
+    }
+    assertTrue(caught);
+  }
+
+  private int roundTrip(byte[] data) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    baos.write(7);  // compressed bytes needn't start at the beginning of the stream
+    int len = codec.compress(data, data.length, baos);
+    assertEquals(len + 1, baos.size());
+    assertTrue(len <= Lz4CasCompressionCodec.maxCompressedLength(data.length));
+
+    InputStream in = new ByteArrayInputStream(baos.toByteArray());
+    assertEquals(7, in.read());
+    byte[] result = new byte[data.length];
+    new DataInputStream(codec.decompress(in, len, data.length)).readFully(result);
+    assertTrue(Arrays.equals(data, result));
+    assertEquals(-1, in.read());  // all the compressed bytes were consumed
+    return len;
+  }
+
+  private void decompress(byte[] compressed, int uncompressedLength) throws IOException {
+    codec.decompress(new ByteArrayInputStream(compressed), compressed.length, uncompressedLength);
+  }
+}
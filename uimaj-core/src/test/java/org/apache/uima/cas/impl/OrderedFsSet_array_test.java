@@ -24,8 +24,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.cas.FSIndex;
@@ -207,6 +209,84 @@ public class OrderedFsSet_array_test extends TestCase {
     vall();
   }
   
+  /**
+   * addAll gives the same result as adding one at a time, 
+   *   for sorted and set comparators, 
+   *   into empty and non-empty sets,
+   *   with items in order, nearly in order, and in random order, some added more than once
+   */
+  public void testAddAll() {
+    for (int iter = 0; iter < 200; iter++) {
+      List<TOP> existing = makeAnnots(r.nextInt(3) == 0 ? 0 : r.nextInt(300));
+      List<TOP> added = makeAnnots(r.nextInt(300));
+      switch (r.nextInt(3)) {
+      case 0: added.sort(comparatorWithID); break;
+      case 1: added.sort(comparatorWithID); 
+              for (int i = 0; i < added.size() / 10; i++) {
+                Collections.swap(added, r.nextInt(added.size()), r.nextInt(added.size()));
+              }
+              break;
+      default: // random order
+      }
+      if (!existing.isEmpty() && !added.isEmpty()) {
+        added.add(existing.get(0));
+        added.add(added.get(0));
+      }
+      
+      for (Comparator<TOP> comparator : Arrays.asList(comparatorWithID, comparatorWithoutID)) {
+        OrderedFsSet_array<TOP> expected = new OrderedFsSet_array<>(comparatorWithID, comparatorWithoutID);
+        OrderedFsSet_array<TOP> bulk = new OrderedFsSet_array<>(comparatorWithID, comparatorWithoutID);
+        for (TOP fs : existing) {
+          expected.add(fs, comparator);
+          bulk.add(fs, comparator);
+        }
+        for (TOP fs : added) {
+          expected.add(fs, comparator);
+        }
+        bulk.addAll(added, comparator);
+        assertEquals(Arrays.asList(expected.toArray()), Arrays.asList(bulk.toArray()));
+        
+        // still usable for single adds and removes
+        TOP fs = new Annotation(jcas, 50, 60);
+        expected.add(fs, comparator);
+        bulk.add(fs, comparator);
+        expected.remove(fs);
+        bulk.remove(fs);
+        assertEquals(Arrays.asList(expected.toArray()), Arrays.asList(bulk.toArray()));
+      }
+    }
+  }
+  
+  public void testReorder() {
+    for (int iter = 0; iter < 200; iter++) {
+      List<TOP> fss = makeAnnots(1 + r.nextInt(300));
+      a = new OrderedFsSet_array<>(comparatorWithID, comparatorWithoutID);
+      a.addAll(fss, comparatorWithID);
+      Set<TOP> modified = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (TOP fs : fss) {
+        if (r.nextInt(4) == 0) {
+          Annotation annot = (Annotation) fs;
+          int begin = r.nextInt(100);
+          annot.setBegin(begin);  // not indexed, no index corruption checking
+          annot.setEnd(begin + r.nextInt(20));
+          modified.add(fs);
+        }
+      }
+      a.reorder(modified, comparatorWithID);
+      fss.sort(comparatorWithID);
+      assertEquals(fss, Arrays.asList(a.toArray()));
+    }
+  }
+  
+  private List<TOP> makeAnnots(int n) {
+    List<TOP> r1 = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      int begin = r.nextInt(100);
+      r1.add(new Annotation(jcas, begin, begin + r.nextInt(20)));
+    }
+    return r1;
+  }
+  
   private int[] shuffle(int[] a) {
     int[] b = a.clone();
     for (int i = 0; i < b.length; i++) {
@@ -25,11 +25,16 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.SelectFSs;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
@@ -229,4 +234,86 @@ public class SelectFsTest  {
 
 
   }
+  
+  /**
+   * covering and coveredBy over large indexes use interval trees for all terminal ops except fsIterator(),
+   * which uses the Subiterator.  Both must give the same results.
+   */
+  @Test
+  public void testCoveringCoveredByIntervalTree() {
+    cas.reset();
+    JCas jCas = cas.getJCas();
+    Random r = new Random(1234);
+    List<Annotation> bounds = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      int begin = r.nextInt(5000);
+      int end = begin + ((i % 100 == 0) ? r.nextInt(3000) : r.nextInt(20));
+      Annotation a = (i % 3 == 0) ? new Sentence(jCas, begin, end) 
+                   : (i % 3 == 1) ? new Token(jCas, begin, end)
+                                  : new Annotation(jCas, begin, end);
+      a.addToIndexes();
+      if (i % 50 == 0) {
+        bounds.add(a);
+        bounds.add(new Token(jCas, begin, end));  // same begin / end, not indexed
+      }
+    }
+    assertTrue(jCas.getAnnotationIndex().size() >= SelectFSs_impl.MIN_SIZE_FOR_INTERVAL_TREE);
+    
+    for (int pass = 0; pass < 2; pass++) {  // the interval trees are built on the 2nd request
+      for (Annotation bound : bounds) {
+        assertSameResults(jCas.select(Annotation.class).covering(bound), jCas.select(Annotation.class).covering(bound));
+        assertSameResults(jCas.select(Token.class).covering(bound), jCas.select(Token.class).covering(bound));
+        assertSameResults(jCas.select(Annotation.class).covering(bound).skipWhenSameBeginEndType(), 
+                          jCas.select(Annotation.class).covering(bound).skipWhenSameBeginEndType());
+        assertSameResults(jCas.select(Annotation.class).coveredBy(bound), jCas.select(Annotation.class).coveredBy(bound));
+        assertSameResults(jCas.select(Annotation.class).coveredBy(bound).skipWhenSameBeginEndType(), 
+                          jCas.select(Annotation.class).coveredBy(bound).skipWhenSameBeginEndType());
+        assertSameResults(jCas.select(Annotation.class).coveredBy(bound).backwards(), 
+                          jCas.select(Annotation.class).coveredBy(bound).backwards());
+        assertSameResults(jCas.select(Annotation.class).coveredBy(bound.getBegin(), bound.getEnd()), 
+                          jCas.select(Annotation.class).coveredBy(bound.getBegin(), bound.getEnd()));
+      }
+    }
+  }
+  
+  @Test
+  public void testParallelStream() {
+    cas.reset();
+    JCas jCas = cas.getJCas();
+    for (int i = 0; i < 5000; i++) {
+      new Token(jCas, i, i + 5).addToIndexes();
+      if (i % 10 == 0) {
+        new Sentence(jCas, i, i + 10).addToIndexes();
+      }
+    }
+    
+    List<Token> expected = jCas.select(Token.class).asList();
+    assertEquals(expected, jCas.select(Token.class).parallel().collect(Collectors.toList()));
+    assertEquals(expected.size(), jCas.select(Token.class).parallel().count());
+    assertEquals(expected.size(), jCas.select(Token.class).parallel().toArray().length);
+    
+    List<Annotation> expectedAll = jCas.select(Annotation.class).asList();
+    assertEquals(expectedAll, jCas.select(Annotation.class).parallel().collect(Collectors.toList()));
+    
+    // bounded, limited and backwards selects split the same results
+    Sentence s = jCas.select(Sentence.class).get(100);
+    assertEquals(jCas.select(Token.class).coveredBy(s).asList(), 
+                 jCas.select(Token.class).coveredBy(s).parallel().collect(Collectors.toList()));
+    assertEquals(jCas.select(Token.class).limit(1000).asList(), 
+                 jCas.select(Token.class).limit(1000).parallel().collect(Collectors.toList()));
+    assertEquals(jCas.select(Token.class).backwards().asList(), 
+                 jCas.select(Token.class).backwards().parallel().collect(Collectors.toList()));
+    assertEquals(1000, jCas.select(Token.class).limit(1000).parallel().toArray().length);
+    
+    // sequential streams don't split
+    assertEquals(expected, jCas.select(Token.class).collect(Collectors.toList()));
+  }
+  
+  private static <T extends Annotation> void assertSameResults(SelectFSs<T> s1, SelectFSs<T> s2) {
+    List<T> expected = new ArrayList<>();
+    for (FSIterator<T> it = s1.fsIterator(); it.isValid(); it.moveToNext()) {
+      expected.add(it.get());
+    }
+    assertEquals(expected, s2.asList());
+  }
 }
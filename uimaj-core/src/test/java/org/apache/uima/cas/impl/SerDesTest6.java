@@ -37,6 +37,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.uima.cas.ArrayFS;
 import org.apache.uima.cas.BooleanArrayFS;
@@ -100,6 +103,8 @@ public class SerDesTest6 extends SerDesTstCommon {
   private List<FeatureStructure> lfs;
 
   private boolean                doPlain     = false;
+  /** if not null, the compression codec used by the BinaryCasSerDes6 serializations */
+  private CasCompressionCodec    serCodec    = null;
   // private TypeSystemMgr tsmSrc, tsmTgt;
   private TTypeSystem            mSrc;
   private CASImpl                casSrc;
@@ -745,6 +750,51 @@ public class SerDesTest6 extends SerDesTstCommon {
     testArrayAux();
   }
 
+  public void testWithLz4Codec() {
+    serCodec = Lz4CasCompressionCodec.INSTANCE;
+    testDeltaWithAllMods();
+    tearDown(); setUp();
+    testDeltaWithRefsBelow();
+    tearDown(); setUp();
+    testAllKinds();
+    tearDown(); setUp();
+    testArrayAux();
+  }
+
+  public void testParallelCompression() throws Exception {
+    makeRandomFss(casSrc, mSrc, Akof1, 5000);  // big enough to be worth compressing in parallel
+    remoteCas = setupCas(getTT(EqTwoTypes));
+    ForkJoinPool pool = new ForkJoinPool(4);
+    AtomicInteger nbrTasks = new AtomicInteger(0);
+    Executor executor = r -> {
+      nbrTasks.incrementAndGet();
+      pool.execute(r);
+    };
+    try {
+      for (CasCompressionCodec codec : new CasCompressionCodec[] {null, Lz4CasCompressionCodec.INSTANCE}) {
+        BinaryCasSerDes6 bcs = new BinaryCasSerDes6(casSrc, remoteCas.getTypeSystemImpl());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        nbrTasks.set(0);
+        bcs.setCompressionCodec(codec).setExecutor(executor).serialize(baos);
+        byte[] parallel = baos.toByteArray();
+        assertTrue(nbrTasks.get() > 1);
+
+        // same result as sequential
+        baos = new ByteArrayOutputStream();
+        new BinaryCasSerDes6(casSrc, remoteCas.getTypeSystemImpl()).setCompressionCodec(codec).serialize(baos);
+        assertTrue(Arrays.equals(baos.toByteArray(), parallel));
+
+        remoteCas.reset();
+        nbrTasks.set(0);
+        new BinaryCasSerDes6(remoteCas).setExecutor(executor).deserialize(new ByteArrayInputStream(parallel));
+        assertTrue(nbrTasks.get() > 1);
+        assertTrue(bcs.compareCASes(casSrc, remoteCas));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
   private void runCaptureSet() {
     //  Java 8 style
 //    setupRunTeardown(this::testDocText);
@@ -1438,6 +1488,9 @@ public class SerDesTest6 extends SerDesTstCommon {
         }
       } else {
         BinaryCasSerDes6 bcs = new BinaryCasSerDes6(casSrc, casTgt.getTypeSystemImpl());
+        if (serCodec != null) {
+          bcs.setCompressionCodec(serCodec);
+        }
         SerializationMeasures sm = bcs.serialize(baos);
         if (sm != null) {
           System.out.println(sm);
@@ -1466,6 +1519,9 @@ public class SerDesTest6 extends SerDesTstCommon {
         Serialization.serializeCAS(remoteCas, baos, mark);
       } else {
         BinaryCasSerDes6 bcs = new BinaryCasSerDes6(remoteCas, mark, null, ri[1]);
+        if (serCodec != null) {
+          bcs.setCompressionCodec(serCodec);
+        }
         SerializationMeasures sm = bcs.serialize(baos);
         if (sm != null) {
           System.out.println(sm);
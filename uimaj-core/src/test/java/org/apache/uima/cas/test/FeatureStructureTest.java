@@ -22,6 +22,8 @@ package org.apache.uima.cas.test;
 import org.apache.uima.cas.ArrayFS;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASRuntimeException;
+import org.apache.uima.cas.FSIndex;
+import org.apache.uima.cas.FSIterator;
 import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.FeatureStructure;
 import org.apache.uima.cas.Type;
@@ -523,6 +525,41 @@ public class FeatureStructureTest extends TestCase {
 		assertTrue(token.getIntValue(this.startFeature) == i);
 	}
 
+  /**
+   * Setting features of an indexed FS goes through the index corruption check: a key feature
+   * removes the FS from the indexes and adds it back, the other features leave it in place.
+   * Allocation by these setters is measured by FeatureSetterBenchmark in uimaj-benchmarks.
+   */
+  public void testSettersOnIndexedFS() {
+    AnnotationFS token = this.cas.createAnnotation(this.tokenType, 0, 5);
+    AnnotationFS other = this.cas.createAnnotation(this.tokenType, 10, 15);
+    this.cas.addFsToIndexes(token);
+    this.cas.addFsToIndexes(other);
+    FSIndex<AnnotationFS> index = this.cas.getAnnotationIndex(this.tokenType);
+    assertEquals(2, index.size());
+
+    token.setFloatValue(this.tokenFloatFeat, 1.5f);
+    token.setStringValue(this.lemmaFeat, "lemma");
+    token.setFeatureValue(this.tokenTypeFeat, null);
+    assertEquals(2, index.size());
+    FSIterator<AnnotationFS> it = index.iterator();
+    assertSame(token, it.next());
+    assertSame(other, it.next());
+
+    // begin is a key of the annotation index
+    token.setIntValue(this.startFeature, 12);
+    assertEquals(2, index.size());
+    it = index.iterator();
+    assertSame(other, it.next());
+    assertSame(token, it.next());
+    assertFalse(it.hasNext());
+
+    assertEquals(12, token.getBegin());
+    assertEquals(1.5f, token.getFloatValue(this.tokenFloatFeat), 0.0f);
+    assertEquals("lemma", token.getStringValue(this.lemmaFeat));
+    assertNull(token.getFeatureValue(this.tokenTypeFeat));
+  }
+
 	public void testStrings() {
 		FeatureStructure lp = this.cas.createFS(this.langPairType);
 		assertTrue(lp != null);
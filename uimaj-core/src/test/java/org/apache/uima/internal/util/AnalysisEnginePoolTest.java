@@ -19,8 +19,14 @@
 
 package org.apache.uima.internal.util;
 
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.uima.Constants;
 import org.apache.uima.UIMAException;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_component.CasAnnotator_ImplBase;
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.ResultSpecification;
@@ -31,6 +37,7 @@ import org.apache.uima.analysis_engine.metadata.AnalysisEngineMetaData;
 import org.apache.uima.analysis_engine.metadata.impl.FixedFlow_impl;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.metadata.Capability;
 import org.apache.uima.resource.metadata.ConfigurationParameter;
 import org.apache.uima.resource.metadata.NameValuePair;
@@ -47,6 +54,44 @@ public class AnalysisEnginePoolTest extends TestCase {
 
   private TypeSystem mLastTypeSystem;
 
+  /** counts the instances of SlowInitAnnotator initialized, and destroyed */
+  static final AtomicInteger initialized = new AtomicInteger();
+
+  static final AtomicInteger destroyed = new AtomicInteger();
+
+  /** if not null, the instances but the first wait for each other */
+  static volatile CyclicBarrier barrier;
+
+  /** if not 0, the instance initialized with this number fails */
+  static volatile int failingInstance;
+
+  public static class SlowInitAnnotator extends CasAnnotator_ImplBase {
+    @Override
+    public void initialize(UimaContext aContext) throws ResourceInitializationException {
+      super.initialize(aContext);
+      int instance = initialized.incrementAndGet();
+      if (instance == failingInstance) {
+        throw new ResourceInitializationException(new IllegalStateException("failing"));
+      }
+      if (instance > 1 && barrier != null) {
+        try {
+          barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+          throw new ResourceInitializationException(e);
+        }
+      }
+    }
+
+    @Override
+    public void process(CAS aCAS) {
+    }
+
+    @Override
+    public void destroy() {
+      destroyed.incrementAndGet();
+    }
+  }
+
   /**
    * Constructor for MultithreadableAnalysisEngine_implTest.
    * 
@@ -155,6 +200,53 @@ public class AnalysisEnginePoolTest extends TestCase {
    
   }
 
+  public void testConcurrentInitialization() throws Exception {
+    mSimpleDesc.setAnnotatorImplementationName(SlowInitAnnotator.class.getName());
+    initialized.set(0);
+    // the instances but the first wait for each other: would time out if initialized sequentially
+    barrier = new CyclicBarrier(3);
+    try {
+      AnalysisEnginePool pool = new AnalysisEnginePool("taePool", 4, mSimpleDesc, null, 3);
+      assertEquals(4, initialized.get());
+      assertEquals(4, pool.getSize());
+      long[] times = pool.getInitializationTimes();
+      assertEquals(4, times.length);
+      for (long time : times) {
+        assertTrue(time >= 0);
+      }
+      AnalysisEngine[] aes = new AnalysisEngine[4];
+      for (int i = 0; i < 4; i++) {
+        aes[i] = pool.getAnalysisEngine();
+        assertNotNull(aes[i]);
+      }
+      assertNull(pool.getAnalysisEngine());
+      pool.destroy();
+    } finally {
+      barrier = null;
+    }
+  }
+
+  public void testConcurrentInitializationFailure() throws Exception {
+    mSimpleDesc.setAnnotatorImplementationName(SlowInitAnnotator.class.getName());
+    initialized.set(0);
+    destroyed.set(0);
+    failingInstance = 3;
+    try {
+      new AnalysisEnginePool("taePool", 5, mSimpleDesc, null, 2);
+      fail();
+    } catch (ResourceInitializationException e) {
+      Throwable cause = e;
+      while (!(cause instanceof IllegalStateException)) {
+        cause = cause.getCause();
+      }
+      assertEquals("failing", cause.getMessage());
+      // the instances which were initialized are destroyed
+      assertEquals(initialized.get() - 1, destroyed.get());
+    } finally {
+      failingInstance = 0;
+    }
+  }
+
   public void testReconfigure() throws Exception {
     try {
       // create simple primitive TextAnalysisEngine descriptor (using TestAnnotator class)
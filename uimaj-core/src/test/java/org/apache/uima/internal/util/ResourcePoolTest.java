@@ -206,6 +206,44 @@ public class ResourcePoolTest extends TestCase {
     }
   }
 
+  public void testElastic() throws Exception {
+    ResourcePool pool = new ResourcePool(1, mDesc, AnalysisEngine.class);
+    try {
+      pool.makeElastic(2, 50, 200);
+      Assert.assertEquals(1, pool.getMinSize());
+      Assert.assertEquals(2, pool.getMaxSize());
+      Resource first = pool.getResource();
+
+      // grows after the request has waited for 50 ms
+      Resource second = pool.getResource(10000);
+      Assert.assertNotNull(second);
+      Assert.assertNotSame(first, second);
+      Assert.assertEquals(2, pool.getSize());
+      Assert.assertEquals(1, pool.getWaitCount());
+      Assert.assertTrue(pool.getTotalWaitTime() >= 50);
+      Assert.assertEquals(2, pool.getInitializationTimes().length);
+
+      // no more than the maximum size
+      Assert.assertNull(pool.getResource(200));
+      Assert.assertEquals(2, pool.getSize());
+
+      pool.releaseResource(first);
+      pool.releaseResource(second);
+      Assert.assertEquals(2, pool.getNumAvailable());
+
+      // shrinks back to the minimum size, destroying the instance idle the longest
+      long startTime = System.currentTimeMillis();
+      while (pool.getSize() > 1 && System.currentTimeMillis() - startTime < 10000) {
+        Thread.sleep(20);
+      }
+      Assert.assertEquals(1, pool.getSize());
+      Assert.assertEquals(1, pool.getNumAvailable());
+      Assert.assertSame(second, pool.getResource());
+    } finally {
+      pool.destroy();
+    }
+  }
+
   public void testGetMetaData() throws Exception {
     try {
       ResourceMetaData descMetaData = mDesc.getMetaData();
@@ -25,8 +25,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -37,6 +40,8 @@ import org.apache.uima.UIMAFramework;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASRuntimeException;
 import org.apache.uima.cas.SerialFormat;
+import org.apache.uima.cas.impl.BinaryCasSerDes6;
+import org.apache.uima.cas.impl.Lz4CasCompressionCodec;
 import org.apache.uima.jcas.cas.TOP;
 import org.apache.uima.resource.metadata.FsIndexDescription;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
@@ -181,6 +186,27 @@ public class CasIOUtilsTest extends TestCase{
     testFormat(SerialFormat.COMPRESSED_FILTERED, "bins6", false);
   }
 
+  public void testS6Lz4() throws Exception {
+    File casFile = new File("target/temp-test-output/simpleCas.bins6lz4");
+    casFile.getParentFile().mkdirs();
+    try (FileOutputStream docOS = new FileOutputStream(casFile)) {
+      new BinaryCasSerDes6(cas, null, true, true).setCompressionCodec(Lz4CasCompressionCodec.INSTANCE).serialize(docOS);
+    }
+    
+    // the codec is detected from the serialized data
+    cas.reset();
+    try (FileInputStream casInputStream = new FileInputStream(casFile)) {
+      Assert.assertEquals(SerialFormat.COMPRESSED_FILTERED_TSI, CasIOUtils.load(casInputStream, cas));
+    }
+    assertCorrectlyLoaded(cas, false);
+    
+    cas.reset();
+    try (FileChannel casChannel = FileChannel.open(casFile.toPath(), StandardOpenOption.READ)) {
+      Assert.assertEquals(SerialFormat.COMPRESSED_FILTERED_TSI, CasIOUtils.load(casChannel, cas));
+    }
+    assertCorrectlyLoaded(cas, false);
+  }
+
   private void testFormat(SerialFormat format, String fileEnding, boolean leniently) throws Exception {
     File casFile = new File("target/temp-test-output/simpleCas."+ fileEnding);
     casFile.getParentFile().mkdirs();
@@ -197,8 +223,25 @@ public class CasIOUtilsTest extends TestCase{
     casInputStream.close();
     Assert.assertEquals(format, loadedFormat);
     assertCorrectlyLoaded(casToUse, leniently);
+    
+    // load again, from a memory mapped file
+    casToUse.reset();
+    try (FileChannel casChannel = FileChannel.open(casFile.toPath(), StandardOpenOption.READ)) {
+      loadedFormat = CasIOUtils.load(casChannel, null, casToUse, leniently ? CasLoadMode.LENIENT : CasLoadMode.DEFAULT);
+      if (isForm6(format)) {
+        // form 6 is inflated from the mapped file, and the channel is left after what was read
+        Assert.assertEquals(casChannel.size(), casChannel.position());
+      }
+    }
+    Assert.assertEquals(format, loadedFormat);
+    assertCorrectlyLoaded(casToUse, leniently);
   }
   
+  private static boolean isForm6(SerialFormat format) {
+    return format == SerialFormat.COMPRESSED_FILTERED || format == SerialFormat.COMPRESSED_FILTERED_TS
+            || format == SerialFormat.COMPRESSED_FILTERED_TSI;
+  }
+
   private static void assertCorrectlyLoaded(CAS cas, boolean leniently) throws Exception {
     // Check if all the annotations are there (mind the file contains FSes that are NOT annotations!)
     Assert.assertEquals(
@@ -272,6 +315,23 @@ public class CasIOUtilsTest extends TestCase{
     Assert.fail("An exception should have been thrown for wrong format.");
   }
   
+  /**
+   * uimaj-json is not a dependency of uimaj-core, so not found here
+   */
+  public void testJsonWithoutModule() throws Exception {
+    try {
+      CasIOUtils.save(cas, new ByteArrayOutputStream(), SerialFormat.JSON);
+      Assert.fail("An exception should have been thrown for the missing module.");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("uimaj-json"));
+    }
+    try {
+      CasIOUtils.load(new ByteArrayInputStream("{}".getBytes("UTF-8")), cas);
+      Assert.fail("An exception should have been thrown for the missing module.");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("uimaj-json"));
+    }
+  }
   
   protected void tearDown() throws Exception {
     cas.release();
@@ -43,6 +43,8 @@ import org.apache.uima.collection.impl.EntityProcessStatusImpl;
 import org.apache.uima.collection.impl.base_cpm.container.ProcessingContainer;
 import org.apache.uima.collection.impl.cpm.container.CPEFactory;
 import org.apache.uima.collection.impl.cpm.container.deployer.socket.ProcessControllerAdapter;
+import org.apache.uima.collection.impl.cpm.engine.BoundedWorkQueue;
+import org.apache.uima.collection.impl.cpm.engine.CPECasPool;
 import org.apache.uima.collection.impl.cpm.engine.CPMEngine;
 import org.apache.uima.collection.impl.cpm.engine.CPMThreadGroup;
 import org.apache.uima.collection.impl.cpm.utils.CPMUtils;
@@ -240,7 +242,8 @@ public class BaseCPMImpl implements BaseCPM, Runnable {
     if (checkpointFileName != null && checkpointFileName.trim().length() > 0) {
       File checkpointFile = new File(checkpointFileName);
       checkpoint = new Checkpoint(this, checkpointFileName, cpeFactory.getCPEConfig()
-              .getCheckpoint().getFrequency());
+              .getCheckpoint().getFrequency(), cpeFactory.getCPEConfig().getCheckpoint()
+              .getFormat());
       // Check if the checkpoint file already exists. If it does, the CPM did not complete
       // successfully during the previous run and CPM will start in recovery mode, restoring all
       // totals and status's from the recovered checkpoint. The processing pipeline state will
@@ -1208,12 +1211,41 @@ public void process(BaseCollectionReader aCollectionReader, int aBatchSize)
           e.printStackTrace();
         }
       }
+      addQueueStats(cpEngine.getWorkQueue(), processTrace);
+      addQueueStats(cpEngine.getOutputQueue(), processTrace);
+      CPECasPool casPool = cpEngine.casPool;
+      if (casPool != null) {
+        processTrace.addEvent("CAS Pool", "Max Checked Out", String.valueOf(casPool
+                .getMaxCheckedOutCasCount()), 0, null);
+        processTrace.addEvent("CAS Pool", "Wait Time", String.valueOf(casPool.getWaitTime()), 0,
+                null);
+      }
     } catch (Exception e) {
       e.printStackTrace();
     }
     return processTrace;
   }
 
+  /**
+   * Adds the depth and wait time statistics of a queue to a process trace.
+   *
+   * @param aQueue the queue, may be null
+   * @param aProcessTrace the process trace
+   */
+  private void addQueueStats(BoundedWorkQueue aQueue, ProcessTrace aProcessTrace) {
+    if (aQueue == null) {
+      return;
+    }
+    aProcessTrace.addEvent(aQueue.getName(), "Max Depth", String.valueOf(aQueue.getMaxDepth()), 0,
+            null);
+    aProcessTrace.addEvent(aQueue.getName(), "Entities Enqueued", String.valueOf(aQueue
+            .getEnqueuedCount()), 0, null);
+    aProcessTrace.addEvent(aQueue.getName(), "Enqueue Wait Time", String.valueOf(aQueue
+            .getEnqueueWaitTime()), 0, null);
+    aProcessTrace.addEvent(aQueue.getName(), "Dequeue Wait Time", String.valueOf(aQueue
+            .getDequeueWaitTime()), 0, null);
+  }
+
   /**
    * Creates the default process trace.
    *
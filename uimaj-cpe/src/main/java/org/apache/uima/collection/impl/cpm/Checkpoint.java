@@ -41,6 +41,12 @@ import org.apache.uima.util.ProcessTraceEvent;
  * 
  */
 public class Checkpoint implements Runnable {
+
+  /**
+   * Checkpoint format writing the checkpoints to an append-only binary {@link CheckpointLog},
+   * instead of serializing each checkpoint as a Java object.
+   */
+  public static final String FORMAT_LOG = "log";
   
   /** The file name. */
   private String fileName = null;
@@ -69,6 +75,9 @@ public class Checkpoint implements Runnable {
   /** The synch point file name. */
   private String synchPointFileName = null;
 
+  /** The checkpoint log, null when checkpoints are serialized as Java objects. */
+  private CheckpointLog checkpointLog = null;
+
   /**
    * Initialize the checkpoint with a reference to controlling cpe, the file where the checkpoint is
    * to be stored, and the frequency of checkpoints.
@@ -87,6 +96,23 @@ public class Checkpoint implements Runnable {
     checkpointFrequency = aCheckpointFrequency;
   }
 
+  /**
+   * Initialize the checkpoint with a reference to controlling cpe, the file where the checkpoint is
+   * to be stored, the frequency of checkpoints, and the format of the checkpoint file.
+   *
+   * @param aCpm the a cpm
+   * @param aFilename the a filename
+   * @param aCheckpointFrequency the a checkpoint frequency
+   * @param aFormat {@link #FORMAT_LOG}, or null to serialize checkpoints as Java objects
+   */
+  public Checkpoint(BaseCPMImpl aCpm, String aFilename, long aCheckpointFrequency,
+          String aFormat) {
+    this(aCpm, aFilename, aCheckpointFrequency);
+    if (FORMAT_LOG.equals(aFormat)) {
+      checkpointLog = new CheckpointLog(new File(aFilename));
+    }
+  }
+
   /**
    * Start the thread.
    */
@@ -99,6 +125,7 @@ public class Checkpoint implements Runnable {
    */
   public void stop() {
     stop = true;
+    syncLog();
     // isRunning = false;
     if (UIMAFramework.getLogger().isLoggable(Level.INFO)) {
       UIMAFramework.getLogger(this.getClass()).logrb(Level.INFO, this.getClass().getName(),
@@ -154,6 +181,9 @@ public class Checkpoint implements Runnable {
    */
   public void delete() {
     try {
+      if (checkpointLog != null) {
+        checkpointLog.close();
+      }
       File checkpointFile = new File(fileName);
       checkpointFile.delete();
     } catch (Exception e) {
@@ -169,6 +199,23 @@ public class Checkpoint implements Runnable {
     synchronized (lockForPause) {
       pause = true;
     }
+    syncLog();
+  }
+
+  /**
+   * Forces the checkpoints appended to the checkpoint log to disk.
+   */
+  private void syncLog() {
+    if (checkpointLog != null) {
+      try {
+        checkpointLog.sync();
+      } catch (IOException e) {
+        UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
+                "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
+                "UIMA_CPM_exception_when_checkpointing__FINEST",
+                new Object[] { Thread.currentThread().getName(), e.getMessage() });
+      }
+    }
   }
 
   /**
@@ -194,6 +241,33 @@ public class Checkpoint implements Runnable {
                 "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_checkpoint__FINEST",
                 new Object[] { Thread.currentThread().getName() });
       }
+      SynchPoint synchPoint = cpm.getSynchPoint();
+      ProcessTrace pTrace = cpm.getPerformanceReport();
+      doCheckpoint(pTrace, synchPoint);
+    } catch (Exception e) {
+      UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
+              "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
+              "UIMA_CPM_exception_when_checkpointing__FINEST",
+              new Object[] { Thread.currentThread().getName(), e.getMessage() });
+    }
+  }
+
+  /**
+   * Saves the given checkpoint information to disk.
+   * 
+   * @param pTrace -
+   *          events and timers accumulated so far, nothing is saved if null
+   * @param synchPoint -
+   *          the SynchPoint, may be null
+   */
+  public void doCheckpoint(ProcessTrace pTrace, SynchPoint synchPoint) {
+    try {
+      if (checkpointLog != null) {
+        if (pTrace != null) {
+          checkpointLog.append(pTrace, synchPoint);
+        }
+        return;
+      }
       // 02/08/05 Checkpoint has been broken up into two files. One containing the
       // ProcessTrace saved as binary object, and second containing the SynchPoint
       // saved as xml.
@@ -206,9 +280,6 @@ public class Checkpoint implements Runnable {
       try (FileOutputStream out = new FileOutputStream(fileName);
            FileOutputStream synchPointOut = new FileOutputStream(synchPointFileName)) {
         s = new ObjectOutputStream(out);
-        SynchPoint synchPoint = cpm.getSynchPoint();
-
-        ProcessTrace pTrace = cpm.getPerformanceReport();
         CheckpointData targetToSave = null;
         if (pTrace != null) {
           if (synchPoint != null) {
@@ -367,6 +438,14 @@ public class Checkpoint implements Runnable {
                   "UIMA_CPM_restoring_from_checkpoint__FINEST",
                   new Object[] { Thread.currentThread().getName() });
         }
+        if (checkpointLog != null) {
+          // the log holds the SynchPoint too
+          CheckpointData checkpointData = CheckpointLog.read(file);
+          if (checkpointData != null) {
+            printStats(checkpointData.getProcessTrace());
+          }
+          return checkpointData;
+        }
         FileInputStream in = new FileInputStream(file);
         stream = new ObjectInputStream(in);
         if (stream != null) {
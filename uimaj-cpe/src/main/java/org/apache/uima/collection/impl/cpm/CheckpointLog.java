@@ -0,0 +1,679 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.uima.collection.impl.cpm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.collection.base_cpm.SynchPoint;
+import org.apache.uima.util.ProcessTrace;
+import org.apache.uima.util.ProcessTraceEvent;
+import org.apache.uima.util.impl.ProcessTraceEvent_impl;
+import org.apache.uima.util.impl.ProcessTrace_impl;
+
+/**
+ * Append-only binary checkpoint log, used by {@link Checkpoint} when the checkpoint format is
+ * {@link Checkpoint#FORMAT_LOG}.
+ * 
+ * The log starts with a snapshot record, holding the whole {@link ProcessTrace} and
+ * {@link SynchPoint}, followed by delta records. The events of the ProcessTrace are flattened in
+ * pre-order; a delta record only holds the events which differ from the ones at the same position
+ * in the previous record, and the SynchPoint if its xml form changed. Strings are written once per
+ * log file and referred to by number afterwards.
+ * 
+ * Each record is written with one write call, and ends with a CRC32 checksum; a partially written
+ * last record (the CPM was killed while checkpointing) is ignored when reading the log back.
+ * The log file is forced to disk every <code>syncInterval</code> records, and by {@link #sync()}.
+ * When the deltas written since the snapshot grow larger than <code>compactionRatio</code> times
+ * the snapshot, the log is compacted: a new log with a single snapshot record is written to a
+ * temporary file and renamed over the log. The first checkpoint written by a CPM also starts a new
+ * log this way.
+ */
+public class CheckpointLog {
+
+  /** The default number of records written between forcing the log to disk. */
+  public static final int DEFAULT_SYNC_INTERVAL = 10;
+
+  /** The default size of the deltas, relative to the snapshot, which triggers compaction. */
+  public static final int DEFAULT_COMPACTION_RATIO = 4;
+
+  /** "UCPL" */
+  private static final int MAGIC = 0x5543504C;
+
+  private static final int VERSION = 1;
+
+  private static final byte SNAPSHOT = 1;
+
+  private static final byte DELTA = 2;
+
+  private static final byte SYNCH_POINT_UNCHANGED = 0;
+
+  private static final byte SYNCH_POINT_NONE = 1;
+
+  private static final byte SYNCH_POINT_XML = 2;
+
+  /**
+   * One ProcessTraceEvent, flattened.
+   */
+  private static class Entry {
+    final int depth;
+
+    final String componentName;
+
+    final String type;
+
+    final String description;
+
+    final String resultMessage;
+
+    final int duration;
+
+    final long startTime;
+
+    Entry(int depth, String componentName, String type, String description,
+            String resultMessage, int duration, long startTime) {
+      this.depth = depth;
+      this.componentName = componentName;
+      this.type = type;
+      this.description = description;
+      this.resultMessage = resultMessage;
+      this.duration = duration;
+      this.startTime = startTime;
+    }
+
+    boolean sameAs(Entry other) {
+      return other != null && depth == other.depth && duration == other.duration
+              && startTime == other.startTime && eq(componentName, other.componentName)
+              && eq(type, other.type) && eq(description, other.description)
+              && eq(resultMessage, other.resultMessage);
+    }
+
+    private static boolean eq(String a, String b) {
+      return (a == null) ? b == null : a.equals(b);
+    }
+  }
+
+  /**
+   * The growable record buffer, written to the file with one call.
+   */
+  private static class RecordBuffer extends ByteArrayOutputStream {
+    byte[] buf() {
+      return buf;
+    }
+  }
+
+  private final File file;
+
+  private final int syncInterval;
+
+  private final int compactionRatio;
+
+  /** the log being appended to, null before the first record and after close */
+  private FileOutputStream out;
+
+  private final RecordBuffer record = new RecordBuffer();
+
+  private final CRC32 crc = new CRC32();
+
+  /** the string numbers of the current log file, 0 is null */
+  private final Map<String, Integer> stringIds = new HashMap<>();
+
+  /** the events written so far to the current log file */
+  private List<Entry> written = new ArrayList<>();
+
+  /** the class name and xml of the SynchPoint written so far, null if none */
+  private String writtenSynchPointClass;
+
+  private String writtenSynchPointXml;
+
+  private long snapshotSize;
+
+  private long deltasSize;
+
+  private int unsyncedRecords;
+
+  private boolean closed;
+
+  /**
+   * Creates a log with the default sync interval and compaction ratio.
+   * 
+   * @param aFile -
+   *          the log file
+   */
+  public CheckpointLog(File aFile) {
+    this(aFile, DEFAULT_SYNC_INTERVAL, DEFAULT_COMPACTION_RATIO);
+  }
+
+  /**
+   * @param aFile -
+   *          the log file
+   * @param aSyncInterval -
+   *          number of records written between forcing the log to disk
+   * @param aCompactionRatio -
+   *          the size of the deltas, relative to the snapshot, which triggers compaction
+   */
+  public CheckpointLog(File aFile, int aSyncInterval, int aCompactionRatio) {
+    file = aFile;
+    syncInterval = Math.max(1, aSyncInterval);
+    compactionRatio = Math.max(1, aCompactionRatio);
+  }
+
+  /**
+   * Appends a checkpoint to the log. Only what changed since the previous checkpoint is written,
+   * unless the log is compacted.
+   * 
+   * @param aProcessTrace -
+   *          events and timers accumulated so far
+   * @param aSynchPoint -
+   *          the SynchPoint, may be null
+   * @throws IOException -
+   */
+  public synchronized void append(ProcessTrace aProcessTrace, SynchPoint aSynchPoint)
+          throws IOException {
+    if (closed) {
+      return;
+    }
+    List<Entry> entries = flatten(aProcessTrace);
+    String synchPointClass = (aSynchPoint == null) ? null : aSynchPoint.getClass().getName();
+    String synchPointXml = (aSynchPoint == null) ? null : aSynchPoint.serializeToXML();
+
+    if (out == null || deltasSize > compactionRatio * snapshotSize) {
+      writeSnapshot(entries, synchPointClass, synchPointXml);
+      return;
+    }
+
+    record.reset();
+    record.write(DELTA);
+    writeEvents(entries, written);
+    writeSynchPoint(synchPointClass, synchPointXml);
+    finishRecord();
+    try {
+      out.write(record.buf(), 0, record.size());
+    } catch (IOException e) {
+      // the log may end with a partial record now, start a new log with the next checkpoint
+      try {
+        out.close();
+      } catch (IOException e2) {
+      }
+      out = null;
+      throw e;
+    }
+    deltasSize += record.size();
+    written = entries;
+    if (++unsyncedRecords >= syncInterval) {
+      sync();
+    }
+  }
+
+  /**
+   * Forces the records written so far to disk.
+   * 
+   * @throws IOException -
+   */
+  public synchronized void sync() throws IOException {
+    if (out != null && unsyncedRecords > 0) {
+      out.getChannel().force(false);
+    }
+    unsyncedRecords = 0;
+  }
+
+  /**
+   * Forces the log to disk and closes it. Further appends are ignored.
+   * 
+   * @throws IOException -
+   */
+  public synchronized void close() throws IOException {
+    closed = true;
+    if (out != null) {
+      try {
+        sync();
+      } finally {
+        out.close();
+        out = null;
+      }
+    }
+  }
+
+  /**
+   * Writes a new log file holding one snapshot record, and renames it over the log.
+   */
+  private void writeSnapshot(List<Entry> entries, String synchPointClass, String synchPointXml)
+          throws IOException {
+    if (out != null) {
+      out.close();
+      out = null;
+    }
+    stringIds.clear();
+    record.reset();
+    writeInt(MAGIC);
+    record.write(VERSION);
+    record.write(SNAPSHOT);
+    writeEvents(entries, new ArrayList<>());
+    writeSynchPoint(synchPointClass, synchPointXml);
+    finishRecord();
+
+    File tmp = new File(file.getPath() + ".tmp");
+    try (FileOutputStream tmpOut = new FileOutputStream(tmp)) {
+      tmpOut.write(record.buf(), 0, record.size());
+      tmpOut.getChannel().force(false);
+    }
+    try {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    out = new FileOutputStream(file, true);
+    written = entries;
+    snapshotSize = record.size();
+    deltasSize = 0;
+    unsyncedRecords = 0;
+  }
+
+  /**
+   * Writes the events which differ from the previously written ones, preceded by the new number of
+   * events and the number of differing events.
+   */
+  private void writeEvents(List<Entry> entries, List<Entry> previous) {
+    int nbrChanged = 0;
+    for (int i = 0; i < entries.size(); i++) {
+      if (i >= previous.size() || !entries.get(i).sameAs(previous.get(i))) {
+        nbrChanged++;
+      }
+    }
+    writeVarLong(entries.size());
+    writeVarLong(nbrChanged);
+    for (int i = 0; i < entries.size(); i++) {
+      Entry e = entries.get(i);
+      if (i < previous.size() && e.sameAs(previous.get(i))) {
+        continue;
+      }
+      writeVarLong(i);
+      writeVarLong(e.depth);
+      writeString(e.componentName);
+      writeString(e.type);
+      writeString(e.description);
+      writeString(e.resultMessage);
+      writeVarLong(zigzag(e.duration));
+      writeVarLong(zigzag(e.startTime));
+    }
+  }
+
+  private void writeSynchPoint(String synchPointClass, String synchPointXml) {
+    if (synchPointXml == null) {
+      record.write((writtenSynchPointXml == null && out != null) ? SYNCH_POINT_UNCHANGED
+              : SYNCH_POINT_NONE);
+    } else if (out != null && synchPointXml.equals(writtenSynchPointXml)
+            && synchPointClass.equals(writtenSynchPointClass)) {
+      record.write(SYNCH_POINT_UNCHANGED);
+    } else {
+      record.write(SYNCH_POINT_XML);
+      writeString(synchPointClass);
+      writeBytes(synchPointXml.getBytes(StandardCharsets.UTF_8));
+    }
+    writtenSynchPointClass = synchPointClass;
+    writtenSynchPointXml = synchPointXml;
+  }
+
+  /**
+   * Writes a string the first time as its length + 1 followed by its UTF-8 bytes, and afterwards
+   * as the negated number given to it.
+   */
+  private void writeString(String s) {
+    if (s == null) {
+      writeVarLong(0);
+      return;
+    }
+    Integer id = stringIds.get(s);
+    if (id != null) {
+      writeVarLong(zigzag(-id));
+      return;
+    }
+    stringIds.put(s, stringIds.size() + 1);
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    writeVarLong(zigzag(bytes.length + 1));
+    record.write(bytes, 0, bytes.length);
+  }
+
+  private void writeBytes(byte[] bytes) {
+    writeVarLong(bytes.length);
+    record.write(bytes, 0, bytes.length);
+  }
+
+  private void writeInt(int v) {
+    record.write(v >>> 24);
+    record.write(v >>> 16);
+    record.write(v >>> 8);
+    record.write(v);
+  }
+
+  private void writeVarLong(long v) {
+    while ((v & ~0x7FL) != 0) {
+      record.write((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    record.write((int) v);
+  }
+
+  private static long zigzag(long v) {
+    return (v << 1) ^ (v >> 63);
+  }
+
+  private static long unzigzag(long v) {
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  /**
+   * Appends the checksum of the record; the checksum of the snapshot covers the file header too.
+   */
+  private void finishRecord() {
+    crc.reset();
+    crc.update(record.buf(), 0, record.size());
+    writeInt((int) crc.getValue());
+  }
+
+  private static List<Entry> flatten(ProcessTrace aProcessTrace) {
+    List<Entry> entries = new ArrayList<>();
+    if (aProcessTrace != null) {
+      flatten(aProcessTrace.getEvents(), 0, entries);
+    }
+    return entries;
+  }
+
+  private static void flatten(List<ProcessTraceEvent> events, int depth, List<Entry> entries) {
+    if (events == null) {
+      return;
+    }
+    for (ProcessTraceEvent event : events) {
+      entries.add(new Entry(depth, event.getComponentName(), event.getType(),
+              event.getDescription(), event.getResultMessage(), event.getDuration(),
+              (event instanceof ProcessTraceEvent_impl)
+                      ? ((ProcessTraceEvent_impl) event).getStartTime() : 0));
+      flatten(event.getSubEvents(), depth + 1, entries);
+    }
+  }
+
+  /**
+   * Reads the checkpoint back from the log. A partially written last record is ignored.
+   * 
+   * @param aFile -
+   *          the log file
+   * @return - the last checkpoint, or null if the log holds no complete checkpoint
+   * @throws IOException -
+   *           if the file is not a checkpoint log, or the SynchPoint can not be restored
+   */
+  public static CheckpointData read(File aFile) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    List<String> strings = new ArrayList<>();
+    String synchPointClass = null;
+    byte[] synchPointXml = null;
+    boolean haveSnapshot = false;
+
+    // the log is compacted, it is read at once
+    RecordReader rec = new RecordReader(Files.readAllBytes(aFile.toPath()));
+    if (rec.remaining() < 5 || rec.readInt() != MAGIC || rec.readByte() != VERSION) {
+      throw new IOException("Not a checkpoint log: " + aFile);
+    }
+    // the checksum of the snapshot covers the file header too
+    int recordStart = 0;
+    while (rec.remaining() > 0) {
+      int recordType = rec.readByte();
+      if (recordType != (haveSnapshot ? DELTA : SNAPSHOT)) {
+        break; // garbage at the end of the log
+      }
+      EventChanges changes;
+      String newSynchPointClass = synchPointClass;
+      byte[] newSynchPointXml = synchPointXml;
+      try {
+        changes = readEvents(rec, entries.size(), strings);
+        int synchPointKind = rec.readByte();
+        if (synchPointKind == SYNCH_POINT_NONE) {
+          newSynchPointClass = null;
+          newSynchPointXml = null;
+        } else if (synchPointKind == SYNCH_POINT_XML) {
+          newSynchPointClass = rec.readString(strings);
+          newSynchPointXml = rec.readBytes();
+        }
+        int checksum = rec.checksum(recordStart);
+        if (rec.readInt() != checksum) {
+          break; // partially written record
+        }
+      } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+        break; // partially written record
+      }
+      changes.applyTo(entries);
+      synchPointClass = newSynchPointClass;
+      synchPointXml = newSynchPointXml;
+      haveSnapshot = true;
+      recordStart = rec.pos;
+    }
+    if (!haveSnapshot) {
+      return null;
+    }
+
+    ProcessTrace processTrace = toProcessTrace(entries);
+    SynchPoint synchPoint = null;
+    if (synchPointClass != null) {
+      synchPoint = newSynchPoint(synchPointClass, synchPointXml);
+    }
+    return new CheckpointData(processTrace, synchPoint);
+  }
+
+  /**
+   * The events of a record, applied to the events read so far once the record checksum is verified.
+   */
+  private static class EventChanges {
+    final int size;
+
+    final int[] indexes;
+
+    final Entry[] changed;
+
+    EventChanges(int size, int nbrChanged) {
+      this.size = size;
+      indexes = new int[nbrChanged];
+      changed = new Entry[nbrChanged];
+    }
+
+    void applyTo(List<Entry> entries) {
+      if (entries.size() > size) {
+        entries.subList(size, entries.size()).clear();
+      }
+      while (entries.size() < size) {
+        entries.add(null);
+      }
+      for (int j = 0; j < indexes.length; j++) {
+        entries.set(indexes[j], changed[j]);
+      }
+    }
+  }
+
+  /**
+   * Reads the events of a record.
+   * 
+   * @throws IndexOutOfBoundsException
+   *           if the record does not hold all the events added since the previous one
+   */
+  private static EventChanges readEvents(RecordReader rec, int previousSize,
+          List<String> strings) {
+    int size = (int) rec.readVarLong();
+    int nbrChanged = (int) rec.readVarLong();
+    if (size < 0 || nbrChanged < 0 || nbrChanged > size) {
+      throw new IndexOutOfBoundsException();
+    }
+    EventChanges changes = new EventChanges(size, nbrChanged);
+    int nbrAdded = 0;
+    int prevIndex = -1;
+    for (int j = 0; j < nbrChanged; j++) {
+      int i = (int) rec.readVarLong();
+      if (i <= prevIndex || i >= size) {
+        throw new IndexOutOfBoundsException();
+      }
+      prevIndex = i;
+      if (i >= previousSize) {
+        nbrAdded++;
+      }
+      int depth = (int) rec.readVarLong();
+      String componentName = rec.readString(strings);
+      String type = rec.readString(strings);
+      String description = rec.readString(strings);
+      String resultMessage = rec.readString(strings);
+      int duration = (int) unzigzag(rec.readVarLong());
+      long startTime = unzigzag(rec.readVarLong());
+      changes.indexes[j] = i;
+      changes.changed[j] = new Entry(depth, componentName, type, description, resultMessage,
+              duration, startTime);
+    }
+    if (nbrAdded != Math.max(0, size - previousSize)) {
+      throw new IndexOutOfBoundsException();
+    }
+    return changes;
+  }
+
+  private static ProcessTrace toProcessTrace(List<Entry> entries) {
+    Properties settings = new Properties();
+    settings.setProperty(UIMAFramework.PROCESS_TRACE_ENABLED, "true");
+    ProcessTrace processTrace = new ProcessTrace_impl(settings);
+    // the open ancestors of the next event, by depth
+    List<ProcessTraceEvent_impl> ancestors = new ArrayList<>();
+    for (Entry e : entries) {
+      ProcessTraceEvent_impl event = new ProcessTraceEvent_impl(e.componentName, e.type,
+              e.description);
+      event.setResultMessage(e.resultMessage);
+      event.setDuration(e.duration);
+      event.setStartTime(e.startTime);
+      int depth = Math.min(e.depth, ancestors.size());
+      if (depth == 0) {
+        processTrace.addEvent(event);
+      } else {
+        ancestors.get(depth - 1).addSubEvent(event);
+      }
+      while (ancestors.size() > depth) {
+        ancestors.remove(ancestors.size() - 1);
+      }
+      ancestors.add(event);
+    }
+    return processTrace;
+  }
+
+  private static SynchPoint newSynchPoint(String className, byte[] xml) throws IOException {
+    try {
+      ClassLoader cl = Thread.currentThread().getContextClassLoader();
+      Class<?> c = (cl == null) ? Class.forName(className) : Class.forName(className, true, cl);
+      SynchPoint synchPoint = (SynchPoint) c.getDeclaredConstructor().newInstance();
+      synchPoint.deserialize(new ByteArrayInputStream(xml));
+      return synchPoint;
+    } catch (Exception e) {
+      throw new IOException("Unable to restore the SynchPoint " + className, e);
+    }
+  }
+
+  /**
+   * Reads the fields of the records from the bytes of the log.
+   * Reading past the end throws an IndexOutOfBoundsException.
+   */
+  private static class RecordReader {
+    private final byte[] data;
+
+    private final CRC32 crc = new CRC32();
+
+    private int pos;
+
+    RecordReader(byte[] data) {
+      this.data = data;
+    }
+
+    int remaining() {
+      return data.length - pos;
+    }
+
+    int readByte() {
+      return data[pos++] & 0xFF;
+    }
+
+    int readInt() {
+      return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    long readVarLong() {
+      long v = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = readByte();
+        v |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return v;
+        }
+      }
+      throw new IndexOutOfBoundsException(); // not a var long, garbage
+    }
+
+    byte[] readBytes() {
+      int length = (int) readVarLong();
+      if (length > remaining()) {
+        throw new IndexOutOfBoundsException();
+      }
+      byte[] bytes = Arrays.copyOfRange(data, pos, pos + length);
+      pos += length;
+      return bytes;
+    }
+
+    String readString(List<String> strings) {
+      long v = unzigzag(readVarLong());
+      if (v == 0) {
+        return null;
+      }
+      if (v < 0) {
+        return strings.get((int) -v - 1);
+      }
+      if (v - 1 > remaining()) {
+        throw new IndexOutOfBoundsException();
+      }
+      String s = new String(data, pos, (int) v - 1, StandardCharsets.UTF_8);
+      pos += (int) v - 1;
+      strings.add(s);
+      return s;
+    }
+
+    /**
+     * @return the checksum of the bytes read since the given position
+     */
+    int checksum(int start) {
+      crc.reset();
+      crc.update(data, start, pos - start);
+      return (int) crc.getValue();
+    }
+  }
+}
@@ -32,6 +32,7 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.UIMARuntimeException;
@@ -109,6 +110,9 @@ public class CPEFactory {
   /** The Constant CPM_HOME. */
   public static final String CPM_HOME = "${CPM_HOME}";
 
+  /** The processingUnitThreadFactory value to run the processing units in virtual threads. */
+  public static final String VIRTUAL_THREADS = "virtual";
+
   /** The processor count. */
   private int processorCount = 0;
 
@@ -1170,6 +1174,39 @@ public class CPEFactory {
     return threadCount;
   }
 
+  /**
+   * Returns the factory of the threads running the processing units, configured by the
+   * processingUnitThreadFactory attribute of the casProcessors element: <code>virtual</code> for
+   * virtual threads (requires Java 21 or later), or the name of a class implementing ThreadFactory.
+   *
+   * @return the thread factory, or null if each processing unit runs in its own platform thread
+   * @throws ResourceConfigurationException if the thread factory can't be created
+   */
+  public ThreadFactory getProcessingUnitThreadFactory() throws ResourceConfigurationException {
+    String threadFactory;
+    try {
+      threadFactory = getCpeDescriptor().getCpeCasProcessors().getProcessingUnitThreadFactory();
+    } catch (CpeDescriptorException e) {
+      throw new ResourceConfigurationException(e);
+    }
+    if (threadFactory == null) {
+      return null;
+    }
+    try {
+      if (VIRTUAL_THREADS.equals(threadFactory)) {
+        // Thread.ofVirtual().factory(), not available in the Java version this is compiled for
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory")
+                .invoke(builder);
+      }
+      Class<?> threadFactoryClass = Class_TCCL.forName(threadFactory, getResourceManager());
+      return (ThreadFactory) threadFactoryClass.getDeclaredConstructor().newInstance();
+    } catch (Exception e) {
+      throw new ResourceConfigurationException(ResourceInitializationException.CLASS_NOT_FOUND,
+              new Object[] { threadFactory, "<casProcessors processingUnitThreadFactory>" }, e);
+    }
+  }
+
   /**
    * Checks if is default.
    *
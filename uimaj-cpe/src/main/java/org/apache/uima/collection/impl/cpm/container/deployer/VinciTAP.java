@@ -53,6 +53,7 @@ import org.apache.uima.util.UimaTimer;
 import org.apache.vinci.transport.BaseClient;
 import org.apache.vinci.transport.FrameLeaf;
 import org.apache.vinci.transport.KeyValuePair;
+import org.apache.vinci.transport.MultiplexedClient;
 import org.apache.vinci.transport.ServiceDownException;
 import org.apache.vinci.transport.ServiceException;
 import org.apache.vinci.transport.VNSException;
@@ -123,6 +124,9 @@ public class VinciTAP {
   /** The keys 2 drop. */
   private String[] keys2Drop = { "" };
 
+  /** Share one connection to the service among the proxies of this JVM. */
+  private boolean multiplexed = false;
+
   /** The vinci cas data converter. */
   private VinciCasDataConverter vinciCasDataConverter = new VinciCasDataConverter(
           org.apache.uima.collection.impl.cpm.Constants.METADATA_KEY,
@@ -166,6 +170,19 @@ public class VinciTAP {
     keys2Drop = aKeys2Drop;
   }
 
+  /**
+   * Defines whether the proxy shares one connection to the service with the other proxies
+   * connected to the same service, see {@link MultiplexedClient}. Services which do not serve the
+   * requests of a shared connection concurrently are connected to with a dedicated connection. On a
+   * shared connection, the timeout is the time to wait for the whole response to a request.
+   *
+   * @param aMultiplexed -
+   *          true to share the connection
+   */
+  public void setMultiplexed(boolean aMultiplexed) {
+    multiplexed = aMultiplexed;
+  }
+
   /**
    * Connects the proxy to Cas Processor running as a vinci service on a given host and port number.
    * 
@@ -203,7 +220,7 @@ public class VinciTAP {
                   "UIMA_CPM_connect_to_service__FINEST",
                   new Object[] { Thread.currentThread().getName(), aHost, String.valueOf(aPort) });
         }
-        conn = new BaseClient(aHost, aPort);
+        conn = multiplexed ? new MultiplexedClient(aHost, aPort) : new BaseClient(aHost, aPort);
         conn.setSocketTimeout(timeout);
         conn.setRetry(false);
 
@@ -358,6 +375,12 @@ public class VinciTAP {
       }
       // establish connection to service
       conn = new VinciClient(aServiceName, vctx);
+      if (multiplexed) {
+        // the service has been located, share a connection to it
+        BaseClient resolved = conn;
+        conn = new MultiplexedClient(resolved.getHost(), resolved.getPort());
+        resolved.close();
+      }
       conn.setSocketTimeout(timeout);
       conn.setRetry(false);
       if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
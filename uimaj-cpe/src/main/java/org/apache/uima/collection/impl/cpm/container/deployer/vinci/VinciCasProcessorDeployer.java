@@ -1699,6 +1699,11 @@ public class VinciCasProcessorDeployer implements CasProcessorDeployer {
     tap.setVNSHost(vnsHost);
     tap.setVNSPort(vnsPort);
     tap.setTimeout((int) timeout);
+    // Proxies may share one connection to the service, unless the service is used exclusively
+    String serviceConnection = aCasProcessorConfig.getDeploymentParameter("service-connection");
+    String serviceAccess = aCasProcessorConfig.getDeploymentParameter("service-access");
+    tap.setMultiplexed("multiplexed".equalsIgnoreCase(serviceConnection)
+            && !"exclusive".equalsIgnoreCase(serviceAccess));
     String timerClass = "";
     try {
       timerClass = cpeFactory.getCPEConfig().getTimerImpl();
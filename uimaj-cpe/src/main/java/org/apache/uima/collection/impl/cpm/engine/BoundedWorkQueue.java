@@ -20,6 +20,11 @@
 package org.apache.uima.collection.impl.cpm.engine;
 
 import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.cas.CAS;
@@ -36,18 +41,46 @@ import org.apache.uima.util.Level;
  * <p>There are 2 dequeue calls.  One returns null if the queue is empty, the other can be given a 
  * timeout - and it will wait up to that time waiting for something to get enqueued.
  * 
+ * <p>The entries are kept in a {@link LinkedBlockingQueue}, which has separate locks for its head
+ * and tail, so producers and consumers don't contend with each other. The capacity is enforced by
+ * a semaphore holding one permit per free slot. An EOFToken, and entries enqueued while the CPE is
+ * no longer running, are added without waiting for a permit; these "overdraw" the queue, and the
+ * next dequeues don't release a permit until the overdraft is paid back.
  * 
+ * <p>The queue keeps some statistics: the maximum depth reached, the number of entries enqueued,
+ * and the total time spent by producers waiting for a free slot and by consumers waiting for an
+ * entry.
  */
 public class BoundedWorkQueue {
   
   /** The queue max size. */
   protected final int queueMaxSize;
 
-  /** The queue. */
+  /**
+   * The queue.
+   * 
+   * @deprecated no longer holds the entries, which are in {@link #entryQueue}
+   */
+  @Deprecated
   protected LinkedList queue = new LinkedList();
 
-  /** The number elements in queue. */
-  protected int numberElementsInQueue = 0;
+  /**
+   * The number elements in queue.
+   * 
+   * @deprecated use {@link #getCurrentSize()}; this is still updated after each enqueue and
+   *             dequeue, but not read by the queue
+   */
+  @Deprecated
+  protected volatile int numberElementsInQueue = 0;
+
+  /** The entries of the queue. */
+  protected final LinkedBlockingQueue<Object> entryQueue = new LinkedBlockingQueue<>();
+
+  /** The free slots, one permit per slot. */
+  private final Semaphore freeSlots;
+
+  /** The number of entries added beyond the capacity, which don't give back a slot when removed. */
+  private final AtomicInteger overdrawnSlots = new AtomicInteger(0);
 
   /** The queue name. */
   protected String queueName = "";
@@ -58,6 +91,18 @@ public class BoundedWorkQueue {
   /** The Constant WAIT_TIMEOUT. */
   protected static final int WAIT_TIMEOUT = 50;
 
+  /** The maximum number of entries that were in the queue at the same time. */
+  private final AtomicInteger maxDepth = new AtomicInteger(0);
+
+  /** The number of entries enqueued. */
+  private final LongAdder enqueuedCount = new LongAdder();
+
+  /** The total time in nanoseconds enqueue waited for a free slot. */
+  private final LongAdder enqueueWaitNanos = new LongAdder();
+
+  /** The total time in nanoseconds dequeue waited for an entry. */
+  private final LongAdder dequeueWaitNanos = new LongAdder();
+
   /**
    * Initialize the instance.
    *
@@ -72,6 +117,7 @@ public class BoundedWorkQueue {
     queueMaxSize = aQueueSize;
     queueName = aQueueName;
     cpm = aCpmEngine;
+    freeSlots = new Semaphore(aQueueSize);
   }
 
   /**
@@ -88,17 +134,15 @@ public class BoundedWorkQueue {
    * 
    * @return - number of elements in the queue
    */
-  public synchronized int getCurrentSize() {
-    if (numberElementsInQueue > 0) {
-      Object olist = queue.get(0);
-      if (olist != null && (olist instanceof Object[])) {
-        Object[] list = (Object[]) olist;
-        if (list[0] instanceof EOFToken) {
-          return 0;
-        }
+  public int getCurrentSize() {
+    Object olist = entryQueue.peek();
+    if (olist instanceof Object[]) {
+      Object[] list = (Object[]) olist;
+      if (list[0] instanceof EOFToken) {
+        return 0;
       }
     }
-    return numberElementsInQueue;
+    return entryQueue.size();
   }
 
   /**
@@ -110,13 +154,49 @@ public class BoundedWorkQueue {
     return queueMaxSize;
   }
 
+  /**
+   * Returns the maximum number of entries that were in the queue at the same time.
+   *
+   * @return - the maximum depth of the queue
+   */
+  public int getMaxDepth() {
+    return maxDepth.get();
+  }
+
+  /**
+   * Returns the number of entries enqueued, including EOFTokens.
+   *
+   * @return - the number of entries enqueued
+   */
+  public long getEnqueuedCount() {
+    return enqueuedCount.sum();
+  }
+
+  /**
+   * Returns the total time producers waited for a free slot in the queue.
+   *
+   * @return - total enqueue wait time in millis
+   */
+  public long getEnqueueWaitTime() {
+    return TimeUnit.NANOSECONDS.toMillis(enqueueWaitNanos.sum());
+  }
+
+  /**
+   * Returns the total time consumers waited for an entry to show up in the queue.
+   *
+   * @return - total dequeue wait time in millis
+   */
+  public long getDequeueWaitTime() {
+    return TimeUnit.NANOSECONDS.toMillis(dequeueWaitNanos.sum());
+  }
+
   /**
    * Enqueues a given object onto the queue. It blocks if the queue is full.
    * 
    * @param anObject -
    *          an object to enqueue
    */
-  public synchronized void enqueue(Object anObject) {
+  public void enqueue(Object anObject) {
     if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
       UIMAFramework.getLogger(this.getClass()).logrb(
               Level.FINEST,
@@ -125,30 +205,14 @@ public class BoundedWorkQueue {
               CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
               "UIMA_CPM_entering_queue__FINEST",
               new Object[] { Thread.currentThread().getName(), queueName,
-                  String.valueOf(numberElementsInQueue) });
+                  String.valueOf(entryQueue.size()) });
     }
-    // If the queue is full, just wait until someone dequeues something from the queue
-    try {
-      // Make an exception and allow EOFToken placement beyond the end of queue. Dont wait here. We
-      // are
-      // terminating the CPE
-      if (!(anObject instanceof Object[] && ((Object[]) anObject)[0] instanceof EOFToken)) {
-        // Block if the queue is full AND the CPE is running
-        while (numberElementsInQueue == queueMaxSize && (cpm == null || cpm.isRunning())) {
-          if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
-            UIMAFramework.getLogger(this.getClass()).logrb(
-                    Level.FINEST,
-                    this.getClass().getName(),
-                    "process",
-                    CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
-                    "UIMA_CPM_queue_full__FINEST",
-                    new Object[] { Thread.currentThread().getName(), queueName,
-                        String.valueOf(numberElementsInQueue) });
-          }
-          wait(WAIT_TIMEOUT);
-        }
-      }
-    } catch (InterruptedException e) {
+    // Make an exception and allow EOFToken placement beyond the end of queue. Dont wait here. We
+    // are terminating the CPE
+    if (anObject instanceof Object[] && ((Object[]) anObject)[0] instanceof EOFToken) {
+      takeSlotNoWait();
+    } else {
+      takeSlot();
     }
 
     if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
@@ -159,12 +223,14 @@ public class BoundedWorkQueue {
               CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
               "UIMA_CPM_adding_cas_to_queue__FINEST",
               new Object[] { Thread.currentThread().getName(), queueName,
-                  String.valueOf(numberElementsInQueue) });
+                  String.valueOf(entryQueue.size()) });
     }
-    // Appeand the object to the queue
-    queue.add(anObject);
-    // increment number of items in the queue
-    numberElementsInQueue++;
+    // Append the object to the queue
+    entryQueue.add(anObject);
+    enqueuedCount.increment();
+    int depth = entryQueue.size();
+    numberElementsInQueue = depth;
+    maxDepth.accumulateAndGet(depth, Math::max);
     if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
       UIMAFramework.getLogger(this.getClass()).logrb(
               Level.FINEST,
@@ -173,9 +239,76 @@ public class BoundedWorkQueue {
               CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
               "UIMA_CPM_cas_in_queue__FINEST",
               new Object[] { Thread.currentThread().getName(), queueName,
-                  String.valueOf(numberElementsInQueue) });
+                  String.valueOf(depth) });
+    }
+  }
+
+  /**
+   * Takes a free slot, blocking while the queue is full AND the CPE is running.
+   */
+  private void takeSlot() {
+    if (freeSlots.tryAcquire()) {
+      return;
+    }
+    long start = System.nanoTime();
+    try {
+      while (cpm == null || cpm.isRunning()) {
+        if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
+          UIMAFramework.getLogger(this.getClass()).logrb(
+                  Level.FINEST,
+                  this.getClass().getName(),
+                  "process",
+                  CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
+                  "UIMA_CPM_queue_full__FINEST",
+                  new Object[] { Thread.currentThread().getName(), queueName,
+                      String.valueOf(entryQueue.size()) });
+        }
+        if (freeSlots.tryAcquire(WAIT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+    } finally {
+      enqueueWaitNanos.add(System.nanoTime() - start);
+    }
+    // The CPE stopped running, or the wait was interrupted: add the entry anyway
+    takeSlotNoWait();
+  }
+
+  /**
+   * Takes a free slot if there is one, otherwise records the entry as overdrawing the queue.
+   */
+  private void takeSlotNoWait() {
+    if (!freeSlots.tryAcquire()) {
+      overdrawnSlots.incrementAndGet();
     }
-    notifyAll();  
+  }
+
+  /**
+   * Gives back the slot of an entry which was removed from the queue. Subclasses removing entries
+   * from {@link #entryQueue} themselves must call this once for each entry removed.
+   */
+  protected void releaseSlot() {
+    numberElementsInQueue = entryQueue.size();
+    for (;;) {
+      int overdrawn = overdrawnSlots.get();
+      if (overdrawn == 0) {
+        freeSlots.release();
+        return;
+      }
+      if (overdrawnSlots.compareAndSet(overdrawn, overdrawn - 1)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Adds to the total time consumers waited for an entry.
+   *
+   * @param aNanos the time waited, in nanoseconds
+   */
+  protected void addDequeueWaitTime(long aNanos) {
+    dequeueWaitNanos.add(aNanos);
   }
 
   /**
@@ -183,7 +316,7 @@ public class BoundedWorkQueue {
    * 
    * @return object dequeued from the head of the queue
    */
-  public synchronized Object dequeue() {
+  public Object dequeue() {
     if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
       UIMAFramework.getLogger(this.getClass()).logrb(
               Level.FINEST,
@@ -192,16 +325,24 @@ public class BoundedWorkQueue {
               CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
               "UIMA_CPM_enter_dequeue__FINEST",
               new Object[] { Thread.currentThread().getName(), queueName,
-                  String.valueOf(numberElementsInQueue) });
+                  String.valueOf(entryQueue.size()) });
     }
-    // Check if there is anything in the queue
-    if (numberElementsInQueue == 0) {
+    // Get the first object from the queue, if there is anything in the queue
+    Object returnedObject = entryQueue.poll();
+    if (returnedObject == null) {
       return null;
     }
-    // Get the first object from the queue
-    Object returnedObject = queue.remove(0);
-    // Reduce # of objects in the queue
-    numberElementsInQueue--;
+    return dequeued(returnedObject);
+  }
+
+  /**
+   * Gives back the slot of an object removed from the head of the queue.
+   *
+   * @param returnedObject the object removed
+   * @return the object removed
+   */
+  private Object dequeued(Object returnedObject) {
+    releaseSlot();
     if (returnedObject instanceof Object[]) {
       if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
         UIMAFramework.getLogger(this.getClass()).logrb(
@@ -228,7 +369,7 @@ public class BoundedWorkQueue {
               CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
               "UIMA_CPM_return_from_dequeue__FINEST",
               new Object[] { Thread.currentThread().getName(), queueName,
-                  String.valueOf(numberElementsInQueue) });
+                  String.valueOf(entryQueue.size()) });
     }
  
     return returnedObject;
@@ -243,42 +384,29 @@ public class BoundedWorkQueue {
    * 
    * @return - Object from the queue, or null if time out
    */
-  public synchronized Object dequeue(long aTimeout) {
+  public Object dequeue(long aTimeout) {
     Object resource = dequeue();
-    // next 5 lines commented out - was old method of waiting.  -- Jan 2008 MIS
     // changes include waiting a little (WAIT_TIMEOUT) if !cpm.isRunning, to prevent
     //   100% CPU utilization while waiting for existing processes to finish
-    // also, System.currentTimeMillis only called once in revised version.
-//    if (resource == null && cpm.isRunning()) {
-//      try {
-//        // add 1 millisecond to expire time to account for "rounding" issues
-//        long timeExpire = (0 == aTimeout)? Long.MAX_VALUE : (System.currentTimeMillis() + aTimeout + 1);
-//        long timeLeft = timeExpire - System.currentTimeMillis();
     if (resource == null) {
+      long start = System.nanoTime();
       try {
-        // add 1 millisecond to expire time to account for "rounding" issues
-        long timeNow = System.currentTimeMillis();
-        long timeExpire =
-          (! cpm.isRunning()) ? 
-              timeNow + WAIT_TIMEOUT :  // a value to avoid 100% cpu 
+        // add 1 millisecond to account for "rounding" issues
+        long timeLeft =
+          (cpm != null && ! cpm.isRunning()) ? 
+              WAIT_TIMEOUT :  // a value to avoid 100% cpu 
               ((0 == aTimeout) ? 
                   Long.MAX_VALUE : 
-                  timeNow + aTimeout + 1);
-        long timeLeft = timeExpire - timeNow;
-        while (timeLeft > 0) {
-          if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
-            UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
-                    "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_queue_empty__FINEST",
-                    new Object[] { Thread.currentThread().getName(), queueName });
-          }
-          this.wait(timeLeft);  // timeLeft is always > 0
-          resource = dequeue();
-          if (null != resource) {
-            return resource;
-          }
-          timeLeft = timeExpire - System.currentTimeMillis();
+                  aTimeout + 1);
+        if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
+          UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
+                  "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_queue_empty__FINEST",
+                  new Object[] { Thread.currentThread().getName(), queueName });
         }
+        resource = entryQueue.poll(timeLeft, TimeUnit.MILLISECONDS);
       } catch (InterruptedException e) {
+      } finally {
+        addDequeueWaitTime(System.nanoTime() - start);
       }
       if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
         UIMAFramework.getLogger(this.getClass()).logrb(
@@ -288,9 +416,9 @@ public class BoundedWorkQueue {
                 CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
                 "UIMA_CPM_queue_notified__FINEST",
                 new Object[] { Thread.currentThread().getName(), queueName,
-                    String.valueOf(numberElementsInQueue) });
+                    String.valueOf(entryQueue.size()) });
       }
-      resource = dequeue();
+      resource = (resource == null) ? dequeue() : dequeued(resource);
     }
     return resource;
   }
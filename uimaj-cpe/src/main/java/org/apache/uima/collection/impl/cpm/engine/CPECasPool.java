@@ -19,9 +19,16 @@
 
 package org.apache.uima.collection.impl.cpm.engine;
 
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Properties;
-import java.util.Vector;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.cas.CAS;
@@ -34,17 +41,38 @@ import org.apache.uima.util.Level;
 /**
  * Implements object pooling mechanism to limit number of CAS instances. Cas'es are checked out,
  * used and checked back in when done. 
+ * 
+ * <p>The free instances are kept in a {@link LinkedBlockingQueue} and the checked out ones in a
+ * {@link ConcurrentLinkedQueue}, so checking CASes out and in doesn't lock the whole pool.
+ * 
+ * <p>The pool keeps some statistics: the maximum number of CASes checked out at the same time, and
+ * the total time spent waiting for a free CAS.
  */
 public class CPECasPool {
 
-  /** The m all instances. */
-  private Vector mAllInstances = new Vector();
+  /** How long {@link #pollCas()} waits at most before returning null. */
+  private static final long WAIT_TIMEOUT = 50;
+
+  /** The m all instances, filled once by {@link #fillPool} and only read afterwards. */
+  private final Set<CAS> mAllInstances = Collections.newSetFromMap(new IdentityHashMap<>());
 
   /** The m free instances. */
-  private Vector mFreeInstances = new Vector();
+  private final LinkedBlockingQueue<CAS> mFreeInstances = new LinkedBlockingQueue<>();
 
   /** The checked out instances. */
-  private LinkedList checkedOutInstances = new LinkedList();
+  private final ConcurrentLinkedQueue<CAS> checkedOutInstances = new ConcurrentLinkedQueue<>();
+
+  /** The number of checked out instances. */
+  private final AtomicInteger checkedOutCount = new AtomicInteger(0);
+
+  /** The maximum number of instances checked out at the same time. */
+  private final AtomicInteger maxCheckedOutCount = new AtomicInteger(0);
+
+  /** The number of threads waiting on this object in {@link #getCas(long)} with a 0 timeout. */
+  private final AtomicInteger monitorWaiters = new AtomicInteger(0);
+
+  /** The total time in nanoseconds spent waiting for a free instance. */
+  private final LongAdder waitNanos = new LongAdder();
 
   /** The m num instances. */
   private final int mNumInstances;
@@ -99,54 +127,98 @@ public class CPECasPool {
    * Returns a Cas instance from the pool. This routine waits for a free instance of Cas a given
    * amount of time. If free instance is not available this routine returns null.
    * 
+   * <p>A timeout of 0 waits on this object until a CAS is released or until some other thread
+   * notifies this object, like the CPM does when it is stopped; null is returned if another thread
+   * took the released CAS first.
+   * 
    * @param aTimeout -
-   *          max amount of time in millis to wait for CAS instance
+   *          max amount of time in millis to wait for CAS instance, 0 to wait until notified
    * @return - CAS instance, or null on timeout
    */
-  public synchronized CAS getCas(long aTimeout) {
+  public CAS getCas(long aTimeout) {
     CAS cas = getCas();
     
     if (cas != null) {
       return cas;
     }
 
+    long start = System.nanoTime();
     try {
-      this.wait(aTimeout);
+      if (aTimeout == 0) {
+        // counted before checking again, so a CAS released in between is either seen here
+        // or releaseCas sees the waiter and notifies
+        monitorWaiters.incrementAndGet();
+        try {
+          synchronized (this) {
+            cas = getCas();
+            if (cas != null) {
+              return cas;
+            }
+            this.wait();
+          }
+        } finally {
+          monitorWaiters.decrementAndGet();
+        }
+      } else {
+        cas = mFreeInstances.poll(aTimeout, TimeUnit.MILLISECONDS);
+        if (cas != null) {
+          return checkedOut(cas);
+        }
+      }
     } catch (InterruptedException e) { // do nothing if interrupted
+    } finally {
+      waitNanos.add(System.nanoTime() - start);
     }
     return getCas();
   }
 
+  /**
+   * Returns a Cas instance from the pool, waiting at most a short time (50 millis) for a free
+   * instance. Unlike {@link #getCas(long)} with a 0 timeout, this doesn't depend on being notified,
+   * so callers looping until they get a CAS can check in between if the CPE is still running.
+   * 
+   * @return - CAS instance, or null if none became free in time
+   */
+  public CAS pollCas() {
+    return getCas(WAIT_TIMEOUT);
+  }
+
   /**
    * Checks out a CAS from the pool.
    * 
    * @return a CAS instance. Returns <code>null</code> if none are available (in which case the
-   *         client may {@link Object#wait()} on this object in order to be notified when an
-   *         instance becomes available).
+   *         client may call {@link #getCas(long)} in order to wait for an instance to become
+   *         available).
    */
-  public synchronized CAS getCas() {
-    if (!mFreeInstances.isEmpty()) {
-      CAS cas = (CAS) mFreeInstances.remove(0);
-      if (cas != null) {
-        // Add the cas to a list of checked-out cases
-        checkedOutInstances.add(cas);
-        if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
-          UIMAFramework.getLogger(this.getClass()).logrb(
-                  Level.FINEST,
-                  this.getClass().getName(),
-                  "process",
-                  CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
-                  "UIMA_CPM_add_cas_to_checkedout_list__FINEST",
-                  new Object[] { Thread.currentThread().getName(),
-                      String.valueOf(checkedOutInstances.size()) });
+  public CAS getCas() {
+    CAS cas = mFreeInstances.poll();
+    // null if no instances available
+    return (cas == null) ? null : checkedOut(cas);
+  }
+
+  /**
+   * Adds a CAS taken from the free instances to the checked-out ones.
+   *
+   * @param cas the CAS
+   * @return the CAS
+   */
+  private CAS checkedOut(CAS cas) {
+    // Add the cas to a list of checked-out cases
+    checkedOutInstances.add(cas);
+    int count = checkedOutCount.incrementAndGet();
+    maxCheckedOutCount.accumulateAndGet(count, Math::max);
+    if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
+      UIMAFramework.getLogger(this.getClass()).logrb(
+              Level.FINEST,
+              this.getClass().getName(),
+              "process",
+              CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
+              "UIMA_CPM_add_cas_to_checkedout_list__FINEST",
+              new Object[] { Thread.currentThread().getName(),
+                  String.valueOf(count) });
 
-        }
-      }
-      return cas;
-    } else {
-      // no instances available
-      return null;
     }
+    return cas;
   }
 
   /**
@@ -157,33 +229,34 @@ public class CPECasPool {
    * @param aCas
    *          the CAS to release
    */
-  public synchronized void releaseCas(CAS aCas) {
+  public void releaseCas(CAS aCas) {
     // make sure this CAS actually belongs to this pool and is checked out
-    if (!mAllInstances.contains(aCas) || mFreeInstances.contains(aCas)) {
+    // Removing it from the checked-out instances makes sure only one thread releases it
+    if (!mAllInstances.contains(aCas) || !removeCheckedOut(aCas)) {
       if (UIMAFramework.getLogger().isLoggable(Level.WARNING)) {
         UIMAFramework.getLogger(this.getClass()).logrb(Level.WARNING, this.getClass().getName(),
                 "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_invalid_checkin__WARNING",
                 new Object[] { Thread.currentThread().getName() });
       }
     } else {
+      int count = checkedOutCount.decrementAndGet();
+      if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
+        UIMAFramework.getLogger(this.getClass()).logrb(
+                Level.FINEST,
+                this.getClass().getName(),
+                "process",
+                CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
+                "UIMA_CPM_removed_from_checkedout_list__FINEST",
+                new Object[] { Thread.currentThread().getName(),
+                    String.valueOf(count) });
+      }
       // reset CAS
       aCas.reset();
-      // Add the CAS to the end of the free instances List
+      // Add the CAS to the end of the free instances List, waking up a thread polling for it
       mFreeInstances.add(aCas);
-
-      // get the position of the CAS in the list.
-      int index = checkedOutInstances.indexOf(aCas); // new code JC 05/11/2005
-      if (index != -1) {
-        checkedOutInstances.remove(index);
-        if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
-          UIMAFramework.getLogger(this.getClass()).logrb(
-                  Level.FINEST,
-                  this.getClass().getName(),
-                  "process",
-                  CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
-                  "UIMA_CPM_removed_from_checkedout_list__FINEST",
-                  new Object[] { Thread.currentThread().getName(),
-                      String.valueOf(checkedOutInstances.size()) });
+      if (monitorWaiters.get() > 0) {
+        synchronized (this) {
+          this.notifyAll();  // when CAS becomes available
         }
       }
 
@@ -195,20 +268,35 @@ public class CPECasPool {
                 CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
                 "UIMA_CPM_return_cas_to_pool__FINEST",
                 new Object[] { Thread.currentThread().getName(),
-                    String.valueOf(checkedOutInstances.size()) });
+                    String.valueOf(count) });
       }
-      this.notifyAll();  // when CAS becomes available
     }
 
   }
 
+  /**
+   * Removes a CAS from the checked-out instances, comparing by identity.
+   *
+   * @param aCas the CAS
+   * @return true if the CAS was checked out
+   */
+  private boolean removeCheckedOut(CAS aCas) {
+    for (Iterator<CAS> it = checkedOutInstances.iterator(); it.hasNext();) {
+      if (it.next() == aCas) {
+        it.remove();
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Returns number of CAS'es that have been checked out from pool.
    *
    * @return - number of CAS'es being processed
    */
-  public synchronized int getCheckedOutCasCount() {
-    return checkedOutInstances.size();
+  public int getCheckedOutCasCount() {
+    return checkedOutCount.get();
   }
 
   /**
@@ -217,13 +305,34 @@ public class CPECasPool {
    * @param aIndex -
    *          position of the CAS in the list
    * 
-   * @return CAS - reference to a CAS
+   * @return CAS - reference to a CAS, or null if there is no CAS at that position
    */
-  public synchronized CAS getCheckedOutCas(int aIndex) {
-    if (aIndex > checkedOutInstances.size()) {
-      return null;
+  public CAS getCheckedOutCas(int aIndex) {
+    int i = 0;
+    for (CAS cas : checkedOutInstances) {
+      if (i++ == aIndex) {
+        return cas;
+      }
     }
-    return (CAS) checkedOutInstances.get(aIndex);
+    return null;
+  }
+
+  /**
+   * Returns the maximum number of CAS'es that were checked out from the pool at the same time.
+   *
+   * @return - the maximum number of CAS'es checked out
+   */
+  public int getMaxCheckedOutCasCount() {
+    return maxCheckedOutCount.get();
+  }
+
+  /**
+   * Returns the total time spent in {@link #getCas(long)} waiting for a free CAS.
+   *
+   * @return - total wait time in millis
+   */
+  public long getWaitTime() {
+    return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
   }
 
   /**
@@ -241,7 +350,7 @@ public class CPECasPool {
 //   * 
 //   * @return - size of the pool
 //   */
-//  protected Vector getAllInstances() {
+//  protected Set<CAS> getAllInstances() {
 //    return mAllInstances;
 //  }
 
@@ -251,7 +360,7 @@ public class CPECasPool {
 //   * 
 //   * @return
 //   */
-//  protected synchronized Vector getFreeInstances() {
+//  protected Queue<CAS> getFreeInstances() {
 //    return mFreeInstances;
 //  }
 
@@ -31,6 +31,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.adapter.vinci.util.Descriptor;
@@ -225,6 +226,12 @@ public class CPMEngine extends Thread {
   // An array holding instances of components responsible for analysis
   protected ProcessingUnit[] processingUnits = null;
 
+  /** The threads running the processing units, the processing units themselves by default. */
+  private Thread[] processingThreads = null;
+
+  /** The factory of the threads running the processing units, null for the default. */
+  private ThreadFactory processingUnitThreadFactory = null;
+
   // Instantiate a Processing Unit containing CasConsumers. There may be many Analysis Processing
   // Units
   /** The cas consumer PU. */
@@ -380,6 +387,24 @@ public class CPMEngine extends Thread {
     return all;
   }
 
+  /**
+   * Returns the queue the Collection Reader fills and the processing pipelines consume.
+   *
+   * @return - the input queue, or null if the CPE has not been set up
+   */
+  public BoundedWorkQueue getWorkQueue() {
+    return workQueue;
+  }
+
+  /**
+   * Returns the queue the processing pipelines fill and the Cas Consumers consume.
+   *
+   * @return - the output queue, or null if the CPE has not been set up
+   */
+  public BoundedWorkQueue getOutputQueue() {
+    return outputQueue;
+  }
+
   /**
    * Returns number of processing threads.
    *
@@ -1729,6 +1754,34 @@ public void asynchStop() {
     return pu;
   }
 
+  /**
+   * Starts a Processing Pipeline, in a thread created by the configured thread factory if there is
+   * one. The thread is given the name of the Processing Pipeline, which it uses to identify itself.
+   * Such a thread (a virtual one, in particular) may not be in the CPM thread group, so unless the
+   * factory set an uncaught exception handler, the one of the CPM thread group is set, to report
+   * errors to the listeners.
+   *
+   * @param i -
+   *          the index of the Processing Pipeline
+   */
+  private void startProcessingUnit(int i) {
+    ProcessingUnit pu = processingUnits[i];
+    if (processingUnitThreadFactory == null) {
+      pu.start();
+      processingThreads[i] = pu;
+    } else {
+      Thread thread = processingUnitThreadFactory.newThread(pu);
+      thread.setName(pu.getName());
+      ThreadGroup cpmThreadGroup = getThreadGroup();
+      if (cpmThreadGroup instanceof CPMThreadGroup
+              && thread.getUncaughtExceptionHandler() == thread.getThreadGroup()) {
+        thread.setUncaughtExceptionHandler(cpmThreadGroup);
+      }
+      thread.start();
+      processingThreads[i] = thread;
+    }
+  }
+
   /**
    * Start debug control thread.
    */
@@ -2129,7 +2182,18 @@ public void asynchStop() {
       }
 
       // Setup Processing Pipelines
+      try {
+        processingUnitThreadFactory = cpeFactory.getProcessingUnitThreadFactory();
+      } catch (ResourceConfigurationException e) {
+        UIMAFramework.getLogger(this.getClass()).log(Level.SEVERE, e.getMessage(), e);
+        notifyListenersWithException(e);
+        if (dbgCtrlThread != null) {
+          dbgCtrlThread.stop();
+        }
+        return; // / DONE HERE !!!
+      }
       processingUnits = new ProcessingUnit[concurrentThreadCount];
+      processingThreads = new Thread[concurrentThreadCount];
       synchronized (this) {
         activeProcessingUnits = concurrentThreadCount; // keeps track of how many threads are still
         // active. -Adam
@@ -2210,7 +2274,7 @@ public void asynchStop() {
         processingUnits[i].setName("[Procesing Pipeline#" + (i + 1) + " Thread]::");
 
         // Start the Processing Pipeline
-        processingUnits[i].start();
+        startProcessingUnit(i);
         processingThreadsState[i] = 1; // Started
       }
 
@@ -2265,7 +2329,7 @@ public void asynchStop() {
                   new Object[] { Thread.currentThread().getName(), processingUnits[i].getName(),
                       String.valueOf(i) });
         }
-        processingUnits[i].join();
+        processingThreads[i].join();
         if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
           UIMAFramework.getLogger(this.getClass()).logrb(
                   Level.FINEST,
@@ -2506,10 +2570,12 @@ public void asynchStop() {
               // In such a case 'processingThreadsState[i] = -1'
 
               if (processingThreadsState[i] == -1 && !processingUnits[i].isRunning()) {
-                processingUnits[i].start();
+                startProcessingUnit(i);
               }
               try {
-                processingUnits[i].join();
+                if (processingThreads[i] != null) {
+                  processingThreads[i].join();
+                }
                 if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
                   UIMAFramework.getLogger(this.getClass()).logrb(
                           Level.FINEST,
@@ -91,17 +91,14 @@ public class SequencedQueue extends BoundedWorkQueue {
    * This must be called while holding the class lock (e.g. via synch on the calling methods
    * within this class).
    * 
-   * @param aQueueIndex -
-   *          position in queue from the CAS should be extracted
+   * @param aQueueEntry -
+   *          the queue entry containing the CAS
    * 
    * @return QueueEntity containing CAS that arrived late
    */
-  private Object timedOutCas(int aQueueIndex) {
+  private Object timedOutCas(Object aQueueEntry) {
     // This chunk belongs to a sequence that previously timed out.
-    Object anObject = queue.remove(aQueueIndex);
-    // Reduce # of objects in the queue
-    numberElementsInQueue--;
-    notifyAll();
+    Object anObject = remove(aQueueEntry);
     if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
       UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
               "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
@@ -119,17 +116,50 @@ public class SequencedQueue extends BoundedWorkQueue {
     return anObject;
   }
 
+  /**
+   * Removes a given entry from the queue, and gives back its slot.
+   * 
+   * This must be called while holding the class lock, so that no other consumer removes the entry.
+   *
+   * @param aQueueEntry -
+   *          an entry in the queue
+   * @return the entry
+   */
+  private Object remove(Object aQueueEntry) {
+    entryQueue.remove(aQueueEntry);
+    releaseSlot();
+    return aQueueEntry;
+  }
+
+  /**
+   * Enqueues a given object onto the queue, and wakes up a consumer waiting for the next chunk in
+   * the sequence.
+   * 
+   * @param anObject -
+   *          an object to enqueue
+   */
+  @Override
+  public void enqueue(Object anObject) {
+    super.enqueue(anObject);
+    synchronized (this) {
+      notifyAll();
+    }
+  }
+
   /**
    * Removes an object from the front of the queue according to FIFO model. It sequences chunks so
    * that they are returned in the right sequential order. It handles out of sequence CAS arrivals
    * and returns it in a wraper.
    * 
+   * Consumers are serialized by the class lock, and scan a snapshot of the queue. Producers don't
+   * take the class lock to enqueue, so entries enqueued during the scan are seen by the next call.
+   * 
    * @return object dequeued from the head of the queue
    */
   @Override
   public synchronized Object dequeue() {
     // Check if there is anything in the queue
-    if (numberElementsInQueue == 0) {
+    if (entryQueue.isEmpty()) {
       if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
         UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
                 "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_queue_empty__FINEST",
@@ -139,7 +169,8 @@ public class SequencedQueue extends BoundedWorkQueue {
     }
     Object anObject = null;
     int queueIndex = 0;
-    int queueSize = queue.size();
+    Object[] entries = entryQueue.toArray();
+    int queueSize = entries.length;
     // Expected chunk sequence. This is relevant when the queue is in chunk mode.
     int chunkSequence = nextChunkMetadata.getSequence() + 1;
 
@@ -155,11 +186,9 @@ public class SequencedQueue extends BoundedWorkQueue {
     }
     try {
       // This does not remove the object from the queue
-      anObject = queue.get(queueIndex);
+      anObject = entries[queueIndex];
       if (anObject instanceof Object[] && ((Object[]) anObject)[0] instanceof EOFToken) {
-        anObject = queue.remove(queueIndex);
-        numberElementsInQueue--;
-        notifyAll();
+        anObject = remove(anObject);
         if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
           UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
                   "process", CPMUtils.CPM_LOG_RESOURCE_BUNDLE, "UIMA_CPM_got_eof_token__FINEST",
@@ -168,9 +197,9 @@ public class SequencedQueue extends BoundedWorkQueue {
         return anObject;
       }
       // Cycle through the queue until no more entries found
-      while (queueIndex < queue.size()) {
+      while (queueIndex < queueSize) {
         // get the next entry in the queue
-        anObject = queue.get(queueIndex);
+        anObject = entries[queueIndex];
         if (anObject instanceof WorkUnit && ((WorkUnit) anObject).get() instanceof CAS[]) {
           // Create metadata from the CAS. This convenience object is used internally and keeps
           // track of the last chunks sequence processed here
@@ -209,7 +238,7 @@ public class SequencedQueue extends BoundedWorkQueue {
                       new Object[] { Thread.currentThread().getName(), getName(),
                           String.valueOf(chunkMetadata.getSequence()) });
             }
-            return timedOutCas(queueIndex);
+            return timedOutCas(entries[queueIndex]);
           }
           if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
             UIMAFramework.getLogger(this.getClass()).logrb(Level.FINEST, this.getClass().getName(),
@@ -305,7 +334,7 @@ public class SequencedQueue extends BoundedWorkQueue {
                             new Object[] { Thread.currentThread().getName(), getName(),
                                 String.valueOf(chunkMetadata.getSequence()) });
                   }
-                  return timedOutCas(queueIndex);
+                  return timedOutCas(entries[queueIndex]);
                 }
 
                 nextChunkMetadata = chunkMetadata;
@@ -372,7 +401,7 @@ public class SequencedQueue extends BoundedWorkQueue {
                   CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
                   "UIMA_CPM_expecte_seq_not_found__FINEST",
                   new Object[] { Thread.currentThread().getName(), getName(),
-                      String.valueOf(queue.size()) });
+                      String.valueOf(entryQueue.size()) });
         }
         // Reset expected sequence to the same number. The caller most likely will sleep for awhile
         // and retry. During the retry we need to
@@ -388,7 +417,7 @@ public class SequencedQueue extends BoundedWorkQueue {
                 CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
                 "UIMA_CPM_expecte_seq_not_found__FINEST",
                 new Object[] { Thread.currentThread().getName(), getName(),
-                    String.valueOf(queue.size()) });
+                    String.valueOf(entryQueue.size()) });
       }
       // Return null to indicate the expected CAS was not found. It is the responsibility of the
       // caller to wait and invoke this method again.
@@ -397,10 +426,7 @@ public class SequencedQueue extends BoundedWorkQueue {
 
     // The expected sequence has been found. Remove the CAS from the queue and return it to the
     // caller.
-    anObject = queue.remove(queueIndex);
-    // Reduce # of objects in the queue
-    numberElementsInQueue--;
-    notifyAll();
+    anObject = remove(entries[queueIndex]);
     if (UIMAFramework.getLogger().isLoggable(Level.FINEST)) {
       UIMAFramework.getLogger(this.getClass()).logrb(
               Level.FINEST,
@@ -409,7 +435,7 @@ public class SequencedQueue extends BoundedWorkQueue {
               CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
               "UIMA_CPM_show_queue_capacity__FINEST",
               new Object[] { Thread.currentThread().getName(), getName(),
-                  String.valueOf(queueSize), String.valueOf(numberElementsInQueue) });
+                  String.valueOf(queueSize), String.valueOf(entryQueue.size()) });
     }
     return anObject;
   }
@@ -439,7 +465,12 @@ public class SequencedQueue extends BoundedWorkQueue {
         }
         long timeRemaining = expireTime - System.currentTimeMillis();
         if (timeRemaining > 0) {
-          wait(timeRemaining);
+          long waitStart = System.nanoTime();
+          try {
+            wait(timeRemaining);
+          } finally {
+            addDequeueWaitTime(System.nanoTime() - waitStart);
+          }
         }
       } catch (InterruptedException e) {
       }
@@ -489,7 +520,7 @@ public class SequencedQueue extends BoundedWorkQueue {
               CPMUtils.CPM_LOG_RESOURCE_BUNDLE,
               "UIMA_CPM_return_chunk__FINEST",
               new Object[] { Thread.currentThread().getName(), getName(),
-                  String.valueOf(queueMaxSize), String.valueOf(numberElementsInQueue) });
+                  String.valueOf(queueMaxSize), String.valueOf(entryQueue.size()) });
     }
 
     return resource;
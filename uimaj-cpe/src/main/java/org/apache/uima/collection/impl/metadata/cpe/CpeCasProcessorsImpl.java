@@ -64,6 +64,9 @@ public class CpeCasProcessorsImpl extends MetaDataObject_impl implements CpeCasP
   /** The processing unit thread count. */
   private int processingUnitThreadCount = 1;
 
+  /** The processing unit thread factory, null for the default platform threads. */
+  private String processingUnitThreadFactory;
+
   /** The input queue size. */
   private int inputQueueSize;
 
@@ -137,6 +140,26 @@ public class CpeCasProcessorsImpl extends MetaDataObject_impl implements CpeCasP
     return processingUnitThreadCount;
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.apache.uima.collection.metadata.CpeCasProcessors#setProcessingUnitThreadFactory(java.lang.String)
+   */
+  @Override
+  public void setProcessingUnitThreadFactory(String aThreadFactory) {
+    processingUnitThreadFactory = aThreadFactory;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.apache.uima.collection.metadata.CpeCasProcessors#getProcessingUnitThreadFactory()
+   */
+  @Override
+  public String getProcessingUnitThreadFactory() {
+    return processingUnitThreadFactory;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -356,6 +379,10 @@ public class CpeCasProcessorsImpl extends MetaDataObject_impl implements CpeCasP
                   Thread.currentThread().getName(), "casProcessors", "processingUnitThreadCount",
                   "casProcessors" });
     }
+    String tf = aElement.getAttribute("processingUnitThreadFactory");
+    if (tf != null && tf.trim().length() > 0) {
+      setProcessingUnitThreadFactory(tf.trim());
+    }
     // populate inputQueueSize and outputQueueSize ONLY if casPoolSize is not defined.
     // Both of these attributes have been deprecated and should not be used
     try {
@@ -463,6 +490,10 @@ public class CpeCasProcessorsImpl extends MetaDataObject_impl implements CpeCasP
     attrs.addAttribute("", "casPoolSize", "casPoolSize", "CDATA", String.valueOf(getCasPoolSize()));
     attrs.addAttribute("", "processingUnitThreadCount", "processingUnitThreadCount", "CDATA",
             String.valueOf(getConcurrentPUCount()));
+    if (getProcessingUnitThreadFactory() != null) {
+      attrs.addAttribute("", "processingUnitThreadFactory", "processingUnitThreadFactory", "CDATA",
+              getProcessingUnitThreadFactory());
+    }
     // populate inputQueueSize and outputQueueSize ONLY if casPoolSize is not defined.
     // Both of these attributes have been deprecated and should not be used
     if (getCasPoolSize() == 0) {
@@ -48,6 +48,9 @@ public class CpeCheckpointImpl extends MetaDataObject_impl implements CpeCheckpo
   /** The batch. */
   private int batch;
 
+  /** The format, null for serialized Java objects. */
+  private String format;
+
   /**
    * Instantiates a new cpe checkpoint impl.
    */
@@ -150,6 +153,26 @@ public class CpeCheckpointImpl extends MetaDataObject_impl implements CpeCheckpo
     return batch;
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.apache.uima.collection.metadata.CpeCheckpoint#setFormat(java.lang.String)
+   */
+  @Override
+  public void setFormat(String aFormat) {
+    format = aFormat;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.apache.uima.collection.metadata.CpeCheckpoint#getFormat()
+   */
+  @Override
+  public String getFormat() {
+    return format;
+  }
+
   /**
    * Overridden to read Checkpoint attributes.
    *
@@ -169,6 +192,10 @@ public class CpeCheckpointImpl extends MetaDataObject_impl implements CpeCheckpo
       setBatch(Integer.parseInt(batch));
     }
     setTime(aElement.getAttribute("time"));
+    String format = aElement.getAttribute("format");
+    if (format != null && format.trim().length() > 0) {
+      setFormat(format.trim());
+    }
 
   }
 
@@ -188,6 +215,9 @@ public class CpeCheckpointImpl extends MetaDataObject_impl implements CpeCheckpo
     if (getTime() != null && getTime().trim().length() > 0) {
       attrs.addAttribute("", "time", "time", "CDATA", getTime());
     }
+    if (getFormat() != null) {
+      attrs.addAttribute("", "format", "format", "CDATA", getFormat());
+    }
     return attrs;
   }
 
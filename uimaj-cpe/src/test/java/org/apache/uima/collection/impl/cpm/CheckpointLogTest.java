@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.uima.collection.impl.cpm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.uima.collection.base_cpm.SynchPoint;
+import org.apache.uima.util.ProcessTrace;
+import org.apache.uima.util.ProcessTraceEvent;
+import org.apache.uima.util.impl.ProcessTraceEvent_impl;
+import org.apache.uima.util.impl.ProcessTrace_impl;
+
+import junit.framework.TestCase;
+
+public class CheckpointLogTest extends TestCase {
+
+  /**
+   * SynchPoint holding the number of documents read
+   */
+  public static class CountSynchPoint implements SynchPoint {
+    private static final long serialVersionUID = 1L;
+
+    private Integer count;
+
+    public CountSynchPoint() {
+    }
+
+    CountSynchPoint(int count) {
+      this.count = count;
+    }
+
+    @Override
+    public void set(Object aSynchPointData) {
+      count = (Integer) aSynchPointData;
+    }
+
+    @Override
+    public Object get() {
+      return count;
+    }
+
+    @Override
+    public String serializeToXML() {
+      return "<count>" + count + "</count>";
+    }
+
+    @Override
+    public void deserialize(InputStream aInputStream) throws Exception {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      int b;
+      while ((b = aInputStream.read()) != -1) {
+        bytes.write(b);
+      }
+      String xml = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+      count = Integer.valueOf(xml.replaceAll("<[^>]*>", ""));
+    }
+  }
+
+  private File file;
+
+  @Override
+  protected void setUp() throws Exception {
+    file = File.createTempFile("checkpoint", ".log");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+    new File(file.getPath() + ".tmp").delete();
+  }
+
+  private ProcessTrace createTrace(int nbrComponents) {
+    ProcessTrace pt = new ProcessTrace_impl();
+    for (int i = 0; i < nbrComponents; i++) {
+      ProcessTraceEvent_impl event = new ProcessTraceEvent_impl("Annotator" + i, "Analysis",
+              "analysis of document " + i);
+      event.setDuration(i * 10);
+      event.setResultMessage(i % 2 == 0 ? "success" : null);
+      event.addSubEvent(new ProcessTraceEvent_impl("Annotator" + i, "Process", "process"));
+      ProcessTraceEvent_impl sub = new ProcessTraceEvent_impl("Annotator" + i, "Service", null);
+      sub.setDuration(i);
+      sub.addSubEvent(new ProcessTraceEvent_impl("Annotator" + i, "Network", "événement"));
+      event.addSubEvent(sub);
+      pt.addEvent(event);
+    }
+    return pt;
+  }
+
+  private static String describe(List<ProcessTraceEvent> events) {
+    StringBuilder sb = new StringBuilder();
+    for (ProcessTraceEvent e : events) {
+      sb.append('(').append(e.getComponentName()).append(',').append(e.getType()).append(',')
+              .append(e.getDescription()).append(',').append(e.getResultMessage()).append(',')
+              .append(e.getDuration());
+      sb.append(describe(e.getSubEvents())).append(')');
+    }
+    return sb.toString();
+  }
+
+  private static void assertSameTrace(ProcessTrace expected, ProcessTrace actual) {
+    assertEquals(describe(expected.getEvents()), describe(actual.getEvents()));
+  }
+
+  public void testRoundTrip() throws Exception {
+    ProcessTrace pt = createTrace(10);
+    CheckpointLog log = new CheckpointLog(file);
+    log.append(pt, new CountSynchPoint(42));
+    log.close();
+
+    CheckpointData data = CheckpointLog.read(file);
+    assertSameTrace(pt, data.getProcessTrace());
+    assertTrue(data.getSynchPoint() instanceof CountSynchPoint);
+    assertEquals(42, data.getSynchPoint().get());
+  }
+
+  public void testIncremental() throws Exception {
+    ProcessTrace pt = createTrace(1000);
+    CheckpointLog log = new CheckpointLog(file);
+    log.append(pt, new CountSynchPoint(1));
+    long snapshotSize = file.length();
+
+    ((ProcessTraceEvent_impl) pt.getEvents().get(500)).setDuration(123456);
+    log.append(pt, new CountSynchPoint(2));
+    long deltaSize = file.length() - snapshotSize;
+    assertTrue(deltaSize < snapshotSize / 100);
+
+    // unchanged
+    log.append(pt, new CountSynchPoint(2));
+    assertTrue(file.length() - snapshotSize - deltaSize < 10);
+
+    pt.addEvent(new ProcessTraceEvent_impl("CasConsumer", "End of Batch", "batch"));
+    log.append(pt, null);
+    log.sync();
+
+    CheckpointData data = CheckpointLog.read(file);
+    assertSameTrace(pt, data.getProcessTrace());
+    assertEquals(123456, data.getProcessTrace().getEvents().get(500).getDuration());
+    assertNull(data.getSynchPoint());
+    log.close();
+  }
+
+  public void testCompaction() throws Exception {
+    ProcessTrace pt = createTrace(100);
+    CheckpointLog log = new CheckpointLog(file, 3, 1);
+    log.append(pt, new CountSynchPoint(0));
+    long snapshotSize = file.length();
+    for (int i = 1; i <= 200; i++) {
+      // every event changes
+      for (ProcessTraceEvent event : pt.getEvents()) {
+        ((ProcessTraceEvent_impl) event).addToDuration(1);
+      }
+      log.append(pt, new CountSynchPoint(i));
+      assertTrue(file.length() < 3 * snapshotSize);
+    }
+    log.close();
+
+    CheckpointData data = CheckpointLog.read(file);
+    assertSameTrace(pt, data.getProcessTrace());
+    assertEquals(200, data.getSynchPoint().get());
+  }
+
+  public void testPartialLastRecord() throws Exception {
+    ProcessTrace pt = createTrace(10);
+    CheckpointLog log = new CheckpointLog(file);
+    log.append(pt, new CountSynchPoint(1));
+    String first = describe(pt.getEvents());
+    ((ProcessTraceEvent_impl) pt.getEvents().get(0)).setDuration(999);
+    log.append(pt, new CountSynchPoint(2));
+    log.close();
+
+    long length = file.length();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(length - 2);
+    }
+    CheckpointData data = CheckpointLog.read(file);
+    assertEquals(first, describe(data.getProcessTrace().getEvents()));
+    assertEquals(1, data.getSynchPoint().get());
+
+    // a corrupted record is ignored too
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(length);
+      raf.seek(length - 5);
+      raf.write(0x55);
+    }
+    data = CheckpointLog.read(file);
+    assertEquals(first, describe(data.getProcessTrace().getEvents()));
+  }
+
+  public void testNotALog() throws Exception {
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write("not a checkpoint log".getBytes(StandardCharsets.UTF_8));
+    }
+    try {
+      CheckpointLog.read(file);
+      fail();
+    } catch (IOException e) {
+    }
+  }
+
+  public void testRestartStartsNewLog() throws Exception {
+    ProcessTrace pt = createTrace(100);
+    CheckpointLog log = new CheckpointLog(file);
+    for (int i = 0; i < 5; i++) {
+      ((ProcessTraceEvent_impl) pt.getEvents().get(i)).setDuration(-i);
+      log.append(pt, new CountSynchPoint(i));
+    }
+    log.close();
+    long length = file.length();
+
+    CheckpointData data = CheckpointLog.read(file);
+    assertSameTrace(pt, data.getProcessTrace());
+    log = new CheckpointLog(file);
+    log.append(data.getProcessTrace(), data.getSynchPoint());
+    log.close();
+    assertTrue(file.length() < length);
+    assertSameTrace(pt, CheckpointLog.read(file).getProcessTrace());
+  }
+
+  public void testCheckpointLogFormat() throws Exception {
+    ProcessTrace pt = createTrace(10);
+    Checkpoint checkpoint = new Checkpoint(null, file.getPath(), 1000, Checkpoint.FORMAT_LOG);
+    checkpoint.doCheckpoint(pt, new CountSynchPoint(7));
+    checkpoint.stop();
+    assertTrue(checkpoint.exists());
+
+    Object restored = new Checkpoint(null, file.getPath(), 1000, Checkpoint.FORMAT_LOG)
+            .restoreFromCheckpoint();
+    assertTrue(restored instanceof CheckpointData);
+    assertSameTrace(pt, ((CheckpointData) restored).getProcessTrace());
+    assertEquals(7, ((CheckpointData) restored).getSynchPoint().get());
+
+    checkpoint.delete();
+    assertFalse(checkpoint.exists());
+  }
+}
@@ -19,6 +19,7 @@
 
 package org.apache.uima.collection.impl.cpm;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -118,6 +119,37 @@ public class CpeDescriptorSerialization_Test extends TestCase {
     outputFile.delete();
   }
 
+  /**
+   * test that the format of the checkpoint is read, and written back, and that it can be set via API
+   * 
+   * @throws Exception -
+   */
+  public void testCheckpointLogFormat() throws Exception {
+
+    // input file
+    File cpeDescFile = JUnitExtension.getFile("CpmTests/CpeAPITest/refConfCheckpointLog.xml");
+    XMLInputSource in = new XMLInputSource(cpeDescFile);
+    cpeDesc = UIMAFramework.getXMLParser().parseCpeDescription(in);
+    assertEquals("log", cpeDesc.getCpeConfiguration().getCheckpoint().getFormat());
+
+    // serialize and read back
+    ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+    cpeDesc.toXML(outStream);
+    CpeDescription cpeDesc2 = UIMAFramework.getXMLParser().parseCpeDescription(
+            new XMLInputSource(new ByteArrayInputStream(outStream.toByteArray()), null));
+    assertEquals("log", cpeDesc2.getCpeConfiguration().getCheckpoint().getFormat());
+    equal(cpeDescFile, cpeDesc2);
+
+    // the default format is not written
+    cpeDesc2.getCpeConfiguration().getCheckpoint().setFormat(null);
+    outStream = new ByteArrayOutputStream();
+    cpeDesc2.toXML(outStream);
+    assertFalse(outStream.toString("UTF-8").contains("format="));
+    CpeDescription cpeDesc3 = UIMAFramework.getXMLParser().parseCpeDescription(
+            new XMLInputSource(new ByteArrayInputStream(outStream.toByteArray()), null));
+    assertNull(cpeDesc3.getCpeConfiguration().getCheckpoint().getFormat());
+  }
+
   /**
    * Create a remote CasProcesser via API and add him to an existing cpe configuration read from a
    * given descriptor from a file. Write the new descriptor back to a file and compare this with an
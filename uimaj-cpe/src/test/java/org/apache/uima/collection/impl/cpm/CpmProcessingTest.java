@@ -19,13 +19,22 @@
 
 package org.apache.uima.collection.impl.cpm;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Assert;
 import junit.framework.TestCase;
 
 import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
 import org.apache.uima.collection.CollectionProcessingEngine;
+import org.apache.uima.collection.EntityProcessStatus;
 import org.apache.uima.collection.impl.cpm.utils.DescriptorMakeUtil;
 import org.apache.uima.collection.impl.cpm.utils.FunctionErrorStore;
+import org.apache.uima.collection.impl.cpm.container.CPEFactory;
 import org.apache.uima.collection.impl.cpm.utils.TestStatusCallbackListener;
 import org.apache.uima.collection.impl.metadata.cpe.CpeDescriptorFactory;
 import org.apache.uima.collection.metadata.CpeDescription;
@@ -218,6 +227,11 @@ public class CpmProcessingTest extends TestCase {
    * @return CollectionProcessingEngine - initialized cpe
    */
   private CollectionProcessingEngine setupCpm(int documentCount, int threadCount) throws Exception {
+    return setupCpm(documentCount, threadCount, null);
+  }
+
+  private CollectionProcessingEngine setupCpm(int documentCount, int threadCount,
+          String threadFactory) throws Exception {
     CpeDescription cpeDesc = null;
     CollectionProcessingEngine cpe = null;
 
@@ -238,6 +252,7 @@ public class CpmProcessingTest extends TestCase {
       cpeDesc.setInputQueueSize(2);
       cpeDesc.setOutputQueueSize(2);
       cpeDesc.setProcessingUnitThreadCount(threadCount);
+      cpeDesc.getCpeCasProcessors().setProcessingUnitThreadFactory(threadFactory);
 
       // add tae
       CpeIntegratedCasProcessor integratedProcessor = CpeDescriptorFactory
@@ -262,4 +277,136 @@ public class CpmProcessingTest extends TestCase {
 
     return cpe;
   }
+
+  /**
+   * Counts the threads it creates.
+   */
+  public static class CountingThreadFactory implements ThreadFactory {
+    static final AtomicInteger threadsCreated = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      threadsCreated.incrementAndGet();
+      return new Thread(r);
+    }
+  }
+
+  /**
+   * Run the processing units in threads created by a custom thread factory
+   * 
+   * @throws Exception -
+   */
+  public void testProcessingUnitThreadFactory() throws Exception {
+    int documentCount = 100;
+    int threadCount = 5;
+    CountingThreadFactory.threadsCreated.set(0);
+    CollectionProcessingEngine cpe = setupCpm(documentCount, threadCount,
+            CountingThreadFactory.class.getName());
+
+    processAndCheck(cpe, documentCount, threadCount);
+    Assert.assertEquals("threads created", threadCount, CountingThreadFactory.threadsCreated.get());
+  }
+
+  /**
+   * Run the processing units in virtual threads, if the Java version supports them
+   * 
+   * @throws Exception -
+   */
+  public void testProcessingUnitVirtualThreads() throws Exception {
+    try {
+      Thread.class.getMethod("ofVirtual");
+    } catch (NoSuchMethodException e) {
+      return; // before Java 21
+    }
+    int documentCount = 100;
+    int threadCount = 50;
+    CollectionProcessingEngine cpe = setupCpm(documentCount, threadCount,
+            CPEFactory.VIRTUAL_THREADS);
+
+    processAndCheck(cpe, documentCount, threadCount);
+  }
+
+  /**
+   * Creates threads which are not in the CPM thread group; the first one fails with an Error
+   * before running its Processing Pipeline.
+   */
+  public static class FailingThreadFactory implements ThreadFactory {
+    static final Error ERROR = new OutOfMemoryError("thrown by the thread factory test");
+
+    // created here, not in the CPM thread, so that it is not a subgroup of the CPM thread group
+    static final ThreadGroup GROUP = new ThreadGroup("not the CPM thread group");
+
+    static final AtomicInteger threadsCreated = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable r) {
+      final boolean isFailing = threadsCreated.getAndIncrement() == 0;
+      return new Thread(GROUP, new Runnable() {
+        @Override
+        public void run() {
+          if (isFailing) {
+            throw ERROR;
+          }
+          r.run();
+        }
+      });
+    }
+  }
+
+  /**
+   * An Error not caught in a thread created by the thread factory is reported to the listeners,
+   * like in the threads of the CPM thread group
+   * 
+   * @throws Exception -
+   */
+  public void testProcessingUnitThreadFactoryUncaughtError() throws Exception {
+    int documentCount = 20;
+    int threadCount = 2;
+    FailingThreadFactory.threadsCreated.set(0);
+    CollectionProcessingEngine cpe = setupCpm(documentCount, threadCount,
+            FailingThreadFactory.class.getName());
+
+    final List<Object> reportedErrors = Collections.synchronizedList(new ArrayList<Object>());
+    TestStatusCallbackListener listener = new TestStatusCallbackListener() {
+      @Override
+      public void entityProcessComplete(CAS aCas, EntityProcessStatus aStatus) {
+        super.entityProcessComplete(aCas, aStatus);
+        if (aCas == null && aStatus.isException()) {
+          reportedErrors.addAll(aStatus.getExceptions());
+        }
+      }
+    };
+    cpe.addStatusCallbackListener(listener);
+
+    cpe.process();
+
+    // wait until CPM has finished
+    while (!listener.isFinished()) {
+      Thread.sleep(5);
+    }
+
+    Assert.assertEquals("reported errors", Collections.singletonList(FailingThreadFactory.ERROR),
+            reportedErrors);
+  }
+
+  private void processAndCheck(CollectionProcessingEngine cpe, int documentCount, int threadCount)
+          throws Exception {
+    TestStatusCallbackListener listener = new TestStatusCallbackListener();
+    cpe.addStatusCallbackListener(listener);
+
+    cpe.process();
+
+    // wait until CPM has finished
+    while (!listener.isFinished()) {
+      Thread.sleep(5);
+    }
+
+    Assert.assertEquals("StatusCallbackListener", documentCount, listener
+            .getEntityProcessCompleteCount());
+    Assert.assertEquals("CasConsumer process Count", documentCount, FunctionErrorStore
+            .getCasConsumerProcessCount());
+    Assert.assertEquals("Annotator process count", documentCount, FunctionErrorStore
+            .getAnnotatorProcessCount());
+    Assert.assertEquals("number of annoators", threadCount, FunctionErrorStore.getAnnotatorCount());
+  }
 }
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.uima.collection.impl.cpm.engine;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class BoundedWorkQueueTest extends TestCase {
+
+  static Object[] eofToken() {
+    return new Object[] { new EOFToken() };
+  }
+
+  /**
+   * Waits until a thread is blocked, waiting for a lock, a notification or a permit.
+   */
+  static void awaitBlocked(Thread thread) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 30000;
+    for (;;) {
+      Thread.State state = thread.getState();
+      if (state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING) {
+        return;
+      }
+      assertTrue("thread not blocked: " + state, state != Thread.State.TERMINATED
+              && System.currentTimeMillis() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  public void testFifo() {
+    BoundedWorkQueue q = new BoundedWorkQueue(3, "test", null);
+    assertNull(q.dequeue());
+    q.enqueue("a");
+    q.enqueue("b");
+    q.enqueue("c");
+    assertEquals(3, q.getCurrentSize());
+    assertEquals("a", q.dequeue());
+    assertEquals("b", q.dequeue(0));
+    assertEquals("c", q.dequeue(10));
+    assertNull(q.dequeue());
+    assertEquals(0, q.getCurrentSize());
+  }
+
+  public void testEnqueueBlocksWhenFull() throws Exception {
+    final BoundedWorkQueue q = new BoundedWorkQueue(2, "test", null);
+    q.enqueue("a");
+    q.enqueue("b");
+    final CountDownLatch added = new CountDownLatch(1);
+    Thread producer = new Thread(() -> {
+      q.enqueue("c");
+      added.countDown();
+    });
+    producer.start();
+    awaitBlocked(producer);
+    assertEquals(1, added.getCount());
+    assertEquals(2, q.getCurrentSize());
+    assertEquals("a", q.dequeue());
+    assertTrue(added.await(30, TimeUnit.SECONDS));
+    producer.join();
+    assertEquals(2, q.getCurrentSize());
+    assertEquals(2, q.getMaxDepth());
+    assertEquals(3, q.getEnqueuedCount());
+  }
+
+  public void testEOFTokenBeyondCapacity() {
+    BoundedWorkQueue q = new BoundedWorkQueue(1, "test", null);
+    q.enqueue("a");
+    // doesn't block
+    q.enqueue(eofToken());
+    assertEquals(2, q.getMaxDepth());
+    assertEquals("a", q.dequeue());
+    // an EOFToken at the head of the queue doesn't count
+    assertEquals(0, q.getCurrentSize());
+    assertTrue(((Object[]) q.dequeue())[0] instanceof EOFToken);
+
+    // the slot used beyond the capacity is not given back: there is still only 1 slot
+    q.enqueue("b");
+    assertEquals(1, q.getCurrentSize());
+    assertEquals("b", q.dequeue());
+  }
+
+  public void testDequeueTimeout() throws Exception {
+    final BoundedWorkQueue q = new BoundedWorkQueue(1, "test", null);
+    assertNull(q.dequeue(10));
+
+    // 0 waits until something is enqueued
+    final Object[] dequeued = new Object[1];
+    Thread consumer = new Thread(() -> dequeued[0] = q.dequeue(0));
+    consumer.start();
+    awaitBlocked(consumer);
+    q.enqueue("a");
+    consumer.join();
+    assertEquals("a", dequeued[0]);
+    assertEquals(0, q.getCurrentSize());
+  }
+
+  public void testConcurrentProducersAndConsumers() throws Exception {
+    final int nbrPerProducer = 10000;
+    final BoundedWorkQueue q = new BoundedWorkQueue(5, "test", null);
+    Thread[] producers = new Thread[4];
+    for (int i = 0; i < producers.length; i++) {
+      producers[i] = new Thread(() -> {
+        for (int j = 0; j < nbrPerProducer; j++) {
+          q.enqueue(j);
+        }
+      });
+      producers[i].start();
+    }
+    final long[] consumed = new long[2];
+    Thread[] consumers = new Thread[consumed.length];
+    for (int i = 0; i < consumers.length; i++) {
+      final int consumer = i;
+      consumers[i] = new Thread(() -> {
+        Object o;
+        while (!((o = q.dequeue(0)) instanceof Object[])) {
+          consumed[consumer] += (Integer) o;
+        }
+      });
+      consumers[i].start();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    for (int i = 0; i < consumers.length; i++) {
+      q.enqueue(eofToken());
+    }
+    for (Thread consumer : consumers) {
+      consumer.join();
+    }
+    long expected = (long) producers.length * nbrPerProducer * (nbrPerProducer - 1) / 2;
+    assertEquals(expected, consumed[0] + consumed[1]);
+    assertTrue(q.getMaxDepth() <= 5 + consumers.length);
+    assertNull(q.dequeue());
+  }
+}
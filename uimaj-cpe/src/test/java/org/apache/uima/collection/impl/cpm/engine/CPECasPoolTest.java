@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.collection.impl.cpm.engine;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.resource.CasManager;
+
+public class CPECasPoolTest extends TestCase {
+
+  private CPECasPool pool;
+
+  protected void setUp() throws Exception {
+    CasManager casManager = UIMAFramework.newDefaultResourceManager().getCasManager();
+    casManager.addMetaData(UIMAFramework.getResourceSpecifierFactory()
+            .createProcessingResourceMetaData());
+    pool = new CPECasPool(2, casManager);
+  }
+
+  public void testCheckoutAndRelease() throws Exception {
+    CAS cas1 = pool.getCas();
+    CAS cas2 = pool.getCas(0);
+    assertNotSame(cas1, cas2);
+    assertNull(pool.getCas());
+    assertNull(pool.getCas(10));
+    assertNull(pool.pollCas());
+    assertEquals(2, pool.getCheckedOutCasCount());
+
+    cas1.setDocumentText("reset on release");
+    pool.releaseCas(cas1);
+    // not checked out any more
+    pool.releaseCas(cas1);
+    assertEquals(1, pool.getCheckedOutCasCount());
+    CAS cas = pool.pollCas();
+    assertSame(cas1, cas);
+    assertNull(cas.getDocumentText());
+    pool.releaseCas(cas);
+    pool.releaseCas(cas2);
+    assertEquals(0, pool.getCheckedOutCasCount());
+    assertEquals(2, pool.getMaxCheckedOutCasCount());
+  }
+
+  /**
+   * A timeout of 0 waits until a CAS is released, or until the pool is notified.
+   */
+  public void testWaitUntilReleased() throws Exception {
+    final CAS cas1 = pool.getCas();
+    final CAS cas2 = pool.getCas();
+    final CAS[] waitedFor = new CAS[1];
+    Thread waiter = new Thread(() -> waitedFor[0] = pool.getCas(0));
+    waiter.start();
+    BoundedWorkQueueTest.awaitBlocked(waiter);
+    pool.releaseCas(cas2);
+    waiter.join();
+    assertSame(cas2, waitedFor[0]);
+
+    // notified without a CAS being released, like when the CPM is stopped
+    waiter = new Thread(() -> waitedFor[0] = pool.getCas(0));
+    waiter.start();
+    BoundedWorkQueueTest.awaitBlocked(waiter);
+    synchronized (pool) {
+      pool.notifyAll();
+    }
+    waiter.join();
+    assertNull(waitedFor[0]);
+    pool.releaseCas(cas1);
+    pool.releaseCas(cas2);
+    assertEquals(0, pool.getCheckedOutCasCount());
+  }
+
+  /**
+   * Threads checking CASes out and in concurrently never get a CAS another thread has checked
+   * out, and never get more CASes than there are in the pool.
+   */
+  public void testConcurrentCheckoutAndRelease() throws Exception {
+    final Set<CAS> inUse = Collections.synchronizedSet(Collections.newSetFromMap(
+            new IdentityHashMap<CAS, Boolean>()));
+    final AtomicInteger errors = new AtomicInteger(0);
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      final boolean waitUntilReleased = (i % 2 == 0);
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 2000; j++) {
+          CAS cas;
+          do {
+            cas = waitUntilReleased ? pool.getCas(0) : pool.pollCas();
+          } while (cas == null);
+          if (!inUse.add(cas) || pool.getCheckedOutCasCount() > 2) {
+            errors.incrementAndGet();
+          }
+          inUse.remove(cas);
+          pool.releaseCas(cas);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, errors.get());
+    assertEquals(0, pool.getCheckedOutCasCount());
+    assertTrue(pool.getMaxCheckedOutCasCount() <= 2);
+    assertNotNull(pool.getCas());
+    assertNotNull(pool.getCas());
+    assertNull(pool.getCas());
+  }
+}
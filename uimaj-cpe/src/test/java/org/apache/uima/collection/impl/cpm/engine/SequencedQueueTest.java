@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.collection.impl.cpm.engine;
+
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.collection.impl.cpm.container.CPEFactory;
+import org.apache.uima.collection.impl.cpm.utils.ChunkMetadata;
+import org.apache.uima.collection.impl.metadata.cpe.CpeDescriptorFactory;
+import org.apache.uima.resource.CasManager;
+import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.ProcessTrace;
+import org.apache.uima.util.impl.ProcessTrace_impl;
+
+public class SequencedQueueTest extends TestCase {
+
+  private static final String METADATA_TYPE = "test.ChunkMetadata";
+
+  private CasManager casManager;
+
+  private SequencedQueue queue;
+
+  protected void setUp() throws Exception {
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory()
+            .createTypeSystemDescription();
+    TypeDescription metadata = tsd.addType(METADATA_TYPE, "", CAS.TYPE_NAME_TOP);
+    metadata.addFeature(ChunkMetadata.SEQUENCE, "", CAS.TYPE_NAME_INTEGER);
+    metadata.addFeature(ChunkMetadata.DOCUMENTID, "", CAS.TYPE_NAME_INTEGER);
+    metadata.addFeature(ChunkMetadata.ISCOMPLETED, "", CAS.TYPE_NAME_INTEGER);
+    metadata.addFeature(ChunkMetadata.THROTTLEID, "", CAS.TYPE_NAME_STRING);
+    metadata.addFeature(ChunkMetadata.DOCUMENTURL, "", CAS.TYPE_NAME_STRING);
+    tsd.addType(CAS.TYPE_NAME_DOCUMENT_ANNOTATION, "", CAS.TYPE_NAME_ANNOTATION)
+            .addFeature("esDocumentMetaData", "", METADATA_TYPE);
+    ProcessingResourceMetaData md = UIMAFramework.getResourceSpecifierFactory()
+            .createProcessingResourceMetaData();
+    md.setTypeSystem(tsd);
+    casManager = UIMAFramework.newDefaultResourceManager().getCasManager();
+    casManager.addMetaData(md);
+
+    ProcessTrace procTr = new ProcessTrace_impl();
+    CPMEngine cpm = new CPMEngine(new CPMThreadGroup("test"), new CPEFactory(
+            CpeDescriptorFactory.produceDescriptor(), null), procTr, null);
+    queue = new SequencedQueue(10, "test", cpm);
+  }
+
+  /**
+   * A work unit with a CAS which is chunk aSequence of document aDocId, or not a chunk if
+   * aSequence is 0.
+   */
+  private WorkUnit chunk(int aDocId, int aSequence, boolean aLast) throws Exception {
+    CAS cas = casManager.createNewCas(new Properties());
+    cas.setDocumentText(aDocId + ":" + aSequence);
+    Type type = cas.getTypeSystem().getType(METADATA_TYPE);
+    FeatureStructure metadata = cas.createFS(type);
+    metadata.setIntValue(type.getFeatureByBaseName(ChunkMetadata.SEQUENCE), aSequence);
+    metadata.setIntValue(type.getFeatureByBaseName(ChunkMetadata.DOCUMENTID), aDocId);
+    metadata.setIntValue(type.getFeatureByBaseName(ChunkMetadata.ISCOMPLETED), aLast ? 1 : 0);
+    cas.getDocumentAnnotation().setFeatureValue(cas.getTypeSystem().getFeatureByFullName(
+            CAS.TYPE_NAME_DOCUMENT_ANNOTATION + ":esDocumentMetaData"), metadata);
+    return new WorkUnit(new CAS[] { cas });
+  }
+
+  private static String text(Object aWorkUnit) {
+    return ((CAS[]) ((WorkUnit) aWorkUnit).get())[0].getDocumentText();
+  }
+
+  /**
+   * The chunks of a document are dequeued in sequence, whatever the order they were enqueued in.
+   */
+  public void testChunkOrder() throws Exception {
+    queue.enqueue(chunk(1, 2, false));
+    queue.enqueue(chunk(1, 3, true));
+    queue.enqueue(chunk(1, 1, false));
+    assertEquals("1:1", text(queue.dequeue()));
+    assertEquals("1:2", text(queue.dequeue()));
+    assertEquals("1:3", text(queue.dequeue()));
+    assertNull(queue.dequeue());
+
+    // the next chunk is not in the queue yet
+    queue.enqueue(chunk(2, 2, true));
+    assertNull(queue.dequeue());
+    queue.enqueue(chunk(2, 1, false));
+    assertEquals("2:1", text(queue.dequeue()));
+    assertEquals("2:2", text(queue.dequeue()));
+
+    // CASes which are not chunks are dequeued in order
+    queue.enqueue(chunk(3, 0, false));
+    queue.enqueue(chunk(4, 0, false));
+    assertEquals("3:0", text(queue.dequeue()));
+    assertEquals("4:0", text(queue.dequeue()));
+    assertEquals(0, queue.getCurrentSize());
+  }
+
+  /**
+   * An EOFToken is dequeued once it is at the head of the queue, even beyond the capacity, and
+   * wakes up a consumer waiting for an entry.
+   */
+  public void testEOFToken() throws Exception {
+    SequencedQueue small = new SequencedQueue(1, "small", queue.cpm);
+    small.enqueue(chunk(1, 0, false));
+    small.enqueue(BoundedWorkQueueTest.eofToken());
+    assertEquals("1:0", text(small.dequeue()));
+    assertTrue(((Object[]) small.dequeue())[0] instanceof EOFToken);
+    assertNull(small.dequeue());
+
+    final Object[] dequeued = new Object[1];
+    Thread consumer = new Thread(() -> dequeued[0] = queue.dequeue(0));
+    consumer.start();
+    BoundedWorkQueueTest.awaitBlocked(consumer);
+    queue.enqueue(BoundedWorkQueueTest.eofToken());
+    consumer.join();
+    assertTrue(((Object[]) dequeued[0])[0] instanceof EOFToken);
+  }
+}
@@ -0,0 +1,1098 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.uima.UimaSerializable;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.cas.impl.CasSerializerSupport;
+import org.apache.uima.cas.impl.FSIndexRepositoryImpl;
+import org.apache.uima.cas.impl.FeatureImpl;
+import org.apache.uima.cas.impl.LowLevelCAS;
+import org.apache.uima.cas.impl.TypeImpl;
+import org.apache.uima.cas.impl.TypeSystemConstants;
+import org.apache.uima.cas.impl.TypeSystemImpl;
+import org.apache.uima.internal.util.Int2ObjHashMap;
+import org.apache.uima.internal.util.IntVector;
+import org.apache.uima.jcas.cas.BooleanArray;
+import org.apache.uima.jcas.cas.ByteArray;
+import org.apache.uima.jcas.cas.DoubleArray;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.cas.FloatArray;
+import org.apache.uima.jcas.cas.FloatList;
+import org.apache.uima.jcas.cas.IntegerArray;
+import org.apache.uima.jcas.cas.IntegerList;
+import org.apache.uima.jcas.cas.LongArray;
+import org.apache.uima.jcas.cas.ShortArray;
+import org.apache.uima.jcas.cas.Sofa;
+import org.apache.uima.jcas.cas.StringArray;
+import org.apache.uima.jcas.cas.StringList;
+import org.apache.uima.jcas.cas.TOP;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * <h2>CAS deserializer for the JSON format.</h2>
+ * <p>Reads a CAS from the JSON written by {@link JsonCasSerializer}, in one pass over the input,
+ * using the Jackson streaming parser.</p>
+ *
+ * <p>Feature Structures are created as they are read. References to Feature Structures which
+ * have not been read yet (forward references) are recorded by id, and set at the end.
+ * The Feature Structures listed in the views are then added to the indexes in bulk, one view at a time.</p>
+ *
+ * <p>The serialization must have been done with the default, dynamic embedding: with static embedding,
+ * Feature Structures written within the views do not carry their ids, so references to them can't be resolved.
+ * The context part of the serialization is optional: without it, type names are looked up by their short name,
+ * which must then be unique in the type system. Delta CAS serializations are not supported.</p>
+ *
+ * <p>The parameters that can be configured are:</p>
+ * <ul>
+ *   <li>the Jackson JsonFactory used to create parsers (default: a shared instance)</li>
+ *   <li>a flag for lenient deserialization - default false. When true, types and features not in the CAS's
+ *   type system are skipped, and references to Feature Structures not in the serialization are set to null.</li>
+ * </ul>
+ *
+ * <p>Instances of this class must be used on only one thread while configuration is being done;
+ * afterwards, multiple threads may use the configured instance, to call deserialize.</p>
+ */
+public class JsonCasDeserializer {
+
+  private static final String CONTEXT_NAME = "_context";
+  private static final String TYPES_NAME = "_types";
+  private static final String ID_NAME = "_id";
+  private static final String VIEWS_NAME = "_views";
+  private static final String REFERENCED_FSS_NAME = "_referenced_fss";
+  private static final String TYPE_NAME = "_type";
+  private static final String COLLECTION_NAME = "_collection";
+  private static final String DELTA_CAS_NAME = "_delta_cas";
+
+  private static final JsonFactory DEFAULT_JSON_FACTORY = new JsonFactory();
+
+  private JsonFactory jsonFactory = DEFAULT_JSON_FACTORY;
+
+  private boolean isLenient = false;
+
+  /**
+   * Creates a new JsonCasDeserializer
+   */
+  public JsonCasDeserializer() {
+  }
+
+  /**
+   * Deserializes a CAS from JSON
+   *
+   * @param input
+   *          a File, InputStream or Reader from which to read the JSON document
+   * @param aCAS
+   *          CAS to fill; it is reset first
+   *
+   * @throws IOException if there was an IOException, or the input is not a JSON CAS serialization
+   */
+  public static void jsonDeserialize(Object input, CAS aCAS) throws IOException {
+    jsonDeserialize(input, aCAS, false);
+  }
+
+  /**
+   * Deserializes a CAS from JSON
+   *
+   * @param input
+   *          a File, InputStream or Reader from which to read the JSON document
+   * @param aCAS
+   *          CAS to fill; it is reset first
+   * @param aLenient
+   *          if true, types and features not in the CAS's type system are skipped
+   *
+   * @throws IOException if there was an IOException, or the input is not a JSON CAS serialization
+   */
+  public static void jsonDeserialize(Object input, CAS aCAS, boolean aLenient) throws IOException {
+    new JsonCasDeserializer().setLenient(aLenient).deserialize(input, aCAS);
+  }
+
+  /**
+   * Deserialize a CAS from an input, using configurations set on this instance.
+   * A passed in InputStream or Reader is not closed.
+   * @param input - where the JSON is read from, an InputStream, Reader, or File
+   * @param cas - the CAS to fill; it is reset first
+   * @throws IOException if there was an IOException, or the input is not a JSON CAS serialization
+   */
+  public void deserialize(Object input, CAS cas) throws IOException {
+    try (JsonParser p = createParser(input)) {
+      deserialize(p, cas);
+    }
+  }
+
+  /**
+   * Deserialize a CAS from a parser positioned before the start of the serialization
+   * @param p - the parser
+   * @param cas - the CAS to fill; it is reset first
+   * @throws IOException if there was an IOException, or the input is not a JSON CAS serialization
+   */
+  public void deserialize(JsonParser p, CAS cas) throws IOException {
+    new JsonDocDeserializer(p, ((CASImpl) cas).getBaseCAS()).deserialize();
+  }
+
+  private JsonParser createParser(Object input) throws IOException {
+    if (input instanceof InputStream) {
+      return jsonFactory.createParser((InputStream) input).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+    if (input instanceof Reader) {
+      return jsonFactory.createParser((Reader) input).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+    if (input instanceof File) {
+      return jsonFactory.createParser((File) input);
+    }
+    throw new IllegalArgumentException(String.format(
+        "Input must be an InputStream, Reader, or File, but was of class %s",
+        (input == null) ? "null" : input.getClass().getName()));
+  }
+
+  /********************************************************
+   *   Routines to set/reset configuration                *
+   ********************************************************/
+  /**
+   * set which JsonFactory instance to use; if null, a shared default instance is used
+   *   this can be used to preconfigure the JsonFactory instance
+   * @param jsonFactory -
+   * @return the original instance, possibly updated
+   */
+  public JsonCasDeserializer setJsonFactory(JsonFactory jsonFactory) {
+    this.jsonFactory = (jsonFactory == null) ? DEFAULT_JSON_FACTORY : jsonFactory;
+    return this;
+  }
+
+  /**
+   * set or reset lenient deserialization (default is false)
+   * @param lenient true to skip types and features not in the CAS's type system,
+   *                and to set references to Feature Structures missing from the serialization to null
+   * @return the original instance, possibly updated
+   */
+  public JsonCasDeserializer setLenient(boolean lenient) {
+    isLenient = lenient;
+    return this;
+  }
+
+  /**
+   * The Feature Structures listed in one view, added to its indexes at the end
+   */
+  private static class ViewMembers {
+    final CASImpl view;
+    /** members in serialization order; null entries are filled in at the end from the ids */
+    final List<TOP> fss = new ArrayList<>();
+    /** pairs of (index in fss, id) for members listed by id */
+    final IntVector ids = new IntVector();
+
+    ViewMembers(CASImpl view) {
+      this.view = view;
+    }
+  }
+
+  /**
+   * A reference to be set once all the Feature Structures are read
+   */
+  private static class Fixup {
+    final TOP fs;
+    /** the feature to set, or null to set an element of an FSArray */
+    final FeatureImpl fi;
+    final int index;
+    final int id;
+
+    Fixup(TOP fs, FeatureImpl fi, int index, int id) {
+      this.fs = fs;
+      this.fi = fi;
+      this.index = index;
+      this.id = id;
+    }
+  }
+
+  /**
+   * An AnnotationBase Feature Structure read before the view it belongs to was known,
+   * kept as JSON to be read again at the end
+   */
+  private static class DeferredFs {
+    final TypeImpl type;
+    final int id;
+    final int sofaId;
+    final byte[] json;
+
+    DeferredFs(TypeImpl type, int id, int sofaId, byte[] json) {
+      this.type = type;
+      this.id = id;
+      this.sofaId = sofaId;
+      this.json = json;
+    }
+  }
+
+  /**
+   * The state of one deserialization
+   */
+  private class JsonDocDeserializer {
+
+    private JsonParser p;
+
+    private final CASImpl cas;
+
+    private final TypeSystemImpl tsi;
+
+    private final boolean isLenient = JsonCasDeserializer.this.isLenient;
+
+    /** serialized type names, from the context, or looked up when first used */
+    private final Map<String, TypeImpl> jsonTypeNames = new HashMap<>();
+
+    /** short names of the types in the type system, built if there's no context; null values for ambiguous names */
+    private Map<String, TypeImpl> shortTypeNames;
+
+    private final Int2ObjHashMap<TOP, TOP> id2fs = new Int2ObjHashMap<>(TOP.class);
+
+    /** the views of the sofas, by the ids of the sofas */
+    private final Int2ObjHashMap<CASImpl, CASImpl> sofaId2view = new Int2ObjHashMap<>(CASImpl.class);
+
+    private final Map<String, ViewMembers> views = new LinkedHashMap<>();
+
+    private final List<Fixup> fixups = new ArrayList<>();
+
+    private final List<DeferredFs> deferredFss = new ArrayList<>();
+
+    private final List<UimaSerializable> uimaSerializables = new ArrayList<>();
+
+    /** the id of the last deferred FS, set when readFs returns null */
+    private int deferredId;
+
+    /** ids for embedded FSs which are deferred */
+    private int nextSyntheticId = -1;
+
+    // buffers for reading array and list values
+    private long[] longs = new long[16];
+    private float[] floats = new float[16];
+    private double[] doubles = new double[16];
+    private final List<String> strings = new ArrayList<>();
+
+    private JsonDocDeserializer(JsonParser p, CASImpl cas) {
+      this.p = p;
+      this.cas = cas;
+      this.tsi = cas.getTypeSystemImpl();
+    }
+
+    private void deserialize() throws IOException {
+      cas.resetNoQuestions();
+      if (p.nextToken() != JsonToken.START_OBJECT) {
+        throw error("Expected the start of a JSON object");
+      }
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String name = p.getCurrentName();
+        p.nextToken();
+        switch (name) {
+        case CONTEXT_NAME:        readContext(); break;
+        case VIEWS_NAME:          readViews(); break;
+        case REFERENCED_FSS_NAME: readReferencedFss(); break;
+        case DELTA_CAS_NAME:
+          throw new UnsupportedOperationException("Deserializing a delta CAS from JSON is not supported");
+        default: p.skipChildren();
+        }
+      }
+      finish();
+    }
+
+    /**
+     * Only the mapping from serialized type names to full type names is used
+     */
+    private void readContext() throws IOException {
+      expect(p.currentToken(), JsonToken.START_OBJECT);
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        if (!TYPES_NAME.equals(p.getCurrentName())) {
+          p.nextToken();
+          p.skipChildren();
+          continue;
+        }
+        expect(p.nextToken(), JsonToken.START_OBJECT);
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+          String jsonTypeName = p.getCurrentName();
+          expect(p.nextToken(), JsonToken.START_OBJECT);
+          while (p.nextToken() == JsonToken.FIELD_NAME) {
+            boolean isId = ID_NAME.equals(p.getCurrentName());
+            p.nextToken();
+            if (isId) {
+              // namespace entries also have an _id, which is not a type name
+              TypeImpl type = tsi.getType(p.getText());
+              if (type != null) {
+                jsonTypeNames.put(jsonTypeName, type);
+              }
+            } else {
+              p.skipChildren();
+            }
+          }
+        }
+      }
+    }
+
+    private void readViews() throws IOException {
+      expect(p.currentToken(), JsonToken.START_OBJECT);
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        ViewMembers vm = getView(p.getCurrentName());
+        expect(p.nextToken(), JsonToken.START_OBJECT);
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+          TypeImpl type = getType(p.getCurrentName());
+          expect(p.nextToken(), JsonToken.START_ARRAY);
+          if (type == null) {
+            p.skipChildren();
+            continue;
+          }
+          JsonToken t;
+          while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (t == JsonToken.VALUE_NUMBER_INT) {
+              vm.ids.add(vm.fss.size());
+              vm.ids.add(p.getIntValue());
+              vm.fss.add(null);
+            } else {
+              expect(t, JsonToken.START_OBJECT);
+              TOP fs = readFs(type, 0, vm.view);
+              if (fs != null) {
+                vm.fss.add(fs);
+              }
+            }
+          }
+        }
+      }
+    }
+
+    private void readReferencedFss() throws IOException {
+      expect(p.currentToken(), JsonToken.START_OBJECT);
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        final int id;
+        try {
+          id = Integer.parseInt(p.getCurrentName());
+        } catch (NumberFormatException e) {
+          throw error("Expected a Feature Structure id, but found " + p.getCurrentName());
+        }
+        expect(p.nextToken(), JsonToken.START_OBJECT);
+        readFs(null, id, null);
+      }
+    }
+
+    /**
+     * Reads a Feature Structure, the parser being at its start. The Feature Structure is not indexed.
+     *
+     * @param type the type, or null if it is given by the _type field
+     * @param id the id of the Feature Structure, or 0 if it has none
+     * @param view the view in which the Feature Structure is listed, or null if it is embedded or referenced
+     * @return the Feature Structure, or null if its type is unknown (lenient mode) or
+     *         its creation is deferred, in which case deferredId is set
+     * @throws IOException -
+     */
+    private TOP readFs(TypeImpl type, int id, CASImpl view) throws IOException {
+      JsonToken t = p.nextToken();
+      if (type == null) {
+        if (t != JsonToken.FIELD_NAME || !TYPE_NAME.equals(p.getCurrentName())) {
+          throw error("Expected the " + TYPE_NAME + " field");
+        }
+        p.nextToken();
+        type = getType(p.getText());
+        t = p.nextToken();
+        if (type == null) {
+          skipRestOfObject(t);
+          deferredId = 0;
+          return null;
+        }
+      }
+
+      if (type.isArray()) {
+        return readArrayFs(t, type, id);
+      }
+      if (type == tsi.sofaType) {
+        return readSofa(t, id);
+      }
+      if (isEmptyListType(type)) {
+        skipRestOfObject(t);
+        TOP fs = (TOP) cas.emptyListFromTypeCode(type.getCode());
+        putId(id, fs);
+        return fs;
+      }
+
+      final TOP fs;
+      if (type.isAnnotationBaseType()) {
+        // create the FS in the view of its sofa, which is either the view it's listed in,
+        // or found from the sofa reference, if that comes first and the sofa was seen already.
+        CASImpl fsView = view;
+        int sofaId = 0;
+        if (t == JsonToken.FIELD_NAME && CAS.FEATURE_BASE_NAME_SOFA.equals(p.getCurrentName())) {
+          p.nextToken();
+          sofaId = p.getIntValue();
+          t = p.nextToken();
+          if (view == null) {
+            fsView = sofaId2view.get(sofaId);
+          } else if (sofaId2view.get(sofaId) == null) {
+            sofaId2view.put(sofaId, view);
+          }
+        }
+        if (fsView == null) {
+          return defer(t, type, id, sofaId);
+        }
+        fs = fsView.createFS(type);
+      } else {
+        fs = cas.createFS(type);
+      }
+      putId(id, fs);
+      readFeatures(t, fs, type);
+      return fs;
+    }
+
+    /**
+     * Reads the features of a Feature Structure
+     * @param t the current token, the first feature's name or the end of the object
+     */
+    private void readFeatures(JsonToken t, TOP fs, TypeImpl type) throws IOException {
+      final boolean isAnnotationBase = type.isAnnotationBaseType();
+      for (; t == JsonToken.FIELD_NAME; t = p.nextToken()) {
+        String name = p.getCurrentName();
+        FeatureImpl fi = type.getFeatureByBaseName(name);
+        p.nextToken();
+        if (fi == null || (isAnnotationBase && CAS.FEATURE_BASE_NAME_SOFA.equals(name))) {
+          if (fi == null && !isLenient) {
+            throw error("Unknown feature " + name + " of type " + type.getName());
+          }
+          p.skipChildren();  // the sofa reference is set when the FS is created
+          continue;
+        }
+        readFeatureValue(fs, fi);
+      }
+      expect(t, JsonToken.END_OBJECT);
+      if (fs instanceof UimaSerializable) {
+        uimaSerializables.add((UimaSerializable) fs);
+      }
+    }
+
+    /**
+     * Sets a feature from the value at the current token
+     */
+    private void readFeatureValue(TOP fs, FeatureImpl fi) throws IOException {
+      final JsonToken t = p.currentToken();
+      if (t == JsonToken.VALUE_NULL) {
+        return;
+      }
+
+      switch (fi.rangeTypeClass) {
+      case LowLevelCAS.TYPE_CLASS_BOOLEAN: fs._setBooleanValueNcNj(fi, p.getBooleanValue()); break;
+      case LowLevelCAS.TYPE_CLASS_BYTE:    fs._setByteValueNcNj   (fi, p.getByteValue());    break;
+      case LowLevelCAS.TYPE_CLASS_SHORT:   fs._setShortValueNcNj  (fi, p.getShortValue());   break;
+      case LowLevelCAS.TYPE_CLASS_INT:     fs._setIntValueNcNj    (fi, p.getIntValue());     break;
+      case LowLevelCAS.TYPE_CLASS_LONG:    fs._setLongValueNcNj   (fi, p.getLongValue());    break;
+      case LowLevelCAS.TYPE_CLASS_FLOAT:   fs._setFloatValueNcNj  (fi, readFloat());         break;
+      case LowLevelCAS.TYPE_CLASS_DOUBLE:  fs._setDoubleValueNcNj (fi, readDouble());        break;
+
+      case LowLevelCAS.TYPE_CLASS_STRING:
+        if (fi.getRangeImpl().isStringSubtype()) {
+          fs.setStringValue(fi, p.getText());  // checks the allowed values
+        } else {
+          fs._setStringValueNcNj(fi, p.getText());
+        }
+        break;
+
+      case LowLevelCAS.TYPE_CLASS_FS:
+        if (t == JsonToken.VALUE_NUMBER_INT) {
+          setRef(fs, fi, p.getIntValue());
+        } else {
+          expect(t, JsonToken.START_OBJECT);
+          setFsOrFixup(fs, fi, readFs(null, 0, null));
+        }
+        break;
+
+      case LowLevelCAS.TYPE_CLASS_INTARRAY:
+      case LowLevelCAS.TYPE_CLASS_FLOATARRAY:
+      case LowLevelCAS.TYPE_CLASS_BOOLEANARRAY:
+      case LowLevelCAS.TYPE_CLASS_BYTEARRAY:
+      case LowLevelCAS.TYPE_CLASS_SHORTARRAY:
+      case LowLevelCAS.TYPE_CLASS_LONGARRAY:
+      case LowLevelCAS.TYPE_CLASS_DOUBLEARRAY:
+      case LowLevelCAS.TYPE_CLASS_STRINGARRAY:
+      case LowLevelCAS.TYPE_CLASS_FSARRAY:
+        if (t == JsonToken.VALUE_NUMBER_INT) {
+          setRef(fs, fi, p.getIntValue());  // shared array
+        } else {
+          fs._setFeatureValueNcNj(fi, readArrayValues(fi.getRangeImpl(), fi.rangeTypeClass));
+        }
+        break;
+
+      case CasSerializerSupport.TYPE_CLASS_INTLIST:
+      case CasSerializerSupport.TYPE_CLASS_FLOATLIST:
+      case CasSerializerSupport.TYPE_CLASS_STRINGLIST:
+      case CasSerializerSupport.TYPE_CLASS_FSLIST:
+        if (t == JsonToken.VALUE_NUMBER_INT) {
+          setRef(fs, fi, p.getIntValue());  // shared list
+        } else {
+          expect(t, JsonToken.START_ARRAY);
+          readListValues(fs, fi);
+        }
+        break;
+
+      default: throw error("Unsupported range of feature " + fi.getName());
+      }
+    }
+
+    /**
+     * An array written as a Feature Structure, {"_collection" : [ ... ]}
+     */
+    private TOP readArrayFs(JsonToken t, TypeImpl type, int id) throws IOException {
+      final TOP array;
+      if (t == JsonToken.FIELD_NAME && COLLECTION_NAME.equals(p.getCurrentName())) {
+        p.nextToken();
+        array = readArrayValues(type, CasSerializerSupport.classifyType(type));
+        t = p.nextToken();
+      } else {
+        array = cas.createArray(type, 0);
+      }
+      expect(t, JsonToken.END_OBJECT);
+      putId(id, array);
+      return array;
+    }
+
+    /**
+     * Reads the values of an array, the parser being at their start
+     * @return the new array
+     */
+    private TOP readArrayValues(TypeImpl type, int typeClass) throws IOException {
+      switch (typeClass) {
+      case LowLevelCAS.TYPE_CLASS_BYTEARRAY: {
+        final ByteArray a;
+        if (p.currentToken() == JsonToken.VALUE_STRING) {  // base64 encoded
+          byte[] bytes = p.getBinaryValue();
+          a = (ByteArray) cas.createArray(type, bytes.length);
+          System.arraycopy(bytes, 0, a._getTheArray(), 0, bytes.length);
+        } else {
+          final int n = readLongs();
+          a = (ByteArray) cas.createArray(type, n);
+          byte[] d = a._getTheArray();
+          for (int i = 0; i < n; i++) {
+            d[i] = (byte) longs[i];
+          }
+        }
+        return a;
+      }
+      case LowLevelCAS.TYPE_CLASS_BOOLEANARRAY: {
+        final int n = readLongs();
+        BooleanArray a = (BooleanArray) cas.createArray(type, n);
+        boolean[] d = a._getTheArray();
+        for (int i = 0; i < n; i++) {
+          d[i] = longs[i] != 0;
+        }
+        return a;
+      }
+      case LowLevelCAS.TYPE_CLASS_SHORTARRAY: {
+        final int n = readLongs();
+        ShortArray a = (ShortArray) cas.createArray(type, n);
+        short[] d = a._getTheArray();
+        for (int i = 0; i < n; i++) {
+          d[i] = (short) longs[i];
+        }
+        return a;
+      }
+      case LowLevelCAS.TYPE_CLASS_INTARRAY: {
+        final int n = readLongs();
+        IntegerArray a = (IntegerArray) cas.createArray(type, n);
+        int[] d = a._getTheArray();
+        for (int i = 0; i < n; i++) {
+          d[i] = (int) longs[i];
+        }
+        return a;
+      }
+      case LowLevelCAS.TYPE_CLASS_LONGARRAY: {
+        final int n = readLongs();
+        LongArray a = (LongArray) cas.createArray(type, n);
+        System.arraycopy(longs, 0, a._getTheArray(), 0, n);
+        return a;
+      }
+      case LowLevelCAS.TYPE_CLASS_FLOATARRAY: {
+        final int n = readFloats();
+        FloatArray a = (FloatArray) cas.createArray(type, n);
+        System.arraycopy(floats, 0, a._getTheArray(), 0, n);
+        return a;
+      }
+      case LowLevelCAS.TYPE_CLASS_DOUBLEARRAY: {
+        final int n = readDoubles();
+        DoubleArray a = (DoubleArray) cas.createArray(type, n);
+        System.arraycopy(doubles, 0, a._getTheArray(), 0, n);
+        return a;
+      }
+      case LowLevelCAS.TYPE_CLASS_STRINGARRAY: {
+        final int n = readStrings();
+        StringArray a = (StringArray) cas.createArray(type, n);
+        strings.toArray(a._getTheArray());
+        return a;
+      }
+      case LowLevelCAS.TYPE_CLASS_FSARRAY:
+        return readFsArray(type);
+      default: throw error("Unsupported array type " + type.getName());
+      }
+    }
+
+    private TOP readFsArray(TypeImpl type) throws IOException {
+      expect(p.currentToken(), JsonToken.START_ARRAY);
+      // not using a shared buffer: elements may be embedded FSArrays
+      List<TOP> elements = new ArrayList<>();
+      IntVector unresolved = null;  // pairs of (index, id)
+      JsonToken t;
+      while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+        TOP element = null;
+        int id = 0;
+        if (t == JsonToken.VALUE_NUMBER_INT) {
+          id = p.getIntValue();
+          element = id2fs.get(id);
+        } else if (t == JsonToken.START_OBJECT) {
+          element = readFs(null, 0, null);
+          id = (element == null) ? deferredId : 0;
+        } else {
+          expect(t, JsonToken.VALUE_NULL);
+        }
+        if (element == null && id != 0) {
+          if (unresolved == null) {
+            unresolved = new IntVector();
+          }
+          unresolved.add(elements.size());
+          unresolved.add(id);
+        }
+        elements.add(element);
+      }
+      FSArray<?> a = (FSArray<?>) cas.createArray(type, elements.size());
+      elements.toArray(a._getTheArray());
+      if (unresolved != null) {
+        for (int i = 0; i < unresolved.size(); i += 2) {
+          fixups.add(new Fixup(a, null, unresolved.get(i), unresolved.get(i + 1)));
+        }
+      }
+      return a;
+    }
+
+    /**
+     * Reads the values of a list, the parser being at their start,
+     * and sets the feature to the first node.
+     */
+    private void readListValues(TOP fs, FeatureImpl fi) throws IOException {
+      switch (fi.rangeTypeClass) {
+      case CasSerializerSupport.TYPE_CLASS_INTLIST: {
+        IntegerList list = cas.emptyIntegerList();
+        for (int i = readLongs() - 1; i >= 0; i--) {
+          list = list.push((int) longs[i]);
+        }
+        fs._setFeatureValueNcNj(fi, list);
+        break;
+      }
+      case CasSerializerSupport.TYPE_CLASS_FLOATLIST: {
+        FloatList list = cas.emptyFloatList();
+        for (int i = readFloats() - 1; i >= 0; i--) {
+          list = list.push(floats[i]);
+        }
+        fs._setFeatureValueNcNj(fi, list);
+        break;
+      }
+      case CasSerializerSupport.TYPE_CLASS_STRINGLIST: {
+        StringList list = cas.emptyStringList();
+        for (int i = readStrings() - 1; i >= 0; i--) {
+          list = list.push(strings.get(i));
+        }
+        fs._setFeatureValueNcNj(fi, list);
+        break;
+      }
+      default: {  // FS list
+        // The elements are the list nodes, each one including its tail, so the first one is the whole list
+        JsonToken t = p.nextToken();
+        if (t == JsonToken.END_ARRAY) {
+          fs._setFeatureValueNcNj(fi, cas.emptyFSList());
+          return;
+        }
+        if (t == JsonToken.VALUE_NUMBER_INT) {
+          setRef(fs, fi, p.getIntValue());
+        } else {
+          expect(t, JsonToken.START_OBJECT);
+          setFsOrFixup(fs, fi, readFs(null, 0, null));
+        }
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+          p.skipChildren();
+        }
+      }
+      }
+    }
+
+    private TOP readSofa(JsonToken t, int id) throws IOException {
+      String sofaID = null;
+      String mimeType = null;
+      String sofaString = null;
+      String sofaURI = null;
+      int sofaArrayId = 0;
+      TOP sofaArray = null;
+      for (; t == JsonToken.FIELD_NAME; t = p.nextToken()) {
+        String name = p.getCurrentName();
+        JsonToken v = p.nextToken();
+        String text = (v == JsonToken.VALUE_NULL) ? null : p.getText();
+        switch (name) {
+        case CAS.FEATURE_BASE_NAME_SOFAID:     sofaID = text; break;
+        case CAS.FEATURE_BASE_NAME_SOFAMIME:   mimeType = text; break;
+        case CAS.FEATURE_BASE_NAME_SOFASTRING: sofaString = text; break;
+        case CAS.FEATURE_BASE_NAME_SOFAURI:    sofaURI = text; break;
+        case CAS.FEATURE_BASE_NAME_SOFAARRAY:
+          if (v == JsonToken.VALUE_NUMBER_INT) {
+            sofaArrayId = p.getIntValue();
+          } else if (v == JsonToken.START_OBJECT) {
+            sofaArray = readFs(null, 0, null);
+          }
+          break;
+        default: p.skipChildren();  // the sofaNum is determined by the order of the views
+        }
+      }
+      expect(t, JsonToken.END_OBJECT);
+      if (sofaID == null) {
+        throw error("Sofa without a " + CAS.FEATURE_BASE_NAME_SOFAID);
+      }
+      if (sofaID.equals("_DefaultTextSofaName")) {  // old default Sofa name
+        sofaID = CAS.NAME_DEFAULT_SOFA;
+      }
+      CASImpl view = getView(sofaID).view;
+      Sofa sofa = view.getSofaRef();
+      if (mimeType != null) {
+        sofa.setMimeType(mimeType);
+      }
+      if (sofaString != null) {
+        sofa.setLocalSofaDataNoDocAnnotUpdate(sofaString);
+      }
+      if (sofaURI != null) {
+        sofa.setRemoteSofaURI(sofaURI);
+      }
+      FeatureImpl sofaArrayFeat = tsi.sofaType.getFeatureByBaseName(CAS.FEATURE_BASE_NAME_SOFAARRAY);
+      if (sofaArray != null) {
+        sofa._setFeatureValueNcNj(sofaArrayFeat, sofaArray);
+      } else {
+        setRef(sofa, sofaArrayFeat, sofaArrayId);
+      }
+      putId(id, sofa);
+      if (id != 0) {
+        sofaId2view.put(id, view);
+      }
+      return sofa;
+    }
+
+    /**
+     * Keeps the rest of an AnnotationBase FS as JSON, to be read once all sofas are known
+     * @param t the current token, a field name or the end of the object
+     */
+    private TOP defer(JsonToken t, TypeImpl type, int id, int sofaId) throws IOException {
+      ByteArrayOutputStream json = new ByteArrayOutputStream();
+      try (JsonGenerator g = jsonFactory.createGenerator(json)) {
+        g.writeStartObject();
+        for (; t == JsonToken.FIELD_NAME; t = p.nextToken()) {
+          if (CAS.FEATURE_BASE_NAME_SOFA.equals(p.getCurrentName())) {
+            p.nextToken();
+            sofaId = p.getIntValue();
+          } else {
+            g.copyCurrentStructure(p);
+          }
+        }
+        expect(t, JsonToken.END_OBJECT);
+        g.writeEndObject();
+      }
+      if (id == 0) {
+        id = nextSyntheticId--;
+      }
+      deferredFss.add(new DeferredFs(type, id, sofaId, json.toByteArray()));
+      deferredId = id;
+      return null;
+    }
+
+    private void readDeferred(DeferredFs d) throws IOException {
+      final JsonParser saved = p;
+      try (JsonParser dp = jsonFactory.createParser(d.json)) {
+        p = dp;
+        p.nextToken();  // start of object
+        CASImpl view = sofaId2view.get(d.sofaId);
+        if (view == null) {
+          if (!isLenient) {
+            throw error("Unknown sofa " + d.sofaId + " of an FS of type " + d.type.getName());
+          }
+          return;  // references to it are set to null
+        }
+        TOP fs = view.createFS(d.type);
+        putId(d.id, fs);
+        readFeatures(p.nextToken(), fs, d.type);
+      } finally {
+        p = saved;
+      }
+    }
+
+    private void finish() throws IOException {
+      // reading deferred FSs may defer embedded ones
+      for (int i = 0; i < deferredFss.size(); i++) {
+        readDeferred(deferredFss.get(i));
+      }
+
+      for (Fixup f : fixups) {
+        TOP fs = (f.fi != null && isListRange(f.fi) && !id2fs.containsKey(f.id))
+                   // the serializer refers by id to an empty list shared by several list nodes,
+                   // but doesn't write it: empty lists are singletons anyway
+                   ? (TOP) cas.emptyList(f.fi.rangeTypeClass)
+                   : getFs(f.id);
+        if (fs == null) {
+          continue;
+        }
+        if (f.fi == null) {
+          ((FSArray<?>) f.fs)._getTheArray()[f.index] = fs;
+        } else {
+          setFeatureFs(f.fs, f.fi, fs);
+        }
+      }
+
+      for (ViewMembers vm : views.values()) {
+        boolean hasMissing = false;
+        for (int i = 0; i < vm.ids.size(); i += 2) {
+          TOP fs = getFs(vm.ids.get(i + 1));
+          hasMissing |= (fs == null);
+          vm.fss.set(vm.ids.get(i), fs);
+        }
+        if (hasMissing) {
+          vm.fss.removeIf(Objects::isNull);
+        }
+        ((FSIndexRepositoryImpl) vm.view.getIndexRepository()).addFSs(vm.fss);
+      }
+
+      for (ViewMembers vm : views.values()) {
+        vm.view.updateDocumentAnnotation();
+      }
+
+      for (UimaSerializable ufs : uimaSerializables) {
+        ufs._init_from_cas_data();
+      }
+    }
+
+    /**
+     * @return the FS, or null if the id is not in the serialization (lenient mode)
+     */
+    private TOP getFs(int id) throws IOException {
+      TOP fs = id2fs.get(id);
+      if (fs == null && !isLenient) {
+        throw error("Unknown Feature Structure id " + id);
+      }
+      return fs;
+    }
+
+    private boolean isListRange(FeatureImpl fi) {
+      switch (fi.rangeTypeClass) {
+      case CasSerializerSupport.TYPE_CLASS_INTLIST:
+      case CasSerializerSupport.TYPE_CLASS_FLOATLIST:
+      case CasSerializerSupport.TYPE_CLASS_STRINGLIST:
+      case CasSerializerSupport.TYPE_CLASS_FSLIST:
+        return true;
+      default:
+        return false;
+      }
+    }
+
+    private void putId(int id, TOP fs) {
+      if (id != 0) {
+        id2fs.put(id, fs);
+      }
+    }
+
+    private void setRef(TOP fs, FeatureImpl fi, int id) {
+      if (id == 0) {
+        return;  // null reference
+      }
+      TOP v = id2fs.get(id);
+      if (v == null) {
+        fixups.add(new Fixup(fs, fi, 0, id));
+      } else {
+        setFeatureFs(fs, fi, v);
+      }
+    }
+
+    /**
+     * @param v an FS returned by readFs
+     */
+    private void setFsOrFixup(TOP fs, FeatureImpl fi, TOP v) {
+      if (v != null) {
+        setFeatureFs(fs, fi, v);
+      } else if (deferredId != 0) {
+        fixups.add(new Fixup(fs, fi, 0, deferredId));
+      }
+    }
+
+    /**
+     * A shared FSArray is serialized as a plain FSArray; like the XMI deserializer, give it the
+     * typed array type of the feature referring to it.
+     */
+    private void setFeatureFs(TOP fs, FeatureImpl fi, TOP v) {
+      if (fi.rangeTypeClass == LowLevelCAS.TYPE_CLASS_FSARRAY) {
+        cas.fixupFSArrayTypes(fi.getRangeImpl(), v);
+      }
+      fs._setFeatureValueNcNj(fi, v);
+    }
+
+    private ViewMembers getView(String viewName) {
+      ViewMembers vm = views.get(viewName);
+      if (vm == null) {
+        // after the reset, only the initial view exists
+        CASImpl view = (CASImpl) (viewName.equals(CAS.NAME_DEFAULT_SOFA)
+                                    ? cas.getView(viewName)
+                                    : cas.createView(viewName));
+        vm = new ViewMembers(view);
+        views.put(viewName, vm);
+      }
+      return vm;
+    }
+
+    /**
+     * @return the type, or null if it's not in the type system and deserialization is lenient
+     */
+    private TypeImpl getType(String jsonTypeName) throws IOException {
+      TypeImpl type = jsonTypeNames.get(jsonTypeName);
+      if (type == null) {
+        if (!jsonTypeNames.containsKey(jsonTypeName)) {
+          type = lookupType(jsonTypeName);
+          jsonTypeNames.put(jsonTypeName, type);
+        }
+        if (type == null && !isLenient) {
+          throw error("Unknown type " + jsonTypeName);
+        }
+      }
+      return type;
+    }
+
+    /**
+     * For type names which are not in the context: full names, or short names unique in the type system
+     */
+    private TypeImpl lookupType(String jsonTypeName) {
+      TypeImpl type = tsi.getType(jsonTypeName);
+      if (type != null) {
+        return type;
+      }
+      if (shortTypeNames == null) {
+        shortTypeNames = new HashMap<>();
+        for (TypeImpl ti : tsi.getAllTypes()) {
+          String shortName = ti.getShortName();
+          shortTypeNames.put(shortName, shortTypeNames.containsKey(shortName) ? null : ti);
+        }
+      }
+      return shortTypeNames.get(jsonTypeName);
+    }
+
+    private boolean isEmptyListType(TypeImpl type) {
+      switch (type.getCode()) {
+      case TypeSystemConstants.fsEListTypeCode:
+      case TypeSystemConstants.floatEListTypeCode:
+      case TypeSystemConstants.intEListTypeCode:
+      case TypeSystemConstants.stringEListTypeCode:
+        return true;
+      default:
+        return false;
+      }
+    }
+
+    private void skipRestOfObject(JsonToken t) throws IOException {
+      for (; t == JsonToken.FIELD_NAME; t = p.nextToken()) {
+        p.nextToken();
+        p.skipChildren();
+      }
+      expect(t, JsonToken.END_OBJECT);
+    }
+
+    private float readFloat() throws IOException {
+      // parsing the text avoids double rounding, and handles the NaN and Infinity strings
+      return Float.parseFloat(p.getText());
+    }
+
+    private double readDouble() throws IOException {
+      return (p.currentToken() == JsonToken.VALUE_STRING)
+               ? Double.parseDouble(p.getText())
+               : p.getDoubleValue();
+    }
+
+    /**
+     * Reads an array of integral or boolean values into longs
+     * @return the number of values
+     */
+    private int readLongs() throws IOException {
+      expect(p.currentToken(), JsonToken.START_ARRAY);
+      int n = 0;
+      JsonToken t;
+      while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+        if (n == longs.length) {
+          longs = Arrays.copyOf(longs, n * 2);
+        }
+        longs[n++] = (t == JsonToken.VALUE_TRUE) ? 1 : (t == JsonToken.VALUE_FALSE) ? 0 : p.getLongValue();
+      }
+      return n;
+    }
+
+    private int readFloats() throws IOException {
+      expect(p.currentToken(), JsonToken.START_ARRAY);
+      int n = 0;
+      while (p.nextToken() != JsonToken.END_ARRAY) {
+        if (n == floats.length) {
+          floats = Arrays.copyOf(floats, n * 2);
+        }
+        floats[n++] = readFloat();
+      }
+      return n;
+    }
+
+    private int readDoubles() throws IOException {
+      expect(p.currentToken(), JsonToken.START_ARRAY);
+      int n = 0;
+      while (p.nextToken() != JsonToken.END_ARRAY) {
+        if (n == doubles.length) {
+          doubles = Arrays.copyOf(doubles, n * 2);
+        }
+        doubles[n++] = readDouble();
+      }
+      return n;
+    }
+
+    private int readStrings() throws IOException {
+      expect(p.currentToken(), JsonToken.START_ARRAY);
+      strings.clear();
+      JsonToken t;
+      while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+        strings.add((t == JsonToken.VALUE_NULL) ? null : p.getText());
+      }
+      return strings.size();
+    }
+
+    private void expect(JsonToken t, JsonToken expected) throws JsonParseException {
+      if (t != expected) {
+        throw error("Expected " + expected + " but found " + t);
+      }
+    }
+
+    private JsonParseException error(String msg) {
+      return new JsonParseException(p, msg);
+    }
+  }
+}
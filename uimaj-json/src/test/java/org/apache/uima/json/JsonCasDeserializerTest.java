@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.SerialFormat;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.cas.impl.CasCompare;
+import org.apache.uima.cas.impl.FeatureImpl;
+import org.apache.uima.cas.impl.TypeImpl;
+import org.apache.uima.cas.impl.TypeSystemImpl;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.ByteArray;
+import org.apache.uima.jcas.cas.EmptyFSList;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.cas.IntegerList;
+import org.apache.uima.jcas.cas.NonEmptyFSList;
+import org.apache.uima.jcas.cas.NonEmptyIntegerList;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.json.JsonCasSerializer.JsonContextFormat;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.test.RefTypes;
+import org.apache.uima.test.junit_extension.JUnitExtension;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.CasIOUtils;
+import org.apache.uima.util.XMLInputSource;
+
+import com.fasterxml.jackson.core.JsonParseException;
+
+import junit.framework.TestCase;
+
+public class JsonCasDeserializerTest extends TestCase {
+
+  private TypeSystemDescription tsd;
+  private CASImpl cas;
+  private JCas jcas;
+  private TypeSystemImpl tsi;
+  private TypeImpl allTypesType;
+
+  private void setupTypeSystem(String tsdName) throws Exception {
+    File tsdFile = JUnitExtension.getFile("CasSerialization/desc/" + tsdName);
+    tsd = UIMAFramework.getXMLParser().parseTypeSystemDescription(new XMLInputSource(tsdFile));
+    cas = (CASImpl) CasCreationUtils.createCas(tsd, null, null);
+    jcas = cas.getJCas();
+    tsi = cas.getTypeSystemImpl();
+    allTypesType = tsi.getType("org.apache.uima.test.AllTypes");
+  }
+
+  private CASImpl newCas() throws Exception {
+    return (CASImpl) CasCreationUtils.createCas(tsd, null, null);
+  }
+
+  /**
+   * Serializes the CAS with the serializer, deserializes it into a new CAS, and compares them
+   * @return the new CAS
+   */
+  private CASImpl roundTrip(JsonCasSerializer jcs) throws Exception {
+    StringWriter sw = new StringWriter();
+    jcs.serialize(cas, sw);
+    CASImpl cas2 = newCas();
+    JsonCasDeserializer.jsonDeserialize(new StringReader(sw.toString()), cas2);
+    assertTrue(sw.toString(), CasCompare.compareCASes(cas, cas2));
+    return cas2;
+  }
+
+  /**
+   * JSON doesn't keep the element type of an FSArray: the deserialized array gets the range type
+   * of the aArrayFS feature referring to it
+   */
+  @SuppressWarnings("unchecked")
+  private <T extends FeatureStructure> FSArray<T> rangeTypedFsArray(Type type, int length) {
+    FeatureImpl fi = (FeatureImpl) type.getFeatureByBaseName("aArrayFS");
+    return (FSArray<T>) cas.createArray(fi.getRangeImpl(), length);
+  }
+
+  public void testAllValues() throws Exception {
+    setupTypeSystem("allTypes.xml");
+    setAllValues(0);
+    roundTrip(new JsonCasSerializer());
+    roundTrip(new JsonCasSerializer().setOmit0Values(true).setPrettyPrint(true));
+    roundTrip(new JsonCasSerializer().setJsonContext(JsonContextFormat.omitContext));
+    roundTrip(new JsonCasSerializer().setJsonContext(JsonContextFormat.omitExpandedTypeNames));
+
+    cas.reset();
+    setAllValues(1);
+    roundTrip(new JsonCasSerializer());
+  }
+
+  public void testMultipleViews() throws Exception {
+    setupTypeSystem("allTypes.xml");
+    setAllValues(1);
+    cas.setDocumentText("The initial view");
+    CAS view2 = cas.createView("View2");
+    view2.setDocumentText("Another view");
+    cas = (CASImpl) view2;
+    setAllValues(0);
+    Annotation a = new Annotation(view2.getJCas(), 0, 7);
+    a.addToIndexes();
+    Annotation b = new Annotation(view2.getJCas(), 8, 12);
+    b.addToIndexes();
+    FSArray<Annotation> fsArray = new FSArray<>(jcas, 2);   // not in a view, refers to annotations of view 2
+    fsArray.set(0, a);
+    fsArray.set(1, new Annotation(view2.getJCas(), 1, 2));  // not indexed
+    fsArray.addToIndexes();
+    cas = cas.getBaseCAS();
+
+    CASImpl cas2 = roundTrip(new JsonCasSerializer());
+    CAS view2copy = cas2.getView("View2");
+    assertEquals("Another view", view2copy.getDocumentText());
+    assertEquals(12, view2copy.getDocumentAnnotation().getEnd());
+    assertEquals(4, view2copy.getAnnotationIndex().size());  // with the AllTypes and document annotations
+    assertEquals("The initial view", cas2.getView(CAS.NAME_DEFAULT_SOFA).getDocumentText());
+  }
+
+  public void testLists() throws Exception {
+    setupTypeSystem("allTypes.xml");
+    IntegerList end = jcas.getCas().emptyIntegerList();
+    NonEmptyIntegerList l2 = new NonEmptyIntegerList(jcas, 22, new NonEmptyIntegerList(jcas, 33, end));
+    NonEmptyIntegerList l1 = new NonEmptyIntegerList(jcas, 11, l2);
+    NonEmptyIntegerList l3 = new NonEmptyIntegerList(jcas, 110, l2);  // joins at l2
+    l1.addToIndexes();
+    l3.addToIndexes();
+    roundTrip(new JsonCasSerializer());
+  }
+
+  public void testRefs() throws Exception {
+    setupTypeSystem("refTypes.xml");
+    RefTypes root = new RefTypes(jcas);
+    root.addToIndexes();
+    RefTypes ref1 = new RefTypes(jcas);
+    ref1.addToIndexes();  // is both referenced and indexed
+    root.setAFS(ref1);
+    ref1.setAFS(ref1);    // refers to itself
+    roundTrip(new JsonCasSerializer());
+
+    for (boolean isIndexed : new boolean[] {false, true}) {
+      for (boolean isArray : new boolean[] {false, true}) {
+        arrayOrListRefs(isArray, isIndexed);
+        roundTrip(new JsonCasSerializer());
+      }
+    }
+  }
+
+  private void arrayOrListRefs(boolean isArray, boolean isIndexed) {
+    jcas.reset();
+    RefTypes root = new RefTypes(jcas);
+    root.addToIndexes();
+    RefTypes refa1 = new RefTypes(jcas);
+    RefTypes refa2 = new RefTypes(jcas);
+    RefTypes refa3 = new RefTypes(jcas);
+    refa2.setAFS(refa1);  // refa1 is referenced twice
+    if (isIndexed) {
+      refa1.addToIndexes();
+      refa3.addToIndexes();
+    }
+
+    if (isArray) {
+      FSArray<RefTypes> a = rangeTypedFsArray(root.getType(), 3);
+      a.set(0, refa1);
+      a.set(1, refa2);
+      a.set(2, refa3);
+      root.setAArrayFS(a);
+      if (isIndexed) {
+        a.addToIndexes();
+      }
+    } else {
+      NonEmptyFSList<RefTypes> l2 = new NonEmptyFSList<>(jcas, refa3, new EmptyFSList<>(jcas));
+      NonEmptyFSList<RefTypes> l1 = new NonEmptyFSList<>(jcas, refa2, l2);
+      NonEmptyFSList<RefTypes> l0 = new NonEmptyFSList<>(jcas, refa1, l1);
+      root.setAListFs(l0);
+      if (isIndexed) {
+        l0.addToIndexes();
+      }
+    }
+  }
+
+  /**
+   * An annotation embedded in an FS, which comes before its Sofa and the annotations listed in its view,
+   * is created after the Sofa is known.
+   */
+  public void testAnnotationBeforeItsView() throws Exception {
+    setupTypeSystem("refTypes.xml");
+    String json = "{\"_views\" : {\"_InitialView\" : {\"RefTypes\" : [ "
+        + "{\"aFS\" : {\"_type\" : \"Annotation\", \"sofa\" : 1, \"begin\" : 2, \"end\" : 4}} ], "
+        + "\"Annotation\" : [ 5 ] } }, "
+        + "\"_referenced_fss\" : {"
+        + "\"5\" : {\"_type\" : \"Annotation\", \"begin\" : 0, \"sofa\" : 1, \"end\" : 1}, "
+        + "\"1\" : {\"_type\" : \"Sofa\", \"sofaNum\" : 1, \"sofaID\" : \"_InitialView\", \"mimeType\" : \"text\", "
+        + "\"sofaString\" : \"a text\"} } }";
+    JsonCasDeserializer.jsonDeserialize(new StringReader(json), cas);
+
+    RefTypes root = jcas.select(RefTypes.class).single();
+    Annotation embedded = (Annotation) root.getAFS();
+    assertEquals(2, embedded.getBegin());
+    assertEquals("te", embedded.getCoveredText());
+    Annotation indexed = jcas.select(Annotation.class).at(0, 1).single();
+    assertEquals("a", indexed.getCoveredText());
+    assertEquals("a text", jcas.getDocumentText());
+    assertEquals(6, ((Annotation) jcas.getDocumentAnnotationFs()).getEnd());
+  }
+
+  public void testUnknownTypesAndIds() throws Exception {
+    setupTypeSystem("refTypes.xml");
+    String json = "{\"_views\" : {\"_InitialView\" : {"
+        + "\"RefTypes\" : [ {\"aFS\" : 7, \"notAFeature\" : [1, 2] } ], "
+        + "\"NotAType\" : [ {\"begin\" : 0} ] } } }";
+    try {
+      JsonCasDeserializer.jsonDeserialize(new StringReader(json), cas);
+      fail();
+    } catch (JsonParseException e) {
+      assertTrue(e.getMessage().contains("notAFeature"));
+    }
+
+    new JsonCasDeserializer().setLenient(true).deserialize(new StringReader(json), cas);
+    RefTypes root = jcas.select(RefTypes.class).single();
+    assertNull(root.getAFS());
+  }
+
+  public void testCasIOUtils() throws Exception {
+    setupTypeSystem("allTypes.xml");
+    setAllValues(0);
+    cas.setDocumentText("some text");
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    CasIOUtils.save(cas, os, SerialFormat.JSON);
+
+    CASImpl cas2 = newCas();
+    // leading white space
+    byte[] json = ("\n  " + new String(os.toByteArray(), StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+    assertEquals(SerialFormat.JSON, CasIOUtils.load(new ByteArrayInputStream(json), cas2));
+    assertTrue(CasCompare.compareCASes(cas, cas2));
+  }
+
+  private FeatureStructure setAllValues(int v) throws IOException {
+    boolean s1 = v == 0;
+    boolean s2 = v == 1;
+    FeatureStructure fs = cas.createFS(allTypesType);
+    FeatureStructure fs2 = cas.createFS(allTypesType);
+
+    fs.setBooleanValue(allTypesType.getFeatureByBaseName("aBoolean"), s1);
+    fs.setByteValue   (allTypesType.getFeatureByBaseName("aByte"), s1 ? (byte) -117 : (byte) 0);
+    fs.setShortValue  (allTypesType.getFeatureByBaseName("aShort"), s1 ? (short) -112 : (short) 0);
+    fs.setIntValue    (allTypesType.getFeatureByBaseName("aInteger"), s1 ? 0 : 1);
+    fs.setLongValue   (allTypesType.getFeatureByBaseName("aLong"), s2 ? 4321 : Long.MIN_VALUE);
+    fs.setFloatValue  (allTypesType.getFeatureByBaseName("aFloat"), s1 ?  1.3F : Float.NaN);
+    fs.setDoubleValue (allTypesType.getFeatureByBaseName("aDouble"), s2 ? Float.NEGATIVE_INFINITY : 2.6);
+    fs.setStringValue (allTypesType.getFeatureByBaseName("aString"),  "some \"String\"");
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aFS"),  fs2);
+
+    FeatureStructure fsAboolean = cas.createBooleanArrayFS(s1 ? 1 : 0);
+    ByteArray fsAbyte = new ByteArray(jcas, s1 ? 2 : 0);
+    if (s1) {
+      fsAbyte.set(0, (byte) 15);
+      fsAbyte.set(1, (byte) 0xee);
+    }
+    FeatureStructure fsAshort = cas.createShortArrayFS(s2 ? 2 : 0);
+    FeatureStructure fsAstring = cas.createStringArrayFS(s1 ? 1 : 0);
+
+    FSArray<FeatureStructure> fsaa = rangeTypedFsArray(allTypesType, 3);
+    fsaa.set(0, cas.createFS(allTypesType));
+    fsaa.set(1, fs2);
+    fsaa.set(2, null);
+
+    FeatureStructure fsMrAboolean = cas.createBooleanArrayFS(1);
+    FeatureStructure fsMrAbyte = cas.createByteArrayFS(2);
+    FeatureStructure fsMrAshort = cas.createShortArrayFS(0);
+    FeatureStructure fsMrAstring = cas.createStringArrayFS(1);
+
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayBoolean"), fsAboolean);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayByte"), fsAbyte);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayShort"), fsAshort);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayString"), fsAstring);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayFS"), fsaa);
+
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayMrBoolean"), fsMrAboolean);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayMrByte"), fsMrAbyte);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayMrShort"), fsMrAshort);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayMrString"), fsMrAstring);
+    fs2.setFeatureValue(allTypesType.getFeatureByBaseName("aArrayMrString"), fsMrAstring);  // shared
+
+    FeatureStructure fsLinteger0 = cas.emptyIntegerList();
+    FeatureStructure fsLstring0 = cas.createFS(tsi.getType(CAS.TYPE_NAME_NON_EMPTY_STRING_LIST));
+    fsLstring0.setStringValue(tsi.getFeatureByFullName(CAS.TYPE_NAME_NON_EMPTY_STRING_LIST + ":head"), "testStr");
+    fsLstring0.setFeatureValue(tsi.getFeatureByFullName(CAS.TYPE_NAME_NON_EMPTY_STRING_LIST + ":tail"), cas.emptyStringList());
+    FeatureStructure fsLfs0 = cas.createFS(tsi.getType(CAS.TYPE_NAME_NON_EMPTY_FS_LIST));
+    fsLfs0.setFeatureValue(tsi.getFeatureByFullName(CAS.TYPE_NAME_NON_EMPTY_FS_LIST + ":head"), fs2);
+    fsLfs0.setFeatureValue(tsi.getFeatureByFullName(CAS.TYPE_NAME_NON_EMPTY_FS_LIST + ":tail"), cas.emptyFSList());
+
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aListInteger"), fsLinteger0);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aListString"), fsLstring0);
+    fs.setFeatureValue(allTypesType.getFeatureByBaseName("aListFs"), fsLfs0);
+
+    cas.addFsToIndexes(fs);
+    return fs;
+  }
+}